@@ -9,8 +9,13 @@ package com.almasb.fxgl.core.reflect;
 import com.almasb.fxgl.core.collection.Array;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
@@ -111,6 +116,118 @@ public final class ReflectionUtils {
         return input -> call(instance, method, input);
     }
 
+    /**
+     * Maps a single-parameter method of "instance" to a function that calls the method directly,
+     * rather than via {@link Method#invoke(Object, Object...)}, so it is suitable for frequent calls.
+     * The function is generated via {@link LambdaMetafactory} if the declaring class is accessible
+     * with full privileges (e.g. same module or both on class path),
+     * otherwise a method handle bound to "instance" is used.
+     * Unlike {@link #mapToFunction(Object, Method)}, exceptions thrown by the method are not wrapped.
+     *
+     * @param instance object to call the method on, ignored if the method is static
+     * @param method method with a single parameter
+     * @return function that calls the method
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Function<T, R> mapToFunctionDirect(Object instance, Method method) {
+        if (method.getParameterCount() != 1)
+            throw new ReflectionException("Method " + method.getName() + " must have a single parameter");
+
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        Class<?> declaringClass = method.getDeclaringClass();
+
+        MethodHandle handle;
+
+        try {
+            // the module of the declaring class may not be readable by this module yet
+            ReflectionUtils.class.getModule().addReads(declaringClass.getModule());
+
+            var lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+            handle = lookup.unreflect(method);
+
+            if (lookup.hasFullPrivilegeAccess()) {
+                var site = LambdaMetafactory.metafactory(
+                        lookup,
+                        "apply",
+                        isStatic ? MethodType.methodType(Function.class) : MethodType.methodType(Function.class, declaringClass),
+                        MethodType.methodType(Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(method.getReturnType(), method.getParameterTypes()).wrap()
+                );
+
+                return (Function<T, R>) (isStatic ? site.getTarget().invoke() : site.getTarget().invoke(instance));
+            }
+        } catch (Throwable e) {
+            // the declaring package is not open to us, so we use the method itself
+            handle = null;
+        }
+
+        try {
+            if (handle == null) {
+                method.setAccessible(true);
+                handle = MethodHandles.lookup().unreflect(method);
+            }
+        } catch (Exception e) {
+            throw new ReflectionException("Cannot access method " + method.getName(), e);
+        }
+
+        MethodHandle boundHandle = (isStatic ? handle : handle.bindTo(instance))
+                .asType(MethodType.methodType(Object.class, Object.class));
+
+        return input -> {
+            try {
+                return (R) boundHandle.invokeExact((Object) input);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ReflectionException("Cannot call " + method.getName() + " Error: " + e, e);
+            }
+        };
+    }
+
+    /**
+     * Maps a method of "instance" with any number of parameters to a function that takes
+     * the arguments as an array and calls the method via a method handle,
+     * so that access checks are only performed once.
+     * Arguments are unboxed and cast to parameter types of the method, so their types must match exactly.
+     * Void methods return null.
+     * Unlike {@link #call(Object, Method, Object...)}, runtime exceptions thrown by the method are not wrapped.
+     *
+     * @param instance object to call the method on, ignored if the method is static
+     * @param method the method
+     * @return function that calls the method with given arguments
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> Function<Object[], R> mapToArrayFunctionDirect(Object instance, Method method) {
+        MethodHandle handle;
+
+        try {
+            method.trySetAccessible();
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (Exception e) {
+            throw new ReflectionException("Cannot access method " + method.getName(), e);
+        }
+
+        int paramCount = method.getParameterCount();
+
+        MethodHandle arrayHandle = (Modifier.isStatic(method.getModifiers()) ? handle : handle.bindTo(instance))
+                .asSpreader(Object[].class, paramCount)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+
+        return args -> {
+            if (args.length != paramCount)
+                throw new ReflectionException("Cannot call " + method.getName() + " Expected " + paramCount + " args, but got: " + args.length);
+
+            try {
+                return (R) arrayHandle.invokeExact(args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ReflectionException("Cannot call " + method.getName() + " Error: " + e, e);
+            }
+        };
+    }
+
     public static <A extends Annotation> Array<Field> findFieldsByAnnotation(Object instance, Class<A> annotationClass) {
 
         Array<Field> fields = new Array<>();
@@ -204,6 +321,27 @@ public final class ReflectionUtils {
         }
     }
 
+    /**
+     * Creates a setter of given field, which can be reused to set the field of any instance
+     * without repeating reflective access checks.
+     * Same access rules apply as for {@link #inject(Field, Object, Object)}.
+     *
+     * @param field the field object
+     * @return method handle of type (Object, Object)void that takes the instance and the value to set
+     * @throws ReflectionException if the field cannot be accessed
+     */
+    public static MethodHandle findSetter(Field field) {
+        try {
+            field.setAccessible(true);
+
+            return MethodHandles.lookup()
+                    .unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (Exception e) {
+            throw new ReflectionException("Cannot access field " + field.getName() + " Error: " + e, e);
+        }
+    }
+
     /**
      * @param type class
      * @return instance of given class using its no-arg ctor
@@ -0,0 +1,841 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.core.serialization;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of {@link Bundle}, used instead of Java object serialization
+ * for network messages and save files.
+ * Unlike object serialization, no class descriptors are written: each value is a 1-byte type tag
+ * followed by its data, integers are varints and floating point numbers are raw bits.
+ * Keys, bundle names and enum names are interned: the first occurrence of a string is written literally,
+ * later occurrences are written as an index into the table of strings seen so far.
+ *
+ * Supported values are primitive wrappers, String, Bundle, enums, arrays of byte, int, float, double and String,
+ * ArrayList and HashMap of supported values.
+ * Any other Serializable value falls back to Java object serialization, so every Bundle can be encoded.
+ *
+ * The static methods are thread-safe and encode each bundle independently.
+ * An {@link Encoder} and {@link Decoder} pair that keeps its string table between messages
+ * (e.g. one per TCP connection) only writes each key once per connection.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class BundleCodec {
+
+    /**
+     * Written at the start of files, so that they can be told apart from Java serialized files.
+     */
+    private static final byte[] MAGIC = { 'F', 'X', 'G', 'B' };
+    private static final byte VERSION = 1;
+
+    /**
+     * Max number of interned strings, after which new strings are always written literally.
+     */
+    private static final int MAX_STRING_TABLE_SIZE = 4096;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * Pooled buffers that grew larger than this (e.g. for a large message) are not kept.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Default max length of a bundle read from a stream, larger lengths are rejected before allocating.
+     */
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Max bytes of a varint length prefix.
+     */
+    private static final int LENGTH_PREFIX_SIZE = 5;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHAR = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte STRING = 10;
+    private static final byte BYTE_ARRAY = 11;
+    private static final byte INT_ARRAY = 12;
+    private static final byte FLOAT_ARRAY = 13;
+    private static final byte DOUBLE_ARRAY = 14;
+    private static final byte STRING_ARRAY = 15;
+    private static final byte BUNDLE = 16;
+    private static final byte LIST = 17;
+    private static final byte MAP = 18;
+    private static final byte ENUM = 19;
+    private static final byte OBJECT = 20;
+
+    private static final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(() -> new Encoder(false));
+    private static final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(() -> new Decoder(false));
+
+    private static final Map<String, Class<?>> enumClasses = new ConcurrentHashMap<>();
+
+    private BundleCodec() {}
+
+    /**
+     * @return encoded bundle
+     */
+    public static byte[] encode(Bundle bundle) {
+        return encoders.get().encode(bundle);
+    }
+
+    /**
+     * @return bundle decoded from bytes produced by {@link #encode(Bundle)}
+     */
+    public static Bundle decode(byte[] data) {
+        return decode(data, 0, data.length);
+    }
+
+    /**
+     * @return bundle decoded from [offset, offset + length) of given bytes
+     */
+    public static Bundle decode(byte[] data, int offset, int length) {
+        return decoders.get().decode(data, offset, length);
+    }
+
+    /**
+     * Writes the file form of given bundle, which starts with a header.
+     */
+    public static void writeWithHeader(Bundle bundle, OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(encode(bundle));
+    }
+
+    /**
+     * @return true if given bytes start with the header written by {@link #writeWithHeader(Bundle, OutputStream)}
+     */
+    public static boolean hasHeader(byte[] data) {
+        if (data.length < MAGIC.length + 1)
+            return false;
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return bundle decoded from the file form written by {@link #writeWithHeader(Bundle, OutputStream)}
+     */
+    public static Bundle readWithHeader(byte[] data) {
+        if (!hasHeader(data))
+            throw new IllegalArgumentException("Data does not start with bundle header");
+
+        int version = data[MAGIC.length];
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported bundle version: " + version);
+
+        int offset = MAGIC.length + 1;
+
+        return decode(data, offset, data.length - offset);
+    }
+
+    private static Class<?> enumClass(String name) {
+        Class<?> type = enumClasses.get(name);
+        if (type != null)
+            return type;
+
+        try {
+            type = Class.forName(name, false, BundleCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Enum class not found: " + name, e);
+        }
+
+        enumClasses.put(name, type);
+        return type;
+    }
+
+    /**
+     * Encodes bundles into a buffer that is reused between calls.
+     * Not thread-safe.
+     */
+    public static final class Encoder {
+
+        private final boolean keepStrings;
+
+        private final HashMap<String, Integer> strings = new HashMap<>();
+
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int size = 0;
+
+        /**
+         * @param keepStrings whether interned strings are kept between bundles,
+         *                    in which case the bundles must be decoded in the same order by a single decoder
+         *                    that also keeps strings
+         */
+        public Encoder(boolean keepStrings) {
+            this.keepStrings = keepStrings;
+        }
+
+        public byte[] encode(Bundle bundle) {
+            begin(0);
+            writeBundle(bundle);
+
+            byte[] result = Arrays.copyOf(buffer, size);
+            end();
+            return result;
+        }
+
+        /**
+         * Writes the encoded bundle, prefixed by its varint length, in a single write to given stream.
+         */
+        public void write(Bundle bundle, OutputStream out) throws IOException {
+            int numStrings = strings.size();
+
+            begin(LENGTH_PREFIX_SIZE);
+
+            try {
+                writeBundle(bundle);
+            } catch (RuntimeException e) {
+                // the bundle is not written, so the decoder will not see strings interned by it
+                strings.values().removeIf(index -> index >= numStrings);
+                throw e;
+            }
+
+            int length = size - LENGTH_PREFIX_SIZE;
+
+            // write the length prefix right before the data
+            int start = LENGTH_PREFIX_SIZE - varIntSize(length);
+            size = start;
+            writeVarInt(length);
+
+            out.write(buffer, start, LENGTH_PREFIX_SIZE + length - start);
+            end();
+        }
+
+        private void begin(int offset) {
+            if (!keepStrings)
+                strings.clear();
+
+            size = offset;
+        }
+
+        private void end() {
+            if (buffer.length > MAX_POOLED_BUFFER_SIZE)
+                buffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+
+        private void writeBundle(Bundle bundle) {
+            writeInterned(bundle.getName());
+
+            HashMap<String, Serializable> data = bundle.getData();
+            writeVarInt(data.size());
+
+            for (Map.Entry<String, Serializable> entry : data.entrySet()) {
+                writeInterned(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof Integer) {
+                writeByte(INT);
+                writeVarLong(zigZag((Integer) value));
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeInt(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarLong(zigZag((Long) value));
+            } else if (value instanceof Bundle) {
+                writeByte(BUNDLE);
+                writeBundle((Bundle) value);
+            } else if (value instanceof Enum<?>) {
+                Enum<?> e = (Enum<?>) value;
+                writeByte(ENUM);
+                writeInterned(e.getDeclaringClass().getName());
+                writeInterned(e.name());
+            } else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeVarLong(zigZag((Short) value));
+            } else if (value instanceof Character) {
+                writeByte(CHAR);
+                writeVarInt((Character) value);
+            } else if (value instanceof byte[]) {
+                byte[] array = (byte[]) value;
+                writeByte(BYTE_ARRAY);
+                writeVarInt(array.length);
+                ensureCapacity(array.length);
+                System.arraycopy(array, 0, buffer, size, array.length);
+                size += array.length;
+            } else if (value instanceof int[]) {
+                int[] array = (int[]) value;
+                writeByte(INT_ARRAY);
+                writeVarInt(array.length);
+                for (int i : array) {
+                    writeVarLong(zigZag(i));
+                }
+            } else if (value instanceof float[]) {
+                float[] array = (float[]) value;
+                writeByte(FLOAT_ARRAY);
+                writeVarInt(array.length);
+                for (float f : array) {
+                    writeInt(Float.floatToRawIntBits(f));
+                }
+            } else if (value instanceof double[]) {
+                double[] array = (double[]) value;
+                writeByte(DOUBLE_ARRAY);
+                writeVarInt(array.length);
+                for (double d : array) {
+                    writeLong(Double.doubleToRawLongBits(d));
+                }
+            } else if (value.getClass() == String[].class) {
+                String[] array = (String[]) value;
+                writeByte(STRING_ARRAY);
+                writeVarInt(array.length);
+                for (String s : array) {
+                    if (s == null) {
+                        writeByte(NULL);
+                    } else {
+                        writeByte(STRING);
+                        writeString(s);
+                    }
+                }
+            } else if (value.getClass() == ArrayList.class) {
+                ArrayList<?> list = (ArrayList<?>) value;
+                writeByte(LIST);
+                writeVarInt(list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    writeValue(list.get(i));
+                }
+            } else if (value.getClass() == HashMap.class) {
+                HashMap<?, ?> map = (HashMap<?, ?>) value;
+                writeByte(MAP);
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else {
+                writeByte(OBJECT);
+                writeObject(value);
+            }
+        }
+
+        private void writeObject(Object value) {
+            var baos = new ByteArrayOutputStream();
+
+            try (var out = new ObjectOutputStream(baos)) {
+                out.writeObject(value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to serialize " + value.getClass() + ": " + e, e);
+            }
+
+            writeVarInt(baos.size());
+            ensureCapacity(baos.size());
+            System.arraycopy(baos.toByteArray(), 0, buffer, size, baos.size());
+            size += baos.size();
+        }
+
+        private void writeInterned(String s) {
+            Integer index = strings.get(s);
+
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+
+            writeVarInt(0);
+            writeString(s);
+
+            if (strings.size() < MAX_STRING_TABLE_SIZE) {
+                strings.put(s, strings.size());
+            }
+        }
+
+        private void writeString(String s) {
+            int length = s.length();
+
+            // fast path for ASCII, which is most keys and values in practice
+            boolean isASCII = true;
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    isASCII = false;
+                    break;
+                }
+            }
+
+            if (isASCII) {
+                writeVarInt(length);
+                ensureCapacity(length);
+                for (int i = 0; i < length; i++) {
+                    buffer[size++] = (byte) s.charAt(i);
+                }
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, size, bytes.length);
+                size += bytes.length;
+            }
+        }
+
+        private void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        private void writeInt(int value) {
+            ensureCapacity(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            buffer[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int numBytes) {
+            if (size + numBytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + numBytes));
+            }
+        }
+
+        private static int varIntSize(int value) {
+            int numBytes = 1;
+
+            while ((value & ~0x7F) != 0) {
+                numBytes++;
+                value >>>= 7;
+            }
+
+            return numBytes;
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * Decodes bundles produced by an {@link Encoder}.
+     * Not thread-safe.
+     */
+    public static final class Decoder {
+
+        private final boolean keepStrings;
+
+        /**
+         * Max length of a bundle read from a stream.
+         */
+        private final int maxMessageSize;
+
+        private final ArrayList<String> strings = new ArrayList<>();
+
+        /**
+         * Used to read from a stream.
+         */
+        private byte[] streamBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+        private byte[] data;
+        private int pos;
+        private int end;
+
+        /**
+         * First value of the bundle being decoded that could not be converted (e.g. its class is not found),
+         * which is thrown after the whole bundle is read, so that all strings of the bundle are interned.
+         */
+        private RuntimeException valueFailure = null;
+
+        /**
+         * Set if decoding stopped partway through malformed data, so that strings interned by the encoder
+         * after that point are unknown and later bundles cannot be decoded.
+         */
+        private boolean isOutOfSync = false;
+
+        /**
+         * @param keepStrings must match the encoder
+         */
+        public Decoder(boolean keepStrings) {
+            this(keepStrings, DEFAULT_MAX_MESSAGE_SIZE);
+        }
+
+        /**
+         * @param keepStrings must match the encoder
+         * @param maxMessageSize max length of a bundle read from a stream
+         */
+        public Decoder(boolean keepStrings, int maxMessageSize) {
+            this.keepStrings = keepStrings;
+            this.maxMessageSize = maxMessageSize;
+        }
+
+        public Bundle decode(byte[] data, int offset, int length) {
+            if (offset < 0 || length < 0 || offset + length > data.length)
+                throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", data length: " + data.length);
+
+            if (isOutOfSync)
+                throw new IllegalStateException("Cannot decode after malformed data, since strings are no longer the same as those of the encoder");
+
+            if (!keepStrings)
+                strings.clear();
+
+            int numStrings = strings.size();
+
+            this.data = data;
+            this.pos = offset;
+            this.end = offset + length;
+
+            try {
+                Bundle bundle = readBundle();
+
+                if (valueFailure != null)
+                    throw valueFailure;
+
+                return bundle;
+            } catch (RuntimeException e) {
+                if (keepStrings && e != valueFailure) {
+                    strings.subList(numStrings, strings.size()).clear();
+                    isOutOfSync = true;
+                }
+
+                throw e;
+            } finally {
+                this.data = null;
+                this.valueFailure = null;
+            }
+        }
+
+        /**
+         * Reads a bundle written by {@link Encoder#write(Bundle, OutputStream)}.
+         * Blocks until the whole bundle is read.
+         *
+         * @throws EOFException if the stream ends
+         * @throws IOException if the length of the bundle is negative or larger than max message size
+         */
+        public Bundle read(InputStream in) throws IOException {
+            int length = readVarInt(in);
+
+            if (length < 0 || length > maxMessageSize)
+                throw new IOException("Invalid bundle length: " + length + ", max message size: " + maxMessageSize);
+
+            if (length > streamBuffer.length) {
+                streamBuffer = new byte[Math.max(length, streamBuffer.length * 2)];
+            }
+
+            int numRead = 0;
+            while (numRead < length) {
+                int n = in.read(streamBuffer, numRead, length - numRead);
+                if (n == -1)
+                    throw new EOFException("Stream ended while reading bundle");
+
+                numRead += n;
+            }
+
+            Bundle bundle = decode(streamBuffer, 0, length);
+
+            if (streamBuffer.length > MAX_POOLED_BUFFER_SIZE)
+                streamBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+            return bundle;
+        }
+
+        private static int readVarInt(InputStream in) throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.read();
+                if (b == -1)
+                    throw new EOFException("Stream ended while reading bundle length");
+
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+
+            throw new IOException("Malformed bundle length");
+        }
+
+        private Bundle readBundle() {
+            Bundle bundle = new Bundle(readInterned());
+
+            int size = readLength();
+            for (int i = 0; i < size; i++) {
+                String key = readInterned();
+
+                // values nested in a list or map may be null, so put directly
+                bundle.getData().put(key, (Serializable) readValue());
+            }
+
+            return bundle;
+        }
+
+        private Object readValue() {
+            byte tag = readByte();
+
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case BYTE:
+                    return readByte();
+                case SHORT:
+                    return (short) unZigZag(readVarLong());
+                case CHAR:
+                    return (char) readVarInt();
+                case INT:
+                    return (int) unZigZag(readVarLong());
+                case LONG:
+                    return unZigZag(readVarLong());
+                case FLOAT:
+                    return Float.intBitsToFloat(readInt());
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case STRING:
+                    return readString();
+                case BYTE_ARRAY: {
+                    int length = readLength();
+                    require(length);
+                    byte[] array = Arrays.copyOfRange(data, pos, pos + length);
+                    pos += length;
+                    return array;
+                }
+                case INT_ARRAY: {
+                    int[] array = new int[readLength()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = (int) unZigZag(readVarLong());
+                    }
+                    return array;
+                }
+                case FLOAT_ARRAY: {
+                    int length = readLength();
+                    require(length * 4L);
+                    float[] array = new float[length];
+                    for (int i = 0; i < length; i++) {
+                        array[i] = Float.intBitsToFloat(readInt());
+                    }
+                    return array;
+                }
+                case DOUBLE_ARRAY: {
+                    int length = readLength();
+                    require(length * 8L);
+                    double[] array = new double[length];
+                    for (int i = 0; i < length; i++) {
+                        array[i] = Double.longBitsToDouble(readLong());
+                    }
+                    return array;
+                }
+                case STRING_ARRAY: {
+                    String[] array = new String[readLength()];
+                    for (int i = 0; i < array.length; i++) {
+                        byte elementTag = readByte();
+
+                        if (elementTag == STRING) {
+                            array[i] = readString();
+                        } else if (elementTag != NULL) {
+                            throw new IllegalArgumentException("Unexpected String[] element type: " + elementTag);
+                        }
+                    }
+                    return array;
+                }
+                case BUNDLE:
+                    return readBundle();
+                case LIST: {
+                    int size = readLength();
+                    ArrayList<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case MAP: {
+                    int size = readLength();
+                    HashMap<Object, Object> map = new HashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = readValue();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                case ENUM:
+                    return readEnum();
+                case OBJECT:
+                    return readObject();
+                default:
+                    throw new IllegalArgumentException("Unknown value type: " + tag);
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Object readEnum() {
+            // both strings are read first, so that they are interned even if the enum cannot be found
+            String className = readInterned();
+            String name = readInterned();
+
+            try {
+                Class type = enumClass(className);
+
+                if (!type.isEnum())
+                    throw new IllegalArgumentException("Not an enum: " + type);
+
+                return Enum.valueOf(type, name);
+            } catch (IllegalArgumentException e) {
+                return onValueFailure(e);
+            }
+        }
+
+        private Object readObject() {
+            int length = readLength();
+            require(length);
+
+            int start = pos;
+            pos += length;
+
+            try (var in = new ObjectInputStream(new ByteArrayInputStream(data, start, length))) {
+                return in.readObject();
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                return onValueFailure(new IllegalArgumentException("Failed to deserialize value: " + e, e));
+            }
+        }
+
+        /**
+         * Decoding continues after a value that cannot be converted, since its bytes were fully read.
+         */
+        private Object onValueFailure(RuntimeException e) {
+            if (valueFailure == null)
+                valueFailure = e;
+
+            return null;
+        }
+
+        private String readInterned() {
+            int index = readVarInt();
+
+            if (index > 0) {
+                if (index > strings.size())
+                    throw new IllegalArgumentException("Unknown string index: " + index);
+
+                return strings.get(index - 1);
+            }
+
+            String s = readString();
+
+            if (strings.size() < MAX_STRING_TABLE_SIZE) {
+                strings.add(s);
+            }
+
+            return s;
+        }
+
+        private String readString() {
+            int length = readLength();
+            require(length);
+
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        private byte readByte() {
+            require(1);
+            return data[pos++];
+        }
+
+        private int readInt() {
+            require(4);
+            return ((data[pos++] & 0xFF) << 24)
+                    | ((data[pos++] & 0xFF) << 16)
+                    | ((data[pos++] & 0xFF) << 8)
+                    | (data[pos++] & 0xFF);
+        }
+
+        private long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        /**
+         * @return a length, which is at most the number of remaining bytes since every element takes at least a byte
+         */
+        private int readLength() {
+            int length = readVarInt();
+
+            if (length < 0 || length > end - pos)
+                throw new IllegalArgumentException("Invalid length: " + length);
+
+            return length;
+        }
+
+        private int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private void require(long numBytes) {
+            if (numBytes > end - pos)
+                throw new IllegalArgumentException("Unexpected end of bundle data");
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -8,53 +8,238 @@ package com.almasb.fxgl.core.collection
 
 /**
  * A map with where K is an unordered pair (order doesn't matter).
+ * Keys are compared exactly (using equals()), so distinct pairs never collide.
+ * Entries are stored in flat arrays with open addressing,
+ * hence get, put and remove do not allocate.
  *
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
 class UnorderedPairMap<K, V>
 @JvmOverloads constructor(capacity: Int = 16) {
-    
-    private val map = HashMap<Int, V>(capacity)
 
-    val values
-        get() = map.values
-    
+    private companion object {
+        const val EMPTY: Byte = 0
+        const val FULL: Byte = 1
+        const val REMOVED: Byte = 2
+    }
+
+    private var keys1 = arrayOfNulls<Any>(0)
+    private var keys2 = arrayOfNulls<Any>(0)
+    private var vals = arrayOfNulls<Any>(0)
+    private var states = ByteArray(0)
+
+    private var mask = 0
+
+    /**
+     * Number of slots that are not empty (i.e. full or removed).
+     */
+    private var used = 0
+
+    /**
+     * Number of key-value pairs in the map.
+     */
+    var size = 0
+        private set
+
+    /**
+     * A live view of values in this map.
+     * Removing via its iterator removes the corresponding mapping.
+     */
+    val values: MutableCollection<V> = Values()
+
+    init {
+        allocate(tableSizeFor(capacity * 2))
+    }
+
     /**
      * Clear all key-value pairs in the map.
      */
     fun clear() {
-        map.clear()
+        keys1.fill(null)
+        keys2.fill(null)
+        vals.fill(null)
+        states.fill(EMPTY)
+
+        size = 0
+        used = 0
     }
 
     /**
      * @return a value for [key1] [key2] pair or null if no such key exists
      */
+    @Suppress("UNCHECKED_CAST")
     fun get(key1: K, key2: K): V? {
-        return map[hash(key1, key2)]
+        val i = indexOf(key1, key2)
+
+        return if (i < 0) null else vals[i] as V
     }
 
     /**
      * Add a new mapping from [key1] [key2] to [value].
      */
     fun put(key1: K, key2: K, value: V) {
-        map[hash(key1, key2)] = value
+        val existing = indexOf(key1, key2)
+        if (existing >= 0) {
+            vals[existing] = value
+            return
+        }
+
+        // keep at least half of the slots empty so that probe sequences stay short
+        if ((used + 1) * 2 > states.size) {
+            rehash(if ((size + 1) * 4 > states.size) states.size * 2 else states.size)
+        }
+
+        insert(key1, key2, value)
     }
 
     /**
      * Remove an existing mapping whose key is [key1] [key2].
      */
     fun remove(key1: K, key2: K) {
-        map.remove(hash(key1, key2))
+        val i = indexOf(key1, key2)
+
+        if (i >= 0) {
+            removeAt(i)
+        }
+    }
+
+    private fun indexOf(key1: K, key2: K): Int {
+        var i = hash(key1, key2) and mask
+
+        while (true) {
+            when (states[i]) {
+                EMPTY -> return -1
+
+                FULL -> {
+                    if ((keys1[i] == key1 && keys2[i] == key2) || (keys1[i] == key2 && keys2[i] == key1))
+                        return i
+                }
+            }
+
+            i = (i + 1) and mask
+        }
     }
 
-    private fun hash(key1: K, key2: K): Int {
+    private fun insert(key1: Any?, key2: Any?, value: Any?) {
+        var i = hash(key1, key2) and mask
+
+        while (states[i] == FULL) {
+            i = (i + 1) and mask
+        }
+
+        if (states[i] == EMPTY) {
+            used++
+        }
+
+        keys1[i] = key1
+        keys2[i] = key2
+        vals[i] = value
+        states[i] = FULL
+
+        size++
+    }
+
+    private fun removeAt(i: Int) {
+        keys1[i] = null
+        keys2[i] = null
+        vals[i] = null
+        states[i] = REMOVED
+
+        size--
+    }
+
+    private fun rehash(newCapacity: Int) {
+        val oldKeys1 = keys1
+        val oldKeys2 = keys2
+        val oldVals = vals
+        val oldStates = states
+
+        allocate(newCapacity)
+
+        for (i in oldStates.indices) {
+            if (oldStates[i] == FULL) {
+                insert(oldKeys1[i], oldKeys2[i], oldVals[i])
+            }
+        }
+    }
+
+    private fun allocate(capacity: Int) {
+        keys1 = arrayOfNulls(capacity)
+        keys2 = arrayOfNulls(capacity)
+        vals = arrayOfNulls(capacity)
+        states = ByteArray(capacity)
+        mask = capacity - 1
+
+        size = 0
+        used = 0
+    }
+
+    private fun tableSizeFor(capacity: Int): Int {
+        var n = 4
+        while (n < capacity) {
+            n = n shl 1
+        }
+        return n
+    }
+
+    /**
+     * Symmetric in its arguments, so that (a, b) and (b, a) hash the same.
+     */
+    private fun hash(key1: Any?, key2: Any?): Int {
         val hash1 = key1.hashCode()
         val hash2 = key2.hashCode()
 
-        return if (hash1 > hash2) {
+        val h = if (hash1 > hash2) {
             31 * (31 + hash1) + hash2
         } else {
             31 * (31 + hash2) + hash1
         }
+
+        // spread the bits since the table size is a power of two
+        return h xor (h ushr 16)
+    }
+
+    private inner class Values : AbstractMutableCollection<V>() {
+        override val size: Int
+            get() = this@UnorderedPairMap.size
+
+        override fun add(element: V): Boolean {
+            throw UnsupportedOperationException("Cannot add a value without keys")
+        }
+
+        override fun iterator(): MutableIterator<V> = ValuesIterator()
+    }
+
+    private inner class ValuesIterator : MutableIterator<V> {
+        private var next = advance(0)
+        private var current = -1
+
+        override fun hasNext(): Boolean = next < states.size
+
+        @Suppress("UNCHECKED_CAST")
+        override fun next(): V {
+            if (!hasNext())
+                throw NoSuchElementException()
+
+            current = next
+            next = advance(next + 1)
+
+            return vals[current] as V
+        }
+
+        override fun remove() {
+            check(current >= 0 && states[current] == FULL) { "next() has not been called or the value was already removed" }
+
+            // removing only marks the slot, so iteration order is not affected
+            removeAt(current)
+        }
+
+        private fun advance(from: Int): Int {
+            var i = from
+            while (i < states.size && states[i] != FULL) {
+                i++
+            }
+            return i
+        }
     }
-}
\ No newline at end of file
+}
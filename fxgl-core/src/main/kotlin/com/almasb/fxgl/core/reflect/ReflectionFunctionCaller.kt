@@ -9,10 +9,13 @@ package com.almasb.fxgl.core.reflect
 import java.lang.RuntimeException
 import java.lang.reflect.Method
 import java.util.function.BiFunction
+import java.util.function.Function
 
 /**
  * Allows calling methods of any object using its String name
  * and String arguments.
+ * Each method is compiled into a method handle and its String converters are looked up
+ * when it is first called, so repeated calls only convert arguments and invoke the handle.
  *
  * @author Almas Baim (https://github.com/AlmasB)
  */
@@ -49,10 +52,12 @@ class ReflectionFunctionCaller {
 
     fun <T : Any> addStringToObjectConverter(type: Class<T>, converter: (String) -> T) {
         stringToObject[type] = converter
+        functions.values.forEach { it.converters = null }
     }
 
     fun removeStringToObjectConverter(type: Class<*>) {
         stringToObject.remove(type)
+        functions.values.forEach { it.converters = null }
     }
 
     /**
@@ -92,13 +97,16 @@ class ReflectionFunctionCaller {
         val function = functions[FunctionSignature(functionName, args.size)]
 
         if (function != null) {
-            val argsAsObjects = function.method.parameterTypes.mapIndexed { index, type ->
-                val converter = stringToObject[type] ?: throw java.lang.RuntimeException("No converter found from String to $type")
-                converter.invoke(args[index])
+            val converters = function.converters ?: findConverters(function.method).also { function.converters = it }
+
+            val argsAsObjects = arrayOfNulls<Any>(args.size)
+
+            for (i in args.indices) {
+                argsAsObjects[i] = converters[i].invoke(args[i])
             }
 
             // void returns null, but Any is expected, so we return 0 in such cases
-            return function.method.invoke(function.functionCallTarget, *argsAsObjects.toTypedArray()) ?: 0
+            return function.invoker.apply(argsAsObjects) ?: 0
         }
 
         return defaultFunctionHandler.apply(functionName, args.toList())
@@ -118,16 +126,35 @@ class ReflectionFunctionCaller {
 
         if (function != null) {
             // void returns null, but Any is expected, so we return 0 in such cases
-            return function.method.invoke(function.functionCallTarget, *args) ?: 0
+            return function.invoker.apply(args) ?: 0
         }
 
         return defaultFunctionHandler.apply(functionName, args.toList().map { it.toString() })
     }
 
+    private fun findConverters(method: Method): Array<(String) -> Any> {
+        return method.parameterTypes.map { type ->
+            stringToObject[type] ?: throw RuntimeException("No converter found from String to $type")
+        }.toTypedArray()
+    }
+
     private data class FunctionSignature(val name: String, val paramCount: Int)
 
     /**
      * Stores the object [functionCallTarget] and the function [method] that can be invoked on the object.
      */
-    private data class ReflectionFunction(val functionCallTarget: Any, val method: Method)
+    private class ReflectionFunction(val functionCallTarget: Any, val method: Method) {
+
+        /**
+         * Created on first call, since most added methods are never called.
+         */
+        val invoker: Function<Array<out Any?>, Any?> by lazy(LazyThreadSafetyMode.NONE) {
+            ReflectionUtils.mapToArrayFunctionDirect<Any?>(functionCallTarget, method)
+        }
+
+        /**
+         * Converters from String to each parameter type, null until first [call] or after converters change.
+         */
+        var converters: Array<(String) -> Any>? = null
+    }
 }
\ No newline at end of file
@@ -69,5 +69,53 @@ class UnorderedPairMapTest {
         assertThat(map2.get(key1, CustomObject()), nullValue())
     }
 
+    @Test
+    fun `Keys with same combined hash code do not collide`() {
+        val map2 = UnorderedPairMap<HashObject, String>()
+
+        map2.put(HashObject(1), HashObject(5), "A")
+        map2.put(HashObject(5), HashObject(1), "B")
+        map2.put(HashObject(2), HashObject(4), "C")
+
+        assertThat(map2.get(HashObject(1), HashObject(5)), `is`("B"))
+        assertThat(map2.get(HashObject(2), HashObject(4)), `is`("C"))
+        assertThat(map2.get(HashObject(3), HashObject(3)), nullValue())
+        assertThat(map2.size, `is`(2))
+    }
+
+    @Test
+    fun `Map grows and values can be removed while iterating`() {
+        for (i in 0 until 1000) {
+            map.put("a$i", "b$i", i)
+        }
+
+        assertThat(map.size, `is`(1000))
+        assertThat(map.get("b500", "a500"), `is`(500))
+
+        val it = map.values.iterator()
+        while (it.hasNext()) {
+            if (it.next() % 2 == 0)
+                it.remove()
+        }
+
+        assertThat(map.size, `is`(500))
+        assertThat(map.get("a500", "b500"), nullValue())
+        assertThat(map.get("a501", "b501"), `is`(501))
+
+        // removed slots are reused
+        for (i in 0 until 1000 step 2) {
+            map.put("a$i", "b$i", i)
+        }
+
+        assertThat(map.values.size, `is`(1000))
+    }
+
     private class CustomObject
+
+    /**
+     * Deliberately weak hash code, so that different pairs have the same combined hash.
+     */
+    private data class HashObject(val value: Int) {
+        override fun hashCode(): Int = 0
+    }
 }
\ No newline at end of file
@@ -93,6 +93,43 @@ class ReflectionUtilsTest {
         assertThat(result, `is`("Hello3 world"))
     }
 
+    @Test
+    fun `Map a method to a direct function`() {
+        val obj = TestClass1()
+
+        val func = ReflectionUtils.mapToFunctionDirect<String, String>(obj, obj.javaClass.getDeclaredMethod("fooMapable", String::class.java))
+
+        assertThat(func.apply(" world"), `is`("Hello3 world"))
+
+        val funcFail = ReflectionUtils.mapToFunctionDirect<String, String>(obj, obj.javaClass.getDeclaredMethod("fooFailing", String::class.java))
+
+        // exceptions are not wrapped
+        assertThrows<IllegalStateException> {
+            funcFail.apply("")
+        }
+
+        assertThrows<ReflectionException> {
+            ReflectionUtils.mapToFunctionDirect<String, String>(obj, obj.javaClass.getDeclaredMethod("foo"))
+        }
+    }
+
+    @Test
+    fun `Map a method to a direct array function`() {
+        val obj = TestClass3()
+
+        val func = ReflectionUtils.mapToArrayFunctionDirect<String>(obj, obj.javaClass.getDeclaredMethod("someFunction", Int::class.java, TestClass2::class.java))
+
+        assertThat(func.apply(arrayOf(335, TestClass2("world"))), `is`("335world"))
+
+        assertThrows<ReflectionException> {
+            func.apply(arrayOf(335))
+        }
+
+        assertThrows<ClassCastException> {
+            func.apply(arrayOf(TestClass2("world"), 335))
+        }
+    }
+
     @Test
     fun `Find methods using annotations`() {
         val obj = TestClass1()
@@ -177,6 +214,16 @@ class ReflectionUtilsTest {
         }
     }
 
+    @Test
+    fun `Find a setter for a field`() {
+        val obj = TestClass1()
+
+        val setter = ReflectionUtils.findSetter(ReflectionUtils.getDeclaredField("name", obj).get())
+        setter.invoke(obj, "Hello world!")
+
+        assertThat(obj.name, `is`("Hello world!"))
+    }
+
     @Test
     fun `Get field returns optional empty if no such field`() {
         assertFalse(ReflectionUtils.getDeclaredField("name", "").isPresent)
@@ -250,6 +297,21 @@ class ReflectionUtilsTest {
         }
     }
 
+    @Test
+    fun `ReflectionFunctionCaller uses converters added after a function was called`() {
+        val obj = TestClass3()
+        val rfc = ReflectionFunctionCaller().also { it.addFunctionCallTarget(obj) }
+
+        assertThrows<RuntimeException> {
+            rfc.call("someFunction", arrayOf("335", "world"))
+        }
+
+        rfc.addStringToObjectConverter(TestClass2::class.java) { TestClass2(it) }
+
+        assertThat(rfc.call("someFunction", arrayOf("335", "world")), `is`("335world"))
+        assertThat(rfc.call("someFunction", arrayOf("1", "2")), `is`("12"))
+    }
+
     @Test
     fun `ReflectionFunctionCaller fails if incorrect number of arguments`() {
         val obj = TestClass3()
@@ -289,6 +351,8 @@ class ReflectionUtilsTest {
         fun fooMapable(s: String) = "Hello3$s"
 
         private fun fooInaccessible() = "Hello4"
+
+        fun fooFailing(s: String): String = throw IllegalStateException("Failing$s")
     }
 
     class TestClass2(val s: String) : TestClass1()
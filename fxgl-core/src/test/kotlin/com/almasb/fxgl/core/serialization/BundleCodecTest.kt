@@ -0,0 +1,227 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.core.serialization
+
+import javafx.scene.input.KeyCode
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.*
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.EOFException
+import java.io.IOException
+import java.io.InvalidObjectException
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.Serializable
+import java.time.LocalDate
+
+/**
+ *
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class BundleCodecTest {
+
+    @Test
+    fun `Encode and decode all supported values`() {
+        val inner = Bundle("Inner")
+        inner.put("int", 1)
+
+        val bundle = Bundle("Test")
+        bundle.put("int", -33)
+        bundle.put("long", Long.MIN_VALUE)
+        bundle.put("float", 1.5f)
+        bundle.put("double", Double.NaN)
+        bundle.put("bool", true)
+        bundle.put("byte", (-3).toByte())
+        bundle.put("short", 300.toShort())
+        bundle.put("char", 'c')
+        bundle.put("string", "text ✓")
+        bundle.put("bytes", byteArrayOf(1, 2, 3))
+        bundle.put("ints", intArrayOf(-1, 1_000_000))
+        bundle.put("floats", floatArrayOf(0.5f))
+        bundle.put("doubles", doubleArrayOf(2.0, 3.0))
+        bundle.put("strings", arrayOf("a", null))
+        bundle.put("enum", KeyCode.A)
+        bundle.put("list", arrayListOf(1, null, "b"))
+        bundle.put("map", hashMapOf("k" to 2.0))
+        bundle.put("bundle", inner)
+        bundle.put("object", LocalDate.of(2020, 1, 2))
+
+        val result = BundleCodec.decode(BundleCodec.encode(bundle))
+
+        assertThat(result.name, `is`("Test"))
+        assertThat(result.data.size, `is`(bundle.data.size))
+        assertThat(result.get<Int>("int"), `is`(-33))
+        assertThat(result.get<Long>("long"), `is`(Long.MIN_VALUE))
+        assertThat(result.get<Float>("float"), `is`(1.5f))
+        assertTrue(result.get<Double>("double").isNaN())
+        assertThat(result.get<Boolean>("bool"), `is`(true))
+        assertThat(result.get<Byte>("byte"), `is`((-3).toByte()))
+        assertThat(result.get<Short>("short"), `is`(300.toShort()))
+        assertThat(result.get<Char>("char"), `is`('c'))
+        assertThat(result.get<String>("string"), `is`("text ✓"))
+        assertArrayEquals(byteArrayOf(1, 2, 3), result.get<ByteArray>("bytes"))
+        assertArrayEquals(intArrayOf(-1, 1_000_000), result.get<IntArray>("ints"))
+        assertArrayEquals(floatArrayOf(0.5f), result.get<FloatArray>("floats"))
+        assertArrayEquals(doubleArrayOf(2.0, 3.0), result.get<DoubleArray>("doubles"))
+        assertArrayEquals(arrayOf("a", null), result.get<Array<String?>>("strings"))
+        assertThat(result.get<KeyCode>("enum"), `is`(KeyCode.A))
+        assertThat(result.get<List<Any?>>("list"), `is`(listOf(1, null, "b")))
+        assertThat(result.get<Map<String, Double>>("map"), hasEntry("k", 2.0))
+        assertThat(result.get<Bundle>("bundle").get<Int>("int"), `is`(1))
+        assertThat(result.get<LocalDate>("object"), `is`(LocalDate.of(2020, 1, 2)))
+    }
+
+    @Test
+    fun `Encoded bundle is much smaller than serialized bundle`() {
+        val bundle = Bundle("Position")
+        bundle.put("x", 1.0f)
+        bundle.put("y", 2.0f)
+        bundle.put("z", 3.0f)
+
+        val baos = ByteArrayOutputStream()
+        ObjectOutputStream(baos).use { it.writeObject(bundle) }
+
+        val size = BundleCodec.encode(bundle).size
+
+        assertThat(size, lessThan(baos.size() / 5))
+    }
+
+    @Test
+    fun `Stream encoder only writes each key once`() {
+        val encoder = BundleCodec.Encoder(true)
+        val decoder = BundleCodec.Decoder(true)
+
+        val out = ByteArrayOutputStream()
+
+        repeat(3) {
+            val bundle = Bundle("Update")
+            bundle.put("someLongKeyName", it)
+
+            val sizeBefore = out.size()
+
+            encoder.write(bundle, out)
+
+            if (it > 0) {
+                // length, name index, size, key index, type, value
+                assertThat(out.size() - sizeBefore, `is`(6))
+            }
+        }
+
+        val input = ByteArrayInputStream(out.toByteArray())
+
+        repeat(3) {
+            assertThat(decoder.read(input).get<Int>("someLongKeyName"), `is`(it))
+        }
+
+        assertThrows(EOFException::class.java) {
+            decoder.read(input)
+        }
+    }
+
+    @Test
+    fun `Stream decoder rejects invalid lengths before reading the bundle`() {
+        val decoder = BundleCodec.Decoder(true, 1024)
+
+        // 1025 and -1 as varints
+        val tooLarge = byteArrayOf(0x81.toByte(), 0x08)
+        val negative = byteArrayOf(0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0xFF.toByte(), 0x0F)
+
+        assertThrows(IOException::class.java) {
+            decoder.read(ByteArrayInputStream(tooLarge))
+        }
+
+        assertThrows(IOException::class.java) {
+            decoder.read(ByteArrayInputStream(negative))
+        }
+
+        val out = ByteArrayOutputStream()
+        BundleCodec.Encoder(true).write(Bundle("Test"), out)
+
+        assertThat(decoder.read(ByteArrayInputStream(out.toByteArray())).name, `is`("Test"))
+    }
+
+    @Test
+    fun `Header`() {
+        val bundle = Bundle("Test")
+        bundle.put("key", "value")
+
+        val out = ByteArrayOutputStream()
+        BundleCodec.writeWithHeader(bundle, out)
+
+        val bytes = out.toByteArray()
+
+        assertTrue(BundleCodec.hasHeader(bytes))
+        assertFalse(BundleCodec.hasHeader(BundleCodec.encode(bundle)))
+        assertThat(BundleCodec.readWithHeader(bytes).get<String>("key"), `is`("value"))
+    }
+
+    @Test
+    fun `Fail on malformed data`() {
+        val bundle = Bundle("Test")
+        bundle.put("key", "value")
+
+        val bytes = BundleCodec.encode(bundle)
+
+        assertThrows(IllegalArgumentException::class.java) {
+            BundleCodec.decode(bytes.copyOf(bytes.size - 2))
+        }
+    }
+
+    @Test
+    fun `Stream decoder keeps strings after a value fails to deserialize`() {
+        val encoder = BundleCodec.Encoder(true)
+        val decoder = BundleCodec.Decoder(true)
+
+        val bundle = Bundle("Update")
+        bundle.put("object", FailingObject())
+        bundle.put("key", "value")
+
+        val bytes = encoder.encode(bundle)
+
+        assertThrows(IllegalArgumentException::class.java) {
+            decoder.decode(bytes, 0, bytes.size)
+        }
+
+        val next = Bundle("Update")
+        next.put("key", "value")
+
+        val nextBytes = encoder.encode(next)
+
+        assertThat(decoder.decode(nextBytes, 0, nextBytes.size).get<String>("key"), `is`("value"))
+    }
+
+    @Test
+    fun `Stream decoder fails after malformed data`() {
+        val encoder = BundleCodec.Encoder(true)
+        val decoder = BundleCodec.Decoder(true)
+
+        val bundle = Bundle("Test")
+        bundle.put("key", "value")
+
+        val bytes = encoder.encode(bundle)
+
+        assertThrows(IllegalArgumentException::class.java) {
+            decoder.decode(bytes, 0, bytes.size - 2)
+        }
+
+        val nextBytes = encoder.encode(bundle)
+
+        assertThrows(IllegalStateException::class.java) {
+            decoder.decode(nextBytes, 0, nextBytes.size)
+        }
+    }
+
+    private class FailingObject : Serializable {
+        private fun readObject(input: ObjectInputStream) {
+            throw InvalidObjectException("Test")
+        }
+    }
+}
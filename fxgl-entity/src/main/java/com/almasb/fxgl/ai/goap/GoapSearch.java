@@ -0,0 +1,444 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.ai.goap;
+
+import java.util.Arrays;
+
+/**
+ * Scratch state of A* searches over encoded world states.
+ * A world state is an int array with a value id for each key (0 if the key is absent),
+ * and conditions (preconditions, effects, goal) are flat arrays of (key, value id) pairs.
+ * Arrays are kept between searches, so that a planner that reuses an instance does not allocate
+ * once the arrays have grown to the size of its plans.
+ *
+ * States of all nodes are stored in a single array, node i occupying [i * numKeys, (i + 1) * numKeys).
+ * Nodes with equal states are merged via an open addressing hash table of node indices.
+ * The open set is an indexed binary min-heap of node indices ordered by F cost, then by H cost.
+ *
+ * Actions that cannot contribute to the goal (none of their effects is a goal pair or a precondition pair
+ * of an action that can) are not tried, since removing them from a plan keeps the plan valid.
+ * The heuristic is the number of unsatisfied goal pairs, divided by the max number of goal pairs an action sets
+ * (rounded up) and multiplied by the min action cost, so it is admissible and consistent if costs are not negative.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class GoapSearch {
+
+    private static final int NOT_OPEN = -1;
+    private static final int CLOSED = -2;
+
+    private int numKeys;
+
+    private int[] states = new int[256];
+    private int[] stateHash = new int[32];
+    private float[] gCost = new float[32];
+    private float[] hCost = new float[32];
+    private int[] parent = new int[32];
+    private int[] action = new int[32];
+
+    /**
+     * Index in the heap, or one of NOT_OPEN, CLOSED.
+     */
+    private int[] openIndex = new int[32];
+
+    private int numNodes = 0;
+
+    /**
+     * Node index + 1 for each slot, 0 if the slot is empty.
+     */
+    private int[] table = new int[64];
+
+    private int[] heap = new int[32];
+    private int heapSize = 0;
+
+    /**
+     * The state being built from a node and an action.
+     */
+    private int[] next = new int[8];
+
+    private boolean[] isRelevant = new boolean[16];
+
+    /**
+     * Finds the cheapest sequence of actions that leads from start to a state that satisfies the goal.
+     * As with the original planner, the empty sequence is not a solution, even if start satisfies the goal.
+     *
+     * @param numKeys number of keys in a state
+     * @param start value ids of start state
+     * @param goal (key, value id) pairs that must be satisfied
+     * @param preconditions (key, value id) pairs for each action
+     * @param effects (key, value id) pairs for each action
+     * @param costs cost of each action
+     * @param maxNodes max number of nodes to expand before giving up
+     * @return action indices of the plan, in order, or null if not found
+     */
+    int[] search(int numKeys, int[] start, int[] goal, int[][] preconditions, int[][] effects, float[] costs, int maxNodes) {
+        reset(numKeys, costs.length);
+
+        System.arraycopy(start, 0, next, 0, numKeys);
+
+        if (isSatisfied(next, goal)) {
+            // the plan cannot be empty, so any action may be needed
+            Arrays.fill(isRelevant, 0, costs.length, true);
+        } else {
+            findRelevant(goal, preconditions, effects);
+        }
+
+        int maxEffects = 1;
+        float minCost = Float.MAX_VALUE;
+
+        for (int i = 0; i < costs.length; i++) {
+            if (!isRelevant[i])
+                continue;
+
+            maxEffects = Math.max(maxEffects, countMatching(effects[i], goal));
+            minCost = Math.min(minCost, costs[i]);
+        }
+
+        minCost = Math.max(0, minCost);
+
+        // start is not added to the table, so that a plan can lead back to the start state
+        int startNode = newNode(-1, -1, 0, heuristic(goal, maxEffects, minCost));
+        push(startNode);
+
+        int numExpanded = 0;
+
+        while (heapSize > 0) {
+            int node = pop();
+
+            if (node != startNode && isSatisfied(node, goal)) {
+                return buildPlan(node);
+            }
+
+            if (++numExpanded > maxNodes)
+                return null;
+
+            for (int a = 0; a < costs.length; a++) {
+                if (!isRelevant[a] || !isSatisfied(node, preconditions[a]))
+                    continue;
+
+                apply(node, effects[a]);
+
+                float g = gCost[node] + costs[a];
+                int hash = hashNext();
+                int existing = find(hash);
+
+                if (existing == -1) {
+                    int child = newNode(node, a, g, heuristic(goal, maxEffects, minCost));
+                    stateHash[child] = hash;
+                    insert(child);
+                    push(child);
+                } else if (openIndex[existing] != CLOSED && g < gCost[existing]) {
+                    gCost[existing] = g;
+                    parent[existing] = node;
+                    action[existing] = a;
+
+                    if (openIndex[existing] == NOT_OPEN) {
+                        push(existing);
+                    } else {
+                        siftUp(openIndex[existing]);
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void reset(int numKeys, int numActions) {
+        this.numKeys = numKeys;
+        numNodes = 0;
+        heapSize = 0;
+
+        Arrays.fill(table, 0);
+
+        if (next.length < numKeys)
+            next = new int[numKeys];
+
+        if (isRelevant.length < numActions)
+            isRelevant = new boolean[numActions];
+
+        Arrays.fill(isRelevant, false);
+    }
+
+    /**
+     * Marks actions that set a goal pair, or a precondition pair of a marked action.
+     */
+    private void findRelevant(int[] goal, int[][] preconditions, int[][] effects) {
+        boolean isChanged = true;
+
+        while (isChanged) {
+            isChanged = false;
+
+            for (int a = 0; a < effects.length; a++) {
+                if (isRelevant[a])
+                    continue;
+
+                boolean relevant = countMatching(effects[a], goal) > 0;
+
+                for (int b = 0; b < effects.length && !relevant; b++) {
+                    relevant = isRelevant[b] && countMatching(effects[a], preconditions[b]) > 0;
+                }
+
+                if (relevant) {
+                    isRelevant[a] = true;
+                    isChanged = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of pairs in given pairs that are also in conditions
+     */
+    private static int countMatching(int[] pairs, int[] conditions) {
+        int count = 0;
+
+        for (int i = 0; i < pairs.length; i += 2) {
+            for (int j = 0; j < conditions.length; j += 2) {
+                if (pairs[i] == conditions[j] && pairs[i + 1] == conditions[j + 1]) {
+                    count++;
+                    break;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private boolean isSatisfied(int node, int[] conditions) {
+        int offset = node * numKeys;
+
+        for (int i = 0; i < conditions.length; i += 2) {
+            if (states[offset + conditions[i]] != conditions[i + 1])
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isSatisfied(int[] state, int[] conditions) {
+        for (int i = 0; i < conditions.length; i += 2) {
+            if (state[conditions[i]] != conditions[i + 1])
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets next to the state of node with given effects applied.
+     */
+    private void apply(int node, int[] effects) {
+        System.arraycopy(states, node * numKeys, next, 0, numKeys);
+
+        for (int i = 0; i < effects.length; i += 2) {
+            next[effects[i]] = effects[i + 1];
+        }
+    }
+
+    private float heuristic(int[] goal, int maxEffects, float minCost) {
+        int unsatisfied = 0;
+
+        for (int i = 0; i < goal.length; i += 2) {
+            if (next[goal[i]] != goal[i + 1])
+                unsatisfied++;
+        }
+
+        return (unsatisfied + maxEffects - 1) / maxEffects * minCost;
+    }
+
+    private int[] buildPlan(int node) {
+        int length = 0;
+
+        for (int n = node; action[n] != -1; n = parent[n]) {
+            length++;
+        }
+
+        int[] plan = new int[length];
+
+        for (int n = node; action[n] != -1; n = parent[n]) {
+            plan[--length] = action[n];
+        }
+
+        return plan;
+    }
+
+    /**
+     * Creates a node with state of next.
+     */
+    private int newNode(int parentNode, int actionIndex, float g, float h) {
+        if (numNodes == gCost.length) {
+            int capacity = numNodes * 2;
+
+            stateHash = Arrays.copyOf(stateHash, capacity);
+            gCost = Arrays.copyOf(gCost, capacity);
+            hCost = Arrays.copyOf(hCost, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            action = Arrays.copyOf(action, capacity);
+            openIndex = Arrays.copyOf(openIndex, capacity);
+        }
+
+        if ((numNodes + 1) * numKeys > states.length) {
+            states = Arrays.copyOf(states, Math.max(states.length * 2, (numNodes + 1) * numKeys));
+        }
+
+        int node = numNodes++;
+
+        System.arraycopy(next, 0, states, node * numKeys, numKeys);
+
+        gCost[node] = g;
+        hCost[node] = h;
+        parent[node] = parentNode;
+        action[node] = actionIndex;
+        openIndex[node] = NOT_OPEN;
+
+        return node;
+    }
+
+    // STATE TABLE
+
+    private int hashNext() {
+        int hash = 1;
+
+        for (int i = 0; i < numKeys; i++) {
+            hash = 31 * hash + next[i];
+        }
+
+        // spread bits, since the table size is a power of two
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return node whose state equals next, or -1
+     */
+    private int find(int hash) {
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int node = table[slot] - 1;
+
+            if (stateHash[node] == hash && Arrays.equals(states, node * numKeys, (node + 1) * numKeys, next, 0, numKeys)) {
+                return node;
+            }
+        }
+
+        return -1;
+    }
+
+    private void insert(int node) {
+        // keep the table at most half full
+        if (numNodes * 2 > table.length) {
+            int[] oldTable = table;
+            table = new int[oldTable.length * 2];
+
+            for (int entry : oldTable) {
+                if (entry != 0) {
+                    insertNoResize(entry - 1);
+                }
+            }
+        }
+
+        insertNoResize(node);
+    }
+
+    private void insertNoResize(int node) {
+        int mask = table.length - 1;
+        int slot = stateHash[node] & mask;
+
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = node + 1;
+    }
+
+    // OPEN SET
+
+    private boolean less(int node1, int node2) {
+        float f1 = gCost[node1] + hCost[node1];
+        float f2 = gCost[node2] + hCost[node2];
+
+        if (f1 != f2)
+            return f1 < f2;
+
+        if (hCost[node1] != hCost[node2])
+            return hCost[node1] < hCost[node2];
+
+        // earlier nodes first, so that cheaper actions (which are tried first) are preferred
+        return node1 < node2;
+    }
+
+    private void push(int node) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+
+        heap[heapSize] = node;
+        openIndex[node] = heapSize;
+        heapSize++;
+
+        siftUp(heapSize - 1);
+    }
+
+    private int pop() {
+        int node = heap[0];
+        openIndex[node] = CLOSED;
+
+        heapSize--;
+
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            openIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+
+        return node;
+    }
+
+    private void siftUp(int index) {
+        int node = heap[index];
+
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            int parentNode = heap[parentIndex];
+
+            if (!less(node, parentNode))
+                break;
+
+            heap[index] = parentNode;
+            openIndex[parentNode] = index;
+            index = parentIndex;
+        }
+
+        heap[index] = node;
+        openIndex[node] = index;
+    }
+
+    private void siftDown(int index) {
+        int node = heap[index];
+
+        while (true) {
+            int child = index * 2 + 1;
+
+            if (child >= heapSize)
+                break;
+
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child]))
+                child++;
+
+            if (!less(heap[child], node))
+                break;
+
+            heap[index] = heap[child];
+            openIndex[heap[index]] = index;
+            index = child;
+        }
+
+        heap[index] = node;
+        openIndex[node] = index;
+    }
+}
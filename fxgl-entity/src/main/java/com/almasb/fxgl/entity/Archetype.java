@@ -0,0 +1,193 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.entity.component.Component;
+import com.almasb.fxgl.entity.component.ComponentTypes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * All entities in a world that have exactly the same set of component types.
+ * The entities and their components are stored in dense arrays (columns), one per component type,
+ * so that row i of each column belongs to entity i.
+ * This allows systems to process matching entities in tight loops without per-entity lookups, e.g.
+ *
+ * <pre>
+ *     var positions = archetype.getColumn(PositionComponent.class);
+ *     var velocities = archetype.getColumn(VelocityComponent.class);
+ *
+ *     for (int i = 0; i &lt; archetype.size(); i++) {
+ *         positions[i].move(velocities[i]);
+ *     }
+ * </pre>
+ *
+ * Rows are not stable: when an entity leaves, the last entity takes its row.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class Archetype {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ComponentMask mask;
+
+    /**
+     * Ids of component types of this archetype, in increasing order.
+     */
+    private final int[] typeIds;
+
+    private final List<Class<? extends Component>> types;
+
+    private final Component[][] columns;
+
+    private Entity[] entities = new Entity[INITIAL_CAPACITY];
+
+    private int size = 0;
+
+    Archetype(ComponentMask mask) {
+        this.mask = mask;
+
+        types = mask.getTypes();
+
+        typeIds = new int[types.size()];
+        columns = new Component[types.size()][];
+
+        for (int i = 0; i < types.size(); i++) {
+            typeIds[i] = ComponentTypes.getId(types.get(i));
+
+            // the column has the runtime type of the component, so that it can be returned as T[]
+            columns[i] = (Component[]) java.lang.reflect.Array.newInstance(types.get(i), INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * @return the component types of entities in this archetype
+     */
+    public ComponentMask getMask() {
+        return mask;
+    }
+
+    /**
+     * @return number of entities in this archetype
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return entity at given row
+     */
+    public Entity getEntity(int row) {
+        if (row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " >= size " + size);
+
+        return entities[row];
+    }
+
+    /**
+     * The returned array may be longer than {@link #size()} and is only valid
+     * until entities are added to or removed from this archetype.
+     *
+     * @return direct (do NOT modify) array of entities
+     */
+    public Entity[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * The returned array may be longer than {@link #size()} and is only valid
+     * until entities are added to or removed from this archetype.
+     *
+     * @param type component type of this archetype
+     * @return direct (do NOT modify) array of components of given type, in the same order as entities
+     * @throws IllegalArgumentException if entities of this archetype do not have given component type
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Component> T[] getColumn(Class<T> type) {
+        int column = Arrays.binarySearch(typeIds, ComponentTypes.getId(type));
+
+        if (column < 0)
+            throw new IllegalArgumentException("Component " + type.getSimpleName() + " is not in " + mask);
+
+        return (T[]) columns[column];
+    }
+
+    /**
+     * Adds given entity as the last row, taking its components from the entity.
+     */
+    void add(Entity entity) {
+        if (size == entities.length) {
+            int capacity = size * 2;
+
+            entities = Arrays.copyOf(entities, capacity);
+
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = Arrays.copyOf(columns[i], capacity);
+            }
+        }
+
+        entities[size] = entity;
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][size] = entity.getComponent(types.get(i));
+        }
+
+        entity.setArchetype(this, size);
+
+        size++;
+    }
+
+    /**
+     * Takes components of given entity, which is in this archetype, into its row again,
+     * e.g. after a component was replaced by another instance of the same type.
+     */
+    void refresh(Entity entity) {
+        int row = entity.getArchetypeRow();
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][row] = entity.getComponent(types.get(i));
+        }
+    }
+
+    /**
+     * Removes given entity by moving the last row into its row.
+     */
+    void remove(Entity entity) {
+        int row = entity.getArchetypeRow();
+        int last = size - 1;
+
+        if (row != last) {
+            entities[row] = entities[last];
+            entities[row].setArchetype(this, row);
+
+            for (Component[] column : columns) {
+                column[row] = column[last];
+            }
+        }
+
+        entities[last] = null;
+
+        for (Component[] column : columns) {
+            column[last] = null;
+        }
+
+        entity.setArchetype(null, -1);
+
+        size--;
+    }
+
+    @Override
+    public String toString() {
+        return "Archetype(" + mask + ", size=" + size + ")";
+    }
+}
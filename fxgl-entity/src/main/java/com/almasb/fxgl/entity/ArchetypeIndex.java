@@ -0,0 +1,152 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.core.collection.Array;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Archetypes of entities in a game world.
+ * While the index is locked (e.g. while systems iterate archetypes),
+ * entities that change are not moved between archetypes until the index is unlocked.
+ * While parallel systems are updated, entities must not change at all.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class ArchetypeIndex {
+
+    private final Map<ComponentMask, Archetype> archetypes = new HashMap<>();
+
+    /**
+     * Cached query results: archetypes that contain all types of a mask.
+     */
+    private final Map<ComponentMask, Array<Archetype>> matching = new HashMap<>();
+
+    private final Set<Entity> pending = new LinkedHashSet<>();
+
+    private int lockCount = 0;
+
+    /**
+     * Set while parallel systems are updated, read by their threads.
+     */
+    private volatile boolean isParallelUpdate = false;
+
+    /**
+     * Moves given entity into the archetype of its current components (or updates its row if the types are the same),
+     * or takes it out of archetypes if the entity is no longer in the world.
+     *
+     * @param isInWorld whether the entity is in the world of this index
+     */
+    void update(Entity entity, boolean isInWorld) {
+        if (isParallelUpdate)
+            throw new IllegalStateException("Entities and components must not be added or removed directly by parallel systems, use GameWorld.getCommandBuffer() instead");
+
+        if (lockCount > 0) {
+            pending.add(entity);
+            return;
+        }
+
+        Archetype current = entity.getArchetype();
+
+        if (!isInWorld) {
+            if (current != null)
+                current.remove(entity);
+
+            return;
+        }
+
+        var mask = entity.getComponentMask();
+
+        if (current != null) {
+            // the same types may be backed by different instances, e.g. if a component was replaced while locked
+            if (current.getMask().equals(mask)) {
+                current.refresh(entity);
+                return;
+            }
+
+            current.remove(entity);
+        }
+
+        archetypes.computeIfAbsent(mask, this::newArchetype).add(entity);
+    }
+
+    /**
+     * @return direct (do NOT modify) array of archetypes whose entities have all of the given component types
+     */
+    Array<Archetype> getMatching(ComponentMask mask) {
+        var result = matching.get(mask);
+
+        if (result == null) {
+            result = new Array<>();
+
+            for (var archetype : archetypes.values()) {
+                if (archetype.getMask().containsAll(mask)) {
+                    result.add(archetype);
+                }
+            }
+
+            matching.put(mask, result);
+        }
+
+        return result;
+    }
+
+    void lock() {
+        lockCount++;
+    }
+
+    void setParallelUpdate(boolean isParallelUpdate) {
+        this.isParallelUpdate = isParallelUpdate;
+    }
+
+    /**
+     * Applies changes made while the index was locked.
+     *
+     * @param index the index that entities of this world are attached to
+     */
+    void unlock(EntityIndex index) {
+        lockCount--;
+
+        if (lockCount > 0 || pending.isEmpty())
+            return;
+
+        var entities = pending.toArray(new Entity[0]);
+        pending.clear();
+
+        for (Entity e : entities) {
+            update(e, e.getIndex() == index);
+        }
+    }
+
+    void clear() {
+        for (var archetype : archetypes.values()) {
+            while (!archetype.isEmpty()) {
+                archetype.remove(archetype.getEntity(archetype.size() - 1));
+            }
+        }
+
+        archetypes.clear();
+        matching.clear();
+        pending.clear();
+    }
+
+    private Archetype newArchetype(ComponentMask mask) {
+        var archetype = new Archetype(mask);
+
+        matching.forEach((query, result) -> {
+            if (mask.containsAll(query)) {
+                result.add(archetype);
+            }
+        });
+
+        return archetype;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.entity.component.Component;
+import com.almasb.fxgl.entity.component.ComponentTypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable set of component types, stored as a bitset indexed by {@link ComponentTypes} ids.
+ * Create it once and reuse it, e.g. to check whether an entity has all of the given components
+ * via {@link Entity#hasComponents(ComponentMask)}.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class ComponentMask {
+
+    private static final long[] NO_BITS = new long[0];
+
+    public static final ComponentMask EMPTY = new ComponentMask(NO_BITS);
+
+    @SafeVarargs
+    public static ComponentMask of(Class<? extends Component>... types) {
+        long[] bits = NO_BITS;
+
+        for (var type : types) {
+            bits = set(bits, ComponentTypes.getId(type));
+        }
+
+        return new ComponentMask(bits);
+    }
+
+    private final long[] bits;
+
+    ComponentMask(long[] bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * @return true if given type is in this set
+     */
+    public boolean contains(Class<? extends Component> type) {
+        return isSet(bits, ComponentTypes.getId(type));
+    }
+
+    /**
+     * @return true if all types in other are also in this set
+     */
+    public boolean containsAll(ComponentMask other) {
+        return containsAll(bits, other.bits);
+    }
+
+    /**
+     * @return true if at least one type is in both sets
+     */
+    public boolean intersects(ComponentMask other) {
+        int length = Math.min(bits.length, other.bits.length);
+
+        for (int i = 0; i < length; i++) {
+            if ((bits[i] & other.bits[i]) != 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return a new set with types of this set and given type
+     */
+    public ComponentMask with(Class<? extends Component> type) {
+        return new ComponentMask(set(bits.clone(), ComponentTypes.getId(type)));
+    }
+
+    /**
+     * @return a new set with types of this set except given type
+     */
+    public ComponentMask without(Class<? extends Component> type) {
+        return new ComponentMask(clear(bits.clone(), ComponentTypes.getId(type)));
+    }
+
+    /**
+     * @return types in this set, in the order of their ids
+     */
+    public List<Class<? extends Component>> getTypes() {
+        List<Class<? extends Component>> types = new ArrayList<>();
+
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                types.add(ComponentTypes.getType(i * 64 + bit));
+                word &= word - 1;
+            }
+        }
+
+        return types;
+    }
+
+    public boolean isEmpty() {
+        for (long word : bits) {
+            if (word != 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof ComponentMask other))
+            return false;
+
+        return containsAll(bits, other.bits) && containsAll(other.bits, bits);
+    }
+
+    @Override
+    public int hashCode() {
+        // trailing zero words do not affect the hash code, consistent with equals()
+        int length = bits.length;
+        while (length > 0 && bits[length - 1] == 0) {
+            length--;
+        }
+
+        return Arrays.hashCode(Arrays.copyOf(bits, length));
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentMask" + getTypes().stream().map(Class::getSimpleName).toList();
+    }
+
+    /* Operations on raw bitsets, also used by Entity */
+
+    static boolean isSet(long[] bits, int id) {
+        int word = id >>> 6;
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * @return given bits, or grown copy if id does not fit, with the id bit set
+     */
+    static long[] set(long[] bits, int id) {
+        int word = id >>> 6;
+
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, word + 1);
+        }
+
+        bits[word] |= 1L << id;
+        return bits;
+    }
+
+    static long[] clear(long[] bits, int id) {
+        int word = id >>> 6;
+
+        if (word < bits.length) {
+            bits[word] &= ~(1L << id);
+        }
+
+        return bits;
+    }
+
+    /**
+     * @return true if bits contain all of required bits
+     */
+    static boolean containsAll(long[] bits, long[] required) {
+        for (int i = 0; i < required.length; i++) {
+            long word = i < bits.length ? bits[i] : 0L;
+
+            if ((word & required[i]) != required[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    long[] getBits() {
+        return bits;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.core.collection.Array;
+import com.almasb.fxgl.core.reflect.ReflectionException;
+import com.almasb.fxgl.core.reflect.ReflectionUtils;
+import com.almasb.fxgl.entity.component.Component;
+import com.almasb.fxgl.entity.component.CoreComponent;
+import com.almasb.fxgl.entity.component.Required;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reflection data of a component class, computed once per class and shared by all entities:
+ * whether the class is a core component, the components it requires
+ * and the fields into which other components are injected.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class ComponentMetadata {
+
+    private static final ClassValue<ComponentMetadata> cache = new ClassValue<>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected ComponentMetadata computeValue(Class<?> type) {
+            return new ComponentMetadata((Class<? extends Component>) type);
+        }
+    };
+
+    static ComponentMetadata of(Class<? extends Component> type) {
+        return cache.get(type);
+    }
+
+    private final Class<? extends Component> type;
+
+    private final boolean isCore;
+
+    private final List<Class<? extends Component>> required;
+
+    /**
+     * Lazily created, since most components do not require injection.
+     */
+    private volatile InjectionPoint[] injectionPoints = null;
+
+    private ComponentMetadata(Class<? extends Component> type) {
+        this.type = type;
+
+        isCore = type.getAnnotation(CoreComponent.class) != null;
+
+        required = Arrays.stream(type.getAnnotationsByType(Required.class))
+                .<Class<? extends Component>>map(Required::value)
+                .toList();
+    }
+
+    boolean isCore() {
+        return isCore;
+    }
+
+    /**
+     * @return component types that must be present before a component of this type is added
+     */
+    List<Class<? extends Component>> getRequired() {
+        return required;
+    }
+
+    boolean requires(Class<? extends Component> other) {
+        return required.contains(other);
+    }
+
+    /**
+     * Sets fields of given component whose types are components of given entity,
+     * in the same order as declared, starting from the component's class up to its superclasses.
+     */
+    void injectFields(Component component, Entity entity) {
+        var points = injectionPoints;
+
+        if (points == null) {
+            points = findInjectionPoints();
+            injectionPoints = points;
+        }
+
+        for (InjectionPoint point : points) {
+            Component value = entity.getComponentOrNull(point.type);
+
+            if (value != null) {
+                point.inject(component, value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private InjectionPoint[] findInjectionPoints() {
+        Array<InjectionPoint> result = new Array<>();
+
+        Class<?> typeClass = type;
+        while (typeClass != null && typeClass != Object.class) {
+            for (Field field : typeClass.getDeclaredFields()) {
+                if (Component.class.isAssignableFrom(field.getType())) {
+                    result.add(new InjectionPoint((Class<? extends Component>) field.getType(), field));
+                }
+            }
+
+            typeClass = typeClass.getSuperclass();
+        }
+
+        return result.toArray(InjectionPoint.class);
+    }
+
+    private static final class InjectionPoint {
+        private final Class<? extends Component> type;
+        private final Field field;
+
+        /**
+         * Created when first injected, so that fields which are never injected do not need to be accessible.
+         */
+        private volatile MethodHandle setter = null;
+
+        private InjectionPoint(Class<? extends Component> type, Field field) {
+            this.type = type;
+            this.field = field;
+        }
+
+        private void inject(Component component, Component value) {
+            var setter = this.setter;
+
+            if (setter == null) {
+                setter = ReflectionUtils.findSetter(field);
+                this.setter = setter;
+            }
+
+            try {
+                setter.invokeExact((Object) component, (Object) value);
+            } catch (Throwable e) {
+                throw new ReflectionException("Cannot inject " + value + " into " + field.getName(), e);
+            }
+        }
+    }
+}
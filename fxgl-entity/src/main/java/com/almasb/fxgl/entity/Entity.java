@@ -27,6 +27,7 @@ import javafx.geometry.Rectangle2D;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.function.Function;
 
 import static com.almasb.fxgl.core.reflect.ReflectionUtils.*;
 
@@ -49,8 +50,17 @@ import static com.almasb.fxgl.core.reflect.ReflectionUtils.*;
  */
 public class Entity implements Animatable, Copyable<Entity> {
 
+    /**
+     * Components are stored in an array indexed by {@link ComponentTypes} id,
+     * with a bitset of the types present, so that lookup by type does not need hashing.
+     * The array starts empty and grows to fit the ids of added components.
+     * The list keeps the order in which components were added, which is the update order.
+     */
     private static class ComponentMap {
-        private Map<Class<? extends Component>, Component> components = new HashMap<>();
+        private static final Component[] NO_COMPONENTS = new Component[0];
+
+        private Component[] byTypeId = NO_COMPONENTS;
+        private long[] typeBits = new long[0];
         private List<Component> componentList = new ArrayList<>();
 
         void update(double tpf) {
@@ -63,25 +73,52 @@ public class Entity implements Animatable, Copyable<Entity> {
         }
 
         <T extends Component> boolean has(Class<T> type) {
-            return components.containsKey(type);
+            return ComponentMask.isSet(typeBits, ComponentTypes.getId(type));
+        }
+
+        boolean hasAll(ComponentMask mask) {
+            return ComponentMask.containsAll(typeBits, mask.getBits());
         }
 
         void add(Component c) {
-            components.put(c.getClass(), c);
+            int id = ComponentTypes.getId(c);
+
+            if (id >= byTypeId.length) {
+                byTypeId = Arrays.copyOf(byTypeId, Math.max(id + 1, byTypeId.length * 2));
+            }
+
+            byTypeId[id] = c;
+            typeBits = ComponentMask.set(typeBits, id);
             componentList.add(c);
         }
 
         void remove(Class<? extends Component> type) {
-            var c = components.remove(type);
+            int id = ComponentTypes.getId(type);
+
+            if (!ComponentMask.isSet(typeBits, id))
+                return;
+
+            var c = byTypeId[id];
+            byTypeId[id] = null;
+            ComponentMask.clear(typeBits, id);
             componentList.remove(c);
         }
 
         <T extends Component> Component get(Class<T> type) {
-            return components.get(type);
+            int id = ComponentTypes.getId(type);
+
+            return id < byTypeId.length ? byTypeId[id] : null;
+        }
+
+        ComponentMask mask() {
+            return new ComponentMask(typeBits.clone());
         }
 
-        Set<Class<? extends Component>> types() {
-            return components.keySet();
+        /**
+         * @return direct (do NOT modify) list of components
+         */
+        List<Component> list() {
+            return componentList;
         }
 
         List<Component> getAll() {
@@ -89,23 +126,23 @@ public class Entity implements Animatable, Copyable<Entity> {
         }
 
         void clear() {
-            components.clear();
+            Arrays.fill(byTypeId, null);
+            Arrays.fill(typeBits, 0L);
             componentList.clear();
         }
     }
 
     private static class ComponentMethod {
-        private Method method;
-        private Component component;
+        private final Function<Object[], Object> function;
 
         ComponentMethod(Component component, Method method) {
-            this.component = component;
-            this.method = method;
+            // the method is bound to the component once, so calls do not repeat access checks
+            this.function = mapToArrayFunctionDirect(component, method);
         }
 
         @SuppressWarnings("unchecked")
-        <T> T call(Object... args) throws Exception {
-            return (T) method.invoke(component, args);
+        <T> T call(Object... args) {
+            return (T) function.apply(args);
         }
     }
 
@@ -135,11 +172,39 @@ public class Entity implements Animatable, Copyable<Entity> {
 
     private GameWorld world = null;
 
+    /**
+     * Index of the world this entity is attached to, notified of type and component changes.
+     */
+    private EntityIndex index = null;
+
+    /**
+     * Archetype this entity is stored in, if the world maintains archetypes.
+     */
+    private Archetype archetype = null;
+    private int archetypeRow = -1;
+
+    /**
+     * Positions of this entity in the buckets of {@link EntityIndex}, so that it can be removed without a search.
+     * Component slots are indexed by {@link ComponentTypes} id and grown on demand.
+     */
+    private int typeSlot = -1;
+    private int[] componentSlots = new int[0];
+
+    /**
+     * Position of this entity in the order entities were added to the world, used to keep {@link EntityIndex} buckets in that order.
+     */
+    private long worldOrder = -1;
+
     public Entity() {
         addComponentNoChecks(type);
         addComponentNoChecks(transform);
         addComponentNoChecks(bbox);
         addComponentNoChecks(view);
+
+        type.valueProperty().addListener((o, oldType, newType) -> {
+            if (index != null)
+                index.onTypeChanged(this, oldType, newType);
+        });
     }
 
     /**
@@ -160,6 +225,55 @@ public class Entity implements Animatable, Copyable<Entity> {
         active.set(true);
     }
 
+    void setIndex(EntityIndex index) {
+        this.index = index;
+    }
+
+    EntityIndex getIndex() {
+        return index;
+    }
+
+    void setArchetype(Archetype archetype, int row) {
+        this.archetype = archetype;
+        this.archetypeRow = row;
+    }
+
+    Archetype getArchetype() {
+        return archetype;
+    }
+
+    int getArchetypeRow() {
+        return archetypeRow;
+    }
+
+    void setWorldOrder(long worldOrder) {
+        this.worldOrder = worldOrder;
+    }
+
+    long getWorldOrder() {
+        return worldOrder;
+    }
+
+    void setTypeSlot(int slot) {
+        typeSlot = slot;
+    }
+
+    int getTypeSlot() {
+        return typeSlot;
+    }
+
+    void setComponentSlot(int typeId, int slot) {
+        if (typeId >= componentSlots.length) {
+            componentSlots = Arrays.copyOf(componentSlots, typeId + 1);
+        }
+
+        componentSlots[typeId] = slot;
+    }
+
+    int getComponentSlot(int typeId) {
+        return componentSlots[typeId];
+    }
+
     /**
      * Removes all components.
      * Resets entity to its "new" state.
@@ -345,6 +459,21 @@ public class Entity implements Animatable, Copyable<Entity> {
         return components.has(type);
     }
 
+    /**
+     * @param mask component types
+     * @return true iff entity has components of all given types
+     */
+    public final boolean hasComponents(ComponentMask mask) {
+        return components.hasAll(mask);
+    }
+
+    /**
+     * @return types of components this entity currently has
+     */
+    public final ComponentMask getComponentMask() {
+        return components.mask();
+    }
+
     /**
      * Returns component of given type, or {@link Optional#empty()}
      * if entity has no such component.
@@ -403,6 +532,9 @@ public class Entity implements Animatable, Copyable<Entity> {
         notifyComponentAdded(component);
 
         components.add(component);
+
+        if (index != null)
+            index.onComponentAdded(this, component.getClass());
     }
 
     /**
@@ -433,6 +565,9 @@ public class Entity implements Animatable, Copyable<Entity> {
 
         components.remove(type);
 
+        if (index != null)
+            index.onComponentRemoved(this, type);
+
         return true;
     }
 
@@ -480,7 +615,7 @@ public class Entity implements Animatable, Copyable<Entity> {
     }
 
     private Optional<ComponentMethod> findMethod(String name, Class<?>... types) {
-        for (Component c : components.getAll()) {
+        for (Component c : components.list()) {
             try {
                 var method = c.getClass().getDeclaredMethod(name, types);
 
@@ -499,18 +634,20 @@ public class Entity implements Animatable, Copyable<Entity> {
         components.clear();
     }
 
-    @SuppressWarnings("unchecked")
     private void injectFields(Component component) {
         ComponentHelper.setEntity(component, this);
 
         if (!component.isComponentInjectionRequired())
             return;
 
-        findFieldsByTypeRecursive(component, Component.class).forEach(field -> {
-            getComponentOptional((Class<? extends Component>) field.getType()).ifPresent(comp -> {
-                inject(field, component, comp);
-            });
-        });
+        ComponentMetadata.of(component.getClass()).injectFields(component, this);
+    }
+
+    /**
+     * @return component of given type or null if entity has no such component
+     */
+    Component getComponentOrNull(Class<? extends Component> type) {
+        return components.get(type);
     }
 
     private void removeComponent(Component component) {
@@ -530,7 +667,7 @@ public class Entity implements Animatable, Copyable<Entity> {
     }
 
     private boolean isCoreComponent(Class<? extends Component> type) {
-        return type.getAnnotation(CoreComponent.class) != null;
+        return ComponentMetadata.of(type).isCore();
     }
 
     private boolean checkRequirementsMet(Class<? extends Component> type) {
@@ -539,17 +676,17 @@ public class Entity implements Animatable, Copyable<Entity> {
             log.warning("Entity already has component: " + type.getCanonicalName());
             return false;
         }
-        for (Required r : type.getAnnotationsByType(Required.class)) {
-            if (!hasComponent(r.value())) {
-                throw new IllegalStateException("Required component: [" + r.value().getSimpleName() + "] for: " + type.getSimpleName() + " is missing");
+        for (Class<? extends Component> required : ComponentMetadata.of(type).getRequired()) {
+            if (!hasComponent(required)) {
+                throw new IllegalStateException("Required component: [" + required.getSimpleName() + "] for: " + type.getSimpleName() + " is missing");
             }
         }
         return true;
     }
 
     private void checkNotRequiredByAny(Class<? extends Component> type) {
-        for (Class<? extends Component> t : components.types()) {
-            checkNotRequiredBy(t, type);
+        for (Component c : components.list()) {
+            checkNotRequiredBy(c.getClass(), type);
         }
     }
 
@@ -557,10 +694,8 @@ public class Entity implements Animatable, Copyable<Entity> {
      * Fails with IAE if [requiringType] has a dependency on [type].
      */
     private void checkNotRequiredBy(Class<? extends Component> requiringType, Class<? extends Component> type) {
-        for (Required required : requiringType.getAnnotationsByType(Required.class)) {
-            if (required.value().equals(type)) {
-                throw new IllegalArgumentException("Required component: [" + required.value().getSimpleName() + "] by: " + requiringType.getSimpleName());
-            }
+        if (ComponentMetadata.of(requiringType).requires(type)) {
+            throw new IllegalArgumentException("Required component: [" + type.getSimpleName() + "] by: " + requiringType.getSimpleName());
         }
     }
 
@@ -0,0 +1,72 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.entity.component.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Structural changes (adding or removing entities and components) recorded from any thread,
+ * e.g. by parallel systems, and applied later on the thread that updates the world.
+ * The world applies recorded changes after each phase of system updates, in the order they were recorded
+ * (the order between different threads is not defined).
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class EntityCommandBuffer {
+
+    private final GameWorld world;
+
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    EntityCommandBuffer(GameWorld world) {
+        this.world = world;
+    }
+
+    public void addEntity(Entity entity) {
+        commands.add(() -> world.addEntity(entity));
+    }
+
+    public void removeEntity(Entity entity) {
+        commands.add(() -> world.removeEntity(entity));
+    }
+
+    public void addComponent(Entity entity, Component component) {
+        commands.add(() -> entity.addComponent(component));
+    }
+
+    public void removeComponent(Entity entity, Class<? extends Component> type) {
+        commands.add(() -> entity.removeComponent(type));
+    }
+
+    /**
+     * Records an arbitrary action to be run on the thread that updates the world.
+     */
+    public void run(Runnable action) {
+        commands.add(action);
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Runs recorded commands, including those recorded while running.
+     */
+    void apply() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+    }
+
+    void clear() {
+        commands.clear();
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.core.collection.Array;
+import com.almasb.fxgl.entity.component.Component;
+import com.almasb.fxgl.entity.component.ComponentTypes;
+import com.almasb.fxgl.entity.components.TypeComponent;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incrementally maintained lookup tables of entities in a game world,
+ * keyed by entity type and by component class.
+ * Entities in each bucket are kept in world order, i.e. the order in which they were added to the world.
+ * Each entity stores its position in the buckets it is in, so that removal clears that position
+ * without a search, and the bucket is compacted when it is next read.
+ * Since reading a bucket may compact it, buckets must not be read concurrently.
+ * Only enum types are indexed, since only enum types can be queried by type.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class EntityIndex {
+
+    private static final Comparator<Entity> WORLD_ORDER = Comparator.comparingLong(Entity::getWorldOrder);
+
+    private final Map<Object, Bucket> byType = new HashMap<>();
+    private final Map<Class<? extends Component>, Bucket> byComponent = new HashMap<>();
+
+    /**
+     * World order of the next added entity.
+     */
+    private long nextWorldOrder = 0;
+
+    /**
+     * Archetypes of indexed entities, only maintained once enabled.
+     */
+    private ArchetypeIndex archetypes = null;
+
+    /**
+     * Adds given entity and all of its current components to the index.
+     * Subsequent type and component changes of the entity are reported to this index
+     * until the entity is removed.
+     */
+    void add(Entity entity) {
+        entity.setWorldOrder(nextWorldOrder++);
+
+        addByType(entity, entity.getType());
+
+        List<Component> components = entity.getComponents();
+        for (int i = 0; i < components.size(); i++) {
+            addByComponent(entity, components.get(i).getClass());
+        }
+
+        entity.setIndex(this);
+
+        if (archetypes != null)
+            archetypes.update(entity, true);
+    }
+
+    /**
+     * Removes given entity from all buckets.
+     * The entity no longer reports its changes to this index.
+     */
+    void remove(Entity entity) {
+        entity.setIndex(null);
+
+        removeByType(entity, entity.getType());
+
+        List<Component> components = entity.getComponents();
+        for (int i = 0; i < components.size(); i++) {
+            removeByComponent(entity, components.get(i).getClass());
+        }
+
+        if (archetypes != null)
+            archetypes.update(entity, false);
+    }
+
+    void onTypeChanged(Entity entity, Object oldType, Object newType) {
+        removeByType(entity, oldType);
+        addByType(entity, newType);
+    }
+
+    void onComponentAdded(Entity entity, Class<? extends Component> type) {
+        addByComponent(entity, type);
+
+        if (archetypes != null)
+            archetypes.update(entity, true);
+    }
+
+    void onComponentRemoved(Entity entity, Class<? extends Component> type) {
+        removeByComponent(entity, type);
+
+        if (archetypes != null)
+            archetypes.update(entity, true);
+    }
+
+    /**
+     * Starts maintaining archetypes of indexed entities, if not already.
+     *
+     * @return archetypes of indexed entities
+     */
+    ArchetypeIndex enableArchetypes() {
+        if (archetypes == null) {
+            archetypes = new ArchetypeIndex();
+
+            Array<Entity> all = getByComponent(TypeComponent.class);
+            for (int i = 0; i < all.size(); i++) {
+                archetypes.update(all.get(i), true);
+            }
+        }
+
+        return archetypes;
+    }
+
+    /**
+     * Stops maintaining archetypes, all entities are taken out of archetypes.
+     */
+    void disableArchetypes() {
+        if (archetypes != null) {
+            archetypes.clear();
+            archetypes = null;
+        }
+    }
+
+    /**
+     * @return direct (do NOT modify) array of entities with given type in world order, possibly empty
+     */
+    Array<Entity> getByType(Object type) {
+        Bucket bucket = byType.get(type);
+        return bucket != null ? bucket.entities() : Array.empty();
+    }
+
+    /**
+     * Adds entities that have any of given types to result, in world order.
+     * Duplicate types are ignored.
+     */
+    void getByTypes(Array<Entity> result, Object[] types) {
+        int start = result.size();
+
+        for (int i = 0; i < types.length; i++) {
+            if (isDuplicateType(types, i))
+                continue;
+
+            Array<Entity> entities = getByType(types[i]);
+
+            if (result.size() == start) {
+                result.addAll(entities);
+            } else {
+                mergeByWorldOrder(result, start, entities);
+            }
+        }
+    }
+
+    /**
+     * @return direct (do NOT modify) array of entities with given component in world order, possibly empty
+     */
+    Array<Entity> getByComponent(Class<? extends Component> type) {
+        Bucket bucket = byComponent.get(type);
+        return bucket != null ? bucket.entities() : Array.empty();
+    }
+
+    void clear() {
+        // every entity has a type component, so this bucket contains all indexed entities
+        Array<Entity> all = getByComponent(TypeComponent.class);
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).setIndex(null);
+        }
+
+        byType.clear();
+        byComponent.clear();
+
+        disableArchetypes();
+    }
+
+    private void addByComponent(Entity entity, Class<? extends Component> type) {
+        int typeId = ComponentTypes.getId(type);
+
+        byComponent.computeIfAbsent(type, t -> new Bucket(typeId)).add(entity);
+    }
+
+    private void removeByComponent(Entity entity, Class<? extends Component> type) {
+        Bucket bucket = byComponent.get(type);
+        if (bucket != null) {
+            bucket.remove(entity);
+        }
+    }
+
+    private void addByType(Entity entity, Object type) {
+        if (type instanceof Enum) {
+            byType.computeIfAbsent(type, t -> new Bucket(-1)).add(entity);
+        }
+    }
+
+    private void removeByType(Entity entity, Object type) {
+        if (!(type instanceof Enum))
+            return;
+
+        Bucket bucket = byType.get(type);
+        if (bucket != null) {
+            bucket.remove(entity);
+        }
+    }
+
+    /**
+     * @return true if the type at i has already appeared earlier in types
+     */
+    private static boolean isDuplicateType(Object[] types, int i) {
+        for (int j = 0; j < i; j++) {
+            if (types[j] == types[i])
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Merges entities, which are in world order, into result from start onwards, which is also in world order.
+     * The merge runs from the back, so it does not need a temporary array.
+     */
+    private static void mergeByWorldOrder(Array<Entity> result, int start, Array<Entity> entities) {
+        int i = result.size() - 1;
+        int j = entities.size() - 1;
+
+        for (int n = 0; n < entities.size(); n++) {
+            result.add(null);
+        }
+
+        int k = result.size() - 1;
+
+        while (j >= 0) {
+            if (i >= start && result.get(i).getWorldOrder() > entities.get(j).getWorldOrder()) {
+                result.set(k--, result.get(i--));
+            } else {
+                result.set(k--, entities.get(j--));
+            }
+        }
+    }
+
+    /**
+     * Entities of a single type or component.
+     * A removed entity leaves null in its position, so that other entities do not move,
+     * and the nulls are dropped when the bucket is read or when they make up half of it.
+     * An entity that is added after entities newer than itself, e.g. because its type has changed,
+     * puts the bucket out of world order until it is read.
+     */
+    private static final class Bucket {
+
+        private final Array<Entity> entities = new Array<>();
+
+        /**
+         * Component type id whose slots this bucket maintains, or -1 for a type bucket.
+         */
+        private final int componentTypeId;
+
+        private int numRemoved = 0;
+
+        private long lastWorldOrder = -1;
+
+        private boolean isOrdered = true;
+
+        Bucket(int componentTypeId) {
+            this.componentTypeId = componentTypeId;
+        }
+
+        void add(Entity entity) {
+            if (entity.getWorldOrder() < lastWorldOrder) {
+                isOrdered = false;
+            } else {
+                lastWorldOrder = entity.getWorldOrder();
+            }
+
+            setSlot(entity, entities.size());
+            entities.add(entity);
+        }
+
+        void remove(Entity entity) {
+            int slot = getSlot(entity);
+
+            entities.set(slot, null);
+            setSlot(entity, -1);
+            numRemoved++;
+
+            if (numRemoved * 2 > entities.size()) {
+                compact();
+            }
+        }
+
+        /**
+         * @return entities of this bucket in world order
+         */
+        Array<Entity> entities() {
+            if (numRemoved > 0) {
+                compact();
+            }
+
+            if (!isOrdered) {
+                Arrays.sort(entities.getItems(), 0, entities.size(), WORLD_ORDER);
+
+                for (int i = 0; i < entities.size(); i++) {
+                    setSlot(entities.get(i), i);
+                }
+
+                isOrdered = true;
+            }
+
+            return entities;
+        }
+
+        private void compact() {
+            int size = 0;
+
+            for (int i = 0; i < entities.size(); i++) {
+                Entity e = entities.get(i);
+
+                if (e != null) {
+                    entities.set(size, e);
+                    setSlot(e, size);
+                    size++;
+                }
+            }
+
+            while (entities.size() > size) {
+                entities.pop();
+            }
+
+            numRemoved = 0;
+        }
+
+        private void setSlot(Entity entity, int slot) {
+            if (componentTypeId < 0) {
+                entity.setTypeSlot(slot);
+            } else {
+                entity.setComponentSlot(componentTypeId, slot);
+            }
+        }
+
+        private int getSlot(Entity entity) {
+            return componentTypeId < 0 ? entity.getTypeSlot() : entity.getComponentSlot(componentTypeId);
+        }
+    }
+}
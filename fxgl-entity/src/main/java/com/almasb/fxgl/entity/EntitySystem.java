@@ -0,0 +1,183 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.entity.component.Component;
+
+/**
+ * Logic that runs each frame over all entities that have given component types,
+ * as an alternative to per-entity {@link Component#onUpdate(double)}.
+ * Systems are added via {@link GameWorld#addSystem(EntitySystem)} and updated after entities,
+ * in the order they were added.
+ * Rather than being called per entity, a system is called once per matching {@link Archetype},
+ * so it can process entities in a tight loop over component arrays.
+ *
+ * Entities and components added or removed while systems are updated (e.g. by a system)
+ * are moved between archetypes after all systems have been updated.
+ * Per-entity time (TimeComponent) is not applied to systems.
+ *
+ * A system can be declared parallel via {@link #setParallel(ComponentMask, ComponentMask)},
+ * together with the component types it reads and writes.
+ * Consecutive parallel systems that do not conflict (one writes what the other reads or writes)
+ * are updated at the same time on a ForkJoinPool, with each matching archetype (or batch of rows,
+ * see {@link #setBatchSize(int)}) processed as a separate task.
+ * A parallel system must only modify the components of the rows it is given, must not read
+ * components it writes from other rows and must not add or remove entities or components directly
+ * (this throws IllegalStateException), but via {@link GameWorld#getCommandBuffer()}.
+ * Changes from the command buffer are applied after each phase, so systems of later phases
+ * do not see removed entities.
+ *
+ * A system that has a batch size also overrides {@link #onUpdate(Archetype, int, int, double)}.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public abstract class EntitySystem {
+
+    private final ComponentMask mask;
+
+    private boolean isPaused = false;
+
+    private boolean isParallel = false;
+    private ComponentMask reads;
+    private ComponentMask writes;
+    private int batchSize = 0;
+
+    /**
+     * @param types component types that entities must have to be processed by this system
+     */
+    @SafeVarargs
+    protected EntitySystem(Class<? extends Component>... types) {
+        this(ComponentMask.of(types));
+    }
+
+    protected EntitySystem(ComponentMask mask) {
+        this.mask = mask;
+        this.reads = mask;
+        this.writes = mask;
+    }
+
+    /**
+     * @return component types that entities must have to be processed by this system
+     */
+    public final ComponentMask getMask() {
+        return mask;
+    }
+
+    /**
+     * Declares this system safe to update in parallel with other systems and across archetypes.
+     * This must be called before the system is added to world.
+     *
+     * @param reads component types this system reads, but does not modify
+     * @param writes component types this system modifies
+     */
+    protected final void setParallel(ComponentMask reads, ComponentMask writes) {
+        this.isParallel = true;
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    /**
+     * @return true if this system can be updated in parallel
+     */
+    public final boolean isParallel() {
+        return isParallel;
+    }
+
+    /**
+     * @return component types this system reads, by default types of its mask
+     */
+    public final ComponentMask getReads() {
+        return reads;
+    }
+
+    /**
+     * @return component types this system modifies, by default types of its mask
+     */
+    public final ComponentMask getWrites() {
+        return writes;
+    }
+
+    /**
+     * @return true if this system and other cannot be updated at the same time
+     */
+    public final boolean conflictsWith(EntitySystem other) {
+        return writes.intersects(other.reads) || writes.intersects(other.writes) || reads.intersects(other.writes);
+    }
+
+    /**
+     * @return max number of rows of an archetype processed by a single parallel task, 0 if archetypes are not split
+     */
+    public final int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set max number of rows of an archetype processed by a single parallel task,
+     * so that a large archetype is spread across threads.
+     * If set to a positive value, {@link #onUpdate(Archetype, int, int, double)} must be overridden.
+     * Default is 0, i.e. archetypes are not split.
+     */
+    protected final void setBatchSize(int batchSize) {
+        if (batchSize < 0)
+            throw new IllegalArgumentException("Batch size must not be negative: " + batchSize);
+
+        this.batchSize = batchSize;
+    }
+
+    public final boolean isPaused() {
+        return isPaused;
+    }
+
+    public final void pause() {
+        isPaused = true;
+    }
+
+    public final void resume() {
+        isPaused = false;
+    }
+
+    /**
+     * Called after the system is added to world.
+     */
+    public void onAdded(GameWorld world) {
+
+    }
+
+    /**
+     * Called each frame when not paused, for each non-empty archetype whose entities
+     * have all component types of this system.
+     *
+     * @param archetype matching entities and their components
+     * @param tpf time per frame
+     */
+    public abstract void onUpdate(Archetype archetype, double tpf);
+
+    /**
+     * Called instead of {@link #onUpdate(Archetype, double)} for batches of rows of a large archetype,
+     * if this system is parallel and has a positive batch size.
+     * By default, delegates to {@link #onUpdate(Archetype, double)} if given all rows,
+     * since a system that processes whole archetypes cannot process a batch.
+     *
+     * @param archetype matching entities and their components
+     * @param fromRow first row to process (inclusive)
+     * @param toRow last row to process (exclusive)
+     * @param tpf time per frame
+     */
+    public void onUpdate(Archetype archetype, int fromRow, int toRow, double tpf) {
+        if (fromRow != 0 || toRow != archetype.size())
+            throw new IllegalStateException(getClass().getName() + " has a batch size, but does not override onUpdate(archetype, fromRow, toRow, tpf)");
+
+        onUpdate(archetype, tpf);
+    }
+
+    /**
+     * Called before the system is removed from world.
+     */
+    public void onRemoved(GameWorld world) {
+
+    }
+}
@@ -12,6 +12,17 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Marks a {@link Spawns} method whose entities are created ahead of time, when the entity factory is added,
+ * and kept in a pool.
+ * Spawning such entities takes them from the pool instead of calling the method,
+ * up to the number of preloaded entities, after which the method is called as usual.
+ * Preloaded entities are reusable: when removed from the world, they are returned to the pool.
+ * When taken from the pool, the entity gets the position and properties of the new spawn data,
+ * and its components are notified via {@link com.almasb.fxgl.entity.component.Component#onReused(SpawnData)},
+ * so that they can reset their state.
+ * All spawn names (aliases) of the method share the same pool.
+ * The method is called with empty spawn data, if it requires some data, use GameWorld.preload() instead.
+ *
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -0,0 +1,200 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity;
+
+import com.almasb.fxgl.core.collection.Array;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Updates systems of a world in phases.
+ * A phase is either a single serial system, or consecutive parallel systems that do not conflict,
+ * which are updated at the same time.
+ * Phases run one after another and structural changes from the command buffer are applied after each phase.
+ * Archetypes are locked only during a phase, so entities removed or changed in a phase are out of
+ * (or moved between) archetypes before the next phase.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class SystemScheduler {
+
+    private final Array<EntitySystem> systems = new Array<>();
+
+    /**
+     * Built when first needed after systems change.
+     */
+    private List<Phase> phases = null;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    boolean contains(EntitySystem system) {
+        return systems.containsByIdentity(system);
+    }
+
+    void add(EntitySystem system) {
+        systems.add(system);
+        phases = null;
+    }
+
+    boolean remove(EntitySystem system) {
+        phases = null;
+        return systems.removeValueByIdentity(system);
+    }
+
+    /**
+     * @return direct (do NOT modify) array of systems in update order
+     */
+    Array<EntitySystem> getSystems() {
+        return systems;
+    }
+
+    /**
+     * @return number of phases systems are currently updated in
+     */
+    int getNumPhases() {
+        if (phases == null)
+            phases = buildPhases();
+
+        return phases.size();
+    }
+
+    /**
+     * @param index the index that entities of the world are attached to
+     */
+    void update(ArchetypeIndex archetypes, EntityIndex index, EntityCommandBuffer commands, double tpf) {
+        if (phases == null)
+            phases = buildPhases();
+
+        for (Phase phase : phases) {
+            archetypes.lock();
+
+            try {
+                if (phase.isParallel) {
+                    updateParallel(phase.systems, archetypes, tpf);
+                } else {
+                    updateSerial(phase.systems.get(0), archetypes, tpf);
+                }
+            } finally {
+                archetypes.unlock(index);
+            }
+
+            commands.apply();
+        }
+    }
+
+    private void updateSerial(EntitySystem system, ArchetypeIndex archetypes, double tpf) {
+        if (system.isPaused())
+            return;
+
+        Array<Archetype> matching = archetypes.getMatching(system.getMask());
+
+        for (int i = 0; i < matching.size(); i++) {
+            Archetype archetype = matching.get(i);
+
+            if (!archetype.isEmpty()) {
+                system.onUpdate(archetype, tpf);
+            }
+        }
+    }
+
+    private void updateParallel(List<EntitySystem> phaseSystems, ArchetypeIndex archetypes, double tpf) {
+        // tasks are collected on this thread, since archetype queries are not thread-safe
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        for (EntitySystem system : phaseSystems) {
+            if (system.isPaused())
+                continue;
+
+            Array<Archetype> matching = archetypes.getMatching(system.getMask());
+
+            for (int i = 0; i < matching.size(); i++) {
+                Archetype archetype = matching.get(i);
+                int size = archetype.size();
+                int batchSize = system.getBatchSize();
+
+                if (size == 0)
+                    continue;
+
+                if (batchSize == 0 || size <= batchSize) {
+                    tasks.add(ForkJoinTask.adapt(() -> system.onUpdate(archetype, tpf)));
+                } else {
+                    for (int from = 0; from < size; from += batchSize) {
+                        int fromRow = from;
+                        int toRow = Math.min(size, from + batchSize);
+
+                        tasks.add(ForkJoinTask.adapt(() -> system.onUpdate(archetype, fromRow, toRow, tpf)));
+                    }
+                }
+            }
+        }
+
+        if (tasks.isEmpty())
+            return;
+
+        archetypes.setParallelUpdate(true);
+
+        try {
+            if (tasks.size() == 1) {
+                tasks.get(0).invoke();
+            } else {
+                pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            }
+        } finally {
+            archetypes.setParallelUpdate(false);
+        }
+    }
+
+    private List<Phase> buildPhases() {
+        List<Phase> result = new ArrayList<>();
+        Phase current = null;
+
+        for (int i = 0; i < systems.size(); i++) {
+            EntitySystem system = systems.get(i);
+
+            if (!system.isParallel()) {
+                result.add(new Phase(false, system));
+                current = null;
+                continue;
+            }
+
+            if (current == null || current.conflictsWith(system)) {
+                current = new Phase(true, system);
+                result.add(current);
+            } else {
+                current.systems.add(system);
+            }
+        }
+
+        return result;
+    }
+
+    private static final class Phase {
+        private final boolean isParallel;
+        private final List<EntitySystem> systems = new ArrayList<>();
+
+        private Phase(boolean isParallel, EntitySystem system) {
+            this.isParallel = isParallel;
+            systems.add(system);
+        }
+
+        private boolean conflictsWith(EntitySystem system) {
+            for (EntitySystem s : systems) {
+                if (s.conflictsWith(system))
+                    return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -7,6 +7,7 @@
 package com.almasb.fxgl.entity.component;
 
 import com.almasb.fxgl.entity.Entity;
+import com.almasb.fxgl.entity.SpawnData;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 
@@ -21,6 +22,11 @@ public abstract class Component {
 
     private BooleanProperty paused = new SimpleBooleanProperty(false);
 
+    /**
+     * {@link ComponentTypes} id of this component's class, -1 until first requested.
+     */
+    int typeId = -1;
+
     /**
      * @return entity to which this component is attached
      */
@@ -71,6 +77,18 @@ public abstract class Component {
 
     }
 
+    /**
+     * Called when the entity of this component is reusable and is taken from the pool to be spawned again,
+     * before it is added to the world.
+     * Components of reusable entities (e.g. those of methods annotated with Preload)
+     * should reset state left from the previous spawn here.
+     *
+     * @param data spawn data of the new spawn
+     */
+    public void onReused(SpawnData data) {
+
+    }
+
     /**
      * To gain performance during entity creation / component addition, you can override this to return false.
      * Then components will not be injected, so you will need to manage dependencies manually.
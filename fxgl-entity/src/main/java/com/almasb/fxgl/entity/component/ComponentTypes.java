@@ -0,0 +1,92 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity.component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Global registry of component types.
+ * Each component class is assigned a dense integer id (0, 1, 2, ...) when first seen,
+ * which remains the same for the lifetime of the application.
+ * The ids allow entities to store components in arrays and sets of component types as bitsets.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class ComponentTypes {
+
+    private static final List<Class<? extends Component>> types = new ArrayList<>();
+
+    /**
+     * Ids are held as final ints, so that a lookup is a field read rather than unboxing.
+     */
+    private static final ClassValue<TypeId> ids = new ClassValue<>() {
+        @Override
+        protected TypeId computeValue(Class<?> type) {
+            return new TypeId(register(type));
+        }
+    };
+
+    private ComponentTypes() { }
+
+    /**
+     * @return id of given component type, registering the type if needed
+     */
+    public static int getId(Class<? extends Component> type) {
+        return ids.get(type).value;
+    }
+
+    /**
+     * @return id of the type of given component, which is cached in the component after the first call
+     */
+    public static int getId(Component component) {
+        int id = component.typeId;
+
+        if (id == -1) {
+            id = getId(component.getClass());
+            component.typeId = id;
+        }
+
+        return id;
+    }
+
+    /**
+     * @return component type with given id
+     * @throws IndexOutOfBoundsException if no type has given id
+     */
+    public static synchronized Class<? extends Component> getType(int id) {
+        return types.get(id);
+    }
+
+    /**
+     * @return number of registered component types, which is also the next id to be assigned
+     */
+    public static synchronized int getNumTypes() {
+        return types.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized int register(Class<?> type) {
+        // ClassValue may compute the value more than once if called concurrently, so check first
+        int id = types.indexOf(type);
+
+        if (id == -1) {
+            id = types.size();
+            types.add((Class<? extends Component>) type);
+        }
+
+        return id;
+    }
+
+    private static final class TypeId {
+        private final int value;
+
+        TypeId(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -409,15 +409,10 @@ public final class ParticleEmitter {
      * @implNote cached array is used, do not obtain ownership
      */
     Array<Particle> emit(double x, double y) {
-        double rate = getEmissionRate();
-
-        rateAC += rate;
-        if (rateAC < 1 || rate == 0 || isPaused || isFinished()) {
+        if (!isReadyToEmit()) {
             return Array.empty();
         }
 
-        rateAC = 0;
-        emissions++;
         emissionParticles.clear();
 
         int num = getNumParticles();
@@ -429,6 +424,76 @@ public final class ParticleEmitter {
         return emissionParticles;
     }
 
+    /**
+     * Emits {@link #numParticles} particles at x, y into given buffer.
+     * Emission rate rules are the same as in {@link #emit(double, double)}.
+     * Particle buffers do not create particle objects, so the control function
+     * and the on remove function are not used.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param buffer buffer to add particles to
+     * @return number of particles emitted
+     */
+    int emit(double x, double y, ParticleBuffer buffer) {
+        if (!isReadyToEmit()) {
+            return 0;
+        }
+
+        int style = buffer.style(sourceImage,
+                getStartColor(),
+                getEndColor(),
+                getBlendMode(),
+                getInterpolator(),
+                isAllowParticleRotation(),
+                getParametricEquation());
+
+        int num = getNumParticles();
+
+        // functions are called in the same order as when emitting particle objects
+        for (int i = 0; i < num; i++) {
+            Point2D spawnPoint = spawnPointFunction.apply(i);
+            Point2D velocity = velocityFunction.apply(i);
+            Point2D acceleration = accelerationFunction.get();
+            double size = getRandomSize();
+            Point2D scaleOrigin = scaleOriginFunction.apply(i);
+            Point2D scale = scaleFunction.apply(i);
+            Point2D entityScale = entityScaleFunction.get();
+            Duration expireTime = expireFunction.apply(i);
+
+            buffer.add(style,
+                    spawnPoint.getX() + x, spawnPoint.getY() + y,
+                    velocity.getX(), velocity.getY(),
+                    acceleration.getX(), acceleration.getY(),
+                    size,
+                    scaleOrigin.getX(), scaleOrigin.getY(),
+                    scale.getX(), scale.getY(),
+                    entityScale.getX(), entityScale.getY(),
+                    expireTime.toSeconds());
+        }
+
+        return num;
+    }
+
+    /**
+     * Advances the emission rate accumulator.
+     *
+     * @return true if particles should be emitted this frame
+     */
+    private boolean isReadyToEmit() {
+        double rate = getEmissionRate();
+
+        rateAC += rate;
+        if (rateAC < 1 || rate == 0 || isPaused || isFinished()) {
+            return false;
+        }
+
+        rateAC = 0;
+        emissions++;
+
+        return true;
+    }
+
     /**
      * Emits a single particle with index i.
      * X and Y are coordinates of the particle entity this emitter is attached to.
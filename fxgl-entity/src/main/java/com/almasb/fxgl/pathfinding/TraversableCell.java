@@ -31,10 +31,18 @@ public class TraversableCell extends Cell {
         this.state = state;
     }
 
+    /**
+     * @deprecated built-in search algorithms keep parents per search and no longer set them in cells
+     */
+    @Deprecated
     public final void setParent(TraversableCell parent) {
         this.parent = parent;
     }
 
+    /**
+     * @deprecated built-in search algorithms keep parents per search and no longer set them in cells
+     */
+    @Deprecated
     public final TraversableCell getParent() {
         return parent;
     }
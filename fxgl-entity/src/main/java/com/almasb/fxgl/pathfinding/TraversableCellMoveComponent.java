@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * @author Almas Baimagambetov (almaslvl@gmail.com)
@@ -34,6 +35,13 @@ public class TraversableCellMoveComponent<T extends TraversableCell> extends Com
 
     private Runnable delayedPathCalc = EmptyRunnable.INSTANCE;
 
+    /**
+     * Incremented with each path request, so that results of older requests are ignored.
+     */
+    private int pathRequestId = 0;
+
+    private boolean isPathPending = false;
+
     private ReadOnlyBooleanWrapper isAtDestinationProp = new ReadOnlyBooleanWrapper(true);
 
     private ChangeListener<Boolean> isAtDestinationListener = (o, old, isAtDestination) -> {
@@ -77,6 +85,13 @@ public class TraversableCellMoveComponent<T extends TraversableCell> extends Com
         return path.isEmpty();
     }
 
+    /**
+     * @return true if a path has been requested but not yet found
+     */
+    public boolean isPathPending() {
+        return isPathPending;
+    }
+
     public ReadOnlyBooleanProperty atDestinationProperty() {
         return isAtDestinationProp.getReadOnlyProperty();
     }
@@ -108,6 +123,7 @@ public class TraversableCellMoveComponent<T extends TraversableCell> extends Com
 
     public void stopMovementAt(int cellX, int cellY) {
         path.clear();
+        cancelPathRequest();
         moveComponent.setPositionToCell(cellX, cellY);
 
         isAtDestinationProp.set(true);
@@ -168,15 +184,53 @@ public class TraversableCellMoveComponent<T extends TraversableCell> extends Com
         isAtDestinationProp.set(false);
 
         if (moveComponent.isAtDestination()) {
-            path = pathfinder.get().findPath(startX, startY, targetX, targetY);
+            findPath(startX, startY, targetX, targetY);
         } else {
-            delayedPathCalc = () -> path = pathfinder.get().findPath(moveComponent.getCellX(), moveComponent.getCellY(), targetX, targetY);
+            // the previous request no longer applies
+            cancelPathRequest();
+
+            delayedPathCalc = () -> findPath(moveComponent.getCellX(), moveComponent.getCellY(), targetX, targetY);
         }
     }
 
+    private void findPath(int startX, int startY, int targetX, int targetY) {
+        int requestId = ++pathRequestId;
+
+        isPathPending = true;
+
+        requestPath(startX, startY, targetX, targetY, result -> {
+            if (requestId != pathRequestId)
+                return;
+
+            isPathPending = false;
+            path = result;
+        });
+    }
+
+    private void cancelPathRequest() {
+        pathRequestId++;
+        isPathPending = false;
+    }
+
+    /**
+     * Finds a path from start to target and passes it to [onPathFound].
+     * By default, the path is found immediately using the pathfinder.
+     * Subclasses may find the path asynchronously, in which case [onPathFound] must be called on the game thread.
+     */
+    protected void requestPath(int startX, int startY, int targetX, int targetY, Consumer<List<T>> onPathFound) {
+        onPathFound.accept(pathfinder.get().findPath(startX, startY, targetX, targetY));
+    }
+
+    /**
+     * @return the pathfinder used by this component
+     */
+    protected final Pathfinder<T> getPathfinder() {
+        return pathfinder.get();
+    }
+
     @Override
     public void onUpdate(double tpf) {
-        if (!isAtDestination() && !isMoving() && isPathEmpty()) {
+        if (!isAtDestination() && !isMoving() && isPathEmpty() && !isPathPending()) {
             isAtDestinationProp.set(true);
         }
 
@@ -24,6 +24,10 @@ public class AStarCell extends TraversableCell {
      */
     private int movementCost;
 
+    /**
+     * No longer set by {@link AStarPathfinder}, which keeps search state per search,
+     * so that searches can run concurrently.
+     */
     private int gCost;
     private int hCost;
 
@@ -48,25 +52,43 @@ public class AStarCell extends TraversableCell {
         return movementCost;
     }
 
+    /**
+     * @deprecated not set by {@link AStarPathfinder}
+     */
+    @Deprecated
     public final void setHCost(int hCost) {
         this.hCost = hCost;
     }
 
+    /**
+     * @deprecated not set by {@link AStarPathfinder}
+     */
+    @Deprecated
     public final int getHCost() {
         return hCost;
     }
 
+    /**
+     * @deprecated not set by {@link AStarPathfinder}
+     */
+    @Deprecated
     public final void setGCost(int gCost) {
         this.gCost = gCost;
     }
 
+    /**
+     * @deprecated not set by {@link AStarPathfinder}
+     */
+    @Deprecated
     public final int getGCost() {
         return gCost;
     }
 
     /**
      * @return F cost (G + H)
+     * @deprecated not set by {@link AStarPathfinder}
      */
+    @Deprecated
     public final int getFCost() {
         return gCost + hCost;
     }
@@ -12,12 +12,17 @@ import com.almasb.fxgl.pathfinding.CellMoveComponent;
 import com.almasb.fxgl.pathfinding.TraversableCellMoveComponent;
 import com.almasb.fxgl.pathfinding.TraversableGrid;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
 @Required(CellMoveComponent.class)
 public final class AStarMoveComponent<T extends AStarCell> extends TraversableCellMoveComponent<T> {
 
+    private AStarPathfindingService pathfindingService = null;
+
     public AStarMoveComponent(TraversableGrid<T> grid) {
         this(new LazyValue<>(() -> grid));
     }
@@ -35,4 +40,26 @@ public final class AStarMoveComponent<T extends AStarCell> extends TraversableCe
     public AStarMoveComponent(AStarPathfinder<T> pathfinderValue) {
         super(pathfinderValue);
     }
+
+    public AStarPathfindingService getPathfindingService() {
+        return pathfindingService;
+    }
+
+    /**
+     * If set, paths are found asynchronously by given service rather than on the game thread.
+     * Set to null to find paths immediately (default).
+     */
+    public void setPathfindingService(AStarPathfindingService pathfindingService) {
+        this.pathfindingService = pathfindingService;
+    }
+
+    @Override
+    protected void requestPath(int startX, int startY, int targetX, int targetY, Consumer<List<T>> onPathFound) {
+        if (pathfindingService == null) {
+            super.requestPath(startX, startY, targetX, targetY, onPathFound);
+            return;
+        }
+
+        pathfindingService.requestPath((AStarPathfinder<T>) getPathfinder(), startX, startY, targetX, targetY, onPathFound);
+    }
 }
@@ -18,8 +18,14 @@ import com.almasb.fxgl.pathfinding.heuristic.ManhattanDistance;
 import com.almasb.fxgl.pathfinding.heuristic.OctileDistance;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Search state is not stored in the grid cells, so the same pathfinder can be used
+ * to find paths from multiple threads at once, e.g. see {@link AStarPathfindingService}.
+ * In that case, the cell visit and path found listeners are called from those threads.
+ * The grid should not be modified while paths are being found.
+ *
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
 public final class AStarPathfinder<T extends AStarCell> extends Pathfinder<T> {
@@ -27,8 +33,15 @@ public final class AStarPathfinder<T extends AStarCell> extends Pathfinder<T> {
     private final Heuristic<T> defaultHeuristic;
     private final DiagonalHeuristic<T> diagonalHeuristic;
 
+    /**
+     * Search state is kept per thread, so that paths can be found concurrently.
+     */
+    private final ThreadLocal<AStarSearch> searches = ThreadLocal.withInitial(
+            () -> new AStarSearch(getGrid().getWidth(), getGrid().getHeight())
+    );
+
     private boolean isCachingPaths = false;
-    private Map<CacheKey, List<T>> cache = new HashMap<>();
+    private Map<CacheKey, List<T>> cache = new ConcurrentHashMap<>();
 
     public AStarPathfinder(TraversableGrid<T> grid) {
         this(grid, new ManhattanDistance<>(), new OctileDistance<>());
@@ -97,78 +110,68 @@ public final class AStarPathfinder<T extends AStarCell> extends Pathfinder<T> {
 
         Heuristic<T> heuristic = (neighborDirection == FOUR_DIRECTIONS) ? defaultHeuristic : diagonalHeuristic;
 
-        // reset grid cells data
-        for (int y = 0; y < grid[0].length; y++) {
-            for (int x = 0; x < grid.length; x++) {
-                grid[x][y].setHCost(heuristic.getCost(x, y, target.getX(), target.getY()));
-                grid[x][y].setParent(null);
-                grid[x][y].setGCost(0);
-            }
+        AStarSearch search = searches.get();
+        search.begin();
+
+        for (AStarCell busyNode : busyNodes) {
+            search.setBusy(search.index(busyNode));
         }
 
-        Set<T> open = new HashSet<>();
-        Set<T> closed = new HashSet<>();
+        int startIndex = search.index(start);
+        int targetIndex = search.index(target);
+
+        search.reset(startIndex, heuristic.getCost(start.getX(), start.getY(), target.getX(), target.getY()));
+
+        int numNeighbors = AStarSearch.numNeighbors(neighborDirection);
 
         T current = start;
+        int currentIndex = startIndex;
 
         boolean found = false;
 
-        while (!found && !closed.contains(target)) {
-            for (T neighbor : getValidNeighbors(current, neighborDirection, busyNodes)) {
+        while (!found) {
+            for (int i = 0; i < numNeighbors; i++) {
+                int x = current.getX() + AStarSearch.NEIGHBOR_DX[i];
+                int y = current.getY() + AStarSearch.NEIGHBOR_DY[i];
+
+                if (!getGrid().isWithin(x, y))
+                    continue;
+
+                T neighbor = getGrid().get(x, y);
+                int neighborIndex = search.index(neighbor);
+
+                if (search.isBusy(neighborIndex) || !getGrid().isTraversableInSingleMove(current, neighbor))
+                    continue;
+
                 getCellVisitListener().onVisit(neighbor);
 
-                if (neighbor == target) {
-                    target.setParent(current);
+                if (neighborIndex == targetIndex) {
+                    search.setParent(targetIndex, currentIndex);
                     found = true;
-                    closed.add(target);
                     break;
                 }
 
-                if (!closed.contains(neighbor)) {
-                    int gCost = isDiagonal(current, neighbor)
-                            ? diagonalHeuristic.getDiagonalWeight()
-                            : defaultHeuristic.getWeight();
-
-                    gCost *= neighbor.getMovementCost();
-
-                    int newGCost = current.getGCost() + gCost;
-
-                    if (open.contains(neighbor)) {
-                        if (newGCost < neighbor.getGCost()) {
-                            neighbor.setParent(current);
-                            neighbor.setGCost(newGCost);
-                        }
-                    } else {
-                        neighbor.setParent(current);
-                        neighbor.setGCost(newGCost);
-                        open.add(neighbor);
-                    }
+                if (!search.isTouched(neighborIndex)) {
+                    search.reset(neighborIndex, heuristic.getCost(neighbor.getX(), neighbor.getY(), target.getX(), target.getY()));
+                }
+
+                if (!search.isClosed(neighborIndex)) {
+                    relax(search, current, currentIndex, neighbor, neighborIndex, neighbor);
                 }
             }
 
             if (!found) {
-                closed.add(current);
-                open.remove(current);
+                search.close(currentIndex);
 
-                if (open.isEmpty())
+                if (search.isOpenEmpty())
                     return Collections.emptyList();
 
-                T acc = null;
-
-                for (T a : open) {
-                    if (acc == null) {
-                        acc = a;
-                        continue;
-                    }
-
-                    acc = a.getFCost() < acc.getFCost() ? a : acc;
-                }
-
-                current = acc;
+                currentIndex = search.poll();
+                current = getGrid().get(search.getX(currentIndex), search.getY(currentIndex));
             }
         }
 
-        var path = buildPath(start, target);
+        var path = buildPath(search, startIndex, targetIndex);
 
         if (isCachingPaths) {
             cache.put(cacheKey, path);
@@ -181,29 +184,182 @@ public final class AStarPathfinder<T extends AStarCell> extends Pathfinder<T> {
         return result;
     }
 
-    private List<T> buildPath(T start, T target) {
-        List<T> path = new ArrayList<>();
+    /**
+     * Finds paths from each of the starting nodes to the same target with a single search,
+     * which starts at the target and stops once all starting nodes are reached.
+     * The paths are as short as those found by individual searches, but not necessarily the same.
+     *
+     * @param starts    starting nodes
+     * @param target    target node
+     * @return          paths in the same order as [starts], each from start (excl) to target (incl) or empty list if no path found
+     */
+    List<List<T>> findPaths(List<T> starts, T target, NeighborDirection neighborDirection) {
+        List<List<T>> result = new ArrayList<>(starts.size());
 
-        T tmp = target;
-        do {
-            path.add(tmp);
-            tmp = (T) tmp.getParent();
-        } while (tmp != start);
+        if (target.getState() == CellState.NOT_WALKABLE) {
+            starts.forEach(start -> result.add(Collections.emptyList()));
+            return result;
+        }
 
-        Collections.reverse(path);
-        return path;
+        // unique starting nodes which still need to be reached
+        Set<T> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (T start : starts) {
+            if (start != target && (!isCachingPaths || !cache.containsKey(new CacheKey(start.getX(), start.getY(), target.getX(), target.getY())))) {
+                remaining.add(start);
+            }
+        }
+
+        Heuristic<T> heuristic = (neighborDirection == FOUR_DIRECTIONS) ? defaultHeuristic : diagonalHeuristic;
+
+        // we search towards all starting nodes, so the heuristic is the cost to the closest one,
+        // which never overestimates the cost to any of them
+        List<T> goals = new ArrayList<>(remaining);
+
+        AStarSearch search = searches.get();
+        search.begin();
+
+        int targetIndex = search.index(target);
+
+        search.reset(targetIndex, heuristicToClosest(heuristic, target, goals));
+
+        int numNeighbors = AStarSearch.numNeighbors(neighborDirection);
+
+        T current = target;
+        int currentIndex = targetIndex;
+
+        while (!remaining.isEmpty()) {
+            for (int i = 0; i < numNeighbors; i++) {
+                int x = current.getX() + AStarSearch.NEIGHBOR_DX[i];
+                int y = current.getY() + AStarSearch.NEIGHBOR_DY[i];
+
+                if (!getGrid().isWithin(x, y))
+                    continue;
+
+                T neighbor = getGrid().get(x, y);
+
+                // searching backwards, so we check the move from neighbor to current
+                if (!getGrid().isTraversableInSingleMove(neighbor, current))
+                    continue;
+
+                getCellVisitListener().onVisit(neighbor);
+
+                int neighborIndex = search.index(neighbor);
+
+                if (!search.isTouched(neighborIndex)) {
+                    search.reset(neighborIndex, heuristicToClosest(heuristic, neighbor, goals));
+                }
+
+                if (!search.isClosed(neighborIndex)) {
+                    // the cost of moving from neighbor to current
+                    relax(search, current, currentIndex, neighbor, neighborIndex, current);
+                }
+            }
+
+            search.close(currentIndex);
+
+            if (search.isOpenEmpty())
+                break;
+
+            currentIndex = search.poll();
+            current = getGrid().get(search.getX(currentIndex), search.getY(currentIndex));
+
+            remaining.remove(current);
+        }
+
+        for (T start : starts) {
+            if (start == target) {
+                result.add(Collections.emptyList());
+                continue;
+            }
+
+            var cacheKey = new CacheKey(start.getX(), start.getY(), target.getX(), target.getY());
+
+            if (isCachingPaths) {
+                var path = cache.get(cacheKey);
+
+                if (path != null) {
+                    result.add(new ArrayList<>(path));
+                    continue;
+                }
+            }
+
+            int startIndex = search.index(start);
+
+            if (remaining.contains(start) || !search.isTouched(startIndex)) {
+                result.add(Collections.emptyList());
+                continue;
+            }
+
+            // parents point towards the target
+            List<T> path = new ArrayList<>();
+
+            int index = search.getParent(startIndex);
+            while (index != -1) {
+                path.add(getGrid().get(search.getX(index), search.getY(index)));
+                index = search.getParent(index);
+            }
+
+            if (isCachingPaths) {
+                cache.put(cacheKey, path);
+            }
+
+            var pathCopy = new ArrayList<>(path);
+
+            getPathFoundListener().onPathFound(pathCopy);
+
+            result.add(pathCopy);
+        }
+
+        return result;
     }
 
     /**
-     * @param node the A* node
-     * @param busyNodes nodes which are busy, i.e. walkable but have a temporary obstacle
-     * @return neighbors of the node
+     * Updates the G cost of neighbor via current if it is lower.
+     *
+     * @param enteredCell the cell whose movement cost is paid
      */
-    private List<T> getValidNeighbors(T node, NeighborDirection neighborDirection, AStarCell... busyNodes) {
-        var result = new ArrayList<>(getGrid().getNeighbors(node.getX(), node.getY(), neighborDirection));
-        result.removeAll(Arrays.asList(busyNodes));
-        result.removeIf(cell -> !getGrid().isTraversableInSingleMove(node, cell));
-        return result;
+    private void relax(AStarSearch search, T current, int currentIndex, T neighbor, int neighborIndex, T enteredCell) {
+        int gCost = isDiagonal(current, neighbor)
+                ? diagonalHeuristic.getDiagonalWeight()
+                : defaultHeuristic.getWeight();
+
+        gCost *= enteredCell.getMovementCost();
+
+        int newGCost = search.getGCost(currentIndex) + gCost;
+
+        if (search.isOpen(neighborIndex)) {
+            if (newGCost < search.getGCost(neighborIndex)) {
+                search.setParent(neighborIndex, currentIndex);
+                search.decreaseGCost(neighborIndex, newGCost);
+            }
+        } else {
+            search.setParent(neighborIndex, currentIndex);
+            search.open(neighborIndex, newGCost);
+        }
+    }
+
+    private int heuristicToClosest(Heuristic<T> heuristic, T cell, List<T> goals) {
+        int min = Integer.MAX_VALUE;
+
+        for (T goal : goals) {
+            min = Math.min(min, heuristic.getCost(cell.getX(), cell.getY(), goal.getX(), goal.getY()));
+        }
+
+        return goals.isEmpty() ? 0 : min;
+    }
+
+    private List<T> buildPath(AStarSearch search, int startIndex, int targetIndex) {
+        List<T> path = new ArrayList<>();
+
+        int index = targetIndex;
+        do {
+            path.add(getGrid().get(search.getX(index), search.getY(index)));
+            index = search.getParent(index);
+        } while (index != startIndex);
+
+        Collections.reverse(path);
+        return path;
     }
 
     private boolean isDiagonal(Cell current, Cell neighbor) {
@@ -0,0 +1,273 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.pathfinding.astar;
+
+import com.almasb.fxgl.core.EngineService;
+import com.almasb.fxgl.core.collection.grid.NeighborDirection;
+import com.almasb.fxgl.logging.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Finds A* paths on background threads, so that many agents can request paths
+ * at once without stalling the game thread.
+ * Requests are queued and at most {@link #getMaxSearchesPerFrame()} searches are started each frame.
+ * This budget is a number of searches rather than time, since searches do not run on the game thread.
+ * Queued requests with the same pathfinder, target and neighbor direction (and no busy cells)
+ * are coalesced into a single search, e.g. when a group of units is ordered to move to the same cell.
+ * Results are delivered on the game thread during {@link #onGameUpdate(double)}.
+ * If a search fails, the error is logged and its requests get empty paths, as if no path exists.
+ *
+ * Add this service via GameSettings.addEngineService() or call onGameUpdate() each frame manually.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class AStarPathfindingService extends EngineService {
+
+    private static final Logger log = Logger.get(AStarPathfindingService.class);
+
+    private int maxSearchesPerFrame = 32;
+
+    private ExecutorService ownExecutor = null;
+    private Executor executor = null;
+
+    private final Deque<Search<?>> queued = new ArrayDeque<>();
+
+    /**
+     * Queued searches that requests can still be added to.
+     */
+    private final Map<SearchKey, Search<?>> coalescable = new HashMap<>();
+
+    private final Queue<Search<?>> completed = new ConcurrentLinkedQueue<>();
+
+    private int numRunning = 0;
+
+    /**
+     * Incremented on game reset, so that searches started before the reset are not delivered.
+     */
+    private int generation = 0;
+
+    /**
+     * @return max number of searches started per frame
+     */
+    public int getMaxSearchesPerFrame() {
+        return maxSearchesPerFrame;
+    }
+
+    /**
+     * Set max number of searches started per frame, the remaining requests stay queued until next frame.
+     */
+    public void setMaxSearchesPerFrame(int maxSearchesPerFrame) {
+        if (maxSearchesPerFrame < 1)
+            throw new IllegalArgumentException("Max searches per frame must be at least 1: " + maxSearchesPerFrame);
+
+        this.maxSearchesPerFrame = maxSearchesPerFrame;
+    }
+
+    /**
+     * Set the executor that runs searches.
+     * By default, a fixed pool of daemon threads (one fewer than the number of available processors) is used.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return number of searches that are queued or running
+     */
+    public int getNumPendingSearches() {
+        return queued.size() + numRunning;
+    }
+
+    /**
+     * Requests a path using four directions and no busy cells.
+     */
+    public <T extends AStarCell> void requestPath(AStarPathfinder<T> pathfinder,
+                                                  int sourceX, int sourceY, int targetX, int targetY,
+                                                  Consumer<List<T>> onPathFound) {
+        requestPath(pathfinder, sourceX, sourceY, targetX, targetY, NeighborDirection.FOUR_DIRECTIONS, Collections.emptyList(), onPathFound);
+    }
+
+    /**
+     * Requests a path from source to target.
+     * The path is a list of cells from source (excl.) to target (incl.) or empty list if no path exists.
+     * [onPathFound] is called on the game thread once the path is found.
+     */
+    public <T extends AStarCell> void requestPath(AStarPathfinder<T> pathfinder,
+                                                  int sourceX, int sourceY, int targetX, int targetY,
+                                                  NeighborDirection neighborDirection,
+                                                  List<T> busyCells,
+                                                  Consumer<List<T>> onPathFound) {
+
+        var grid = pathfinder.getGrid();
+        var request = new PathRequest<>(grid.get(sourceX, sourceY), onPathFound);
+        var target = grid.get(targetX, targetY);
+
+        if (!busyCells.isEmpty()) {
+            // busy cells differ per agent, so such requests are not coalesced
+            var search = new Search<>(pathfinder, target, neighborDirection, new ArrayList<>(busyCells));
+            search.requests.add(request);
+            queued.add(search);
+            return;
+        }
+
+        var key = new SearchKey(pathfinder, targetX, targetY, neighborDirection);
+
+        @SuppressWarnings("unchecked")
+        var search = (Search<T>) coalescable.get(key);
+
+        if (search == null) {
+            search = new Search<>(pathfinder, target, neighborDirection, Collections.emptyList());
+            coalescable.put(key, search);
+            queued.add(search);
+        }
+
+        search.requests.add(request);
+    }
+
+    @Override
+    public void onGameUpdate(double tpf) {
+        for (int i = 0; i < maxSearchesPerFrame && !queued.isEmpty(); i++) {
+            var search = queued.poll();
+
+            if (search.busyCells.isEmpty()) {
+                coalescable.remove(new SearchKey(search.pathfinder, search.target.getX(), search.target.getY(), search.neighborDirection));
+            }
+
+            numRunning++;
+
+            search.generation = generation;
+
+            getExecutor().execute(() -> {
+                try {
+                    search.run();
+                } catch (Exception e) {
+                    search.error = e;
+                } finally {
+                    completed.add(search);
+                }
+            });
+        }
+
+        Search<?> search;
+        while ((search = completed.poll()) != null) {
+            // started before the last reset, so already not counted as running
+            if (search.generation != generation)
+                continue;
+
+            numRunning--;
+
+            search.deliver();
+        }
+    }
+
+    @Override
+    public void onGameReset() {
+        queued.clear();
+        coalescable.clear();
+
+        // searches that are still running complete later and are dropped then
+        generation++;
+        completed.clear();
+        numRunning = 0;
+    }
+
+    @Override
+    public void onExit() {
+        if (ownExecutor != null) {
+            ownExecutor.shutdownNow();
+        }
+    }
+
+    private Executor getExecutor() {
+        if (executor == null) {
+            ownExecutor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), new PathfindingThreadFactory());
+            executor = ownExecutor;
+        }
+
+        return executor;
+    }
+
+    private record SearchKey(AStarPathfinder<?> pathfinder, int targetX, int targetY, NeighborDirection neighborDirection) { }
+
+    private record PathRequest<T extends AStarCell>(T source, Consumer<List<T>> onPathFound) { }
+
+    private static final class Search<T extends AStarCell> {
+        private final AStarPathfinder<T> pathfinder;
+        private final T target;
+        private final NeighborDirection neighborDirection;
+        private final List<T> busyCells;
+
+        private final List<PathRequest<T>> requests = new ArrayList<>();
+
+        private List<List<T>> paths = Collections.emptyList();
+
+        private Exception error = null;
+
+        private int generation;
+
+        private Search(AStarPathfinder<T> pathfinder, T target, NeighborDirection neighborDirection, List<T> busyCells) {
+            this.pathfinder = pathfinder;
+            this.target = target;
+            this.neighborDirection = neighborDirection;
+            this.busyCells = busyCells;
+        }
+
+        /**
+         * Called on a background thread.
+         */
+        private void run() {
+            if (requests.size() == 1) {
+                var source = requests.get(0).source();
+
+                paths = List.of(pathfinder.findPath(source.getX(), source.getY(), target.getX(), target.getY(), neighborDirection, busyCells));
+            } else {
+                var sources = new ArrayList<T>(requests.size());
+                requests.forEach(r -> sources.add(r.source()));
+
+                paths = pathfinder.findPaths(sources, target, neighborDirection);
+            }
+        }
+
+        /**
+         * Called on the game thread.
+         */
+        private void deliver() {
+            if (error != null) {
+                log.warning("Failed to find path to " + target, error);
+            }
+
+            for (int i = 0; i < requests.size(); i++) {
+                List<T> path = error != null ? Collections.emptyList() : paths.get(i);
+
+                try {
+                    requests.get(i).onPathFound().accept(path);
+                } catch (Exception e) {
+                    log.warning("Exception while handling path to " + target, e);
+                }
+            }
+        }
+    }
+
+    private static final class PathfindingThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            var t = new Thread(r, "FXGL Pathfinding Thread " + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
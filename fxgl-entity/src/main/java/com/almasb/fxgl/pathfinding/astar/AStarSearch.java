@@ -0,0 +1,246 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.pathfinding.astar;
+
+import com.almasb.fxgl.core.collection.grid.NeighborDirection;
+
+import java.util.Arrays;
+
+/**
+ * Scratch state of A* searches over a grid of given size.
+ * Cells are identified by their index (y * width + x).
+ * The state is kept here rather than in the cells, so that searches using
+ * different instances of this class can run concurrently over the same grid.
+ *
+ * Data of a cell is only valid if the cell was touched by the current search,
+ * which allows to reset the cell lazily when it is first reached rather than resetting the whole grid.
+ *
+ * The open set is an indexed binary min-heap of cell indices ordered by F cost, then by H cost,
+ * so that between equal candidates the one closer to the target is expanded first.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class AStarSearch {
+
+    /**
+     * Neighbor offsets in the same order as Grid.getNeighbors(): left, up, right, down,
+     * then up-left, up-right, down-right, down-left.
+     * Using these avoids allocating a list of neighbors for each expanded cell.
+     */
+    static final int[] NEIGHBOR_DX = { -1, 0, 1, 0, -1, 1, 1, -1 };
+    static final int[] NEIGHBOR_DY = { 0, -1, 0, 1, -1, -1, 1, 1 };
+
+    private static final int NOT_OPEN = -1;
+    private static final int CLOSED = -2;
+    private static final int BUSY = -3;
+
+    private final int width;
+
+    private final int[] gCost;
+    private final int[] hCost;
+    private final int[] parent;
+
+    /**
+     * Index in the heap, or one of NOT_OPEN, CLOSED, BUSY.
+     */
+    private final int[] openIndex;
+
+    /**
+     * Id of the search that last touched the cell.
+     */
+    private final int[] touchedBy;
+
+    private int searchId = 0;
+
+    private int[] heap = new int[64];
+    private int heapSize = 0;
+
+    AStarSearch(int width, int height) {
+        this.width = width;
+
+        int size = width * height;
+
+        gCost = new int[size];
+        hCost = new int[size];
+        parent = new int[size];
+        openIndex = new int[size];
+        touchedBy = new int[size];
+    }
+
+    static int numNeighbors(NeighborDirection neighborDirection) {
+        return neighborDirection == NeighborDirection.FOUR_DIRECTIONS ? 4 : 8;
+    }
+
+    int index(AStarCell cell) {
+        return cell.getY() * width + cell.getX();
+    }
+
+    int getX(int index) {
+        return index % width;
+    }
+
+    int getY(int index) {
+        return index / width;
+    }
+
+    /**
+     * Starts a new search, data of all cells becomes stale.
+     */
+    void begin() {
+        if (searchId == Integer.MAX_VALUE) {
+            Arrays.fill(touchedBy, 0);
+            searchId = 0;
+        }
+
+        searchId++;
+        heapSize = 0;
+    }
+
+    boolean isTouched(int index) {
+        return touchedBy[index] == searchId;
+    }
+
+    void reset(int index, int h) {
+        touchedBy[index] = searchId;
+        openIndex[index] = NOT_OPEN;
+        gCost[index] = 0;
+        hCost[index] = h;
+        parent[index] = -1;
+    }
+
+    void setBusy(int index) {
+        reset(index, 0);
+        openIndex[index] = BUSY;
+    }
+
+    boolean isBusy(int index) {
+        return isTouched(index) && openIndex[index] == BUSY;
+    }
+
+    boolean isOpen(int index) {
+        return openIndex[index] >= 0;
+    }
+
+    boolean isClosed(int index) {
+        return openIndex[index] == CLOSED;
+    }
+
+    void close(int index) {
+        openIndex[index] = CLOSED;
+    }
+
+    int getGCost(int index) {
+        return gCost[index];
+    }
+
+    int getParent(int index) {
+        return parent[index];
+    }
+
+    void setParent(int index, int parentIndex) {
+        parent[index] = parentIndex;
+    }
+
+    /**
+     * Sets G cost of a cell that is not open and adds it to the open set.
+     */
+    void open(int index, int g) {
+        gCost[index] = g;
+
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+
+        heap[heapSize] = index;
+        openIndex[index] = heapSize;
+        heapSize++;
+
+        siftUp(openIndex[index]);
+    }
+
+    /**
+     * Lowers G cost of a cell that is open.
+     */
+    void decreaseGCost(int index, int g) {
+        gCost[index] = g;
+
+        siftUp(openIndex[index]);
+    }
+
+    boolean isOpenEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Removes the cell with the lowest cost from the open set and closes it.
+     */
+    int poll() {
+        int result = heap[0];
+
+        heapSize--;
+
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            openIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+
+        openIndex[result] = CLOSED;
+
+        return result;
+    }
+
+    private void siftUp(int pos) {
+        int index = heap[pos];
+
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+
+            if (!isLess(index, heap[parentPos]))
+                break;
+
+            heap[pos] = heap[parentPos];
+            openIndex[heap[pos]] = pos;
+            pos = parentPos;
+        }
+
+        heap[pos] = index;
+        openIndex[index] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int index = heap[pos];
+
+        int half = heapSize >>> 1;
+
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+
+            if (right < heapSize && isLess(heap[right], heap[child])) {
+                child = right;
+            }
+
+            if (!isLess(heap[child], index))
+                break;
+
+            heap[pos] = heap[child];
+            openIndex[heap[pos]] = pos;
+            pos = child;
+        }
+
+        heap[pos] = index;
+        openIndex[index] = pos;
+    }
+
+    private boolean isLess(int a, int b) {
+        int fA = gCost[a] + hCost[a];
+        int fB = gCost[b] + hCost[b];
+
+        return fA < fB || (fA == fB && hCost[a] < hCost[b]);
+    }
+}
@@ -0,0 +1,771 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.pathfinding.astar;
+
+import com.almasb.fxgl.core.collection.grid.NeighborDirection;
+import com.almasb.fxgl.pathfinding.CellState;
+import com.almasb.fxgl.pathfinding.CellVisitListener;
+import com.almasb.fxgl.pathfinding.Pathfinder;
+import com.almasb.fxgl.pathfinding.TraversableGrid;
+import com.almasb.fxgl.pathfinding.heuristic.DiagonalHeuristic;
+import com.almasb.fxgl.pathfinding.heuristic.Heuristic;
+import com.almasb.fxgl.pathfinding.heuristic.ManhattanDistance;
+import com.almasb.fxgl.pathfinding.heuristic.OctileDistance;
+
+import java.util.*;
+
+import static com.almasb.fxgl.core.collection.grid.NeighborDirection.FOUR_DIRECTIONS;
+
+/**
+ * Hierarchical A* (HPA*) pathfinder for large grids.
+ * The grid is partitioned into square clusters.
+ * Entrances between neighboring clusters form an abstract graph, whose edges are the costs
+ * of moving between entrances within a cluster.
+ * A path is first found in the abstract graph and then refined into cells,
+ * one cluster at a time, so only a small part of the grid is searched.
+ * The found paths are close to, but not always as short as, those found by {@link AStarPathfinder}.
+ *
+ * The abstract graph is built when first needed.
+ * When cell states (or movement costs) change, call {@link #updateRegion(int, int, int, int)},
+ * so that only the affected clusters are rebuilt.
+ *
+ * Paths can be found concurrently as long as the grid is not modified or updated at the same time.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class HierarchicalPathfinder<T extends AStarCell> extends Pathfinder<T> {
+
+    private static final int DEFAULT_CLUSTER_SIZE = 16;
+
+    /**
+     * Entrances at least this wide have a transition at each end, rather than one in the middle.
+     */
+    private static final int WIDE_ENTRANCE = 6;
+
+    private static final CellVisitListener<AStarCell> NO_VISITS = cell -> {};
+
+    private final Heuristic<T> defaultHeuristic;
+    private final DiagonalHeuristic<T> diagonalHeuristic;
+
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersY;
+
+    private final Map<NeighborDirection, AbstractGraph> graphs = new EnumMap<>(NeighborDirection.class);
+
+    private final ThreadLocal<AStarSearch> searches = ThreadLocal.withInitial(
+            () -> new AStarSearch(getGrid().getWidth(), getGrid().getHeight())
+    );
+
+    public HierarchicalPathfinder(TraversableGrid<T> grid) {
+        this(grid, DEFAULT_CLUSTER_SIZE);
+    }
+
+    public HierarchicalPathfinder(TraversableGrid<T> grid, int clusterSize) {
+        this(grid, clusterSize, new ManhattanDistance<>(), new OctileDistance<>());
+    }
+
+    public HierarchicalPathfinder(TraversableGrid<T> grid, int clusterSize, Heuristic<T> defaultHeuristic, DiagonalHeuristic<T> diagonalHeuristic) {
+        super(grid);
+
+        if (clusterSize < 2)
+            throw new IllegalArgumentException("Cluster size must be at least 2: " + clusterSize);
+
+        this.clusterSize = clusterSize;
+        this.defaultHeuristic = defaultHeuristic;
+        this.diagonalHeuristic = diagonalHeuristic;
+
+        clustersX = (grid.getWidth() + clusterSize - 1) / clusterSize;
+        clustersY = (grid.getHeight() + clusterSize - 1) / clusterSize;
+    }
+
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Marks clusters that contain cells in given region (inclusive) as changed,
+     * they are rebuilt before the next path is found.
+     */
+    public synchronized void updateRegion(int minX, int minY, int maxX, int maxY) {
+        int minClusterX = Math.max(0, minX / clusterSize);
+        int minClusterY = Math.max(0, minY / clusterSize);
+        int maxClusterX = Math.min(clustersX - 1, maxX / clusterSize);
+        int maxClusterY = Math.min(clustersY - 1, maxY / clusterSize);
+
+        for (var graph : graphs.values()) {
+            for (int cy = minClusterY; cy <= maxClusterY; cy++) {
+                for (int cx = minClusterX; cx <= maxClusterX; cx++) {
+                    graph.markDirty(cy * clustersX + cx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the cluster that contains given cell as changed.
+     */
+    public void updateCell(int x, int y) {
+        updateRegion(x, y, x, y);
+    }
+
+    @Override
+    public List<T> findPath(int sourceX, int sourceY, int targetX, int targetY, NeighborDirection neighborDirection, List<T> busyCells) {
+        T start = getGrid().get(sourceX, sourceY);
+        T target = getGrid().get(targetX, targetY);
+
+        if (start == target || target.getState() == CellState.NOT_WALKABLE)
+            return Collections.emptyList();
+
+        var graph = getGraph(neighborDirection);
+        var search = searches.get();
+
+        int startCluster = clusterOf(start);
+        int targetCluster = clusterOf(target);
+
+        if (startCluster == targetCluster) {
+            var path = findLocalPath(search, start, target, clusterBounds(startCluster), neighborDirection, busyCells);
+
+            if (path != null) {
+                return onPathFound(path);
+            }
+        }
+
+        // temporary abstract nodes for start and target
+        var startNode = new Node(start.getX(), start.getY(), startCluster);
+        var targetNode = new Node(target.getX(), target.getY(), targetCluster);
+
+        var exitNodes = findExitNodes(start, startNode, neighborDirection, busyCells);
+
+        // costs from nodes to target, so we search backwards
+        localSearch(search, target, null, clusterBounds(targetCluster), neighborDirection, true, busyCells, getCellVisitListener());
+
+        Map<Node, Integer> costsToTarget = new HashMap<>();
+
+        for (var node : graph.clusterNodes.get(targetCluster)) {
+            putCostIfReached(search, node, costsToTarget);
+        }
+
+        for (var node : exitNodes) {
+            if (node.cluster == targetCluster) {
+                putCostIfReached(search, node, costsToTarget);
+            }
+        }
+
+        connect(search, startNode, graph, neighborDirection, busyCells);
+
+        for (var node : exitNodes) {
+            connect(search, node, graph, neighborDirection, busyCells);
+        }
+
+        var abstractPath = findAbstractPath(startNode, targetNode, costsToTarget, neighborDirection);
+
+        if (abstractPath.isEmpty())
+            return Collections.emptyList();
+
+        var path = refine(search, abstractPath, neighborDirection, busyCells);
+
+        if (path == null) {
+            // the abstract graph does not know about busy cells, so refining can fail
+            path = findLocalPath(search, start, target, new Bounds(0, 0, getGrid().getWidth() - 1, getGrid().getHeight() - 1), neighborDirection, busyCells);
+
+            if (path == null)
+                return Collections.emptyList();
+        }
+
+        return onPathFound(path);
+    }
+
+    /**
+     * If the start cell cannot be entered from its neighbor (e.g. start is not walkable),
+     * then there is no entrance between them, so the first move to that neighbor is added as a temporary node.
+     */
+    private List<Node> findExitNodes(T start, Node startNode, NeighborDirection neighborDirection, List<T> busyCells) {
+        List<Node> exitNodes = new ArrayList<>();
+
+        var bounds = clusterBounds(startNode.cluster);
+
+        for (T neighbor : getGrid().getNeighbors(start.getX(), start.getY(), neighborDirection)) {
+            if (bounds.contains(neighbor.getX(), neighbor.getY()) || busyCells.contains(neighbor))
+                continue;
+
+            if (getGrid().isTraversableInSingleMove(start, neighbor) && !getGrid().isTraversableInSingleMove(neighbor, start)) {
+                var exitNode = new Node(neighbor.getX(), neighbor.getY(), clusterOf(neighbor));
+
+                startNode.edges.add(new Edge(exitNode, getMoveCost(start, neighbor, neighbor), true));
+                exitNodes.add(exitNode);
+            }
+        }
+
+        return exitNodes;
+    }
+
+    /**
+     * Adds edges from a temporary node to the nodes of its cluster.
+     */
+    private void connect(AStarSearch search, Node node, AbstractGraph graph, NeighborDirection neighborDirection, List<T> busyCells) {
+        localSearch(search, getGrid().get(node.x, node.y), null, clusterBounds(node.cluster), neighborDirection, false, busyCells, getCellVisitListener());
+
+        Map<Node, Integer> costs = new LinkedHashMap<>();
+
+        for (var other : graph.clusterNodes.get(node.cluster)) {
+            putCostIfReached(search, other, costs);
+        }
+
+        costs.forEach((other, cost) -> node.edges.add(new Edge(other, cost, false)));
+    }
+
+    private void putCostIfReached(AStarSearch search, Node node, Map<Node, Integer> costs) {
+        int index = node.y * getGrid().getWidth() + node.x;
+
+        if (search.isTouched(index) && search.isClosed(index)) {
+            costs.put(node, search.getGCost(index));
+        }
+    }
+
+    private List<T> onPathFound(List<T> path) {
+        getPathFoundListener().onPathFound(path);
+
+        return path;
+    }
+
+    private synchronized AbstractGraph getGraph(NeighborDirection neighborDirection) {
+        var graph = graphs.computeIfAbsent(neighborDirection, AbstractGraph::new);
+        graph.update();
+        return graph;
+    }
+
+    private List<Node> findAbstractPath(Node startNode, Node targetNode, Map<Node, Integer> costsToTarget, NeighborDirection neighborDirection) {
+        Heuristic<T> heuristic = (neighborDirection == FOUR_DIRECTIONS) ? defaultHeuristic : diagonalHeuristic;
+
+        Map<Node, NodeRecord> records = new HashMap<>();
+        PriorityQueue<NodeRecord> open = new PriorityQueue<>();
+
+        var startRecord = new NodeRecord(startNode, null, 0, heuristic.getCost(startNode.x, startNode.y, targetNode.x, targetNode.y));
+        records.put(startNode, startRecord);
+        open.add(startRecord);
+
+        while (!open.isEmpty()) {
+            var current = open.poll();
+
+            // records are not removed from the queue when their cost decreases, so skip old ones
+            if (current.isClosed || records.get(current.node) != current)
+                continue;
+
+            current.isClosed = true;
+
+            if (current.node == targetNode) {
+                List<Node> path = new ArrayList<>();
+
+                for (var r = current; r != null; r = r.parent) {
+                    path.add(r.node);
+                }
+
+                Collections.reverse(path);
+                return path;
+            }
+
+            for (var edge : current.node.edges) {
+                relax(records, open, current, edge.to, edge.cost, heuristic, targetNode);
+            }
+
+            var costToTarget = costsToTarget.get(current.node);
+
+            if (costToTarget != null) {
+                relax(records, open, current, targetNode, costToTarget, heuristic, targetNode);
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    private void relax(Map<Node, NodeRecord> records, PriorityQueue<NodeRecord> open, NodeRecord current, Node node, int cost, Heuristic<T> heuristic, Node targetNode) {
+        int g = current.g + cost;
+
+        var record = records.get(node);
+
+        if (record == null || (!record.isClosed && g < record.g)) {
+            var newRecord = new NodeRecord(node, current, g, g + heuristic.getCost(node.x, node.y, targetNode.x, targetNode.y));
+            records.put(node, newRecord);
+            open.add(newRecord);
+        }
+    }
+
+    /**
+     * @return cells of the abstract path, or null if a segment cannot be refined
+     */
+    private List<T> refine(AStarSearch search, List<Node> abstractPath, NeighborDirection neighborDirection, List<T> busyCells) {
+        List<T> path = new ArrayList<>();
+
+        for (int i = 1; i < abstractPath.size(); i++) {
+            var from = abstractPath.get(i - 1);
+            var to = abstractPath.get(i);
+
+            if (from.x == to.x && from.y == to.y)
+                continue;
+
+            T toCell = getGrid().get(to.x, to.y);
+
+            if (from.cluster != to.cluster) {
+                // an entrance, so cells are next to each other
+                if (busyCells.contains(toCell))
+                    return null;
+
+                path.add(toCell);
+                continue;
+            }
+
+            var segment = findLocalPath(search, getGrid().get(from.x, from.y), toCell, clusterBounds(to.cluster), neighborDirection, busyCells);
+
+            if (segment == null)
+                return null;
+
+            path.addAll(segment);
+        }
+
+        return path;
+    }
+
+    /**
+     * @return path from start (excl.) to target (incl.) within bounds, or null if no path exists
+     */
+    private List<T> findLocalPath(AStarSearch search, T start, T target, Bounds bounds, NeighborDirection neighborDirection, List<T> busyCells) {
+        if (!localSearch(search, start, target, bounds, neighborDirection, false, busyCells, getCellVisitListener()))
+            return null;
+
+        List<T> path = new ArrayList<>();
+
+        int startIndex = search.index(start);
+        int index = search.index(target);
+
+        while (index != startIndex) {
+            path.add(getGrid().get(search.getX(index), search.getY(index)));
+            index = search.getParent(index);
+        }
+
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * A* search from source within bounds (inclusive).
+     * If target is null, all reachable cells within bounds are searched.
+     * If backwards, G costs are of moving from the searched cells to the source.
+     *
+     * @return true if target was reached or target is null
+     */
+    private boolean localSearch(AStarSearch search, T source, T target, Bounds bounds,
+                                NeighborDirection neighborDirection, boolean backwards,
+                                List<T> busyCells, CellVisitListener<? super T> visitListener) {
+
+        Heuristic<T> heuristic = (neighborDirection == FOUR_DIRECTIONS) ? defaultHeuristic : diagonalHeuristic;
+
+        search.begin();
+
+        for (T busyCell : busyCells) {
+            search.setBusy(search.index(busyCell));
+        }
+
+        int sourceIndex = search.index(source);
+        int targetIndex = target == null ? -1 : search.index(target);
+
+        search.reset(sourceIndex, target == null ? 0 : heuristic.getCost(source, target));
+        search.open(sourceIndex, 0);
+
+        int numNeighbors = AStarSearch.numNeighbors(neighborDirection);
+
+        while (!search.isOpenEmpty()) {
+            int currentIndex = search.poll();
+
+            if (currentIndex == targetIndex)
+                return true;
+
+            T current = getGrid().get(search.getX(currentIndex), search.getY(currentIndex));
+
+            for (int i = 0; i < numNeighbors; i++) {
+                int x = current.getX() + AStarSearch.NEIGHBOR_DX[i];
+                int y = current.getY() + AStarSearch.NEIGHBOR_DY[i];
+
+                if (!getGrid().isWithin(x, y))
+                    continue;
+
+                T neighbor = getGrid().get(x, y);
+                if (!bounds.contains(neighbor.getX(), neighbor.getY()))
+                    continue;
+
+                int neighborIndex = search.index(neighbor);
+
+                if (search.isBusy(neighborIndex))
+                    continue;
+
+                boolean isTraversable = backwards
+                        ? getGrid().isTraversableInSingleMove(neighbor, current)
+                        : getGrid().isTraversableInSingleMove(current, neighbor);
+
+                if (!isTraversable)
+                    continue;
+
+                visitListener.onVisit(neighbor);
+
+                if (!search.isTouched(neighborIndex)) {
+                    search.reset(neighborIndex, target == null ? 0 : heuristic.getCost(neighbor, target));
+                }
+
+                if (search.isClosed(neighborIndex))
+                    continue;
+
+                int newGCost = search.getGCost(currentIndex) + getMoveCost(current, neighbor, backwards ? current : neighbor);
+
+                if (search.isOpen(neighborIndex)) {
+                    if (newGCost < search.getGCost(neighborIndex)) {
+                        search.setParent(neighborIndex, currentIndex);
+                        search.decreaseGCost(neighborIndex, newGCost);
+                    }
+                } else {
+                    search.setParent(neighborIndex, currentIndex);
+                    search.open(neighborIndex, newGCost);
+                }
+            }
+        }
+
+        return target == null;
+    }
+
+    /**
+     * @param enteredCell the cell whose movement cost is paid
+     */
+    private int getMoveCost(T from, T to, T enteredCell) {
+        boolean isDiagonal = from.getX() != to.getX() && from.getY() != to.getY();
+
+        int cost = isDiagonal
+                ? diagonalHeuristic.getDiagonalWeight()
+                : defaultHeuristic.getWeight();
+
+        return cost * enteredCell.getMovementCost();
+    }
+
+    private int clusterOf(T cell) {
+        return (cell.getY() / clusterSize) * clustersX + cell.getX() / clusterSize;
+    }
+
+    private Bounds clusterBounds(int cluster) {
+        int cx = cluster % clustersX;
+        int cy = cluster / clustersX;
+
+        return new Bounds(
+                cx * clusterSize,
+                cy * clusterSize,
+                Math.min(getGrid().getWidth(), (cx + 1) * clusterSize) - 1,
+                Math.min(getGrid().getHeight(), (cy + 1) * clusterSize) - 1
+        );
+    }
+
+    /**
+     * Entrances and costs between them for a single neighbor direction.
+     */
+    private final class AbstractGraph {
+
+        private final NeighborDirection neighborDirection;
+
+        private final List<List<Node>> clusterNodes = new ArrayList<>();
+
+        /**
+         * Nodes (of all clusters involved) created by each border, see {@link #borderIndex(int, Border)}.
+         */
+        private final List<List<Node>> borderNodes = new ArrayList<>();
+
+        private final boolean[] isDirty;
+        private boolean hasDirty = true;
+
+        private AbstractGraph(NeighborDirection neighborDirection) {
+            this.neighborDirection = neighborDirection;
+
+            int numClusters = clustersX * clustersY;
+
+            for (int i = 0; i < numClusters; i++) {
+                clusterNodes.add(new ArrayList<>());
+            }
+
+            for (int i = 0; i < numClusters * Border.values().length; i++) {
+                borderNodes.add(new ArrayList<>());
+            }
+
+            isDirty = new boolean[numClusters];
+            Arrays.fill(isDirty, true);
+        }
+
+        private void markDirty(int cluster) {
+            isDirty[cluster] = true;
+            hasDirty = true;
+        }
+
+        private int borderIndex(int cluster, Border border) {
+            return cluster * Border.values().length + border.ordinal();
+        }
+
+        /**
+         * Rebuilds borders of dirty clusters and recomputes costs in clusters whose entrances may have changed.
+         */
+        private void update() {
+            if (!hasDirty)
+                return;
+
+            int numClusters = isDirty.length;
+
+            var isBuilt = new boolean[borderNodes.size()];
+            var needsLinking = new boolean[numClusters];
+
+            for (int c = 0; c < numClusters; c++) {
+                if (!isDirty[c])
+                    continue;
+
+                int cx = c % clustersX;
+                int cy = c / clustersX;
+
+                // each cluster owns borders to its right, bottom and bottom-right,
+                // so also rebuild those owned by the clusters to the left, top and top-left
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int x = cx + dx;
+                        int y = cy + dy;
+
+                        if (x < 0 || y < 0 || x >= clustersX || y >= clustersY)
+                            continue;
+
+                        int other = y * clustersX + x;
+
+                        needsLinking[other] = true;
+
+                        if (dx <= 0 && dy <= 0) {
+                            for (var border : Border.values()) {
+                                buildBorder(other, border, isBuilt);
+                            }
+                        }
+                    }
+                }
+            }
+
+            var search = searches.get();
+
+            for (int c = 0; c < numClusters; c++) {
+                if (needsLinking[c]) {
+                    link(search, c);
+                }
+            }
+
+            Arrays.fill(isDirty, false);
+            hasDirty = false;
+        }
+
+        /**
+         * Finds entrances on given border of the cluster.
+         */
+        private void buildBorder(int cluster, Border border, boolean[] isBuilt) {
+            int borderIndex = borderIndex(cluster, border);
+
+            if (isBuilt[borderIndex])
+                return;
+
+            isBuilt[borderIndex] = true;
+
+            var nodes = borderNodes.get(borderIndex);
+
+            for (var node : nodes) {
+                clusterNodes.get(node.cluster).remove(node);
+            }
+
+            nodes.clear();
+
+            int cx = cluster % clustersX;
+            int cy = cluster / clustersX;
+
+            boolean hasRight = cx < clustersX - 1;
+            boolean hasBottom = cy < clustersY - 1;
+
+            var bounds = clusterBounds(cluster);
+
+            if (border == Border.CORNER) {
+                if (hasRight && hasBottom && neighborDirection != FOUR_DIRECTIONS) {
+                    addDiagonalTransition(bounds.maxX, bounds.maxY, bounds.maxX + 1, bounds.maxY + 1, nodes);
+                    addDiagonalTransition(bounds.maxX + 1, bounds.maxY, bounds.maxX, bounds.maxY + 1, nodes);
+                }
+
+                return;
+            }
+
+            boolean isRight = border == Border.RIGHT;
+
+            if ((isRight && !hasRight) || (!isRight && !hasBottom))
+                return;
+
+            // position along the border
+            int from = isRight ? bounds.minY : bounds.minX;
+            int to = isRight ? bounds.maxY : bounds.maxX;
+
+            int runStart = -1;
+
+            for (int i = from; i <= to + 1; i++) {
+                boolean isOpen = i <= to && isOpen(inside(bounds, isRight, i), outside(bounds, isRight, i));
+
+                if (isOpen && runStart == -1) {
+                    runStart = i;
+                } else if (!isOpen && runStart != -1) {
+                    int runEnd = i - 1;
+
+                    if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+                        addTransition(inside(bounds, isRight, runStart), outside(bounds, isRight, runStart), nodes);
+                        addTransition(inside(bounds, isRight, runEnd), outside(bounds, isRight, runEnd), nodes);
+                    } else {
+                        int middle = (runStart + runEnd) / 2;
+
+                        addTransition(inside(bounds, isRight, middle), outside(bounds, isRight, middle), nodes);
+                    }
+
+                    runStart = -1;
+                }
+            }
+
+            if (neighborDirection != FOUR_DIRECTIONS) {
+                for (int i = from; i < to; i++) {
+                    T inside = inside(bounds, isRight, i);
+                    T nextInside = inside(bounds, isRight, i + 1);
+                    T outside = outside(bounds, isRight, i);
+                    T nextOutside = outside(bounds, isRight, i + 1);
+
+                    addDiagonalTransition(inside.getX(), inside.getY(), nextOutside.getX(), nextOutside.getY(), nodes);
+                    addDiagonalTransition(nextInside.getX(), nextInside.getY(), outside.getX(), outside.getY(), nodes);
+                }
+            }
+        }
+
+        private T inside(Bounds bounds, boolean isRight, int i) {
+            return isRight ? getGrid().get(bounds.maxX, i) : getGrid().get(i, bounds.maxY);
+        }
+
+        private T outside(Bounds bounds, boolean isRight, int i) {
+            return isRight ? getGrid().get(bounds.maxX + 1, i) : getGrid().get(i, bounds.maxY + 1);
+        }
+
+        private boolean isOpen(T a, T b) {
+            return getGrid().isTraversableInSingleMove(a, b) && getGrid().isTraversableInSingleMove(b, a);
+        }
+
+        /**
+         * Adds a diagonal transition, unless the cells are also connected via one of the two cells next to both of them,
+         * in which case the orthogonal entrances already connect the clusters.
+         */
+        private void addDiagonalTransition(int x1, int y1, int x2, int y2, List<Node> nodes) {
+            T a = getGrid().get(x1, y1);
+            T b = getGrid().get(x2, y2);
+            T corner1 = getGrid().get(x1, y2);
+            T corner2 = getGrid().get(x2, y1);
+
+            if (!isOpen(a, b))
+                return;
+
+            if ((isOpen(a, corner1) && isOpen(corner1, b)) || (isOpen(a, corner2) && isOpen(corner2, b)))
+                return;
+
+            addTransition(a, b, nodes);
+        }
+
+        private void addTransition(T a, T b, List<Node> nodes) {
+            var nodeA = new Node(a.getX(), a.getY(), clusterOf(a));
+            var nodeB = new Node(b.getX(), b.getY(), clusterOf(b));
+
+            nodeA.edges.add(new Edge(nodeB, getMoveCost(a, b, b), true));
+            nodeB.edges.add(new Edge(nodeA, getMoveCost(b, a, a), true));
+
+            clusterNodes.get(nodeA.cluster).add(nodeA);
+            clusterNodes.get(nodeB.cluster).add(nodeB);
+
+            nodes.add(nodeA);
+            nodes.add(nodeB);
+        }
+
+        /**
+         * Recomputes costs between all entrances of given cluster.
+         */
+        private void link(AStarSearch search, int cluster) {
+            var nodes = clusterNodes.get(cluster);
+            var bounds = clusterBounds(cluster);
+
+            for (var node : nodes) {
+                node.edges.removeIf(edge -> !edge.isInter);
+
+                localSearch(search, getGrid().get(node.x, node.y), null, bounds, neighborDirection, false, Collections.emptyList(), NO_VISITS);
+
+                for (var other : nodes) {
+                    if (other == node)
+                        continue;
+
+                    int index = other.y * getGrid().getWidth() + other.x;
+
+                    if (search.isTouched(index) && search.isClosed(index)) {
+                        node.edges.add(new Edge(other, search.getGCost(index), false));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Borders owned by a cluster.
+     */
+    private enum Border {
+        RIGHT, BOTTOM,
+
+        /**
+         * Bottom-right corner, which only has diagonal entrances.
+         */
+        CORNER
+    }
+
+    private static final class Node {
+        private final int x;
+        private final int y;
+        private final int cluster;
+        private final List<Edge> edges = new ArrayList<>();
+
+        private Node(int x, int y, int cluster) {
+            this.x = x;
+            this.y = y;
+            this.cluster = cluster;
+        }
+    }
+
+    /**
+     * @param isInter true if the edge connects two clusters
+     */
+    private record Edge(Node to, int cost, boolean isInter) { }
+
+    private record Bounds(int minX, int minY, int maxX, int maxY) {
+        boolean contains(int x, int y) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+    }
+
+    private static final class NodeRecord implements Comparable<NodeRecord> {
+        private final Node node;
+        private final NodeRecord parent;
+        private final int g;
+        private final int f;
+        private boolean isClosed = false;
+
+        private NodeRecord(Node node, NodeRecord parent, int g, int f) {
+            this.node = node;
+            this.parent = parent;
+            this.g = g;
+            this.f = f;
+        }
+
+        @Override
+        public int compareTo(NodeRecord other) {
+            return Integer.compare(f, other.f);
+        }
+    }
+}
@@ -10,5 +10,12 @@ package com.almasb.fxgl.physics;
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
 public enum CollisionDetectionStrategy {
-    BRUTE_FORCE, GRID_INDEXING
+    BRUTE_FORCE, GRID_INDEXING,
+
+    /**
+     * Sorts collidable bounds along the X axis and sweeps for overlaps.
+     * Each overlapping pair is checked once and no objects are allocated per frame,
+     * which suits scenes with many moving collidables.
+     */
+    SORT_AND_SWEEP
 }
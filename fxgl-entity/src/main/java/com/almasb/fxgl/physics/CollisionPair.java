@@ -12,6 +12,11 @@ final class CollisionPair extends Pair<Entity> implements Poolable {
 
     private CollisionHandler handler;
 
+    /**
+     * The last collision check frame in which this pair was found colliding.
+     */
+    private int frame;
+
     CollisionPair() {
         super(null, null);
     }
@@ -33,6 +38,14 @@ final class CollisionPair extends Pair<Entity> implements Poolable {
         }
     }
 
+    int getFrame() {
+        return frame;
+    }
+
+    void setFrame(int frame) {
+        this.frame = frame;
+    }
+
     void collisionBegin() {
         handler.onCollisionBegin(getA(), getB());
     }
@@ -48,6 +61,7 @@ final class CollisionPair extends Pair<Entity> implements Poolable {
     @Override
     public void reset() {
         handler = null;
+        frame = 0;
         setA(null);
         setB(null);
     }
@@ -409,6 +409,17 @@ public final class PhysicsComponent extends Component {
 
     private Vec2 minMeters = Pools.obtain(Vec2.class);
 
+    // body state before the last fixed physics step, used for interpolation
+    private float prevX;
+    private float prevY;
+    private float prevAngle;
+
+    void savePreviousState() {
+        prevX = body.getPosition().x;
+        prevY = body.getPosition().y;
+        prevAngle = body.getAngle();
+    }
+
     @Override
     public void onUpdate(double tpf) {
         if (body == null)
@@ -422,9 +433,22 @@ public final class PhysicsComponent extends Component {
         // these give us min world coordinates of the overall bbox
         // but they are not coordinates of the entity
 
+        float x = body.getPosition().x;
+        float y = body.getPosition().y;
+        float angle = body.getAngle();
+
+        // with fixed time step, show the state between the last two physics steps
+        if (getPhysicsWorld().isFixedTimeStep()) {
+            float alpha = (float) getPhysicsWorld().getInterpolationAlpha();
+
+            x = prevX + (x - prevX) * alpha;
+            y = prevY + (y - prevY) * alpha;
+            angle = prevAngle + (angle - prevAngle) * alpha;
+        }
+
         minMeters.set(
-                getBody().getPosition().x - getPhysicsWorld().toMetersF(entity.getWidth() / 2),
-                getBody().getPosition().y + getPhysicsWorld().toMetersF(entity.getHeight() / 2)
+                x - getPhysicsWorld().toMetersF(entity.getWidth() / 2),
+                y + getPhysicsWorld().toMetersF(entity.getHeight() / 2)
         );
 
         Point2D minWorld = getPhysicsWorld().toPoint(minMeters);
@@ -441,7 +465,7 @@ public final class PhysicsComponent extends Component {
                 Math.round(minWorld.getY() - entity.getBoundingBoxComponent().getMinYLocal())
         );
 
-        entity.setRotation(-Math.toDegrees(getBody().getAngle()));
+        entity.setRotation(-Math.toDegrees(angle));
     }
 
     @Override
@@ -465,6 +489,9 @@ public final class PhysicsComponent extends Component {
         ));
 
         getBody().setTransform(positionMeters, getBody().getAngle());
+
+        // teleport, so do not interpolate from the old position
+        savePreviousState();
     }
 
     /**
@@ -475,6 +502,8 @@ public final class PhysicsComponent extends Component {
      */
     public void overwriteAngle(double angDegrees) {
         getBody().setTransform(getBody().getPosition(), (float) -FXGLMath.toRadians(angDegrees));
+
+        savePreviousState();
     }
 
     @Override
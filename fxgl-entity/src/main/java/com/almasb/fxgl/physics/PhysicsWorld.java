@@ -29,9 +29,13 @@ import javafx.geometry.Point2D;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
 /**
  * Manages collision handling and performs the physics tick.
@@ -53,6 +57,17 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
 
     private UnorderedPairMap<Object, CollisionHandler> collisionHandlers = new UnorderedPairMap<>(16);
 
+    /**
+     * Registered handlers as a list, so that they can be iterated without allocation.
+     */
+    private Array<CollisionHandler> collisionHandlerList = new UnorderedArray<>(16);
+
+    /**
+     * Entity types that appear in at least one registered collision handler.
+     * Collidable entities of other types are never checked manually.
+     */
+    private Set<Object> handledTypes = new HashSet<>();
+
     // stores active collisions
     private UnorderedPairMap<Entity, CollisionPair> collisionsMap = new UnorderedPairMap<>(128);
 
@@ -60,6 +75,21 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
 
     private int appHeight;
 
+    private int velocityIterations = 8;
+    private int positionIterations = 3;
+
+    /**
+     * Fixed physics step in seconds, or 0 if physics is stepped by the frame time.
+     */
+    private double fixedTimeStep = 0.0;
+    private int maxSubSteps = 5;
+
+    /**
+     * Frame time not yet consumed by fixed steps.
+     */
+    private double accumulator = 0.0;
+    private double interpolationAlpha = 1.0;
+
     public PhysicsWorld(int appHeight, double ppm) {
         this(appHeight, ppm, CollisionDetectionStrategy.BRUTE_FORCE);
     }
@@ -173,13 +203,145 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
     }
 
     public void onUpdate(double tpf) {
-        jboxWorld.step((float) tpf, 8, 3);
-        postStep();
+        if (isFixedTimeStep()) {
+            stepFixed(tpf);
+        } else {
+            jboxWorld.step((float) tpf, velocityIterations, positionIterations);
+            postStep();
+        }
 
         checkCollisions();
         notifyCollisions();
     }
 
+    private void stepFixed(double tpf) {
+        accumulator += tpf;
+
+        int steps = 0;
+
+        while (accumulator >= fixedTimeStep && steps < maxSubSteps) {
+            savePreviousStates();
+
+            jboxWorld.step((float) fixedTimeStep, velocityIterations, positionIterations);
+            postStep();
+
+            accumulator -= fixedTimeStep;
+            steps++;
+        }
+
+        // if we cannot keep up, drop the remaining whole steps rather than falling further behind
+        if (accumulator >= fixedTimeStep) {
+            accumulator %= fixedTimeStep;
+        }
+
+        interpolationAlpha = accumulator / fixedTimeStep;
+    }
+
+    private void savePreviousStates() {
+        Array<Body> bodies = jboxWorld.getBodies();
+
+        for (int i = 0; i < bodies.size(); i++) {
+            Entity e = bodies.get(i).getEntity();
+
+            if (e != null && e.hasComponent(PhysicsComponent.class)) {
+                e.getComponent(PhysicsComponent.class).savePreviousState();
+            }
+        }
+    }
+
+    /**
+     * @return true if physics is stepped with a fixed time step
+     */
+    public boolean isFixedTimeStep() {
+        return fixedTimeStep > 0;
+    }
+
+    /**
+     * Sets the fixed physics time step.
+     * Frame time is accumulated and the physics world is stepped in fixed increments,
+     * while entity transforms are interpolated between the last two physics states.
+     * This decouples physics rate from frame rate, e.g. 30 Hz physics at 144 Hz rendering.
+     * Pass 0 to step physics with the frame time (default).
+     *
+     * @param fixedTimeStep step in seconds, e.g. 1.0 / 60
+     */
+    public void setFixedTimeStep(double fixedTimeStep) {
+        if (fixedTimeStep < 0)
+            throw new IllegalArgumentException("Fixed time step must not be negative: " + fixedTimeStep);
+
+        this.fixedTimeStep = fixedTimeStep;
+        accumulator = 0.0;
+        interpolationAlpha = 1.0;
+    }
+
+    public double getFixedTimeStep() {
+        return fixedTimeStep;
+    }
+
+    /**
+     * Sets max number of fixed steps per frame.
+     * If a frame takes longer, the extra time is dropped, which slows the simulation down
+     * rather than making each subsequent frame even slower.
+     *
+     * @param maxSubSteps max number of fixed steps per frame
+     */
+    public void setMaxSubSteps(int maxSubSteps) {
+        if (maxSubSteps < 1)
+            throw new IllegalArgumentException("Max sub steps must be positive: " + maxSubSteps);
+
+        this.maxSubSteps = maxSubSteps;
+    }
+
+    public int getMaxSubSteps() {
+        return maxSubSteps;
+    }
+
+    /**
+     * @param velocityIterations number of velocity constraint solver iterations per step, default 8
+     */
+    public void setVelocityIterations(int velocityIterations) {
+        this.velocityIterations = velocityIterations;
+    }
+
+    public int getVelocityIterations() {
+        return velocityIterations;
+    }
+
+    /**
+     * @param positionIterations number of position constraint solver iterations per step, default 3
+     */
+    public void setPositionIterations(int positionIterations) {
+        this.positionIterations = positionIterations;
+    }
+
+    public int getPositionIterations() {
+        return positionIterations;
+    }
+
+    /**
+     * Enables or disables solving independent groups of touching bodies (islands) in parallel
+     * on the common fork join pool.
+     * This helps levels with many independent bodies, e.g. lots of separate piles of objects.
+     * Collision callbacks are still delivered on the game thread and in the same order.
+     *
+     * @param parallelIslandSolving true to solve islands in parallel
+     */
+    public void setParallelIslandSolving(boolean parallelIslandSolving) {
+        jboxWorld.setIslandSolverPool(parallelIslandSolving ? ForkJoinPool.commonPool() : null);
+    }
+
+    public boolean isParallelIslandSolving() {
+        return jboxWorld.getIslandSolverPool() != null;
+    }
+
+    /**
+     * @return how far (in range [0..1]) the current time is between the last two fixed physics steps,
+     * 1 if fixed time step is not used
+     */
+    public double getInterpolationAlpha() {
+        return interpolationAlpha;
+    }
+
     private void postStep() {
         for (Entity e : delayedBodiesAdd)
             createBody(e);
@@ -201,10 +363,13 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
 
         entities.clear();
         collisionsMap.clear();
+        sweepAndPrune.clear();
     }
 
     public void clearCollisionHandlers() {
         collisionHandlers.clear();
+        collisionHandlerList.clear();
+        handledTypes.clear();
     }
 
     @Override
@@ -336,11 +501,29 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
     @Override
     public void postSolve(Contact contact, ContactImpulse impulse) { }
 
-    private Array<Entity> collidables = new UnorderedArray<>(128);
+    /**
+     * Collidable entities of handled types, bucketed by type.
+     * Buckets are reused between frames.
+     */
+    private Map<Object, Array<Entity>> collidablesByType = new HashMap<>();
+
+    /**
+     * Buckets filled in the current frame, so that they can be cleared without iterating the map.
+     */
+    private Array<Array<Entity>> usedCollidableBuckets = new UnorderedArray<>();
+
     private CollisionResult collisionResult = new CollisionResult();
 
     private CollisionGrid collisionGrid = new CollisionGrid(64, 64);
 
+    private SweepAndPrune sweepAndPrune = new SweepAndPrune();
+    private BiConsumer<Entity, Entity> sweepPairCallback = this::checkCollisionPair;
+
+    /**
+     * Incremented on each collision check, used to find pairs that were not found colliding in a check.
+     */
+    private int collisionFrame = 0;
+
     /**
      * Perform collision detection for all entities that have
      * setCollidable(true) and if at least one entity does not have PhysicsComponent.
@@ -348,9 +531,26 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
      * setCollidable(true).
      */
     private void checkCollisions() {
-        if (strategy == CollisionDetectionStrategy.GRID_INDEXING) {
+        collisionFrame++;
+
+        if (strategy == CollisionDetectionStrategy.SORT_AND_SWEEP) {
+            sweepAndPrune.beginFrame();
+
+            for (Entity e : entities) {
+                if (isCollidable(e) && handledTypes.contains(e.getType())) {
+                    e.getBoundingBoxComponent().applyTransformToHitBoxes$fxgl_entity();
+                    sweepAndPrune.insert(e);
+                }
+            }
+
+            sweepAndPrune.findPairs(sweepPairCallback);
+
+            // pairs whose bounds no longer overlap were not checked, so end them here
+            endStaleManualCollisions();
+
+        } else if (strategy == CollisionDetectionStrategy.GRID_INDEXING) {
             for (Entity e : entities) {
-                if (isCollidable(e)) {
+                if (isCollidable(e) && handledTypes.contains(e.getType())) {
                     e.getBoundingBoxComponent().applyTransformToHitBoxes$fxgl_entity();
                     collisionGrid.insert(e);
                 }
@@ -364,15 +564,59 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
 
         } else {
             for (Entity e : entities) {
-                if (isCollidable(e)) {
+                if (isCollidable(e) && handledTypes.contains(e.getType())) {
                     e.getBoundingBoxComponent().applyTransformToHitBoxes$fxgl_entity();
-                    collidables.add(e);
+
+                    Array<Entity> bucket = collidablesByType.computeIfAbsent(e.getType(), t -> new UnorderedArray<>());
+                    if (bucket.isEmpty())
+                        usedCollidableBuckets.add(bucket);
+
+                    bucket.add(e);
                 }
             }
 
-            checkCollisionsInGroup(collidables);
+            // only pairs of types with a registered handler are ever checked
+            for (int i = 0; i < collisionHandlerList.size(); i++) {
+                CollisionHandler handler = collisionHandlerList.get(i);
+
+                Array<Entity> group1 = collidablesByType.get(handler.getA());
+                Array<Entity> group2 = collidablesByType.get(handler.getB());
 
-            collidables.clear();
+                if (group1 == null || group2 == null)
+                    continue;
+
+                if (group1 == group2) {
+                    checkCollisionsInGroup(handler, group1);
+                } else {
+                    checkCollisionsBetweenGroups(handler, group1, group2);
+                }
+            }
+
+            for (int i = 0; i < usedCollidableBuckets.size(); i++) {
+                usedCollidableBuckets.get(i).clear();
+            }
+
+            usedCollidableBuckets.clear();
+        }
+    }
+
+    private void checkCollisionsInGroup(CollisionHandler handler, Array<Entity> group) {
+        for (int i = 0; i < group.size(); i++) {
+            Entity e1 = group.get(i);
+
+            for (int j = i + 1; j < group.size(); j++) {
+                checkCollisionPair(handler, e1, group.get(j));
+            }
+        }
+    }
+
+    private void checkCollisionsBetweenGroups(CollisionHandler handler, Array<Entity> group1, Array<Entity> group2) {
+        for (int i = 0; i < group1.size(); i++) {
+            Entity e1 = group1.get(i);
+
+            for (int j = 0; j < group2.size(); j++) {
+                checkCollisionPair(handler, e1, group2.get(j));
+            }
         }
     }
 
@@ -383,29 +627,52 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
             for (int j = i + 1; j < group.size(); j++) {
                 Entity e2 = group.get(j);
 
-                CollisionHandler handler = getHandler(e1, e2);
+                checkCollisionPair(e1, e2);
+            }
+        }
+    }
+
+    private void checkCollisionPair(Entity e1, Entity e2) {
+        CollisionHandler handler = getHandler(e1, e2);
 
-                // if no handler registered, no need to check for this pair
-                if (handler == null)
-                    continue;
+        // if no handler registered, no need to check for this pair
+        if (handler == null)
+            return;
 
-                // if no need for manual check, let jbox handle it
-                if (!needManualCheck(e1, e2)) {
-                    continue;
-                }
+        checkCollisionPair(handler, e1, e2);
+    }
 
-                // check if e1 ignores e2, or e2 ignores e1
-                if (isIgnored(e1, e2))
-                    continue;
+    private void checkCollisionPair(CollisionHandler handler, Entity e1, Entity e2) {
+        // if no need for manual check, let jbox handle it
+        if (!needManualCheck(e1, e2))
+            return;
 
-                // check if colliding
-                var collision = e1.getBoundingBoxComponent().checkCollisionPAT(e2.getBoundingBoxComponent(), collisionResult);
+        // check if e1 ignores e2, or e2 ignores e1
+        if (isIgnored(e1, e2))
+            return;
 
-                if (collision) {
-                    collisionBeginFor(handler, e1, e2, collisionResult.getBoxA(), collisionResult.getBoxB());
-                } else {
-                    collisionEndFor(e1, e2);
-                }
+        // check if colliding
+        var collision = e1.getBoundingBoxComponent().checkCollisionPAT(e2.getBoundingBoxComponent(), collisionResult);
+
+        if (collision) {
+            collisionBeginFor(handler, e1, e2, collisionResult.getBoxA(), collisionResult.getBoxB());
+        } else {
+            collisionEndFor(e1, e2);
+        }
+    }
+
+    /**
+     * Ends manually checked collisions that were not found colliding in the current check.
+     */
+    private void endStaleManualCollisions() {
+        for (Iterator<CollisionPair> it = collisionsMap.getValues().iterator(); it.hasNext(); ) {
+            CollisionPair pair = it.next();
+
+            if (pair.getFrame() != collisionFrame && needManualCheck(pair.getA(), pair.getB())) {
+                pair.collisionEnd();
+
+                it.remove();
+                Pools.free(pair);
             }
         }
     }
@@ -436,11 +703,16 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
     private void collisionBeginFor(CollisionHandler handler, Entity e1, Entity e2, HitBox a, HitBox b) {
         CollisionPair pair = collisionsMap.get(e1, e2);
 
+        if (pair != null) {
+            pair.setFrame(collisionFrame);
+        }
+
         // null means e1 and e2 were not colliding before
         // if not null, then ignore because e1 and e2 are still colliding
         if (pair == null) {
             pair = Pools.obtain(CollisionPair.class);
             pair.init(e1, e2, handler);
+            pair.setFrame(collisionFrame);
 
             // add pair to list of collisions so we still use it
             collisionsMap.put(pair.getA(), pair.getB(), pair);
@@ -512,7 +784,16 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
      * @param handler collision handler
      */
     public void addCollisionHandler(CollisionHandler handler) {
+        CollisionHandler existing = collisionHandlers.get(handler.getA(), handler.getB());
+        if (existing != null) {
+            collisionHandlerList.removeValueByIdentity(existing);
+        }
+
         collisionHandlers.put(handler.getA(), handler.getB(), handler);
+        collisionHandlerList.add(handler);
+
+        handledTypes.add(handler.getA());
+        handledTypes.add(handler.getB());
     }
 
     /**
@@ -521,7 +802,18 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
      * @param handler collision handler to remove
      */
     public void removeCollisionHandler(CollisionHandler handler) {
+        CollisionHandler existing = collisionHandlers.get(handler.getA(), handler.getB());
+        if (existing == null)
+            return;
+
         collisionHandlers.remove(handler.getA(), handler.getB());
+        collisionHandlerList.removeValueByIdentity(existing);
+
+        handledTypes.clear();
+        for (int i = 0; i < collisionHandlerList.size(); i++) {
+            handledTypes.add(collisionHandlerList.get(i).getA());
+            handledTypes.add(collisionHandlerList.get(i).getB());
+        }
     }
 
     /**
@@ -559,6 +851,7 @@ public final class PhysicsWorld implements EntityWorldListener, ContactListener,
         createSensors(e);
 
         physics.body.setEntity(e);
+        physics.savePreviousState();
         physics.onInitPhysics();
     }
 
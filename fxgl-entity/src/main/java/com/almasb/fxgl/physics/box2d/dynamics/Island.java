@@ -145,6 +145,7 @@ class Island {
     private ContactListener listener;
 
     private Body[] bodies;
+    private Body[] staticBodies;
     private Contact[] contacts;
     private Joint[] joints;
 
@@ -152,6 +153,7 @@ class Island {
     private Velocity[] velocities;
 
     private int bodyCount;
+    private int staticBodyCount;
     private int jointCount;
     private int contactCount;
 
@@ -174,6 +176,10 @@ class Island {
         if (contacts == null || contactCapacity > contacts.length) {
             contacts = new Contact[contactCapacity];
         }
+        // each static body is reached via a contact or a joint
+        if (staticBodies == null || contactCapacity + jointCapacity > staticBodies.length) {
+            staticBodies = new Body[contactCapacity + jointCapacity];
+        }
 
         // dynamic array
         if (velocities == null || bodyCapacity > velocities.length) {
@@ -198,6 +204,7 @@ class Island {
 
     void clear() {
         bodyCount = 0;
+        staticBodyCount = 0;
         contactCount = 0;
         jointCount = 0;
     }
@@ -250,6 +257,20 @@ class Island {
             velocities[i].w = w;
         }
 
+        // Static bodies added via addStatic() use their preassigned solver slots.
+        // They are only read here, so they can be shared with islands solved concurrently.
+        for (int i = 0; i < staticBodyCount; ++i) {
+            final Body b = staticBodies[i];
+            final int index = b.m_islandIndex;
+
+            positions[index].c.x = b.m_sweep.c.x;
+            positions[index].c.y = b.m_sweep.c.y;
+            positions[index].a = b.m_sweep.a;
+            velocities[index].v.x = b.getLinearVelocity().x;
+            velocities[index].v.y = b.getLinearVelocity().y;
+            velocities[index].w = b.getAngularVelocity();
+        }
+
         // Solver data
         solverData.step = step;
         solverData.positions = positions;
@@ -493,6 +514,16 @@ class Island {
         ++bodyCount;
     }
 
+    /**
+     * Adds a static body without assigning its island index.
+     * The caller sets the index of the body to a slot that is unique among
+     * all static bodies and not used by any non-static body of this island.
+     * The same static body may be added more than once.
+     */
+    void addStatic(Body body) {
+        staticBodies[staticBodyCount++] = body;
+    }
+
     void add(Contact contact) {
         contacts[contactCount++] = contact;
     }
@@ -530,6 +561,28 @@ class Island {
         }
     }
 
+    /**
+     * Copies contact impulses of the last solve to given buffer, starting at given offset.
+     * Each contact takes 1 + 2 * maxManifoldPoints floats: point count, normal impulses and tangent impulses.
+     */
+    void copyImpulses(float[] buffer, int offset) {
+        ContactVelocityConstraint[] constraints = contactSolver.getVelocityConstraints();
+
+        int stride = 1 + 2 * maxManifoldPoints;
+
+        for (int i = 0; i < contactCount; ++i) {
+            ContactVelocityConstraint vc = constraints[i];
+
+            int index = offset + i * stride;
+
+            buffer[index] = vc.pointCount;
+            for (int j = 0; j < vc.pointCount; ++j) {
+                buffer[index + 1 + j] = vc.points[j].normalImpulse;
+                buffer[index + 1 + maxManifoldPoints + j] = vc.points[j].tangentImpulse;
+            }
+        }
+    }
+
     void resetFlagsAndSynchronizeBroadphaseProxies() {
         for (int i = 0; i < bodyCount; ++i) {
             Body body = bodies[i];
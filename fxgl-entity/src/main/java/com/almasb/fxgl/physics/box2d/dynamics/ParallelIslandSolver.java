@@ -0,0 +1,467 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.physics.box2d.dynamics;
+
+import com.almasb.fxgl.core.collection.Array;
+import com.almasb.fxgl.core.math.Vec2;
+import com.almasb.fxgl.physics.box2d.callbacks.ContactImpulse;
+import com.almasb.fxgl.physics.box2d.callbacks.ContactListener;
+import com.almasb.fxgl.physics.box2d.dynamics.contacts.Contact;
+import com.almasb.fxgl.physics.box2d.dynamics.contacts.ContactEdge;
+import com.almasb.fxgl.physics.box2d.dynamics.joints.Joint;
+import com.almasb.fxgl.physics.box2d.dynamics.joints.JointEdge;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.almasb.fxgl.physics.box2d.common.JBoxSettings.maxManifoldPoints;
+
+/**
+ * Solves islands of a world in parallel.
+ * All islands are first collected on the calling thread using the same traversal as the sequential solver.
+ * Islands that consist of contacts only are then split into chunks, each solved by its own Island on a fork join pool.
+ * Islands with joints are solved on the calling thread, since joints use the (single-threaded) world pool.
+ *
+ * Static bodies may be shared by many islands, so they are never part of an island's bodies.
+ * Instead, each static body gets a solver slot that is the same in every island, and is only read during solving.
+ *
+ * Post solve callbacks are buffered and delivered on the calling thread in island order,
+ * which is the same order as with sequential solving.
+ *
+ * This is an internal class.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+final class ParallelIslandSolver {
+
+    /**
+     * Steps with fewer islands are solved on the calling thread.
+     */
+    private static final int MIN_PARALLEL_ISLANDS = 4;
+
+    private final ForkJoinPool executor;
+
+    private final Island island = new Island();
+
+    private ChunkTask[] tasks = new ChunkTask[0];
+
+    // islands are stored as consecutive ranges of these arrays
+    private Body[] islandBodies = new Body[16];
+    private Body[] islandStatics = new Body[16];
+    private Contact[] islandContacts = new Contact[16];
+    private Joint[] islandJoints = new Joint[16];
+
+    /**
+     * For each island: end of its bodies, statics, contacts and joints ranges.
+     */
+    private int[] islandEnds = new int[16 * 4];
+    private int islandCount;
+
+    private int bodyCount;
+    private int staticCount;
+    private int contactCount;
+    private int jointCount;
+
+    /**
+     * Distinct static bodies reached this step, index in this array is the static body's slot.
+     */
+    private Body[] touchedStatics = new Body[16];
+    private int touchedStaticCount;
+
+    private int[] contactOnlyIslands = new int[16];
+    private int contactOnlyIslandCount;
+
+    private Body[] stack = new Body[16];
+
+    private float[] impulses = new float[0];
+    private final ContactImpulse impulse = new ContactImpulse();
+
+    // max sizes of a single island this step
+    private int maxIslandBodies;
+    private int maxIslandContacts;
+    private int maxIslandJoints;
+
+    private TimeStep step;
+    private Vec2 gravity;
+    private boolean allowSleep;
+
+    ParallelIslandSolver(ForkJoinPool executor) {
+        this.executor = executor;
+    }
+
+    ForkJoinPool getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Solves all awake islands.
+     * Island flags of bodies, contacts and joints must be cleared before this call.
+     */
+    void solve(TimeStep step, Array<Body> bodies, Vec2 gravity, boolean allowSleep, ContactListener listener) {
+        this.step = step;
+        this.gravity = gravity;
+        this.allowSleep = allowSleep;
+
+        collectIslands(bodies);
+
+        if (islandCount == 0)
+            return;
+
+        assignStaticSlots();
+
+        int stride = 1 + 2 * maxManifoldPoints;
+        boolean reportImpulses = listener != null;
+
+        if (reportImpulses && impulses.length < contactCount * stride) {
+            impulses = new float[contactCount * stride];
+        }
+
+        int taskCount = contactOnlyIslandCount < MIN_PARALLEL_ISLANDS
+                ? 0
+                : Math.min(executor.getParallelism(), contactOnlyIslandCount);
+
+        ensureTasks(taskCount);
+
+        // islands are dealt out round robin, which keeps chunks similar in size
+        for (int i = 0; i < taskCount; i++) {
+            ChunkTask task = tasks[i];
+            task.reinitialize();
+            task.first = i;
+            task.increment = taskCount;
+            task.reportImpulses = reportImpulses;
+
+            executor.execute(task);
+        }
+
+        // solve the rest on this thread while the chunks are being solved
+        initIsland(island);
+
+        for (int i = 0; i < islandCount; i++) {
+            if (taskCount == 0 || hasJoints(i)) {
+                solveIsland(island, i, reportImpulses);
+            }
+        }
+
+        for (int i = 0; i < taskCount; i++) {
+            tasks[i].join();
+        }
+
+        resetStatics();
+
+        if (reportImpulses) {
+            reportImpulses(listener, stride);
+        }
+
+        clearReferences();
+    }
+
+    private void collectIslands(Array<Body> bodies) {
+        islandCount = 0;
+        bodyCount = 0;
+        staticCount = 0;
+        contactCount = 0;
+        jointCount = 0;
+        touchedStaticCount = 0;
+        contactOnlyIslandCount = 0;
+
+        maxIslandBodies = 0;
+        maxIslandContacts = 0;
+        maxIslandJoints = 0;
+
+        if (stack.length < bodies.size()) {
+            stack = new Body[bodies.size()];
+        }
+
+        for (int s = 0; s < bodies.size(); s++) {
+            Body seed = bodies.get(s);
+
+            if (seed.isIslandFlagOn2()) {
+                continue;
+            }
+
+            if (!seed.isAwake() || !seed.isActive()) {
+                continue;
+            }
+
+            // The seed can be dynamic or kinematic.
+            if (seed.getType() == BodyType.STATIC) {
+                continue;
+            }
+
+            int bodyStart = bodyCount;
+            int contactStart = contactCount;
+            int jointStart = jointCount;
+
+            int stackCount = 0;
+            stack[stackCount++] = seed;
+            seed.setIslandFlag(true);
+
+            // same depth first search as World.solve(), except that static bodies are recorded separately
+            while (stackCount > 0) {
+                Body b = stack[--stackCount];
+
+                addBody(b);
+
+                b.setAwake(true);
+
+                for (ContactEdge ce = b.m_contactList; ce != null; ce = ce.next) {
+                    Contact contact = ce.contact;
+
+                    if ((contact.m_flags & Contact.ISLAND_FLAG) == Contact.ISLAND_FLAG) {
+                        continue;
+                    }
+
+                    if (!contact.isEnabled() || !contact.isTouching()) {
+                        continue;
+                    }
+
+                    if (contact.m_fixtureA.isSensor() || contact.m_fixtureB.isSensor()) {
+                        continue;
+                    }
+
+                    addContact(contact);
+                    contact.m_flags |= Contact.ISLAND_FLAG;
+
+                    Body other = ce.other;
+
+                    if (other.getType() == BodyType.STATIC) {
+                        addStatic(other);
+                        continue;
+                    }
+
+                    if (other.isIslandFlagOn2()) {
+                        continue;
+                    }
+
+                    stack[stackCount++] = other;
+                    other.setIslandFlag(true);
+                }
+
+                for (JointEdge je = b.m_jointList; je != null; je = je.next) {
+                    if (je.joint.m_islandFlag) {
+                        continue;
+                    }
+
+                    Body other = je.other;
+
+                    if (!other.isActive()) {
+                        continue;
+                    }
+
+                    addJoint(je.joint);
+                    je.joint.m_islandFlag = true;
+
+                    if (other.getType() == BodyType.STATIC) {
+                        addStatic(other);
+                        continue;
+                    }
+
+                    if (other.isIslandFlagOn2()) {
+                        continue;
+                    }
+
+                    stack[stackCount++] = other;
+                    other.setIslandFlag(true);
+                }
+            }
+
+            endIsland(bodyStart, contactStart, jointStart);
+        }
+    }
+
+    private void addBody(Body body) {
+        if (bodyCount == islandBodies.length) {
+            islandBodies = Arrays.copyOf(islandBodies, bodyCount * 2);
+        }
+
+        islandBodies[bodyCount++] = body;
+    }
+
+    private void addContact(Contact contact) {
+        if (contactCount == islandContacts.length) {
+            islandContacts = Arrays.copyOf(islandContacts, contactCount * 2);
+        }
+
+        islandContacts[contactCount++] = contact;
+    }
+
+    private void addJoint(Joint joint) {
+        if (jointCount == islandJoints.length) {
+            islandJoints = Arrays.copyOf(islandJoints, jointCount * 2);
+        }
+
+        islandJoints[jointCount++] = joint;
+    }
+
+    private void addStatic(Body body) {
+        // the island flag of a static body marks that it already has a slot this step
+        if (body.isIslandFlagOff()) {
+            body.setIslandFlag(true);
+
+            if (touchedStaticCount == touchedStatics.length) {
+                touchedStatics = Arrays.copyOf(touchedStatics, touchedStaticCount * 2);
+            }
+
+            body.m_islandIndex = touchedStaticCount;
+            touchedStatics[touchedStaticCount++] = body;
+        }
+
+        if (staticCount == islandStatics.length) {
+            islandStatics = Arrays.copyOf(islandStatics, staticCount * 2);
+        }
+
+        islandStatics[staticCount++] = body;
+    }
+
+    private void endIsland(int bodyStart, int contactStart, int jointStart) {
+        if ((islandCount + 1) * 4 > islandEnds.length) {
+            islandEnds = Arrays.copyOf(islandEnds, islandEnds.length * 2);
+        }
+
+        int index = islandCount * 4;
+        islandEnds[index] = bodyCount;
+        islandEnds[index + 1] = staticCount;
+        islandEnds[index + 2] = contactCount;
+        islandEnds[index + 3] = jointCount;
+
+        maxIslandBodies = Math.max(maxIslandBodies, bodyCount - bodyStart);
+        maxIslandContacts = Math.max(maxIslandContacts, contactCount - contactStart);
+        maxIslandJoints = Math.max(maxIslandJoints, jointCount - jointStart);
+
+        if (jointCount == jointStart) {
+            if (contactOnlyIslandCount == contactOnlyIslands.length) {
+                contactOnlyIslands = Arrays.copyOf(contactOnlyIslands, contactOnlyIslandCount * 2);
+            }
+
+            contactOnlyIslands[contactOnlyIslandCount++] = islandCount;
+        }
+
+        islandCount++;
+    }
+
+    /**
+     * Static slots follow the slots of non-static bodies of the largest island,
+     * so they never clash with island local indices.
+     */
+    private void assignStaticSlots() {
+        for (int i = 0; i < touchedStaticCount; i++) {
+            touchedStatics[i].m_islandIndex += maxIslandBodies;
+        }
+    }
+
+    private void resetStatics() {
+        // Allow static bodies to participate in islands next step.
+        for (int i = 0; i < touchedStaticCount; i++) {
+            touchedStatics[i].setIslandFlag(false);
+        }
+    }
+
+    private boolean hasJoints(int islandIndex) {
+        int jointStart = islandIndex == 0 ? 0 : islandEnds[(islandIndex - 1) * 4 + 3];
+
+        return islandEnds[islandIndex * 4 + 3] > jointStart;
+    }
+
+    private void initIsland(Island island) {
+        // listener is not passed, impulses are reported after all islands are solved
+        island.init(maxIslandBodies + touchedStaticCount, maxIslandContacts, maxIslandJoints, null);
+    }
+
+    private void solveIsland(Island island, int islandIndex, boolean reportImpulses) {
+        int prev = (islandIndex - 1) * 4;
+
+        int bodyStart = islandIndex == 0 ? 0 : islandEnds[prev];
+        int staticStart = islandIndex == 0 ? 0 : islandEnds[prev + 1];
+        int contactStart = islandIndex == 0 ? 0 : islandEnds[prev + 2];
+        int jointStart = islandIndex == 0 ? 0 : islandEnds[prev + 3];
+
+        int end = islandIndex * 4;
+
+        island.clear();
+
+        for (int i = bodyStart; i < islandEnds[end]; i++) {
+            island.add(islandBodies[i]);
+        }
+
+        for (int i = staticStart; i < islandEnds[end + 1]; i++) {
+            island.addStatic(islandStatics[i]);
+        }
+
+        for (int i = contactStart; i < islandEnds[end + 2]; i++) {
+            island.add(islandContacts[i]);
+        }
+
+        for (int i = jointStart; i < islandEnds[end + 3]; i++) {
+            island.add(islandJoints[i]);
+        }
+
+        island.solve(step, gravity, allowSleep);
+
+        if (reportImpulses) {
+            island.copyImpulses(impulses, contactStart * (1 + 2 * maxManifoldPoints));
+        }
+    }
+
+    private void reportImpulses(ContactListener listener, int stride) {
+        for (int i = 0; i < contactCount; i++) {
+            int index = i * stride;
+
+            impulse.count = (int) impulses[index];
+            for (int j = 0; j < impulse.count; j++) {
+                impulse.normalImpulses[j] = impulses[index + 1 + j];
+                impulse.tangentImpulses[j] = impulses[index + 1 + maxManifoldPoints + j];
+            }
+
+            listener.postSolve(islandContacts[i], impulse);
+        }
+    }
+
+    private void ensureTasks(int count) {
+        if (tasks.length < count) {
+            ChunkTask[] newTasks = Arrays.copyOf(tasks, count);
+
+            for (int i = tasks.length; i < count; i++) {
+                newTasks[i] = new ChunkTask();
+            }
+
+            tasks = newTasks;
+        }
+    }
+
+    private void clearReferences() {
+        Arrays.fill(islandBodies, 0, bodyCount, null);
+        Arrays.fill(islandStatics, 0, staticCount, null);
+        Arrays.fill(islandContacts, 0, contactCount, null);
+        Arrays.fill(islandJoints, 0, jointCount, null);
+        Arrays.fill(touchedStatics, 0, touchedStaticCount, null);
+
+        step = null;
+        gravity = null;
+    }
+
+    /**
+     * Solves every increment-th contact only island, starting from first, with its own Island.
+     */
+    private final class ChunkTask extends RecursiveAction {
+
+        private final Island island = new Island();
+
+        private int first;
+        private int increment;
+        private boolean reportImpulses;
+
+        @Override
+        protected void compute() {
+            initIsland(island);
+
+            for (int i = first; i < contactOnlyIslandCount; i += increment) {
+                solveIsland(island, contactOnlyIslands[i], reportImpulses);
+            }
+        }
+    }
+}
@@ -31,6 +31,8 @@ import com.almasb.fxgl.physics.box2d.particle.*;
 import com.almasb.fxgl.physics.box2d.pooling.DefaultWorldPool;
 import com.almasb.fxgl.physics.box2d.pooling.IWorldPool;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * The world class manages all physics entities, dynamic simulation, and asynchronous queries.
  * The world also contains efficient memory management facilities.
@@ -296,15 +298,17 @@ public final class World {
     private final Island island = new Island();
     private Body[] stack = new Body[10];
 
+    /**
+     * Non-null if islands are solved in parallel.
+     */
+    private ParallelIslandSolver parallelIslandSolver = null;
+
     private void solve(TimeStep step) {
         // update previous transforms
         for (Body b : bodies) {
             b.m_xf0.set(b.m_xf);
         }
 
-        // Size the island for the worst case.
-        island.init(getBodyCount(), contactManager.contactCount, getJointCount(), contactManager.getContactListener());
-
         // Clear all the island flags.
         for (Body b : bodies) {
             b.setIslandFlag(false);
@@ -316,6 +320,35 @@ public final class World {
             j.m_islandFlag = false;
         }
 
+        if (parallelIslandSolver != null) {
+            parallelIslandSolver.solve(step, bodies, gravity, allowSleep, contactManager.getContactListener());
+        } else {
+            solveIslands(step);
+        }
+
+        // Synchronize fixtures, check for out of range bodies.
+        for (Body b : bodies) {
+            // If a body was not in an island then it did not move.
+            if (b.isIslandFlagOff()) {
+                continue;
+            }
+
+            if (b.getType() == BodyType.STATIC) {
+                continue;
+            }
+
+            // Update fixtures (for broad-phase).
+            b.synchronizeFixtures();
+        }
+
+        // Look for new contacts.
+        contactManager.findNewContacts();
+    }
+
+    private void solveIslands(TimeStep step) {
+        // Size the island for the worst case.
+        island.init(getBodyCount(), contactManager.contactCount, getJointCount(), contactManager.getContactListener());
+
         // Build and simulate all awake islands.
         int stackSize = getBodyCount();
         if (stack.length < stackSize) {
@@ -423,24 +456,6 @@ public final class World {
 
             island.postSolveCleanup();
         }
-
-        // Synchronize fixtures, check for out of range bodies.
-        for (Body b : bodies) {
-            // If a body was not in an island then it did not move.
-            if (b.isIslandFlagOff()) {
-                continue;
-            }
-
-            if (b.getType() == BodyType.STATIC) {
-                continue;
-            }
-
-            // Update fixtures (for broad-phase).
-            b.synchronizeFixtures();
-        }
-
-        // Look for new contacts.
-        contactManager.findNewContacts();
     }
 
     private final Island toiIsland = new Island();
@@ -1202,6 +1217,29 @@ public final class World {
         particleDestructionListener = listener;
     }
 
+    /**
+     * Enables solving independent islands in parallel using given pool,
+     * or disables it if the pool is null (default).
+     * Contact listener callbacks are still delivered on the thread that calls {@link #step(float, int, int)},
+     * in the same order as with sequential solving.
+     * Post solve callbacks are delivered after all islands are solved, rather than after each island.
+     * This function is locked during callbacks.
+     *
+     * @param executor pool to solve islands on, or null to solve islands sequentially
+     */
+    public void setIslandSolverPool(ForkJoinPool executor) {
+        assertNotLocked();
+
+        parallelIslandSolver = executor != null ? new ParallelIslandSolver(executor) : null;
+    }
+
+    /**
+     * @return pool used to solve islands in parallel, or null if islands are solved sequentially
+     */
+    public ForkJoinPool getIslandSolverPool() {
+        return parallelIslandSolver != null ? parallelIslandSolver.getExecutor() : null;
+    }
+
     public boolean isAllowSleep() {
         return allowSleep;
     }
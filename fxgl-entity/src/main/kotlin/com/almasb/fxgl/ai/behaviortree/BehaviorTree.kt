@@ -7,6 +7,7 @@
 package com.almasb.fxgl.ai.behaviortree
 
 import com.almasb.fxgl.entity.Entity
+import java.util.*
 
 /**
  * Status returned by behavior tree nodes.
@@ -19,22 +20,197 @@ enum class BehaviorStatus {
 
 /**
  * Context object passed to behavior tree nodes containing entity and other data.
+ * A context holds everything that is specific to one agent, including the running state of nodes
+ * (see [BehaviorNode.getIntState]), so a single tree can be shared by any number of agents,
+ * each with its own context.
  */
 data class BehaviorContext(
     val entity: Entity,
-    val blackboard: MutableMap<String, Any> = mutableMapOf()
-)
+    val blackboard: Blackboard = Blackboard()
+) {
+
+    /**
+     * The blackboard keeps its values in given map, see [Blackboard].
+     */
+    constructor(entity: Entity, blackboard: MutableMap<String, Any>) : this(entity, Blackboard(blackboard))
+
+    /**
+     * Time (in seconds) since the previous tick of the tree for this agent.
+     */
+    var deltaTime = 0.016
+
+    /**
+     * Total time (in seconds) the tree has been ticked for this agent.
+     */
+    var currentTime = 0.0
+
+    /**
+     * The tree whose node states are held in the arrays below.
+     */
+    internal var tree: BehaviorTree? = null
+
+    internal var intStates = IntArray(0)
+    internal var doubleStates = DoubleArray(0)
+    internal var objectStates = arrayOfNulls<Any>(0)
+
+    /**
+     * States of nodes that are not part of [tree], e.g. nodes executed directly.
+     */
+    private var detachedStates: IdentityHashMap<BehaviorNode, DetachedState>? = null
+
+    /**
+     * Built-in nodes read time via these, so that time set in the blackboard (as in previous versions) is respected.
+     * Time values have the same slot in every blackboard, so this is an array access.
+     */
+    internal fun time(): Double = blackboard[BlackboardLayout.CURRENT_TIME] ?: currentTime
+
+    internal fun delta(): Double = blackboard[BlackboardLayout.DELTA_TIME] ?: deltaTime
+
+    /**
+     * Advances time by [deltaTime], which is also written to the blackboard values "currentTime" and "deltaTime".
+     */
+    internal fun advance(deltaTime: Double) {
+        currentTime = time() + deltaTime
+        this.deltaTime = deltaTime
+
+        blackboard[BlackboardLayout.CURRENT_TIME] = currentTime
+        blackboard[BlackboardLayout.DELTA_TIME] = deltaTime
+    }
+
+    internal fun bind(tree: BehaviorTree) {
+        if (this.tree === tree)
+            return
+
+        this.tree = tree
+
+        blackboard.bind(tree.blackboardLayout)
+
+        intStates = IntArray(tree.numNodes)
+        doubleStates = DoubleArray(tree.numNodes) { Double.NaN }
+        objectStates = arrayOfNulls(tree.numNodes)
+    }
+
+    internal fun detachedState(node: BehaviorNode): DetachedState {
+        val states = detachedStates ?: IdentityHashMap<BehaviorNode, DetachedState>().also { detachedStates = it }
+
+        return states.getOrPut(node) { DetachedState() }
+    }
+
+    internal class DetachedState {
+        var intState = 0
+        var doubleState = Double.NaN
+        var objectState: Any? = null
+    }
+}
 
 /**
  * Base interface for all behavior tree nodes.
+ * Nodes can be shared by many agents, so a node that needs to remember something between ticks
+ * (e.g. which child is running) must keep it in per-agent state via
+ * [getIntState], [getDoubleState], [getObjectState] and their setters, rather than in fields.
+ * Each node has one slot of each kind, which is reset by [reset] with context.
  */
 abstract class BehaviorNode {
+
+    /**
+     * The tree that assigned [stateIndex] to this node, or null if not part of a tree.
+     */
+    internal var tree: BehaviorTree? = null
+
+    /**
+     * Index of the state slots of this node in contexts bound to [tree].
+     */
+    internal var stateIndex = -1
+
     abstract fun execute(context: BehaviorContext): BehaviorStatus
-    
+
+    /**
+     * @return keys of blackboard values this node reads or writes, which are given slots when a tree with this node is built,
+     * values of other keys are looked up by name
+     */
+    open fun getBlackboardKeys(): List<BlackboardKey<*>> = emptyList()
+
     /**
      * Called when this node is reset or when tree execution restarts.
+     * Only needed by nodes that keep state in fields, see [reset] with context.
      */
     open fun reset() {}
+
+    /**
+     * Resets state of this node (and its children) for the agent of given [context].
+     * Also calls [reset], so that nodes which keep state in fields are reset,
+     * except for composite and decorator nodes, which reset their children instead.
+     */
+    open fun reset(context: BehaviorContext) {
+        clearState(context)
+        reset()
+    }
+
+    internal fun clearState(context: BehaviorContext) {
+        val index = slotIndex(context)
+
+        if (index >= 0) {
+            context.intStates[index] = 0
+            context.doubleStates[index] = Double.NaN
+            context.objectStates[index] = null
+        } else {
+            val state = context.detachedState(this)
+            state.intState = 0
+            state.doubleState = Double.NaN
+            state.objectState = null
+        }
+    }
+
+    /**
+     * @return per-agent int state of this node, 0 by default
+     */
+    protected fun getIntState(context: BehaviorContext): Int {
+        val index = slotIndex(context)
+
+        return if (index >= 0) context.intStates[index] else context.detachedState(this).intState
+    }
+
+    protected fun setIntState(context: BehaviorContext, value: Int) {
+        val index = slotIndex(context)
+
+        if (index >= 0) context.intStates[index] = value else context.detachedState(this).intState = value
+    }
+
+    /**
+     * @return per-agent double state of this node, NaN by default
+     */
+    protected fun getDoubleState(context: BehaviorContext): Double {
+        val index = slotIndex(context)
+
+        return if (index >= 0) context.doubleStates[index] else context.detachedState(this).doubleState
+    }
+
+    protected fun setDoubleState(context: BehaviorContext, value: Double) {
+        val index = slotIndex(context)
+
+        if (index >= 0) context.doubleStates[index] = value else context.detachedState(this).doubleState = value
+    }
+
+    /**
+     * @return per-agent object state of this node, null by default
+     */
+    protected fun getObjectState(context: BehaviorContext): Any? {
+        val index = slotIndex(context)
+
+        return if (index >= 0) context.objectStates[index] else context.detachedState(this).objectState
+    }
+
+    protected fun setObjectState(context: BehaviorContext, value: Any?) {
+        val index = slotIndex(context)
+
+        if (index >= 0) context.objectStates[index] = value else context.detachedState(this).objectState = value
+    }
+
+    internal open fun forEachChild(action: (BehaviorNode) -> Unit) {}
+
+    private fun slotIndex(context: BehaviorContext): Int {
+        return if (tree != null && tree === context.tree) stateIndex else -1
+    }
 }
 
 /**
@@ -64,6 +240,15 @@ abstract class CompositeNode : BehaviorNode() {
     override fun reset() {
         children.forEach { it.reset() }
     }
+
+    override fun reset(context: BehaviorContext) {
+        clearState(context)
+        children.forEach { it.reset(context) }
+    }
+
+    override fun forEachChild(action: (BehaviorNode) -> Unit) {
+        children.forEach(action)
+    }
 }
 
 /**
@@ -73,24 +258,76 @@ abstract class DecoratorNode(protected val child: BehaviorNode) : BehaviorNode()
     override fun reset() {
         child.reset()
     }
+
+    override fun reset(context: BehaviorContext) {
+        clearState(context)
+        child.reset(context)
+    }
+
+    override fun forEachChild(action: (BehaviorNode) -> Unit) {
+        action(child)
+    }
 }
 
 /**
  * Main behavior tree that manages execution of the root node.
+ * The tree is a definition that can be shared: all per-agent data is kept in the [BehaviorContext]
+ * passed to [execute], so one tree can be executed with the contexts of many agents.
  */
 class BehaviorTree(private val root: BehaviorNode) {
+
+    /**
+     * Number of nodes that have state slots in contexts of this tree.
+     */
+    internal val numNodes: Int
+
+    /**
+     * Slots of blackboard values used by nodes of this tree.
+     */
+    internal val blackboardLayout = BlackboardLayout()
+
+    init {
+        var count = 0
+
+        fun assign(node: BehaviorNode) {
+            // a node that is already part of another tree keeps its slots there
+            // and uses detached state when executed in this tree
+            if (node.tree == null) {
+                node.tree = this
+                node.stateIndex = count++
+            }
+
+            node.getBlackboardKeys().forEach { blackboardLayout.register(it) }
+
+            node.forEachChild { assign(it) }
+        }
+
+        assign(root)
+
+        numNodes = count
+    }
     
     /**
      * Execute the behavior tree with the given context.
      */
     fun execute(context: BehaviorContext): BehaviorStatus {
+        context.bind(this)
         return root.execute(context)
     }
     
     /**
      * Reset the entire tree to initial state.
+     * This only resets nodes that keep state in fields, use [reset] with context to reset an agent.
      */
     fun reset() {
         root.reset()
     }
-}
\ No newline at end of file
+
+    /**
+     * Reset the tree to initial state for the agent of given [context].
+     */
+    fun reset(context: BehaviorContext) {
+        context.bind(this)
+        root.reset(context)
+    }
+}
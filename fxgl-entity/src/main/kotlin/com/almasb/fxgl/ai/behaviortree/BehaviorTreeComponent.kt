@@ -12,11 +12,33 @@ import com.almasb.fxgl.entity.component.Component
 /**
  * Component that manages and executes a behavior tree for an entity.
  * Add this component to any entity that should have AI behavior.
+ * The same tree can be given to components of many entities, since per-agent state is kept in the context.
+ * By default the tree is ticked from [onUpdate], unless the component is added to a [BehaviorTreeScheduler].
  */
 class BehaviorTreeComponent(private val behaviorTree: BehaviorTree) : Component() {
     
     private lateinit var context: BehaviorContext
     private var lastUpdateTime = 0.0
+
+    /**
+     * The scheduler that ticks this component, if any.
+     */
+    internal var scheduler: BehaviorTreeScheduler? = null
+
+    /**
+     * Index of this component in the scheduler.
+     */
+    internal var schedulerIndex = -1
+
+    /**
+     * Scheduler time at which this component was last ticked.
+     */
+    internal var lastTickTime = 0.0
+
+    /**
+     * Scheduler time at which this component is due to be ticked.
+     */
+    internal var nextTickTime = 0.0
     
     /**
      * How often to update the behavior tree (in seconds).
@@ -30,23 +52,35 @@ class BehaviorTreeComponent(private val behaviorTree: BehaviorTree) : Component(
     }
     
     override fun onUpdate(tpf: Double) {
-        if (!::context.isInitialized) {
+        if (!::context.isInitialized || scheduler != null) {
             return
         }
         
         lastUpdateTime += tpf
         
         if (lastUpdateTime >= updateInterval) {
-            // Update context with current timing information
-            context.blackboard["deltaTime"] = lastUpdateTime
-            context.blackboard["currentTime"] = context.blackboard.getOrDefault("currentTime", 0.0) as Double + lastUpdateTime
-            
-            // Execute the behavior tree
-            behaviorTree.execute(context)
+            tick(lastUpdateTime)
             
             lastUpdateTime = 0.0
         }
     }
+
+    override fun onRemoved() {
+        scheduler?.remove(this)
+    }
+
+    /**
+     * Executes the behavior tree once, [deltaTime] seconds after the previous tick.
+     */
+    internal fun tick(deltaTime: Double) {
+        val context = getContext()
+
+        // Update context with current timing information
+        context.advance(deltaTime)
+
+        // Execute the behavior tree
+        behaviorTree.execute(context)
+    }
     
     /**
      * Get the behavior context for accessing the blackboard and entity.
@@ -62,9 +96,13 @@ class BehaviorTreeComponent(private val behaviorTree: BehaviorTree) : Component(
      * Reset the behavior tree to its initial state.
      */
     fun reset() {
-        behaviorTree.reset()
         if (::context.isInitialized) {
+            behaviorTree.reset(context)
             context.blackboard.clear()
+            context.deltaTime = 0.016
+            context.currentTime = 0.0
+        } else {
+            behaviorTree.reset()
         }
     }
     
@@ -0,0 +1,226 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.ai.behaviortree
+
+import com.almasb.fxgl.core.collection.Array
+import com.almasb.fxgl.entity.Entity
+
+/**
+ * Ticks behavior trees of many agents, spreading the ticks across frames.
+ * Each frame, agents that are due are ticked in round-robin order until [frameBudgetNanos] is used up,
+ * and the next frame continues from the agent where the previous one stopped,
+ * so no agent is starved when there are more due agents than fit in a frame.
+ * An agent is due [BehaviorTreeComponent.updateInterval] seconds after its previous tick,
+ * or later if it is far from the [observer], see [addLevelOfDetail].
+ * Since agents are not always ticked exactly when due, each tick gets the actual time since the previous one.
+ *
+ * Call [onUpdate] once per frame, e.g. from the game's onUpdate().
+ * Components added to a scheduler are not ticked by their own onUpdate().
+ */
+class BehaviorTreeScheduler {
+
+    companion object {
+
+        /**
+         * Number of ticks between checks of the clock, since reading it costs more than ticking a small tree.
+         */
+        private const val CLOCK_CHECK_INTERVAL = 16
+    }
+
+    private val agents = Array<BehaviorTreeComponent>()
+
+    /**
+     * Index of the agent to start from in the next frame.
+     */
+    private var cursor = 0
+
+    private var time = 0.0
+
+    private var levels = DoubleArray(0)
+    private var levelIntervals = DoubleArray(0)
+
+    /**
+     * Max time (in nanoseconds) spent ticking agents per frame.
+     * The clock is only checked every few ticks, so a frame may go slightly over budget.
+     */
+    var frameBudgetNanos = 1_000_000L
+
+    /**
+     * The entity (e.g. the player) whose distance to agents selects their level of detail.
+     * If null, all agents are ticked at their own update interval.
+     */
+    var observer: Entity? = null
+
+    /**
+     * Number of agents ticked in the last frame.
+     */
+    var numTicked = 0
+        private set
+
+    /**
+     * Number of agents that were due in the last frame, but were not ticked because the budget was used up.
+     */
+    var numDeferred = 0
+        private set
+
+    val size: Int
+        get() = agents.size()
+
+    /**
+     * Adds a level of detail: agents further than [maxDistance] of previous levels, but within [maxDistance]
+     * of the [observer], are ticked at most every [updateInterval] seconds.
+     * Agents beyond all levels are ticked at the interval of the furthest level.
+     */
+    fun addLevelOfDetail(maxDistance: Double, updateInterval: Double) {
+        var index = levels.size
+
+        while (index > 0 && levels[index - 1] > maxDistance) {
+            index--
+        }
+
+        levels = levels.copyOf(levels.size + 1)
+        levelIntervals = levelIntervals.copyOf(levelIntervals.size + 1)
+
+        levels.copyInto(levels, index + 1, index, levels.size - 1)
+        levelIntervals.copyInto(levelIntervals, index + 1, index, levelIntervals.size - 1)
+
+        levels[index] = maxDistance
+        levelIntervals[index] = updateInterval
+    }
+
+    fun clearLevelsOfDetail() {
+        levels = DoubleArray(0)
+        levelIntervals = DoubleArray(0)
+    }
+
+    /**
+     * Adds given component, which must be added to an entity, to this scheduler.
+     * The component is first ticked in the next frame.
+     */
+    fun add(component: BehaviorTreeComponent) {
+        if (component.scheduler === this)
+            return
+
+        component.scheduler?.remove(component)
+
+        component.scheduler = this
+        component.schedulerIndex = agents.size()
+        component.lastTickTime = time
+        component.nextTickTime = time
+
+        agents.add(component)
+    }
+
+    /**
+     * Removes given component from this scheduler, after which the component ticks itself.
+     * Components are removed automatically when removed from their entity.
+     */
+    fun remove(component: BehaviorTreeComponent) {
+        if (component.scheduler !== this)
+            return
+
+        val index = component.schedulerIndex
+        val last = agents.pop()
+
+        if (last !== component) {
+            agents.set(index, last)
+            last.schedulerIndex = index
+        }
+
+        component.scheduler = null
+        component.schedulerIndex = -1
+
+        if (cursor >= agents.size())
+            cursor = 0
+    }
+
+    fun onUpdate(tpf: Double) {
+        time += tpf
+
+        numTicked = 0
+        numDeferred = 0
+
+        val size = agents.size()
+
+        if (size == 0)
+            return
+
+        val deadline = System.nanoTime() + frameBudgetNanos
+        var isOverBudget = false
+
+        var index = cursor
+        var nextCursor = cursor
+
+        for (i in 0 until size) {
+            // agents may be removed by a tick
+            if (index >= agents.size()) {
+                if (agents.isEmpty)
+                    break
+
+                index = 0
+            }
+
+            val agent = agents.get(index)
+
+            if (agent.nextTickTime <= time && !agent.isPaused) {
+                if (isOverBudget) {
+                    if (numDeferred == 0)
+                        nextCursor = index
+
+                    numDeferred++
+                } else {
+                    tick(agent)
+
+                    numTicked++
+
+                    if (numTicked % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+                        isOverBudget = true
+                    }
+                }
+            }
+
+            index++
+        }
+
+        if (agents.isEmpty) {
+            cursor = 0
+            return
+        }
+
+        // start the next frame from the first agent that was not ticked,
+        // otherwise move on by one so that agents do not always tick in the same order
+        cursor = (if (numDeferred > 0) nextCursor else cursor + 1) % agents.size()
+    }
+
+    private fun tick(agent: BehaviorTreeComponent) {
+        agent.tick(time - agent.lastTickTime)
+
+        // the tree may have removed the agent or its entity
+        if (agent.scheduler !== this)
+            return
+
+        agent.lastTickTime = time
+        agent.nextTickTime = time + interval(agent)
+    }
+
+    private fun interval(agent: BehaviorTreeComponent): Double {
+        val observer = observer
+
+        if (observer == null || levels.isEmpty())
+            return agent.updateInterval
+
+        val distance = agent.entity.distance(observer)
+
+        var level = 0
+
+        while (level < levels.size - 1 && distance > levels[level]) {
+            level++
+        }
+
+        return maxOf(agent.updateInterval, levelIntervals[level])
+    }
+}
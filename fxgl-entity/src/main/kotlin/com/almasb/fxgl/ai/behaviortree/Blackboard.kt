@@ -0,0 +1,345 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.ai.behaviortree
+
+/**
+ * Typed key of a blackboard value.
+ * When a tree is built, keys of its nodes (see [BehaviorNode.getBlackboardKeys]) are given slots in the tree's layout,
+ * so blackboards of agents running that tree access their values by index rather than by name.
+ * Keys of the same name with different types refer to the same value.
+ */
+class BlackboardKey<T : Any>(
+        val name: String,
+        val type: Class<T>
+) {
+
+    companion object {
+        @JvmStatic fun <T : Any> of(name: String, type: Class<T>): BlackboardKey<T> = BlackboardKey(name, type)
+
+        inline fun <reified T : Any> of(name: String): BlackboardKey<T> = of(name, T::class.javaObjectType)
+    }
+
+    /**
+     * The layout that assigned [slot] to this key, i.e. of the first tree built with this key.
+     */
+    internal var layout: BlackboardLayout? = null
+
+    internal var slot = -1
+
+    override fun toString(): String = "BlackboardKey($name: ${type.simpleName})"
+}
+
+/**
+ * Slots of blackboard values of a tree, by name.
+ * Every layout starts with the names of [BASE], so keys registered in [BASE] have the same slot in all layouts.
+ */
+internal class BlackboardLayout private constructor(base: BlackboardLayout?) {
+
+    companion object {
+        val BASE = BlackboardLayout(null)
+
+        val CURRENT_TIME = BlackboardKey.of("currentTime", Double::class.javaObjectType).also { BASE.register(it) }
+        val DELTA_TIME = BlackboardKey.of("deltaTime", Double::class.javaObjectType).also { BASE.register(it) }
+    }
+
+    private val slots = HashMap<String, Int>()
+
+    private val names = ArrayList<String>()
+
+    constructor() : this(BASE)
+
+    init {
+        base?.names?.forEach { slotOf(it, true) }
+    }
+
+    val size: Int
+        get() = names.size
+
+    /**
+     * Gives given key a slot in this layout, unless it already has a slot in another layout.
+     */
+    fun register(key: BlackboardKey<*>) {
+        val slot = slotOf(key.name, true)
+
+        if (key.layout == null) {
+            key.layout = this
+            key.slot = slot
+        }
+    }
+
+    /**
+     * @return slot of given key, or -1 if its name has no slot in this layout
+     */
+    fun slotOf(key: BlackboardKey<*>): Int {
+        val layout = key.layout
+
+        return if (layout === this || layout === BASE) key.slot else slotOf(key.name, false)
+    }
+
+    /**
+     * @return slot of given name, or -1 if it has no slot in this layout and [isAdded] is false
+     */
+    fun slotOf(name: String, isAdded: Boolean): Int {
+        val slot = slots[name]
+
+        if (slot != null)
+            return slot
+
+        if (!isAdded)
+            return -1
+
+        names += name
+        slots[name] = names.size - 1
+
+        return names.size - 1
+    }
+
+    fun nameOf(slot: Int): String = names[slot]
+}
+
+/**
+ * Per-agent values that behavior tree nodes share.
+ * Values whose names have slots in the layout of the tree being executed are stored in an array,
+ * so typed keys of the tree's nodes access them by index,
+ * other values are stored in a map owned by this blackboard.
+ * A blackboard created with a map keeps all values in that map instead.
+ */
+class Blackboard() : AbstractMutableMap<String, Any>() {
+
+    /**
+     * The map given by the user, if any, which holds all values.
+     */
+    private var backingMap: MutableMap<String, Any>? = null
+
+    private var layout = BlackboardLayout.BASE
+
+    private var slotValues = arrayOfNulls<Any>(layout.size)
+
+    /**
+     * Number of non-null [slotValues].
+     */
+    private var count = 0
+
+    /**
+     * Values whose names have no slot in the current layout, created on first use.
+     */
+    private var others: HashMap<String, Any>? = null
+
+    /**
+     * Creates a blackboard that reads and writes values of given map, so changes are visible in both.
+     */
+    constructor(map: MutableMap<String, Any>) : this() {
+        backingMap = map
+    }
+
+    /**
+     * @return value of given key, or null if not set or not of the key type
+     */
+    operator fun <T : Any> get(key: BlackboardKey<T>): T? {
+        val value = valueOf(key)
+
+        return if (key.type.isInstance(value)) key.type.cast(value) else null
+    }
+
+    operator fun <T : Any> set(key: BlackboardKey<T>, value: T) {
+        val map = backingMap
+        if (map != null) {
+            map[key.name] = value
+            return
+        }
+
+        val slot = layout.slotOf(key)
+
+        if (slot >= 0) setAt(slot, value) else others().put(key.name, value)
+    }
+
+    operator fun contains(key: BlackboardKey<*>): Boolean = valueOf(key) != null
+
+    fun remove(key: BlackboardKey<*>): Any? = remove(key.name)
+
+    override val size: Int
+        get() = backingMap?.size ?: (count + (others?.size ?: 0))
+
+    override fun get(key: String): Any? {
+        val map = backingMap
+        if (map != null)
+            return map[key]
+
+        val slot = layout.slotOf(key, false)
+
+        return if (slot >= 0) slotValues[slot] else others?.get(key)
+    }
+
+    override fun containsKey(key: String): Boolean = get(key) != null
+
+    override fun put(key: String, value: Any): Any? {
+        val map = backingMap
+        if (map != null)
+            return map.put(key, value)
+
+        val slot = layout.slotOf(key, false)
+
+        return if (slot >= 0) setAt(slot, value) else others().put(key, value)
+    }
+
+    override fun remove(key: String): Any? {
+        val map = backingMap
+        if (map != null)
+            return map.remove(key)
+
+        val slot = layout.slotOf(key, false)
+
+        return if (slot >= 0) setAt(slot, null) else others?.remove(key)
+    }
+
+    override fun clear() {
+        backingMap?.clear()
+
+        slotValues.fill(null)
+        count = 0
+        others?.clear()
+    }
+
+    override val entries: MutableSet<MutableMap.MutableEntry<String, Any>>
+        get() = backingMap?.entries ?: EntrySet()
+
+    /**
+     * Stores values in slots of given layout from now on.
+     */
+    internal fun bind(layout: BlackboardLayout) {
+        if (backingMap != null || this.layout === layout)
+            return
+
+        val oldLayout = this.layout
+        val oldValues = slotValues
+        val oldOthers = others
+
+        this.layout = layout
+        slotValues = arrayOfNulls(layout.size)
+        count = 0
+        others = null
+
+        for (i in oldValues.indices) {
+            oldValues[i]?.let { put(oldLayout.nameOf(i), it) }
+        }
+
+        oldOthers?.forEach { (name, value) -> put(name, value) }
+    }
+
+    private fun valueOf(key: BlackboardKey<*>): Any? {
+        val map = backingMap
+        if (map != null)
+            return map[key.name]
+
+        val slot = layout.slotOf(key)
+
+        return if (slot >= 0) slotValues[slot] else others?.get(key.name)
+    }
+
+    private fun others(): HashMap<String, Any> = others ?: HashMap<String, Any>().also { others = it }
+
+    private fun setAt(slot: Int, value: Any?): Any? {
+        val oldValue = slotValues[slot]
+        slotValues[slot] = value
+
+        if (oldValue == null && value != null)
+            count++
+
+        if (oldValue != null && value == null)
+            count--
+
+        return oldValue
+    }
+
+    /**
+     * Entries of slot values, followed by entries of other values.
+     */
+    private inner class EntrySet : AbstractMutableSet<MutableMap.MutableEntry<String, Any>>() {
+
+        override val size: Int
+            get() = this@Blackboard.size
+
+        override fun add(element: MutableMap.MutableEntry<String, Any>): Boolean {
+            return put(element.key, element.value) != element.value
+        }
+
+        override fun iterator(): MutableIterator<MutableMap.MutableEntry<String, Any>> {
+            return object : MutableIterator<MutableMap.MutableEntry<String, Any>> {
+                private var next = findFrom(0)
+                private var current = -1
+
+                private val otherEntries = others?.entries?.iterator()
+                private var isInOthers = false
+
+                override fun hasNext(): Boolean = next != -1 || otherEntries?.hasNext() == true
+
+                override fun next(): MutableMap.MutableEntry<String, Any> {
+                    if (next != -1) {
+                        current = next
+                        next = findFrom(current + 1)
+
+                        return SlotEntry(current)
+                    }
+
+                    if (otherEntries == null)
+                        throw NoSuchElementException()
+
+                    isInOthers = true
+
+                    return otherEntries.next()
+                }
+
+                override fun remove() {
+                    if (isInOthers) {
+                        otherEntries!!.remove()
+                        return
+                    }
+
+                    check(current != -1) { "next() was not called" }
+
+                    setAt(current, null)
+                    current = -1
+                }
+            }
+        }
+
+        private fun findFrom(start: Int): Int {
+            for (i in start until slotValues.size) {
+                if (slotValues[i] != null)
+                    return i
+            }
+
+            return -1
+        }
+    }
+
+    private inner class SlotEntry(private val slot: Int) : MutableMap.MutableEntry<String, Any> {
+
+        override val key: String
+            get() = layout.nameOf(slot)
+
+        override val value: Any
+            get() = slotValues[slot] ?: throw IllegalStateException("Value of $key was removed")
+
+        /**
+         * @return the previous value
+         */
+        override fun setValue(newValue: Any): Any {
+            val oldValue = slotValues[slot] ?: throw IllegalStateException("Value of $key was removed")
+
+            setAt(slot, newValue)
+
+            return oldValue
+        }
+
+        override fun equals(other: Any?): Boolean = other is Map.Entry<*, *> && other.key == key && other.value == value
+
+        override fun hashCode(): Int = key.hashCode() xor value.hashCode()
+
+        override fun toString(): String = "$key=$value"
+    }
+}
@@ -7,6 +7,7 @@
 package com.almasb.fxgl.ai.behaviortree
 
 // Remove import that doesn't exist in this module
+import com.almasb.fxgl.entity.Entity
 import com.almasb.fxgl.entity.components.TransformComponent
 import javafx.geometry.Point2D
 import kotlin.math.*
@@ -21,45 +22,53 @@ class MoveToPositionAction(
 ) : ActionNode() {
     
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val transform = context.entity.getComponent(TransformComponent::class.java)
-        val currentPos = transform.position
-        
-        val distance = currentPos.distance(targetPosition)
-        
-        if (distance <= arrivalDistance) {
-            return BehaviorStatus.SUCCESS
-        }
-        
-        val direction = targetPosition.subtract(currentPos).normalize()
-        val deltaTime = context.blackboard["deltaTime"] as? Double ?: 0.016
-        val movement = direction.multiply(speed * deltaTime)
-        
-        transform.position = currentPos.add(movement)
-        
-        return BehaviorStatus.RUNNING
+        return moveTo(context, targetPosition, speed, arrivalDistance)
     }
 }
 
+private fun moveTo(context: BehaviorContext, targetPosition: Point2D, speed: Double, arrivalDistance: Double): BehaviorStatus {
+    val transform = context.entity.getComponent(TransformComponent::class.java)
+    val currentPos = transform.position
+
+    val distance = currentPos.distance(targetPosition)
+
+    if (distance <= arrivalDistance) {
+        return BehaviorStatus.SUCCESS
+    }
+
+    val direction = targetPosition.subtract(currentPos).normalize()
+    val deltaTime = context.delta()
+    val movement = direction.multiply(speed * deltaTime)
+
+    transform.position = currentPos.add(movement)
+
+    return BehaviorStatus.RUNNING
+}
+
 /**
  * Action that moves the entity towards another entity.
  */
 class MoveToEntityAction(
-    private val targetEntityId: String,
+    private val targetKey: BlackboardKey<Entity>,
     private val speed: Double = 100.0,
     private val arrivalDistance: Double = 5.0
 ) : ActionNode() {
-    
+
+    /**
+     * The target entity is read from the blackboard value "entity_[targetEntityId]".
+     */
+    @JvmOverloads constructor(
+        targetEntityId: String,
+        speed: Double = 100.0,
+        arrivalDistance: Double = 5.0
+    ) : this(BlackboardKey.of("entity_$targetEntityId", Entity::class.java), speed, arrivalDistance)
+
+    override fun getBlackboardKeys(): List<BlackboardKey<*>> = listOf(targetKey)
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val targetEntity = context.blackboard["entity_$targetEntityId"]
-        if (targetEntity == null) {
-            return BehaviorStatus.FAILURE
-        }
-        
-        val targetPos = (targetEntity as com.almasb.fxgl.entity.Entity)
-            .getComponent(TransformComponent::class.java).position
-        
-        val moveAction = MoveToPositionAction(targetPos, speed, arrivalDistance)
-        return moveAction.execute(context)
+        val targetEntity = context.blackboard[targetKey] ?: return BehaviorStatus.FAILURE
+
+        return moveTo(context, targetEntity.position, speed, arrivalDistance)
     }
 }
 
@@ -67,25 +76,24 @@ class MoveToEntityAction(
  * Action that pauses execution for a specified duration.
  */
 class WaitAction(private val duration: Double) : ActionNode() {
-    private var startTime: Double? = null
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val currentTime = context.blackboard["currentTime"] as? Double ?: 0.0
+        val currentTime = context.time()
+
+        // start time is per-agent state, NaN if not started
+        var startTime = getDoubleState(context)
         
-        if (startTime == null) {
+        if (startTime.isNaN()) {
             startTime = currentTime
+            setDoubleState(context, startTime)
         }
         
-        return if (currentTime - startTime!! >= duration) {
+        return if (currentTime - startTime >= duration) {
             BehaviorStatus.SUCCESS
         } else {
             BehaviorStatus.RUNNING
         }
     }
-    
-    override fun reset() {
-        startTime = null
-    }
 }
 
 /**
@@ -95,35 +103,34 @@ class RandomMoveAction(
     private val speed: Double = 100.0,
     private val duration: Double = 2.0
 ) : ActionNode() {
-    private var direction: Point2D? = null
-    private var startTime: Double? = null
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val currentTime = context.blackboard["currentTime"] as? Double ?: 0.0
+        val currentTime = context.time()
+
+        // start time and direction are per-agent state
+        var startTime = getDoubleState(context)
         
-        if (startTime == null) {
+        if (startTime.isNaN()) {
             startTime = currentTime
+            setDoubleState(context, startTime)
+
             val angle = Math.random() * 2 * PI
-            direction = Point2D(cos(angle), sin(angle))
+            setObjectState(context, Point2D(cos(angle), sin(angle)))
         }
         
-        if (currentTime - startTime!! >= duration) {
+        if (currentTime - startTime >= duration) {
             return BehaviorStatus.SUCCESS
         }
         
+        val direction = getObjectState(context) as Point2D
         val transform = context.entity.getComponent(TransformComponent::class.java)
-        val deltaTime = context.blackboard["deltaTime"] as? Double ?: 0.016
-        val movement = direction!!.multiply(speed * deltaTime)
+        val deltaTime = context.delta()
+        val movement = direction.multiply(speed * deltaTime)
         
         transform.position = transform.position.add(movement)
         
         return BehaviorStatus.RUNNING
     }
-    
-    override fun reset() {
-        direction = null
-        startTime = null
-    }
 }
 
 /**
@@ -153,7 +160,7 @@ class FacePositionAction(
             return BehaviorStatus.SUCCESS
         }
         
-        val deltaTime = context.blackboard["deltaTime"] as? Double ?: 0.016
+        val deltaTime = context.delta()
         val rotationStep = rotationSpeed * deltaTime
         val rotation = if (angleDiff > 0.0) {
             kotlin.math.min(rotationStep, angleDiff)
@@ -170,11 +177,15 @@ class FacePositionAction(
 /**
  * Action that sets a value in the blackboard.
  */
-class SetBlackboardValueAction(
-    private val key: String,
-    private val value: Any
+class SetBlackboardValueAction<T : Any>(
+    private val key: BlackboardKey<T>,
+    private val value: T
 ) : ActionNode() {
-    
+
+    constructor(key: String, value: T) : this(BlackboardKey.of(key, value.javaClass), value)
+
+    override fun getBlackboardKeys(): List<BlackboardKey<*>> = listOf(key)
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
         context.blackboard[key] = value
         return BehaviorStatus.SUCCESS
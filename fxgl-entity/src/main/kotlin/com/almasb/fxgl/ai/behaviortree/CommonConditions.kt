@@ -6,6 +6,7 @@
 
 package com.almasb.fxgl.ai.behaviortree
 
+import com.almasb.fxgl.entity.Entity
 import com.almasb.fxgl.entity.components.TransformComponent
 import javafx.geometry.Point2D
 
@@ -33,18 +34,28 @@ class IsWithinDistanceCondition(
  * Condition that checks if the entity is within a certain distance of another entity.
  */
 class IsWithinDistanceOfEntityCondition(
-    private val targetEntityId: String,
+    private val targetKey: BlackboardKey<Entity>,
     private val distance: Double
 ) : ConditionNode() {
-    
+
+    /**
+     * The target entity is read from the blackboard value "entity_[targetEntityId]".
+     */
+    constructor(targetEntityId: String, distance: Double) : this(BlackboardKey.of("entity_$targetEntityId", Entity::class.java), distance)
+
+    override fun getBlackboardKeys(): List<BlackboardKey<*>> = listOf(targetKey)
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val targetEntity = context.blackboard["entity_$targetEntityId"] as? com.almasb.fxgl.entity.Entity
-            ?: return BehaviorStatus.FAILURE
-        
-        val targetPos = targetEntity.getComponent(TransformComponent::class.java).position
-        val condition = IsWithinDistanceCondition(targetPos, distance)
-        
-        return condition.execute(context)
+        val targetEntity = context.blackboard[targetKey] ?: return BehaviorStatus.FAILURE
+
+        val dx = targetEntity.x - context.entity.x
+        val dy = targetEntity.y - context.entity.y
+
+        return if (dx * dx + dy * dy <= distance * distance) {
+            BehaviorStatus.SUCCESS
+        } else {
+            BehaviorStatus.FAILURE
+        }
     }
 }
 
@@ -52,10 +63,14 @@ class IsWithinDistanceOfEntityCondition(
  * Condition that checks if a blackboard value equals a specific value.
  */
 class BlackboardEqualsCondition(
-    private val key: String,
+    private val key: BlackboardKey<*>,
     private val expectedValue: Any
 ) : ConditionNode() {
-    
+
+    constructor(key: String, expectedValue: Any) : this(BlackboardKey.of(key, Any::class.java), expectedValue)
+
+    override fun getBlackboardKeys(): List<BlackboardKey<*>> = listOf(key)
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
         val value = context.blackboard[key]
         
@@ -70,10 +85,14 @@ class BlackboardEqualsCondition(
 /**
  * Condition that checks if a blackboard value exists.
  */
-class BlackboardExistsCondition(private val key: String) : ConditionNode() {
-    
+class BlackboardExistsCondition(private val key: BlackboardKey<*>) : ConditionNode() {
+
+    constructor(key: String) : this(BlackboardKey.of(key, Any::class.java))
+
+    override fun getBlackboardKeys(): List<BlackboardKey<*>> = listOf(key)
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        return if (context.blackboard.containsKey(key)) {
+        return if (key in context.blackboard) {
             BehaviorStatus.SUCCESS
         } else {
             BehaviorStatus.FAILURE
@@ -85,10 +104,14 @@ class BlackboardExistsCondition(private val key: String) : ConditionNode() {
  * Condition that compares a numeric blackboard value with a threshold.
  */
 class BlackboardCompareCondition(
-    private val key: String,
+    private val key: BlackboardKey<Number>,
     private val threshold: Double,
     private val comparison: Comparison
 ) : ConditionNode() {
+
+    constructor(key: String, threshold: Double, comparison: Comparison) : this(BlackboardKey.of(key, Number::class.java), threshold, comparison)
+
+    override fun getBlackboardKeys(): List<BlackboardKey<*>> = listOf(key)
     
     enum class Comparison {
         GREATER_THAN,
@@ -99,7 +122,7 @@ class BlackboardCompareCondition(
     }
     
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val value = context.blackboard[key] as? Number ?: return BehaviorStatus.FAILURE
+        val value = context.blackboard[key] ?: return BehaviorStatus.FAILURE
         val doubleValue = value.toDouble()
         
         val result = when (comparison) {
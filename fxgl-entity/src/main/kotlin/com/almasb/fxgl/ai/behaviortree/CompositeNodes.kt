@@ -11,20 +11,23 @@ package com.almasb.fxgl.ai.behaviortree
  * Returns SUCCESS if any child succeeds, FAILURE if all children fail.
  */
 class SelectorNode : CompositeNode() {
-    private var currentChildIndex = 0
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
+        // index of the current child is per-agent state
+        var currentChildIndex = getIntState(context)
+
         while (currentChildIndex < children.size) {
             val child = children[currentChildIndex]
             val status = child.execute(context)
             
             when (status) {
                 BehaviorStatus.SUCCESS -> {
-                    reset()
+                    reset(context)
                     return BehaviorStatus.SUCCESS
                 }
                 BehaviorStatus.FAILURE -> {
                     currentChildIndex++
+                    setIntState(context, currentChildIndex)
                 }
                 BehaviorStatus.RUNNING -> {
                     return BehaviorStatus.RUNNING
@@ -32,14 +35,9 @@ class SelectorNode : CompositeNode() {
             }
         }
         
-        reset()
+        reset(context)
         return BehaviorStatus.FAILURE
     }
-    
-    override fun reset() {
-        currentChildIndex = 0
-        super.reset()
-    }
 }
 
 /**
@@ -47,9 +45,11 @@ class SelectorNode : CompositeNode() {
  * Returns FAILURE if any child fails, SUCCESS if all children succeed.
  */
 class SequenceNode : CompositeNode() {
-    private var currentChildIndex = 0
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
+        // index of the current child is per-agent state
+        var currentChildIndex = getIntState(context)
+
         while (currentChildIndex < children.size) {
             val child = children[currentChildIndex]
             val status = child.execute(context)
@@ -57,9 +57,10 @@ class SequenceNode : CompositeNode() {
             when (status) {
                 BehaviorStatus.SUCCESS -> {
                     currentChildIndex++
+                    setIntState(context, currentChildIndex)
                 }
                 BehaviorStatus.FAILURE -> {
-                    reset()
+                    reset(context)
                     return BehaviorStatus.FAILURE
                 }
                 BehaviorStatus.RUNNING -> {
@@ -68,14 +69,9 @@ class SequenceNode : CompositeNode() {
             }
         }
         
-        reset()
+        reset(context)
         return BehaviorStatus.SUCCESS
     }
-    
-    override fun reset() {
-        currentChildIndex = 0
-        super.reset()
-    }
 }
 
 /**
@@ -102,8 +98,8 @@ class ParallelNode(
         var failureCount = 0
         var runningCount = 0
         
-        children.forEach { child ->
-            when (child.execute(context)) {
+        for (i in children.indices) {
+            when (children[i].execute(context)) {
                 BehaviorStatus.SUCCESS -> successCount++
                 BehaviorStatus.FAILURE -> failureCount++
                 BehaviorStatus.RUNNING -> runningCount++
@@ -117,7 +113,7 @@ class ParallelNode(
         }
         
         if (shouldFail) {
-            reset()
+            reset(context)
             return BehaviorStatus.FAILURE
         }
         
@@ -128,7 +124,7 @@ class ParallelNode(
         }
         
         if (shouldSucceed) {
-            reset()
+            reset(context)
             return BehaviorStatus.SUCCESS
         }
         
@@ -141,24 +137,25 @@ class ParallelNode(
  * Random selector that chooses a random child to execute.
  */
 class RandomSelectorNode : CompositeNode() {
-    private var selectedChild: BehaviorNode? = null
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        if (selectedChild == null && children.isNotEmpty()) {
-            selectedChild = children.random()
+        // per-agent state is the index of the selected child + 1, 0 if none is selected
+        var selected = getIntState(context)
+
+        if (selected == 0 || selected > children.size) {
+            if (children.isEmpty())
+                return BehaviorStatus.FAILURE
+
+            selected = children.indices.random() + 1
+            setIntState(context, selected)
         }
-        
-        val status = selectedChild?.execute(context) ?: BehaviorStatus.FAILURE
+
+        val status = children[selected - 1].execute(context)
         
         if (status != BehaviorStatus.RUNNING) {
-            selectedChild = null
+            setIntState(context, 0)
         }
         
         return status
     }
-    
-    override fun reset() {
-        selectedChild = null
-        super.reset()
-    }
 }
\ No newline at end of file
@@ -44,9 +44,11 @@ class FailerNode(child: BehaviorNode) : DecoratorNode(child) {
  * Repeater decorator that repeats its child a specified number of times.
  */
 class RepeaterNode(child: BehaviorNode, private val maxRepeats: Int) : DecoratorNode(child) {
-    private var currentRepeats = 0
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
+        // number of completed repeats is per-agent state
+        var currentRepeats = getIntState(context)
+
         while (currentRepeats < maxRepeats) {
             val status = child.execute(context)
             
@@ -54,63 +56,58 @@ class RepeaterNode(child: BehaviorNode, private val maxRepeats: Int) : Decorator
                 BehaviorStatus.RUNNING -> return BehaviorStatus.RUNNING
                 BehaviorStatus.SUCCESS, BehaviorStatus.FAILURE -> {
                     currentRepeats++
-                    child.reset()
+                    setIntState(context, currentRepeats)
+                    child.reset(context)
                 }
             }
         }
         
-        reset()
+        reset(context)
         return BehaviorStatus.SUCCESS
     }
-    
-    override fun reset() {
-        currentRepeats = 0
-        super.reset()
-    }
 }
 
 /**
  * Retry decorator that retries its child up to a maximum number of times on failure.
  */
 class RetryNode(child: BehaviorNode, private val maxRetries: Int) : DecoratorNode(child) {
-    private var currentRetries = 0
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
         val status = child.execute(context)
         
         when (status) {
             BehaviorStatus.SUCCESS -> {
-                reset()
+                reset(context)
                 return BehaviorStatus.SUCCESS
             }
             BehaviorStatus.FAILURE -> {
-                currentRetries++
+                // number of retries is per-agent state
+                val currentRetries = getIntState(context) + 1
+                setIntState(context, currentRetries)
+
                 if (currentRetries >= maxRetries) {
-                    reset()
+                    reset(context)
                     return BehaviorStatus.FAILURE
                 }
-                child.reset()
+                child.reset(context)
                 return execute(context) // Retry immediately
             }
             BehaviorStatus.RUNNING -> return BehaviorStatus.RUNNING
         }
     }
-    
-    override fun reset() {
-        currentRetries = 0
-        super.reset()
-    }
 }
 
 /**
  * Cooldown decorator that prevents its child from being executed too frequently.
  */
 class CooldownNode(child: BehaviorNode, private val cooldownSeconds: Double) : DecoratorNode(child) {
-    private var lastExecutionTime = -1.0
-    
+
     override fun execute(context: BehaviorContext): BehaviorStatus {
-        val currentTime = context.blackboard["currentTime"] as? Double ?: 0.0
-        
+        val currentTime = context.time()
+
+        // last execution time is per-agent state, NaN if never executed
+        val lastExecutionTime = getDoubleState(context).let { if (it.isNaN()) -1.0 else it }
+
         if (currentTime - lastExecutionTime < cooldownSeconds) {
             return BehaviorStatus.FAILURE
         }
@@ -118,16 +115,11 @@ class CooldownNode(child: BehaviorNode, private val cooldownSeconds: Double) : D
         val status = child.execute(context)
         
         if (status != BehaviorStatus.RUNNING) {
-            lastExecutionTime = currentTime
+            setDoubleState(context, currentTime)
         }
         
         return status
     }
-    
-    override fun reset() {
-        lastExecutionTime = -1.0
-        super.reset()
-    }
 }
 
 /**
@@ -140,7 +132,7 @@ class UntilFailNode(child: BehaviorNode) : DecoratorNode(child) {
         return when (status) {
             BehaviorStatus.FAILURE -> BehaviorStatus.SUCCESS
             BehaviorStatus.SUCCESS -> {
-                child.reset()
+                child.reset(context)
                 execute(context) // Continue executing
             }
             BehaviorStatus.RUNNING -> BehaviorStatus.RUNNING
@@ -12,6 +12,11 @@ import java.util.*
 /**
  * Plans what actions can be completed in order to fulfill a goal state.
  *
+ * World states are encoded as arrays of value ids of interned keys (see [GoapSearch]),
+ * and the cheapest plan is found via A* over world states, rather than by enumerating action sequences.
+ * Since states reached by different sequences are merged, an action may appear in a plan more than once
+ * if that leads to the goal (e.g. when another action undoes its effects).
+ *
  * Adapted from https://github.com/sploreg/goap
  * Original source: C#, author: Brent Anthony Owens.
  *
@@ -19,154 +24,94 @@ import java.util.*
  */
 object GoapPlanner {
 
+    /**
+     * Default max number of world states expanded while searching for a plan.
+     */
+    const val DEFAULT_MAX_NODES = 10000
+
+    private val searches = ThreadLocal.withInitial { GoapSearch() }
+
     /**
      * Plan what sequence of actions can fulfill the goal.
-     * Returns an empty queue if a plan could not be found,
+     * Returns an empty queue if a plan could not be found within [maxNodes] expanded world states,
      * or a list of the actions that must be performed, in order, to fulfill the goal.
      */
+    @JvmOverloads
     fun plan(availableActions: Set<GoapAction>,
              currentState: PropertyMap,
-             goalState: PropertyMap): Queue<GoapAction> {
+             goalState: PropertyMap,
+             maxNodes: Int = DEFAULT_MAX_NODES): Queue<GoapAction> {
 
         // reset the actions so we can start fresh with them
         availableActions.forEach { it.cancel() }
 
-        // check what actions can run
-        val usableActions = availableActions.filter { it.isAvailable() }.toSet()
+        // check what actions can run, prefer low cost actions over high cost
+        val usableActions = availableActions.filter { it.isAvailable() }.sortedBy { it.cost }
 
-        // we now have all actions that can run, stored in usableActions
+        val encoder = StateEncoder()
 
-        // build up the tree and record the leaf nodes that provide a solution to the goal
-        val leaves = ArrayList<Node>()
+        val goal = encoder.encode(goalState)
+        val preconditions = Array(usableActions.size) { encoder.encode(usableActions[it].preconditions) }
+        val effects = Array(usableActions.size) { encoder.encode(usableActions[it].effects) }
+        val costs = FloatArray(usableActions.size) { usableActions[it].cost }
 
-        // build graph
-        val start = Node(null, 0f, currentState, null)
-        val success = buildGraph(start, leaves, usableActions, goalState)
+        // only keys used by actions or goal matter
+        val start = encoder.encodeState(currentState)
 
-        if (!success) {
-            return ArrayDeque()
-        }
-
-        // get the cheapest leaf
-        val cheapest = leaves.minBy { it.runningCost }
-
-        // get its node and work back through the parents
-        val result = ArrayList<GoapAction>()
-        var n: Node? = cheapest
-        while (n != null) {
-            if (n.action != null) {
-                result.add(n.action!!)
-            }
-            n = n.parent
-        }
+        val plan = searches.get().search(encoder.numKeys, start, goal, preconditions, effects, costs, maxNodes)
+                ?: return ArrayDeque()
 
-        // we now have this action list in correct order
-        return ArrayDeque(result.reversed())
+        return plan.mapTo(ArrayDeque<GoapAction>()) { usableActions[it] }
     }
 
     /**
-     * Returns true if at least one solution was found.
-     * The possible paths are stored in the leaves list.
-     * Each leaf has a 'runningCost' value where the lowest cost will be the best action sequence.
+     * Interns keys and values of property maps into ids.
+     * Value ids start from 1, so that 0 means the key is absent.
      */
-    private fun buildGraph(parent: Node,
-                           leaves: MutableList<Node>,
-                           usableActions: Set<GoapAction>,
-                           goal: PropertyMap): Boolean {
-
-        var foundOne = false
-
-        // prefer low cost actions over high cost
-        val sortedActions = usableActions.sortedBy { it.cost }
-
-        // go through each action available at this node and see if we can use it here
-        for (action in sortedActions) {
-
-            // if the parent state has the conditions for this action's preconditions, we can use it here
-            if (action.preconditions.isIn(parent.state)) {
-
-                // apply the action's effects to the parent state
-                val currentState = populateState(parent.state, action.effects)
-
-                val node = Node(parent, parent.runningCost + action.cost, currentState, action)
-
-                if (goal.isIn(currentState)) {
-                    // we found a solution!
-                    leaves.add(node)
-                    foundOne = true
-                } else {
-                    // not at a solution yet, so test all the remaining actions and branch out the tree
-                    val subset = usableActions - action
-
-                    val found = buildGraph(node, leaves, subset, goal)
-                    if (found)
-                        foundOne = true
-                }
+    private class StateEncoder {
+        private val keyIds = hashMapOf<String, Int>()
+        private val valueIds = hashMapOf<Any, Int>()
+
+        val numKeys: Int
+            get() = keyIds.size
+
+        /**
+         * @return (key, value id) pairs of given map
+         */
+        fun encode(map: PropertyMap): IntArray {
+            val result = IntArray(map.keys().size * 2)
+            var i = 0
+
+            map.forEach { key, value ->
+                result[i++] = keyIds.getOrPut(key) { keyIds.size }
+                result[i++] = valueId(value)
             }
-        }
 
-        return foundOne
-    }
-
-    /**
-     * @return a new state by applying the [stateChange] to the [currentState] (which does not change)
-     */
-    private fun populateState(currentState: PropertyMap, stateChange: PropertyMap): PropertyMap {
-        val newState = currentState.copy()
-        newState.addAll(stateChange)
-        return newState
-    }
-
-    /**
-     * Check if all key-value pairs in this PropertyMap are satisfied by the other PropertyMap.
-     * Supports various value types: Boolean, Int, Float, Double, String, and numeric comparisons.
-     */
-    private fun PropertyMap.isIn(other: PropertyMap): Boolean {
-        var result = true
-
-        this.forEach { key, value ->
+            return result
+        }
 
-            // if doesn't exist in other
-            if (!other.exists(key)) {
-                result = false
-                return@forEach
-            }
+        /**
+         * @return value ids of known keys in given map
+         */
+        fun encodeState(map: PropertyMap): IntArray {
+            val result = IntArray(numKeys)
 
-            val otherValue = other.getValue<Any>(key)
-            
-            // check if values match based on type
-            val matches = when {
-                value == otherValue -> true
-                value is Number && otherValue is Number -> {
-                    // Support numeric comparisons for various number types
-                    value.toDouble() == otherValue.toDouble()
-                }
-                value is String && otherValue is String -> {
-                    value == otherValue
-                }
-                value is Boolean && otherValue is Boolean -> {
-                    value == otherValue
+            keyIds.forEach { (key, id) ->
+                if (map.exists(key)) {
+                    result[id] = valueId(map.getValue(key))
                 }
-                else -> false
             }
 
-            if (!matches) {
-                result = false
-                return@forEach
-            }
+            return result
         }
 
-        return result
-    }
+        /**
+         * Numbers are compared by their double value, other values via equals().
+         */
+        private fun valueId(value: Any): Int {
+            val normalized = if (value is Number) value.toDouble() else value
 
-    /**
-     * An internal type, used for building up the graph and holding the running costs of actions.
-     */
-    private class Node(
-        var parent: Node?,
-        var runningCost: Float,
-        var state: PropertyMap,
-        var action: GoapAction?
-    )
+            return valueIds.getOrPut(normalized) { valueIds.size + 1 }
+        }
+    }
 }
-
@@ -7,34 +7,31 @@
 package com.almasb.fxgl.entity
 
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedDeque
 
 /**
+ * Thread-safe, so that entities can be preloaded on a background thread.
  *
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
 internal class EntityPool {
 
-    private val pool = hashMapOf<String, Deque<Entity>>()
+    private val pool = ConcurrentHashMap<String, Deque<Entity>>()
 
     fun put(spawnName: String, entity: Entity) {
-        var queue: Deque<Entity>? = pool[spawnName]
-
-        if (queue == null) {
-            queue = ArrayDeque()
-
-            pool[spawnName] = queue
-        }
-
-        queue.addLast(entity)
+        pool.computeIfAbsent(spawnName) { ConcurrentLinkedDeque() }.addLast(entity)
     }
 
     fun take(spawnName: String): Entity? {
-        val queue: Deque<Entity>? = pool[spawnName]
+        return pool[spawnName]?.pollFirst()
+    }
 
-        if (queue != null && queue.isNotEmpty()) {
-            return queue.removeFirst()
-        }
+    fun size(spawnName: String): Int {
+        return pool[spawnName]?.size ?: 0
+    }
 
-        return null
+    fun clear() {
+        pool.clear()
     }
-}
\ No newline at end of file
+}
@@ -21,6 +21,9 @@ import com.almasb.fxgl.logging.Logger
 import javafx.geometry.Point2D
 import javafx.geometry.Rectangle2D
 import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
 import java.util.function.Function
 import java.util.function.Predicate
 import kotlin.NoSuchElementException
@@ -62,6 +65,62 @@ class GameWorld {
 
     private val pool = EntityPool()
 
+    /**
+     * Type and component indices of entities in this world, used by queries.
+     */
+    private val index = EntityIndex()
+
+    /**
+     * Optional spatial index of entities in this world, used by spatial queries if enabled.
+     */
+    private var spatialIndex: SpatialHashGrid? = null
+
+    /**
+     * Systems updated each frame after entities.
+     */
+    private val systems = SystemScheduler()
+
+    /**
+     * Structural changes recorded from any thread, e.g. by parallel systems.
+     * The changes are applied after each phase of system updates and at the end of each world update.
+     */
+    val commandBuffer = EntityCommandBuffer(this)
+
+    /**
+     * Archetypes of entities in this world, maintained once a system is added or archetypes are queried.
+     */
+    private var archetypes: ArchetypeIndex? = null
+
+    /**
+     * @return true if spatial queries are backed by a spatial index
+     */
+    val isSpatialIndexEnabled: Boolean
+        get() = spatialIndex != null
+
+    /**
+     * Enables a uniform grid spatial index, which is kept up to date as entities move,
+     * so that range, radius, point, nearest and ray queries only visit nearby entities.
+     * The cell size should be comparable to the typical entity size or query range.
+     * Calling this again replaces the index with one of the new cell size.
+     *
+     * @param cellSize width and height of a single grid cell
+     */
+    fun enableSpatialIndex(cellSize: Double) {
+        val grid = SpatialHashGrid(cellSize)
+        entities.forEach { grid.add(it) }
+
+        spatialIndex?.clear()
+        spatialIndex = grid
+    }
+
+    /**
+     * Disables the spatial index, spatial queries will scan all entities.
+     */
+    fun disableSpatialIndex() {
+        spatialIndex?.clear()
+        spatialIndex = null
+    }
+
     init {
         log.debug("Game world initialized")
     }
@@ -92,6 +151,8 @@ class GameWorld {
     }
 
     private fun add(entity: Entity) {
+        index.add(entity)
+        spatialIndex?.add(entity)
         entity.init(this)
         notifyEntityAdded(entity)
     }
@@ -116,6 +177,8 @@ class GameWorld {
         }
 
         entities.remove(entity)
+        index.remove(entity)
+        spatialIndex?.remove(entity)
 
         entity.markForRemoval()
         notifyEntityRemoved(entity)
@@ -123,7 +186,7 @@ class GameWorld {
         if (entity.isReusable) {
             // if spawnName is not present, then the user must be maintaining this entity manually
             entity.getPropertyOptional<String>("spawnName").ifPresent { spawnName ->
-                pool.put(spawnName, entity)
+                pool.put(poolNameOf(spawnName), entity)
             }
         }
 
@@ -170,13 +233,68 @@ class GameWorld {
                 e.clean()
                 it.remove()
             } else {
-                val tpfRatio = e.getComponentOptional(TimeComponent::class.java)
-                        .map { it.value }
-                        .orElse(1.0)
+                val tpfRatio = if (e.hasComponent(TimeComponent::class.java))
+                    e.getComponent(TimeComponent::class.java).value
+                else
+                    1.0
 
                 e.update(tpf * tpfRatio)
             }
         }
+
+        updateSystems(tpf)
+
+        commandBuffer.apply()
+    }
+
+    private fun updateSystems(tpf: Double) {
+        val archetypes = archetypes ?: return
+
+        systems.update(archetypes, index, commandBuffer, tpf)
+    }
+
+    /**
+     * Adds a system, which is updated each frame after entities, starting from the next frame.
+     * Entities are stored in archetypes from this point onwards.
+     */
+    fun addSystem(system: EntitySystem) {
+        if (systems.contains(system)) {
+            log.warning("System is already added to world: $system")
+            return
+        }
+
+        if (archetypes == null)
+            archetypes = index.enableArchetypes()
+
+        systems.add(system)
+        system.onAdded(this)
+    }
+
+    fun removeSystem(system: EntitySystem) {
+        if (systems.remove(system)) {
+            system.onRemoved(this)
+        }
+    }
+
+    /**
+     * Set the pool that parallel systems are updated on.
+     * Default is the common pool.
+     */
+    fun setSystemPool(pool: ForkJoinPool) {
+        systems.setPool(pool)
+    }
+
+    /**
+     * Enables archetype storage if not already.
+     *
+     * @param mask component types
+     * @return direct array (do NOT modify) of archetypes whose entities have all of given component types,
+     * possibly including empty archetypes
+     */
+    fun getArchetypes(mask: ComponentMask): Array<Archetype> {
+        val archetypes = archetypes ?: index.enableArchetypes().also { archetypes = it }
+
+        return archetypes.getMatching(mask)
     }
 
     /**
@@ -214,8 +332,16 @@ class GameWorld {
 
         properties.clear()
         entities.clear()
+        systems.systems.toList().forEach { removeSystem(it) }
+        commandBuffer.clear()
+        index.clear()
+        archetypes = null
+        spatialIndex?.clear()
         entityFactories.clear()
         entitySpawners.clear()
+        preloadCounts.clear()
+        preloadPoolNames.clear()
+        pool.clear()
         worldListeners.clear()
     }
 
@@ -284,6 +410,8 @@ class GameWorld {
             val e = it.next()
 
             if (canRemove(e)) {
+                index.remove(e)
+                spatialIndex?.remove(e)
                 e.markForRemoval()
                 notifyEntityRemoved(e)
                 e.clean()
@@ -301,14 +429,39 @@ class GameWorld {
     private val entitySpawners = hashMapOf<String, Function<SpawnData, Entity>>()
 
     /**
+     * Number of entities to preload for pool names of methods annotated with [Preload].
+     */
+    private val preloadCounts = hashMapOf<String, Int>()
+
+    /**
+     * Maps spawn names of methods annotated with [Preload] to the name of their pool,
+     * which is the first spawn name of the method, so that aliases share the pool.
+     */
+    private val preloadPoolNames = hashMapOf<String, String>()
+
+    /**
+     * If true, entities of spawn methods annotated with [Preload] are created
+     * when their factory is added and put into the pool of reusable entities.
+     * Default: true.
+     */
+    var isEntityPreloadEnabled = true
+
+    /**
+     * Adds an entity factory, whose methods annotated with [Spawns] are used to create entities.
+     * If entity preloading is enabled, entities of methods annotated with [Preload] are created
+     * on the calling thread (e.g. loading thread when called from initGame()).
+     *
      * @param entityFactory factory for creating entities
      */
     fun addEntityFactory(entityFactory: EntityFactory) {
         val entityNames = arrayListOf<String>()
 
-        ReflectionUtils.findMethodsMapToFunctions<SpawnData, Entity, Spawns>(entityFactory, Spawns::class.java)
-                .forEach { annotation, entitySpawner ->
-                    
+        ReflectionUtils.findMethods(entityFactory, Spawns::class.java)
+                .forEach { annotation, method ->
+
+                    // called on every spawn, so we avoid reflective calls
+                    val entitySpawner = ReflectionUtils.mapToFunctionDirect<SpawnData, Entity>(entityFactory, method)
+
                     val entityAliases = annotation.value.split(",".toRegex())
                     entityAliases.forEach { entityName ->
                         checkDuplicateSpawners(entityFactory, entityName)
@@ -316,20 +469,89 @@ class GameWorld {
                         entitySpawners.put(entityName, entitySpawner)
                         entityNames.add(entityName)
                     }
-                }
 
-//        ReflectionUtils.findMethods(entityFactory, Preload::class.java)
-//                .forEach { preload, method ->
-//
-//                    val ann = method.getDeclaredAnnotation(Spawns::class.java)
-//                    val entityAliases = ann.value.split(",".toRegex())
-//
-//                    val numToPreload = preload.value
-//
-//                    entityPreloader.addForPreloading(entityAliases, numToPreload)
-//                }
+                    method.getDeclaredAnnotation(Preload::class.java)?.let { preload ->
+                        val poolName = entityAliases[0]
+
+                        preloadCounts[poolName] = preload.value
+                        entityAliases.forEach { preloadPoolNames[it] = poolName }
+                    }
+                }
 
         entityFactories.put(entityFactory, entityNames)
+
+        if (isEntityPreloadEnabled) {
+            entityNames.forEach { name ->
+                preloadCounts[name]?.let { count ->
+                    try {
+                        preload(name, count)
+                    } catch (e: Exception) {
+                        log.warning("Failed to preload $name with empty spawn data, call preload() with spawn data instead", e)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates [count] entities with given spawn name and data, and puts them into the pool of reusable entities,
+     * so that subsequent spawns of [entityName] (or its aliases) do not create new entities.
+     * Preloaded entities are reusable, i.e. returned to the pool when removed.
+     * This can be called from a background thread, as long as the spawn method can.
+     *
+     * @param entityName name of entity as specified by [Spawns]
+     * @param count number of entities to create
+     * @param data spawn data passed to the spawn method, for methods that require some data
+     */
+    @JvmOverloads
+    fun preload(entityName: String, count: Int, data: SpawnData = SpawnData(0.0, 0.0)) {
+        val spawner = entitySpawners.get(entityName)
+                ?: throw IllegalArgumentException("No EntityFactory has a method annotated @Spawns($entityName)")
+
+        val poolName = poolNameOf(entityName)
+
+        repeat(count) {
+            // each call gets its own copy, since spawn methods may modify the data
+            val spawnData = SpawnData(data.x, data.y, data.z)
+            data.data.forEach { (key, value) -> spawnData.put(key, value) }
+
+            if (!spawnData.hasKey("type")) {
+                spawnData.put("type", entityName)
+            }
+
+            spawnData.put("spawnName", entityName)
+
+            val entity = tryCatchRoot { spawner.apply(spawnData) }
+            markReusable(entity, entityName)
+
+            pool.put(poolName, entity)
+        }
+    }
+
+    /**
+     * Same as [preload] but runs on given executor, e.g. a background thread,
+     * while the game keeps running.
+     *
+     * @return future completed when entities are preloaded
+     */
+    @JvmOverloads
+    fun preloadAsync(entityName: String, count: Int, executor: Executor, data: SpawnData = SpawnData(0.0, 0.0)): CompletableFuture<Void> {
+        return CompletableFuture.runAsync({ preload(entityName, count, data) }, executor)
+    }
+
+    /**
+     * @return number of reusable entities with given spawn name that are in the pool
+     */
+    fun getNumPooled(entityName: String): Int = pool.size(poolNameOf(entityName))
+
+    private fun poolNameOf(spawnName: String): String = preloadPoolNames[spawnName] ?: spawnName
+
+    private fun markReusable(entity: Entity, entityName: String) {
+        entity.isReusable = true
+
+        if (!entity.properties.exists("spawnName")) {
+            entity.setProperty("spawnName", entityName)
+        }
     }
 
     private fun checkDuplicateSpawners(entityFactory: EntityFactory, entityName: String) {
@@ -412,26 +634,43 @@ class GameWorld {
         val spawner = entitySpawners.get(entityName)
                 ?: throw IllegalArgumentException("No EntityFactory has a method annotated @Spawns($entityName)")
 
-        val pooledEntity = pool.take(entityName)
-        if (pooledEntity != null) {
-            pooledEntity.setPosition3D(data.x, data.y, data.z)
-
-            return pooledEntity
-        }
-
         if (!data.hasKey("type")) {
             data.put("type", entityName)
         }
 
         data.put("spawnName", entityName)
 
+        val pooledEntity = pool.take(poolNameOf(entityName))
+        if (pooledEntity != null) {
+            reinitialize(pooledEntity, data)
+
+            return pooledEntity
+        }
+
         return tryCatchRoot { spawner.apply(data) }
     }
 
+    /**
+     * Applies given spawn data to a reusable entity taken from the pool:
+     * sets its position and properties (same as entityBuilder(data)),
+     * then lets its components reset their state from the data, see [Component.onReused].
+     */
+    private fun reinitialize(entity: Entity, data: SpawnData) {
+        entity.setPosition3D(data.x, data.y, data.z)
+
+        data.data.forEach { (key, value) -> entity.setProperty(key, value) }
+
+        entity.components.forEach { it.onReused(data) }
+    }
+
     /* QUERIES */
 
     fun getSingleton(type: Enum<*>): Entity {
-        return getSingleton(Predicate { it.isType(type) })
+        val bucket = index.getByType(type)
+        if (bucket.isEmpty())
+            throw NoSuchElementException("No entity found with type: $type")
+
+        return bucket.first()
     }
 
     fun getSingleton(predicate: Predicate<Entity>): Entity {
@@ -444,7 +683,11 @@ class GameWorld {
      * @return first occurrence matching given type
      */
     fun getSingletonOptional(type: Enum<*>): Optional<Entity> {
-        return getSingletonOptional(Predicate { it.isType(type) })
+        val bucket = index.getByType(type)
+        if (bucket.isEmpty())
+            return Optional.empty()
+
+        return Optional.of(bucket.first())
     }
 
     /**
@@ -471,7 +714,19 @@ class GameWorld {
      * @return array of entities that have given component
      */
     fun getEntitiesByComponent(type: Class<out Component>): List<Entity> {
-        return entities.filter { it.hasComponent(type) }
+        return index.getByComponent(type).toList()
+    }
+
+    /**
+     * Adds entities that have given component to [result].
+     * The result array is not cleared beforehand.
+     * This query does not allocate.
+     *
+     * @param type component type
+     * @param result array to add matching entities to
+     */
+    fun getEntitiesByComponent(type: Class<out Component>, result: Array<Entity>) {
+        result.addAll(index.getByComponent(type))
     }
 
     /**
@@ -479,7 +734,15 @@ class GameWorld {
      * @return entities that have given component mapped to component instance
      */
     fun <T : Component> getEntitiesByComponentMapped(type: Class<T>): Map<Entity, T> {
-        return entities.filter { it.hasComponent(type) }.associateWith { it.getComponent(type) }
+        val bucket = index.getByComponent(type)
+        val result = linkedMapOf<Entity, T>()
+
+        for (i in 0 until bucket.size()) {
+            val e = bucket.get(i)
+            result[e] = e.getComponent(type)
+        }
+
+        return result
     }
 
     /**
@@ -503,11 +766,32 @@ class GameWorld {
         if (types.isEmpty())
             return entitiesCopy
 
-        return entities.filter { isOneOfTypes(it, *types) }
+        if (types.size == 1)
+            return index.getByType(types[0]).toList()
+
+        val result = Array<Entity>()
+        getEntitiesByType(result, *types)
+        return result.toList()
     }
 
-    private fun isOneOfTypes(entity: Entity, vararg types: Enum<*>): Boolean {
-        return types.any { entity.isType(it) }
+    /**
+     * Adds entities of given types to [result].
+     * If called with no types, all entities are added.
+     * The result array is not cleared beforehand.
+     * This query does not allocate (apart from the vararg array, if any).
+     *
+     * @param result array to add matching entities to
+     * @param types entity types
+     */
+    fun getEntitiesByType(result: Array<Entity>, vararg types: Enum<*>) {
+        if (types.isEmpty()) {
+            for (i in entities.indices) {
+                result.add(entities[i])
+            }
+            return
+        }
+
+        index.getByTypes(result, types)
     }
 
     /**
@@ -520,7 +804,102 @@ class GameWorld {
      * @return new list containing entities that satisfy query filters
      */
     fun getEntitiesInRange(selection: Rectangle2D): List<Entity> {
-        return entities.filter { it.boundingBoxComponent.isWithin(selection) }
+        val grid = spatialIndex ?: return entities.filter { it.boundingBoxComponent.isWithin(selection) }
+
+        val result = Array<Entity>()
+        grid.queryRange(selection.minX, selection.minY, selection.maxX, selection.maxY, result)
+        return result.toList()
+    }
+
+    /**
+     * Adds entities which are partially or entirely in the specified
+     * rectangular selection to [result].
+     * The result array is not cleared beforehand.
+     *
+     * @param selection Rectangle2D that describes the selection box
+     * @param result array to add matching entities to
+     */
+    fun getEntitiesInRange(selection: Rectangle2D, result: Array<Entity>) {
+        val grid = spatialIndex
+
+        if (grid != null) {
+            grid.queryRange(selection.minX, selection.minY, selection.maxX, selection.maxY, result)
+            return
+        }
+
+        for (i in entities.indices) {
+            val e = entities[i]
+
+            if (e.boundingBoxComponent.isWithin(selection))
+                result.add(e)
+        }
+    }
+
+    /**
+     * Returns a list of entities whose bounding box
+     * intersects the circle with given center and radius.
+     *
+     * @param center center of the circle in world coordinates
+     * @param radius radius of the circle
+     * @return new list containing entities that satisfy query filters
+     */
+    fun getEntitiesInRadius(center: Point2D, radius: Double): List<Entity> {
+        val result = Array<Entity>()
+        getEntitiesInRadius(center, radius, result)
+        return result.toList()
+    }
+
+    /**
+     * Adds entities whose bounding box intersects the circle
+     * with given center and radius to [result].
+     * The result array is not cleared beforehand.
+     *
+     * @param center center of the circle in world coordinates
+     * @param radius radius of the circle
+     * @param result array to add matching entities to
+     */
+    fun getEntitiesInRadius(center: Point2D, radius: Double, result: Array<Entity>) {
+        val grid = spatialIndex
+
+        if (grid != null) {
+            grid.queryRadius(center.x, center.y, radius, result)
+            return
+        }
+
+        for (i in entities.indices) {
+            val e = entities[i]
+            val bbox = e.boundingBoxComponent
+
+            val dx = maxOf(bbox.getMinXWorld() - center.x, 0.0, center.x - bbox.getMaxXWorld())
+            val dy = maxOf(bbox.getMinYWorld() - center.y, 0.0, center.y - bbox.getMaxYWorld())
+
+            if (dx * dx + dy * dy <= radius * radius)
+                result.add(e)
+        }
+    }
+
+    /**
+     * Returns a list of entities whose bounding box intersects
+     * the line segment from start to end.
+     * If the spatial index is enabled, entities are returned
+     * approximately in order of increasing distance from start.
+     *
+     * @param start start of the segment in world coordinates
+     * @param end end of the segment in world coordinates
+     * @return new list containing entities that satisfy query filters
+     */
+    fun getEntitiesOnRay(start: Point2D, end: Point2D): List<Entity> {
+        val grid = spatialIndex
+
+        if (grid != null) {
+            val result = Array<Entity>()
+            grid.queryRay(start.x, start.y, end.x, end.y, result)
+            return result.toList()
+        }
+
+        return entities.filter {
+            SpatialHashGrid.intersectsSegment(it, start.x, start.y, end.x - start.x, end.y - start.y)
+        }
     }
 
     /**
@@ -544,7 +923,11 @@ class GameWorld {
      * @return entities at given point
      */
     fun getEntitiesAt(position: Point2D): List<Entity> {
-        return entities.filter { it.position == position }
+        val grid = spatialIndex ?: return entities.filter { it.position == position }
+
+        val result = Array<Entity>()
+        grid.queryPoint(position.x, position.y, result)
+        return result.toList()
     }
 
     /**
@@ -560,11 +943,56 @@ class GameWorld {
      * @return closest entity to selected entity with type
      */
     fun getClosestEntity(entity: Entity, filter: Predicate<Entity>): Optional<Entity> {
-        return Optional.ofNullable(
-                entities.filter { filter.test(it) && it !== entity }
-                        .sortedBy { entity.distance(it) }
-                        .firstOrNull()
-        )
+        val grid = spatialIndex
+
+        if (grid != null) {
+            val result = Array<Entity>(1)
+            grid.queryNearest(entity.x, entity.y, 1, Predicate { it !== entity && filter.test(it) }, result)
+
+            return if (result.isEmpty()) Optional.empty() else Optional.of(result.first())
+        }
+
+        var closest: Entity? = null
+        var minDistance = Double.MAX_VALUE
+
+        for (i in entities.indices) {
+            val e = entities[i]
+
+            if (e === entity || !filter.test(e))
+                continue
+
+            val distance = entity.distance(e)
+            if (distance < minDistance) {
+                minDistance = distance
+                closest = e
+            }
+        }
+
+        return Optional.ofNullable(closest)
+    }
+
+    /**
+     * Returns up to [k] entities satisfying given filter that are closest
+     * to given point, in order of increasing distance.
+     * The distance is measured to the entity position (top-left point).
+     *
+     * @param point point in the world
+     * @param k max number of entities to return
+     * @param filter requirements
+     * @return new list containing entities that satisfy query filters
+     */
+    fun getClosestEntities(point: Point2D, k: Int, filter: Predicate<Entity>): List<Entity> {
+        val grid = spatialIndex
+
+        if (grid != null) {
+            val result = Array<Entity>(maxOf(k, 1))
+            grid.queryNearest(point.x, point.y, k, filter, result)
+            return result.toList()
+        }
+
+        return entities.filter { filter.test(it) }
+                .sortedBy { it.position.distance(point) }
+                .take(maxOf(k, 0))
     }
 
     /**
@@ -579,13 +1007,17 @@ class GameWorld {
      * @return entity that matches the query or [Optional.empty]
      */
     fun getEntityByID(name: String, id: Int): Optional<Entity> {
-        return Optional.ofNullable(
-                getEntitiesByComponent(IDComponent::class.java).find {
-                    val idComponent = it.getComponent(IDComponent::class.java)
+        val bucket = index.getByComponent(IDComponent::class.java)
 
-                    return@find idComponent.name == name && idComponent.id == id
-                }
-        )
+        for (i in 0 until bucket.size()) {
+            val e = bucket.get(i)
+            val idComponent = e.getComponent(IDComponent::class.java)
+
+            if (idComponent.name == name && idComponent.id == id)
+                return Optional.of(e)
+        }
+
+        return Optional.empty()
     }
 
     /**
@@ -0,0 +1,509 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.entity
+
+import com.almasb.fxgl.core.collection.Array
+import javafx.beans.InvalidationListener
+import javafx.beans.Observable
+import java.util.function.Predicate
+import kotlin.math.abs
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/**
+ * A uniform hash grid of entities.
+ * Each entity is stored in all cells covered by its bounding box and its position (top-left point),
+ * so both bbox-based and position-based queries only need to visit nearby cells.
+ * Cells are created on demand, hence the world does not need to be bounded.
+ *
+ * Entity movement is tracked lazily: a change to the bounding box in world coordinates marks
+ * the entity as dirty and dirty entities are moved to their new cells before the next query.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+internal class SpatialHashGrid(val cellSize: Double) {
+
+    companion object {
+
+        /**
+         * Slab test of the segment (startX, startY) + t * (dx, dy), t in [0, 1], against entity bbox.
+         */
+        fun intersectsSegment(e: Entity, startX: Double, startY: Double, dx: Double, dy: Double): Boolean {
+            val bbox = e.boundingBoxComponent
+
+            var tMin = 0.0
+            var tMax = 1.0
+
+            if (dx == 0.0) {
+                if (startX < bbox.getMinXWorld() || startX > bbox.getMaxXWorld())
+                    return false
+            } else {
+                val t1 = (bbox.getMinXWorld() - startX) / dx
+                val t2 = (bbox.getMaxXWorld() - startX) / dx
+
+                tMin = max(tMin, min(t1, t2))
+                tMax = min(tMax, max(t1, t2))
+
+                if (tMin > tMax)
+                    return false
+            }
+
+            if (dy == 0.0) {
+                if (startY < bbox.getMinYWorld() || startY > bbox.getMaxYWorld())
+                    return false
+            } else {
+                val t1 = (bbox.getMinYWorld() - startY) / dy
+                val t2 = (bbox.getMaxYWorld() - startY) / dy
+
+                tMin = max(tMin, min(t1, t2))
+                tMax = min(tMax, max(t1, t2))
+
+                if (tMin > tMax)
+                    return false
+            }
+
+            return true
+        }
+    }
+
+    private inner class Proxy(val entity: Entity) : InvalidationListener {
+        var minCellX = 0
+        var minCellY = 0
+        var maxCellX = -1
+        var maxCellY = -1
+
+        var isDirty = false
+
+        /**
+         * Id of the last query that visited this proxy, so that entities spanning
+         * several cells are only reported once per query.
+         */
+        var queryStamp = 0
+
+        override fun invalidated(observable: Observable) {
+            if (!isDirty) {
+                isDirty = true
+                dirtyProxies.add(this)
+            }
+        }
+    }
+
+    private val proxies = HashMap<Entity, Proxy>()
+    private val cells = HashMap<Long, Array<Proxy>>()
+    private val cellPool = Array<Array<Proxy>>()
+    private val dirtyProxies = Array<Proxy>()
+
+    private var queryStamp = 0
+
+    // bounds of cells that have been occupied, used to limit iteration over empty space
+    private var minOccupiedX = Int.MAX_VALUE
+    private var minOccupiedY = Int.MAX_VALUE
+    private var maxOccupiedX = Int.MIN_VALUE
+    private var maxOccupiedY = Int.MIN_VALUE
+
+    // scratch buffers for nearest neighbour queries
+    private var nearestEntities = arrayOfNulls<Entity>(8)
+    private var nearestDistances = DoubleArray(8)
+
+    init {
+        require(cellSize > 0) { "Cell size must be positive: $cellSize" }
+    }
+
+    val size: Int
+        get() = proxies.size
+
+    fun add(entity: Entity) {
+        if (proxies.containsKey(entity))
+            return
+
+        val proxy = Proxy(entity)
+        proxies[entity] = proxy
+
+        val bbox = entity.boundingBoxComponent
+        bbox.minXWorldProperty().addListener(proxy)
+        bbox.minYWorldProperty().addListener(proxy)
+        bbox.maxXWorldProperty().addListener(proxy)
+        bbox.maxYWorldProperty().addListener(proxy)
+
+        insert(proxy)
+    }
+
+    fun remove(entity: Entity) {
+        val proxy = proxies.remove(entity) ?: return
+
+        removeListeners(proxy)
+        erase(proxy)
+
+        if (proxy.isDirty) {
+            dirtyProxies.removeValueByIdentity(proxy)
+        }
+    }
+
+    fun clear() {
+        proxies.values.forEach { removeListeners(it) }
+        proxies.clear()
+
+        cells.values.forEach {
+            it.clear()
+            cellPool.add(it)
+        }
+        cells.clear()
+
+        dirtyProxies.clear()
+
+        minOccupiedX = Int.MAX_VALUE
+        minOccupiedY = Int.MAX_VALUE
+        maxOccupiedX = Int.MIN_VALUE
+        maxOccupiedY = Int.MIN_VALUE
+    }
+
+    /**
+     * Adds entities that are partially or entirely within given bounds to [result].
+     */
+    fun queryRange(minX: Double, minY: Double, maxX: Double, maxY: Double, result: Array<Entity>) {
+        refresh()
+
+        val stamp = ++queryStamp
+
+        val fromX = max(cellOf(minX), minOccupiedX)
+        val fromY = max(cellOf(minY), minOccupiedY)
+        val toX = min(cellOf(maxX), maxOccupiedX)
+        val toY = min(cellOf(maxY), maxOccupiedY)
+
+        if (fromX > toX || fromY > toY)
+            return
+
+        // if the range covers more cells than exist, it is cheaper to visit existing cells
+        if ((toX - fromX + 1).toLong() * (toY - fromY + 1) > cells.size) {
+            cells.values.forEach { cell ->
+                for (i in 0 until cell.size()) {
+                    val proxy = cell.get(i)
+
+                    if (proxy.queryStamp != stamp) {
+                        proxy.queryStamp = stamp
+
+                        if (proxy.entity.boundingBoxComponent.isWithin(minX, minY, maxX, maxY))
+                            result.add(proxy.entity)
+                    }
+                }
+            }
+            return
+        }
+
+        for (cy in fromY..toY) {
+            for (cx in fromX..toX) {
+                val cell = cells[key(cx, cy)] ?: continue
+
+                for (i in 0 until cell.size()) {
+                    val proxy = cell.get(i)
+
+                    if (proxy.queryStamp != stamp) {
+                        proxy.queryStamp = stamp
+
+                        if (proxy.entity.boundingBoxComponent.isWithin(minX, minY, maxX, maxY))
+                            result.add(proxy.entity)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds entities whose bounding box intersects the circle with given center and radius to [result].
+     */
+    fun queryRadius(centerX: Double, centerY: Double, radius: Double, result: Array<Entity>) {
+        refresh()
+
+        val stamp = ++queryStamp
+
+        val fromX = max(cellOf(centerX - radius), minOccupiedX)
+        val fromY = max(cellOf(centerY - radius), minOccupiedY)
+        val toX = min(cellOf(centerX + radius), maxOccupiedX)
+        val toY = min(cellOf(centerY + radius), maxOccupiedY)
+
+        val radiusSquared = radius * radius
+
+        for (cy in fromY..toY) {
+            for (cx in fromX..toX) {
+                val cell = cells[key(cx, cy)] ?: continue
+
+                for (i in 0 until cell.size()) {
+                    val proxy = cell.get(i)
+
+                    if (proxy.queryStamp != stamp) {
+                        proxy.queryStamp = stamp
+
+                        if (distanceSquaredToBBox(proxy.entity, centerX, centerY) <= radiusSquared)
+                            result.add(proxy.entity)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds entities whose position is equal to given x and y to [result].
+     */
+    fun queryPoint(x: Double, y: Double, result: Array<Entity>) {
+        refresh()
+
+        val cell = cells[key(cellOf(x), cellOf(y))] ?: return
+
+        for (i in 0 until cell.size()) {
+            val e = cell.get(i).entity
+
+            if (e.x == x && e.y == y)
+                result.add(e)
+        }
+    }
+
+    /**
+     * Adds up to [k] entities that satisfy [filter] and are closest to given point to [result],
+     * in order of increasing distance.
+     * The distance is measured to the entity position (top-left point).
+     */
+    fun queryNearest(x: Double, y: Double, k: Int, filter: Predicate<Entity>, result: Array<Entity>) {
+        refresh()
+
+        if (k <= 0 || proxies.isEmpty())
+            return
+
+        if (nearestEntities.size < k) {
+            nearestEntities = arrayOfNulls(k)
+            nearestDistances = DoubleArray(k)
+        }
+
+        val stamp = ++queryStamp
+        var count = 0
+
+        val originX = cellOf(x)
+        val originY = cellOf(y)
+
+        val maxRing = max(
+                max(abs(originX - minOccupiedX), abs(maxOccupiedX - originX)),
+                max(abs(originY - minOccupiedY), abs(maxOccupiedY - originY))
+        )
+
+        for (ring in 0..maxRing) {
+            for (cy in originY - ring..originY + ring) {
+                val isEdgeRow = cy == originY - ring || cy == originY + ring
+
+                // for rows that are not top or bottom edges of the ring, only visit left and right cells
+                val step = if (isEdgeRow || ring == 0) 1 else 2 * ring
+
+                var cx = originX - ring
+                while (cx <= originX + ring) {
+                    val cell = cells[key(cx, cy)]
+
+                    if (cell != null) {
+                        for (i in 0 until cell.size()) {
+                            val proxy = cell.get(i)
+
+                            if (proxy.queryStamp == stamp)
+                                continue
+
+                            proxy.queryStamp = stamp
+
+                            val e = proxy.entity
+                            if (!filter.test(e))
+                                continue
+
+                            val dx = e.x - x
+                            val dy = e.y - y
+                            val dist = sqrt(dx * dx + dy * dy)
+
+                            count = insertNearest(e, dist, count, k)
+                        }
+                    }
+
+                    cx += step
+                }
+            }
+
+            // any entity not yet visited is at least ring * cellSize away
+            if (count == k && nearestDistances[k - 1] <= ring * cellSize)
+                break
+        }
+
+        for (i in 0 until count) {
+            result.add(nearestEntities[i])
+            nearestEntities[i] = null
+        }
+    }
+
+    /**
+     * Adds entities whose bounding box intersects the segment from start to end to [result],
+     * approximately in order of increasing distance from start.
+     */
+    fun queryRay(startX: Double, startY: Double, endX: Double, endY: Double, result: Array<Entity>) {
+        refresh()
+
+        val stamp = ++queryStamp
+
+        var cx = cellOf(startX)
+        var cy = cellOf(startY)
+        val lastX = cellOf(endX)
+        val lastY = cellOf(endY)
+
+        val dx = endX - startX
+        val dy = endY - startY
+
+        val stepX = if (dx > 0) 1 else -1
+        val stepY = if (dy > 0) 1 else -1
+
+        val tDeltaX = if (dx != 0.0) cellSize / abs(dx) else Double.POSITIVE_INFINITY
+        val tDeltaY = if (dy != 0.0) cellSize / abs(dy) else Double.POSITIVE_INFINITY
+
+        var tMaxX = when {
+            dx > 0 -> ((cx + 1) * cellSize - startX) / dx
+            dx < 0 -> (cx * cellSize - startX) / dx
+            else -> Double.POSITIVE_INFINITY
+        }
+
+        var tMaxY = when {
+            dy > 0 -> ((cy + 1) * cellSize - startY) / dy
+            dy < 0 -> (cy * cellSize - startY) / dy
+            else -> Double.POSITIVE_INFINITY
+        }
+
+        // guards against floating point drift past the last cell
+        var steps = abs(lastX - cx) + abs(lastY - cy)
+
+        while (true) {
+            val cell = cells[key(cx, cy)]
+
+            if (cell != null) {
+                for (i in 0 until cell.size()) {
+                    val proxy = cell.get(i)
+
+                    if (proxy.queryStamp != stamp) {
+                        proxy.queryStamp = stamp
+
+                        if (intersectsSegment(proxy.entity, startX, startY, dx, dy))
+                            result.add(proxy.entity)
+                    }
+                }
+            }
+
+            if (steps-- <= 0 || (cx == lastX && cy == lastY))
+                break
+
+            if (tMaxX < tMaxY) {
+                tMaxX += tDeltaX
+                cx += stepX
+            } else {
+                tMaxY += tDeltaY
+                cy += stepY
+            }
+        }
+    }
+
+    /**
+     * Moves dirty entities to their current cells.
+     */
+    private fun refresh() {
+        for (i in 0 until dirtyProxies.size()) {
+            val proxy = dirtyProxies.get(i)
+            proxy.isDirty = false
+
+            erase(proxy)
+            insert(proxy)
+        }
+
+        dirtyProxies.clear()
+    }
+
+    private fun insert(proxy: Proxy) {
+        val e = proxy.entity
+        val bbox = e.boundingBoxComponent
+
+        // reading the observed properties re-validates them, so that further changes are reported
+        val minX = min(bbox.minXWorldProperty().get(), e.x)
+        val minY = min(bbox.minYWorldProperty().get(), e.y)
+        val maxX = max(bbox.maxXWorldProperty().get(), e.x)
+        val maxY = max(bbox.maxYWorldProperty().get(), e.y)
+
+        proxy.minCellX = cellOf(minX)
+        proxy.minCellY = cellOf(minY)
+        proxy.maxCellX = cellOf(maxX)
+        proxy.maxCellY = cellOf(maxY)
+
+        for (cy in proxy.minCellY..proxy.maxCellY) {
+            for (cx in proxy.minCellX..proxy.maxCellX) {
+                cells.getOrPut(key(cx, cy)) { if (cellPool.isEmpty()) Array<Proxy>() else cellPool.pop() }
+                        .add(proxy)
+            }
+        }
+
+        minOccupiedX = min(minOccupiedX, proxy.minCellX)
+        minOccupiedY = min(minOccupiedY, proxy.minCellY)
+        maxOccupiedX = max(maxOccupiedX, proxy.maxCellX)
+        maxOccupiedY = max(maxOccupiedY, proxy.maxCellY)
+    }
+
+    private fun erase(proxy: Proxy) {
+        for (cy in proxy.minCellY..proxy.maxCellY) {
+            for (cx in proxy.minCellX..proxy.maxCellX) {
+                val key = key(cx, cy)
+                val cell = cells[key] ?: continue
+
+                cell.removeValueByIdentity(proxy)
+
+                if (cell.isEmpty()) {
+                    cells.remove(key)
+                    cellPool.add(cell)
+                }
+            }
+        }
+    }
+
+    private fun removeListeners(proxy: Proxy) {
+        val bbox = proxy.entity.boundingBoxComponent
+        bbox.minXWorldProperty().removeListener(proxy)
+        bbox.minYWorldProperty().removeListener(proxy)
+        bbox.maxXWorldProperty().removeListener(proxy)
+        bbox.maxYWorldProperty().removeListener(proxy)
+    }
+
+    /**
+     * Inserts given entity into the sorted nearest buffer of capacity [k].
+     *
+     * @return new number of entities in the buffer
+     */
+    private fun insertNearest(e: Entity, dist: Double, count: Int, k: Int): Int {
+        if (count == k && dist >= nearestDistances[k - 1])
+            return count
+
+        var i = if (count == k) k - 1 else count
+
+        while (i > 0 && nearestDistances[i - 1] > dist) {
+            nearestEntities[i] = nearestEntities[i - 1]
+            nearestDistances[i] = nearestDistances[i - 1]
+            i--
+        }
+
+        nearestEntities[i] = e
+        nearestDistances[i] = dist
+
+        return if (count == k) k else count + 1
+    }
+
+    private fun cellOf(value: Double): Int = floor(value / cellSize).toInt()
+
+    private fun key(cx: Int, cy: Int): Long = (cx.toLong() shl 32) or (cy.toLong() and 0xFFFFFFFFL)
+
+    private fun distanceSquaredToBBox(e: Entity, x: Double, y: Double): Double {
+        val bbox = e.boundingBoxComponent
+
+        val dx = max(max(bbox.getMinXWorld() - x, 0.0), x - bbox.getMaxXWorld())
+        val dy = max(max(bbox.getMinYWorld() - y, 0.0), y - bbox.getMaxYWorld())
+
+        return dx * dx + dy * dy
+    }
+}
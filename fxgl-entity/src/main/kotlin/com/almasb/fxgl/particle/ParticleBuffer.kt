@@ -0,0 +1,298 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.particle
+
+import com.almasb.fxgl.animation.AnimatedColor
+import javafx.animation.Interpolator
+import javafx.geometry.Point2D
+import javafx.scene.effect.BlendMode
+import javafx.scene.image.Image
+import javafx.scene.paint.Color
+import javafx.scene.paint.Paint
+import java.util.function.Function
+
+/**
+ * Stores particle state in primitive arrays (one array per field) rather than one [Particle] object per particle.
+ * Particles are simulated the same way as [Particle] does, but no objects or scene graph nodes exist per particle,
+ * so a large number of particles can be updated and then drawn in bulk, see [ParticleCanvasComponent].
+ * Dead particles are replaced by the last particle, so the order of particles is not preserved.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class ParticleBuffer
+@JvmOverloads constructor(initialCapacity: Int = 1024) {
+
+    /**
+     * Number of live particles.
+     */
+    var size = 0
+        private set
+
+    val isEmpty: Boolean
+        get() = size == 0
+
+    internal var startX = FloatArray(initialCapacity)
+    internal var startY = FloatArray(initialCapacity)
+    internal var x = FloatArray(initialCapacity)
+    internal var y = FloatArray(initialCapacity)
+    internal var velocityX = FloatArray(initialCapacity)
+    internal var velocityY = FloatArray(initialCapacity)
+    internal var accelerationX = FloatArray(initialCapacity)
+    internal var accelerationY = FloatArray(initialCapacity)
+    internal var radiusX = FloatArray(initialCapacity)
+    internal var radiusY = FloatArray(initialCapacity)
+    internal var scaleX = FloatArray(initialCapacity)
+    internal var scaleY = FloatArray(initialCapacity)
+    internal var scaleOriginX = FloatArray(initialCapacity)
+    internal var scaleOriginY = FloatArray(initialCapacity)
+    internal var entityScaleX = FloatArray(initialCapacity)
+    internal var entityScaleY = FloatArray(initialCapacity)
+
+    /**
+     * View rotation in degrees, based on the last movement.
+     */
+    internal var rotation = FloatArray(initialCapacity)
+
+    internal var life = DoubleArray(initialCapacity)
+    internal var initialLife = DoubleArray(initialCapacity)
+
+    /**
+     * Index into [styles].
+     */
+    internal var style = IntArray(initialCapacity)
+
+    /**
+     * Distinct emitter configurations used by live particles.
+     * Usually there is one style per emitter, unless the emitter is reconfigured.
+     */
+    internal val styles = arrayListOf<ParticleStyle>()
+
+    /**
+     * @return index of the style with given configuration, which is added if it does not exist
+     */
+    fun style(image: Image?,
+              startColor: Paint,
+              endColor: Paint,
+              blendMode: BlendMode,
+              interpolator: Interpolator,
+              allowRotation: Boolean,
+              equation: Function<Double, Point2D>?): Int {
+
+        for (i in styles.indices) {
+            val s = styles[i]
+
+            if (s.image === image && s.startColor == startColor && s.endColor == endColor && s.blendMode == blendMode
+                    && s.interpolator === interpolator && s.allowRotation == allowRotation && s.equation === equation) {
+                return i
+            }
+        }
+
+        styles += ParticleStyle(image, startColor, endColor, blendMode, interpolator, allowRotation, equation)
+
+        return styles.size - 1
+    }
+
+    /**
+     * Adds a new particle, growing the arrays if necessary.
+     */
+    fun add(style: Int,
+            x: Double, y: Double,
+            velocityX: Double, velocityY: Double,
+            accelerationX: Double, accelerationY: Double,
+            radius: Double,
+            scaleOriginX: Double, scaleOriginY: Double,
+            scaleX: Double, scaleY: Double,
+            entityScaleX: Double, entityScaleY: Double,
+            life: Double) {
+
+        if (size == this.x.size) {
+            grow(maxOf(size * 2, 16))
+        }
+
+        val i = size++
+
+        this.style[i] = style
+        this.startX[i] = x.toFloat()
+        this.startY[i] = y.toFloat()
+        this.x[i] = x.toFloat()
+        this.y[i] = y.toFloat()
+        this.velocityX[i] = velocityX.toFloat()
+        this.velocityY[i] = velocityY.toFloat()
+        this.accelerationX[i] = accelerationX.toFloat()
+        this.accelerationY[i] = accelerationY.toFloat()
+        this.radiusX[i] = radius.toFloat()
+        this.radiusY[i] = radius.toFloat()
+        this.scaleOriginX[i] = scaleOriginX.toFloat()
+        this.scaleOriginY[i] = scaleOriginY.toFloat()
+        this.scaleX[i] = scaleX.toFloat()
+        this.scaleY[i] = scaleY.toFloat()
+        this.entityScaleX[i] = entityScaleX.toFloat()
+        this.entityScaleY[i] = entityScaleY.toFloat()
+        this.rotation[i] = 0f
+        this.life[i] = life
+        this.initialLife[i] = life
+    }
+
+    /**
+     * Moves all particles and removes dead ones.
+     */
+    fun update(tpf: Double) {
+        var i = 0
+
+        while (i < size) {
+            if (update(i, tpf)) {
+                // the last particle moves here and is updated next
+                removeAt(i)
+            } else {
+                i++
+            }
+        }
+
+        if (size == 0) {
+            styles.clear()
+        }
+    }
+
+    /**
+     * @return true if particle at index [i] died
+     */
+    private fun update(i: Int, tpf: Double): Boolean {
+        val s = styles[style[i]]
+
+        val progress = 1 - life[i] / initialLife[i]
+
+        // interpolate time based on progress
+        val t = s.interpolator.interpolate(0.0, initialLife[i], progress)
+
+        val newX: Double
+        val newY: Double
+
+        if (s.equation == null) {
+            // s = s0 + v0*t + 0.5*a*t^2
+            newX = startX[i] + velocityX[i] * t + 0.5 * accelerationX[i] * t * t
+            newY = startY[i] + velocityY[i] * t + 0.5 * accelerationY[i] * t * t
+        } else {
+            val p = s.equation.apply(t)
+            newX = startX[i] + p.x
+            newY = startY[i] + p.y
+        }
+
+        if (s.allowRotation) {
+            rotation[i] = Math.toDegrees(Math.atan2(newY - y[i], newX - x[i])).toFloat()
+        }
+
+        x[i] = newX.toFloat()
+        y[i] = newY.toFloat()
+
+        radiusX[i] += scaleX[i]
+        radiusY[i] += scaleY[i]
+
+        life[i] -= tpf
+
+        return life[i] <= 0 || radiusX[i] <= 0 || radiusY[i] <= 0
+    }
+
+    private fun removeAt(i: Int) {
+        val last = --size
+
+        style[i] = style[last]
+        startX[i] = startX[last]
+        startY[i] = startY[last]
+        x[i] = x[last]
+        y[i] = y[last]
+        velocityX[i] = velocityX[last]
+        velocityY[i] = velocityY[last]
+        accelerationX[i] = accelerationX[last]
+        accelerationY[i] = accelerationY[last]
+        radiusX[i] = radiusX[last]
+        radiusY[i] = radiusY[last]
+        scaleOriginX[i] = scaleOriginX[last]
+        scaleOriginY[i] = scaleOriginY[last]
+        scaleX[i] = scaleX[last]
+        scaleY[i] = scaleY[last]
+        entityScaleX[i] = entityScaleX[last]
+        entityScaleY[i] = entityScaleY[last]
+        rotation[i] = rotation[last]
+        life[i] = life[last]
+        initialLife[i] = initialLife[last]
+    }
+
+    /**
+     * Removes all particles.
+     */
+    fun clear() {
+        size = 0
+        styles.clear()
+    }
+
+    private fun grow(capacity: Int) {
+        startX = startX.copyOf(capacity)
+        startY = startY.copyOf(capacity)
+        x = x.copyOf(capacity)
+        y = y.copyOf(capacity)
+        velocityX = velocityX.copyOf(capacity)
+        velocityY = velocityY.copyOf(capacity)
+        accelerationX = accelerationX.copyOf(capacity)
+        accelerationY = accelerationY.copyOf(capacity)
+        radiusX = radiusX.copyOf(capacity)
+        radiusY = radiusY.copyOf(capacity)
+        scaleX = scaleX.copyOf(capacity)
+        scaleY = scaleY.copyOf(capacity)
+        scaleOriginX = scaleOriginX.copyOf(capacity)
+        scaleOriginY = scaleOriginY.copyOf(capacity)
+        entityScaleX = entityScaleX.copyOf(capacity)
+        entityScaleY = entityScaleY.copyOf(capacity)
+        rotation = rotation.copyOf(capacity)
+        life = life.copyOf(capacity)
+        initialLife = initialLife.copyOf(capacity)
+        style = style.copyOf(capacity)
+    }
+}
+
+/**
+ * Rendering and movement configuration shared by particles emitted with the same emitter settings.
+ */
+internal class ParticleStyle(
+        val image: Image?,
+        val startColor: Paint,
+        val endColor: Paint,
+        val blendMode: BlendMode,
+        val interpolator: Interpolator,
+        val allowRotation: Boolean,
+        val equation: Function<Double, Point2D>?
+) {
+
+    /**
+     * Colors from start to end color, so that no color objects are created when rendering,
+     * or null if either paint is not a color (e.g. a gradient).
+     */
+    val palette: Array<Color>? by lazy {
+        if (startColor is Color && endColor is Color) {
+            val animatedColor = AnimatedColor(startColor, endColor)
+
+            Array(PALETTE_SIZE) { animatedColor.getValue(it / (PALETTE_SIZE - 1.0), interpolator) }
+        } else {
+            null
+        }
+    }
+
+    /**
+     * Paints other than colors cannot be interpolated, so, as with [Interpolator.interpolate],
+     * the start paint is used until the end.
+     */
+    fun colorAt(progress: Double): Paint {
+        val palette = palette ?: return if (progress >= 1.0) endColor else startColor
+
+        val index = (progress * (PALETTE_SIZE - 1)).toInt()
+
+        return palette[index.coerceIn(0, PALETTE_SIZE - 1)]
+    }
+
+    companion object {
+        private const val PALETTE_SIZE = 256
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.particle
+
+import com.almasb.fxgl.core.util.EmptyRunnable
+import com.almasb.fxgl.entity.Entity
+import com.almasb.fxgl.entity.component.Component
+import javafx.scene.canvas.Canvas
+import javafx.scene.canvas.GraphicsContext
+import javafx.scene.effect.BlendMode
+
+/**
+ * Allows adding particle effects to an entity, similar to [ParticleComponent].
+ * Particle state is kept in a [ParticleBuffer] and all particles of the emitter
+ * are drawn into a single canvas each frame, rather than each particle being a scene graph node.
+ * This scales to a much larger number of particles.
+ *
+ * Particles are not objects here, so the emitter's control and on remove functions are not used.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+open class ParticleCanvasComponent
+@JvmOverloads constructor(val emitter: ParticleEmitter, initialCapacity: Int = 1024) : Component() {
+
+    companion object {
+
+        /**
+         * Max canvas width / height, particles beyond are not drawn.
+         */
+        private const val MAX_CANVAS_SIZE = 8192.0
+    }
+
+    var onFinished: Runnable = EmptyRunnable
+
+    /**
+     * This is the entity whose view is used to render particles.
+     * Use of extra entity allows to render particles independently from
+     * the entity to which this component is attached.
+     */
+    val parent = Entity()
+
+    val particles = ParticleBuffer(initialCapacity)
+
+    private val canvas = Canvas()
+
+    val isEmitterPaused: Boolean
+        get() = emitter.isPaused
+
+    override fun onAdded() {
+        parent.viewComponent.addChild(canvas)
+    }
+
+    override fun onUpdate(tpf: Double) {
+        if (parent.world == null) {
+            parent.zIndex = entity.zIndex
+            entity.world.addEntity(parent)
+        }
+
+        emitter.emit(entity.x, entity.y, particles)
+
+        particles.update(tpf)
+
+        render()
+
+        if (particles.isEmpty && emitter.isFinished) {
+            onFinished.run()
+        }
+    }
+
+    private fun render() {
+        val g = canvas.graphicsContext2D
+
+        g.clearRect(0.0, 0.0, canvas.width, canvas.height)
+
+        if (particles.isEmpty)
+            return
+
+        computeBounds()
+
+        val minX = boundsMinX
+        val minY = boundsMinY
+
+        fitCanvas()
+
+        canvas.translateX = minX
+        canvas.translateY = minY
+
+        var blendMode: BlendMode? = null
+
+        for (i in 0 until particles.size) {
+            val style = particles.styles[particles.style[i]]
+
+            if (style.blendMode != blendMode) {
+                blendMode = style.blendMode
+                g.globalBlendMode = blendMode
+            }
+
+            val alpha = particles.life[i] / particles.initialLife[i]
+
+            g.globalAlpha = alpha
+
+            val width = particles.radiusX[i] * 2.0
+            val height = particles.radiusY[i] * 2.0
+
+            val x = layoutX(i) - minX
+            val y = layoutY(i) - minY
+
+            if (style.allowRotation) {
+                // nodes rotate around their center
+                g.save()
+                g.translate(x + width / 2, y + height / 2)
+                g.rotate(particles.rotation[i].toDouble())
+
+                draw(g, style, 1 - alpha, -width / 2, -height / 2, width, height)
+
+                g.restore()
+            } else {
+                draw(g, style, 1 - alpha, x, y, width, height)
+            }
+        }
+
+        g.globalAlpha = 1.0
+        g.globalBlendMode = BlendMode.SRC_OVER
+    }
+
+    private fun draw(g: GraphicsContext, style: ParticleStyle, progress: Double, x: Double, y: Double, width: Double, height: Double) {
+        if (style.image != null) {
+            g.drawImage(style.image, x, y, width, height)
+        } else {
+            g.fill = style.colorAt(progress)
+            g.fillOval(x, y, width, height)
+        }
+    }
+
+    /**
+     * Same as the layout of a [Particle] view, scaled around the scale origin.
+     */
+    private fun layoutX(i: Int): Double {
+        val x = particles.x[i].toDouble()
+        val origin = particles.scaleOriginX[i]
+
+        return (origin + x - particles.entityScaleX[i] * (origin + x)) + particles.entityScaleY[i] * x
+    }
+
+    private fun layoutY(i: Int): Double {
+        val y = particles.y[i].toDouble()
+        val origin = particles.scaleOriginY[i]
+
+        return (origin + y - particles.entityScaleY[i] * (origin + y)) + particles.entityScaleY[i] * y
+    }
+
+    // bounds of all particles in world coordinates
+    private var boundsMinX = 0.0
+    private var boundsMinY = 0.0
+    private var boundsMaxX = 0.0
+    private var boundsMaxY = 0.0
+
+    private fun computeBounds() {
+        boundsMinX = Double.MAX_VALUE
+        boundsMinY = Double.MAX_VALUE
+        boundsMaxX = -Double.MAX_VALUE
+        boundsMaxY = -Double.MAX_VALUE
+
+        for (i in 0 until particles.size) {
+            val x = layoutX(i)
+            val y = layoutY(i)
+            val margin = rotationMargin(i)
+
+            boundsMinX = minOf(boundsMinX, x - margin)
+            boundsMinY = minOf(boundsMinY, y - margin)
+            boundsMaxX = maxOf(boundsMaxX, x + particles.radiusX[i] * 2 + margin)
+            boundsMaxY = maxOf(boundsMaxY, y + particles.radiusY[i] * 2 + margin)
+        }
+
+        boundsMinX = Math.floor(boundsMinX)
+        boundsMinY = Math.floor(boundsMinY)
+    }
+
+    /**
+     * Grows the canvas if the particles do not fit, it is never shrunk to avoid reallocating it.
+     */
+    private fun fitCanvas() {
+        val width = minOf(Math.ceil(boundsMaxX - boundsMinX), MAX_CANVAS_SIZE)
+        val height = minOf(Math.ceil(boundsMaxY - boundsMinY), MAX_CANVAS_SIZE)
+
+        if (width > canvas.width) {
+            canvas.width = minOf(maxOf(width, canvas.width * 1.5), MAX_CANVAS_SIZE)
+        }
+
+        if (height > canvas.height) {
+            canvas.height = minOf(maxOf(height, canvas.height * 1.5), MAX_CANVAS_SIZE)
+        }
+    }
+
+    /**
+     * Rotated particles may extend beyond their unrotated bounds.
+     */
+    private fun rotationMargin(i: Int): Double {
+        if (!particles.styles[particles.style[i]].allowRotation)
+            return 0.0
+
+        return maxOf(particles.radiusX[i], particles.radiusY[i]).toDouble()
+    }
+
+    fun pauseEmitter() {
+        emitter.pause()
+    }
+
+    fun resumeEmitter() {
+        emitter.resume()
+    }
+
+    override fun onRemoved() {
+        particles.clear()
+
+        parent.removeFromWorld()
+    }
+
+    override fun isComponentInjectionRequired(): Boolean = false
+}
@@ -0,0 +1,189 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.physics
+
+import com.almasb.fxgl.core.collection.Array
+import com.almasb.fxgl.core.math.FXGLMath.max
+import com.almasb.fxgl.core.math.FXGLMath.min
+import com.almasb.fxgl.entity.Entity
+import java.util.function.BiConsumer
+
+/**
+ * Sort and sweep broadphase along the X axis.
+ * Bounds are taken from hit boxes with transforms already applied.
+ * Proxies are pooled and their sorted order is kept between frames,
+ * so that the insertion sort is close to linear for coherent motion
+ * and no objects are allocated per frame once the pool has warmed up.
+ * Each overlapping pair is reported exactly once.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+internal class SweepAndPrune {
+
+    private class Proxy {
+        var entity: Entity? = null
+
+        var minX = 0f
+        var minY = 0f
+        var maxX = 0f
+        var maxY = 0f
+
+        /**
+         * The last frame in which this proxy was inserted.
+         */
+        var frame = 0
+    }
+
+    private val proxies = HashMap<Entity, Proxy>()
+    private val sorted = Array<Proxy>()
+    private val pool = Array<Proxy>()
+
+    private var frame = 0
+
+    /**
+     * Starts a new frame, entities not inserted during this frame are dropped by [findPairs].
+     */
+    fun beginFrame() {
+        frame++
+    }
+
+    /**
+     * Inserts or updates given entity using the current bounds of its hit boxes.
+     * Entities without hit boxes are ignored.
+     */
+    fun insert(e: Entity) {
+        val boxes = e.boundingBoxComponent.hitBoxesProperty()
+
+        if (boxes.isEmpty())
+            return
+
+        var proxy = proxies[e]
+
+        if (proxy == null) {
+            proxy = if (pool.isEmpty()) Proxy() else pool.pop()
+            proxy.entity = e
+
+            proxies[e] = proxy
+            sorted.add(proxy)
+        }
+
+        var minX = Float.MAX_VALUE
+        var minY = Float.MAX_VALUE
+        var maxX = -Float.MAX_VALUE
+        var maxY = -Float.MAX_VALUE
+
+        for (i in boxes.indices) {
+            val box = boxes[i]
+
+            // corners include rotation, unlike fast bounds
+            for (corner in box.corners) {
+                minX = min(minX, corner.x)
+                minY = min(minY, corner.y)
+                maxX = max(maxX, corner.x)
+                maxY = max(maxY, corner.y)
+            }
+
+            val shape = box.shape
+
+            // 3D boxes are checked around the entity position rather than their corners
+            if (shape is Box3DShapeData) {
+                val x = e.x.toFloat()
+                val y = e.y.toFloat()
+                val halfWidth = (shape.width / 2.0).toFloat()
+                val halfHeight = (shape.height / 2.0).toFloat()
+
+                minX = min(minX, x - halfWidth)
+                minY = min(minY, y - halfHeight)
+                maxX = max(maxX, x + halfWidth)
+                maxY = max(maxY, y + halfHeight)
+            }
+        }
+
+        proxy.minX = minX
+        proxy.minY = minY
+        proxy.maxX = maxX
+        proxy.maxY = maxY
+        proxy.frame = frame
+    }
+
+    /**
+     * Passes each pair of entities whose bounds overlap to [callback], exactly once per pair.
+     */
+    fun findPairs(callback: BiConsumer<Entity, Entity>) {
+        removeStaleProxies()
+        sortByMinX()
+
+        val size = sorted.size()
+
+        for (i in 0 until size) {
+            val p1 = sorted.get(i)
+
+            for (j in i + 1 until size) {
+                val p2 = sorted.get(j)
+
+                // all subsequent proxies start to the right of p1
+                if (p2.minX > p1.maxX)
+                    break
+
+                if (p2.minY <= p1.maxY && p2.maxY >= p1.minY) {
+                    callback.accept(p1.entity!!, p2.entity!!)
+                }
+            }
+        }
+    }
+
+    fun clear() {
+        for (i in 0 until sorted.size()) {
+            val proxy = sorted.get(i)
+            proxy.entity = null
+            pool.add(proxy)
+        }
+
+        sorted.clear()
+        proxies.clear()
+    }
+
+    /**
+     * Removes proxies not inserted this frame, preserving the order of the rest.
+     */
+    private fun removeStaleProxies() {
+        var count = 0
+
+        for (i in 0 until sorted.size()) {
+            val proxy = sorted.get(i)
+
+            if (proxy.frame == frame) {
+                sorted.set(count++, proxy)
+            } else {
+                proxies.remove(proxy.entity!!)
+                proxy.entity = null
+                pool.add(proxy)
+            }
+        }
+
+        if (count < sorted.size()) {
+            sorted.removeRange(count, sorted.size() - 1)
+        }
+    }
+
+    /**
+     * Insertion sort, which is near linear since the order from the last frame is mostly preserved.
+     */
+    private fun sortByMinX() {
+        for (i in 1 until sorted.size()) {
+            val proxy = sorted.get(i)
+
+            var j = i - 1
+            while (j >= 0 && sorted.get(j).minX > proxy.minX) {
+                sorted.set(j + 1, sorted.get(j))
+                j--
+            }
+
+            sorted.set(j + 1, proxy)
+        }
+    }
+}
@@ -241,6 +241,85 @@ class BehaviorTreeTest {
         assertEquals(BehaviorStatus.SUCCESS, compareCondition.execute(context))
     }
     
+    @Test
+    fun `test typed blackboard keys`() {
+        val health = BlackboardKey.of<Double>("health")
+        val target = BlackboardKey.of("entity_target", Entity::class.java)
+
+        context.blackboard[health] = 50.0
+
+        // values set by key and by name are the same
+        assertEquals(50.0, context.blackboard["health"])
+        assertEquals(50.0, context.blackboard[health])
+
+        context.blackboard["health"] = 20.0
+
+        assertEquals(20.0, context.blackboard[health])
+        assertEquals(BehaviorStatus.SUCCESS, BlackboardCompareCondition("health", 10.0, BlackboardCompareCondition.Comparison.GREATER_THAN).execute(context))
+
+        // a value of another type is not returned
+        context.blackboard["health"] = "full"
+
+        assertNull(context.blackboard[health])
+        assertTrue(health in context.blackboard)
+
+        val targetEntity = Entity()
+        targetEntity.setPosition(3.0, 4.0)
+
+        context.blackboard[target] = targetEntity
+
+        assertEquals(BehaviorStatus.SUCCESS, IsWithinDistanceOfEntityCondition("target", 5.0).execute(context))
+        assertEquals(BehaviorStatus.FAILURE, IsWithinDistanceOfEntityCondition(target, 4.0).execute(context))
+
+        assertEquals(2, context.blackboard.size)
+        assertEquals(setOf("health", "entity_target"), context.blackboard.keys)
+
+        context.blackboard.remove(health)
+
+        assertFalse(context.blackboard.containsKey("health"))
+        assertEquals(1, context.blackboard.size)
+    }
+
+    @Test
+    fun `test blackboard slots are scoped to tree`() {
+        val health = BlackboardKey.of<Double>("health")
+        val tree = BehaviorTree(BlackboardCompareCondition(health, 10.0, BlackboardCompareCondition.Comparison.GREATER_THAN))
+
+        // set before the context is bound to the tree, so moved into slots on first execution
+        context.blackboard["health"] = 20.0
+        context.blackboard["entity_42"] = "target"
+
+        assertEquals(BehaviorStatus.SUCCESS, tree.execute(context))
+        assertEquals(20.0, context.blackboard[health])
+        assertEquals(mapOf("health" to 20.0, "entity_42" to "target"), context.blackboard.toMap())
+
+        // names that are only used as strings are not given slots
+        assertEquals(BlackboardLayout().size + 1, tree.blackboardLayout.size)
+        assertEquals(-1, tree.blackboardLayout.slotOf("entity_42", false))
+
+        context.blackboard.entries.forEach {
+            assertEquals(if (it.key == "health") 20.0 else "target", it.setValue(1.0))
+        }
+
+        assertEquals(1.0, context.blackboard[health])
+        assertEquals(1.0, context.blackboard["entity_42"])
+    }
+
+    @Test
+    fun `test context with map blackboard`() {
+        val map = mutableMapOf<String, Any>()
+        val context = BehaviorContext(entity, map)
+
+        context.blackboard["test_key"] = "test_value"
+        SetBlackboardValueAction(BlackboardKey.of<Double>("health"), 5.0).execute(context)
+
+        assertEquals(mapOf("test_key" to "test_value", "health" to 5.0), map)
+
+        map["test_key"] = "other"
+
+        assertEquals(BehaviorStatus.SUCCESS, BlackboardEqualsCondition("test_key", "other").execute(context))
+    }
+
     @Test
     fun `test distance conditions`() {
         val transform = entity.getComponent(TransformComponent::class.java)
@@ -280,6 +359,13 @@ class BehaviorTreeTest {
         
         component.removeBlackboardValue("test")
         assertFalse(component.hasBlackboardValue("test"))
+
+        component.updateInterval = 0.0
+        component.onUpdate(0.5)
+        component.onUpdate(0.25)
+
+        assertEquals(0.25, component.getBlackboardValue("deltaTime"))
+        assertEquals(0.75, component.getBlackboardValue("currentTime"))
     }
     
     @Test
@@ -331,4 +417,132 @@ class BehaviorTreeTest {
         // Note: This doesn't clear the context blackboard, that's done by the component
         assertNotNull(tree)
     }
-}
\ No newline at end of file
+    }
+
+    @Test
+    fun `test shared tree keeps separate state per agent`() {
+        val finished = mutableListOf<Entity>()
+
+        val tree = behaviorTree {
+            sequence {
+                child(WaitAction(1.0))
+                child(object : ActionNode() {
+                    override fun execute(context: BehaviorContext): BehaviorStatus {
+                        finished.add(context.entity)
+                        return BehaviorStatus.SUCCESS
+                    }
+                })
+            }
+        }
+
+        val context2 = BehaviorContext(Entity())
+
+        context.currentTime = 0.0
+        assertEquals(BehaviorStatus.RUNNING, tree.execute(context))
+
+        context2.currentTime = 0.5
+        assertEquals(BehaviorStatus.RUNNING, tree.execute(context2))
+
+        context.currentTime = 1.1
+        context2.currentTime = 1.1
+        assertEquals(BehaviorStatus.SUCCESS, tree.execute(context))
+        assertEquals(BehaviorStatus.RUNNING, tree.execute(context2))
+
+        context2.currentTime = 1.6
+        assertEquals(BehaviorStatus.SUCCESS, tree.execute(context2))
+
+        assertEquals(listOf(entity, context2.entity), finished)
+
+        // reset for one agent does not affect the other
+        context.currentTime = 2.0
+        context2.currentTime = 2.0
+        assertEquals(BehaviorStatus.RUNNING, tree.execute(context))
+        assertEquals(BehaviorStatus.RUNNING, tree.execute(context2))
+
+        tree.reset(context)
+
+        context.currentTime = 2.5
+        context2.currentTime = 3.1
+        assertEquals(BehaviorStatus.RUNNING, tree.execute(context))
+        assertEquals(BehaviorStatus.SUCCESS, tree.execute(context2))
+    }
+
+    @Test
+    fun `test scheduler ticks agents at level of detail intervals`() {
+        val ticks = mutableMapOf<Entity, Int>()
+
+        val tree = BehaviorTree(object : ActionNode() {
+            override fun execute(context: BehaviorContext): BehaviorStatus {
+                ticks.merge(context.entity, 1, Int::plus)
+                return BehaviorStatus.SUCCESS
+            }
+        })
+
+        val scheduler = BehaviorTreeScheduler()
+        scheduler.observer = entity
+        scheduler.addLevelOfDetail(500.0, 0.5)
+        scheduler.addLevelOfDetail(50.0, 0.125)
+        scheduler.addLevelOfDetail(5000.0, 1.0)
+
+        val agents = listOf(0.0, 100.0, 1000.0, 10000.0).map { x ->
+            Entity().also {
+                it.x = x
+                val component = BehaviorTreeComponent(tree)
+                component.updateInterval = 0.0
+                it.addComponent(component)
+                scheduler.add(component)
+            }
+        }
+
+        repeat(8) {
+            scheduler.onUpdate(0.125)
+        }
+
+        assertEquals(listOf(8, 2, 1, 1), agents.map { ticks[it] })
+
+        // removed components are no longer ticked
+        agents[0].removeComponent(BehaviorTreeComponent::class.java)
+
+        scheduler.onUpdate(0.125)
+
+        assertEquals(3, scheduler.size)
+        assertEquals(8, ticks[agents[0]])
+    }
+
+    @Test
+    fun `test scheduler defers agents over frame budget`() {
+        var numTicks = 0
+
+        val tree = BehaviorTree(object : ActionNode() {
+            override fun execute(context: BehaviorContext): BehaviorStatus {
+                numTicks++
+                return BehaviorStatus.SUCCESS
+            }
+        })
+
+        val scheduler = BehaviorTreeScheduler()
+        scheduler.frameBudgetNanos = 0
+
+        repeat(40) {
+            val component = BehaviorTreeComponent(tree)
+            component.updateInterval = 1.0
+            Entity().addComponent(component)
+            scheduler.add(component)
+        }
+
+        scheduler.onUpdate(0.01)
+        assertEquals(16, scheduler.numTicked)
+        assertEquals(24, scheduler.numDeferred)
+
+        scheduler.onUpdate(0.01)
+        assertEquals(16, scheduler.numTicked)
+        assertEquals(8, scheduler.numDeferred)
+
+        scheduler.onUpdate(0.01)
+        assertEquals(8, scheduler.numTicked)
+        assertEquals(0, scheduler.numDeferred)
+
+        // each agent was ticked exactly once
+        assertEquals(40, numTicks)
+    }
+}
@@ -42,4 +42,73 @@ class GoapTest {
 
         assertThat(actions, contains(action3, action1, action2))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `plan chooses cheapest sequence`() {
+        val kill = GoapAction("Kill")
+        kill.cost = 5f
+        kill.addEffect("enemyDead", true)
+
+        val pickUp = GoapAction("Pick up bow")
+        pickUp.addEffect("hasBow", true)
+
+        val shoot = GoapAction("Shoot")
+        shoot.addPrecondition("hasBow", true)
+        shoot.addEffect("enemyDead", true)
+
+        val goal = PropertyMap()
+        goal.setValue("enemyDead", true)
+
+        val actions = GoapPlanner.plan(setOf(kill, pickUp, shoot), PropertyMap(), goal)
+
+        assertThat(actions, contains(pickUp, shoot))
+    }
+
+    @Test
+    fun `plan compares numbers by value`() {
+        val action = GoapAction("Reload")
+        action.addPrecondition("ammo", 0.0)
+        action.addEffect("ammo", 6)
+
+        val current = PropertyMap()
+        current.setValue("ammo", 0)
+
+        val goal = PropertyMap()
+        goal.setValue("ammo", 6.0)
+
+        val actions = GoapPlanner.plan(setOf(action), current, goal)
+
+        assertThat(actions, contains(action))
+    }
+
+    @Test
+    fun `plan returns empty queue if no plan or node budget exceeded`() {
+        // a chain of actions, where each action requires the effect of the previous one
+        val actions = (0 until 30).map { i ->
+            GoapAction("Step $i").also {
+                if (i > 0)
+                    it.addPrecondition("step${i - 1}", true)
+
+                it.addEffect("step$i", true)
+            }
+        }
+
+        // and actions that do not lead to the goal
+        val others = (0 until 20).map { i ->
+            GoapAction("Other $i").also {
+                it.addEffect("other$i", true)
+            }
+        }
+
+        val goal = PropertyMap()
+        goal.setValue("step29", true)
+
+        assertThat(GoapPlanner.plan((actions + others).toSet(), PropertyMap(), goal), contains(*actions.toTypedArray()))
+
+        assertThat(GoapPlanner.plan((actions + others).toSet(), PropertyMap(), goal, 10), empty())
+
+        goal.setValue("unreachable", true)
+
+        assertThat(GoapPlanner.plan((actions + others).toSet(), PropertyMap(), goal), empty())
+    }
+}
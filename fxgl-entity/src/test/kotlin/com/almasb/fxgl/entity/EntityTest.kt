@@ -108,6 +108,29 @@ class EntityTest {
         assertTrue(entity.hasComponent(TestComponent::class.java))
     }
 
+    @Test
+    fun `Has components`() {
+        val mask = ComponentMask.of(TestComponent::class.java, TestControl::class.java)
+
+        entity.addComponent(TestComponent())
+
+        assertFalse(entity.hasComponents(mask))
+        assertTrue(entity.hasComponents(ComponentMask.of(TestComponent::class.java, TransformComponent::class.java)))
+
+        entity.addComponent(TestControl())
+
+        assertTrue(entity.hasComponents(mask))
+        assertTrue(entity.componentMask.containsAll(mask))
+        assertTrue(entity.componentMask.contains(ViewComponent::class.java))
+
+        entity.removeComponent(TestComponent::class.java)
+
+        assertFalse(entity.hasComponents(mask))
+        assertFalse(entity.hasComponent(TestComponent::class.java))
+        assertThat(entity.getComponentOptional(TestComponent::class.java).isPresent, `is`(false))
+        assertTrue(entity.hasComponents(ComponentMask.EMPTY))
+    }
+
     @Test
     fun `Remove component returns true if removed`() {
         val comp = TestComponent()
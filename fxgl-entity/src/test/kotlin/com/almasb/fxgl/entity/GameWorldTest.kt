@@ -6,6 +6,7 @@
 @file:Suppress("JAVA_MODULE_DOES_NOT_DEPEND_ON_MODULE")
 package com.almasb.fxgl.entity
 
+import com.almasb.fxgl.core.collection.Array
 import com.almasb.fxgl.entity.component.Component
 import com.almasb.fxgl.entity.components.*
 import com.almasb.fxgl.entity.level.Level
@@ -517,6 +518,99 @@ class GameWorldTest {
         })
     }
 
+    @Test
+    fun `Preload entities`() {
+        val factory = PreloadEntityFactory()
+        gameWorld.addEntityFactory(factory)
+
+        assertThat(factory.count, `is`(7))
+        assertThat(gameWorld.getNumPooled("bullet"), `is`(5))
+
+        val e = gameWorld.spawn("bullet", 10.0, 15.0)
+
+        assertThat(factory.count, `is`(7))
+        assertThat(gameWorld.getNumPooled("bullet"), `is`(4))
+        assertThat(e.position, `is`(Point2D(10.0, 15.0)))
+        assertTrue(e.isReusable)
+
+        gameWorld.removeEntity(e)
+
+        assertThat(gameWorld.getNumPooled("bullet"), `is`(5))
+
+        // more than preloaded, new entities are created and are not reusable
+        val entities = (0..5).map { gameWorld.spawn("bullet") }
+
+        assertThat(factory.count, `is`(8))
+        assertThat(entities.count { it.isReusable }, `is`(5))
+        assertThat(entities.toSet().size, `is`(6))
+    }
+
+    @Test
+    fun `Pooled entity is reinitialized with new spawn data`() {
+        val factory = PreloadEntityFactory()
+        gameWorld.addEntityFactory(factory)
+
+        // the spawn method requires data, so it could not be preloaded with empty data
+        assertThat(gameWorld.getNumPooled("missile"), `is`(0))
+
+        gameWorld.preload("missile", 1, SpawnData(0.0, 0.0).put("damage", 0))
+
+        val e = gameWorld.spawn("missile", SpawnData(10.0, 15.0).put("damage", 5))
+        val component = e.getComponent(DamageComponent::class.java)
+
+        component.hits++
+
+        assertThat(factory.count, `is`(8))
+        assertThat(e.getInt("damage"), `is`(5))
+        assertThat(component.damage, `is`(5))
+
+        gameWorld.removeEntity(e)
+
+        val e2 = gameWorld.spawn("missile", SpawnData(20.0, 25.0).put("damage", 8))
+
+        assertThat(factory.count, `is`(8))
+        assertThat(e2, `is`(e))
+        assertThat(e2.position, `is`(Point2D(20.0, 25.0)))
+        assertThat(e2.getInt("damage"), `is`(8))
+        assertThat(component.damage, `is`(8))
+        assertThat(component.hits, `is`(0))
+    }
+
+    @Test
+    fun `Aliases of preloaded method share the pool`() {
+        val factory = PreloadEntityFactory()
+        gameWorld.addEntityFactory(factory)
+
+        // 5 bullets and 2 of the aliased method
+        assertThat(factory.count, `is`(7))
+        assertThat(gameWorld.getNumPooled("a"), `is`(2))
+        assertThat(gameWorld.getNumPooled("b"), `is`(2))
+
+        val e = gameWorld.spawn("b")
+
+        assertThat(e.getString("spawnName"), `is`("b"))
+        assertThat(gameWorld.getNumPooled("a"), `is`(1))
+
+        gameWorld.removeEntity(e)
+
+        assertThat(gameWorld.getNumPooled("a"), `is`(2))
+    }
+
+    @Test
+    fun `Preload entities asynchronously`() {
+        gameWorld.isEntityPreloadEnabled = false
+
+        val factory = PreloadEntityFactory()
+        gameWorld.addEntityFactory(factory)
+
+        assertThat(factory.count, `is`(0))
+
+        gameWorld.preloadAsync("bullet", 3) { Thread(it).start() }.get()
+
+        assertThat(factory.count, `is`(3))
+        assertThat(gameWorld.getNumPooled("bullet"), `is`(3))
+    }
+
     @Test
     fun `Spawn without initial position`() {
         val factory = TestEntityFactory()
@@ -628,6 +722,87 @@ class GameWorldTest {
         assertThat(map[e1], `is`(c1))
     }
 
+    @Test
+    fun `By type and component queries keep world order when entities are removed from the middle`() {
+        val entities = (0 until 5).map {
+            val e = Entity()
+            e.type = TestType.T1
+            e.addComponent(TestValueComponent())
+            e
+        }
+
+        gameWorld.addEntities(*entities.toTypedArray())
+
+        gameWorld.removeEntity(entities[1])
+        entities[3].type = TestType.T2
+        entities[4].removeComponent(TestValueComponent::class.java)
+
+        assertThat(gameWorld.getEntitiesByType(TestType.T1), contains(entities[0], entities[2], entities[4]))
+        assertThat(gameWorld.getEntitiesByType(TestType.T2), contains(entities[3]))
+        assertThat(gameWorld.getEntitiesByComponent(TestValueComponent::class.java), contains(entities[0], entities[2], entities[3]))
+
+        entities[0].type = TestType.T2
+        entities[4].addComponent(TestValueComponent())
+
+        assertThat(gameWorld.getSingleton(TestType.T1), `is`(entities[2]))
+        assertThat(gameWorld.getEntitiesByType(TestType.T2), contains(entities[0], entities[3]))
+        assertThat(gameWorld.getEntitiesByType(TestType.T1, TestType.T2), contains(entities[0], entities[2], entities[3], entities[4]))
+        assertThat(gameWorld.getEntitiesByComponent(TestValueComponent::class.java), contains(entities[0], entities[2], entities[3], entities[4]))
+
+        gameWorld.removeEntities(entities[0], entities[2], entities[3])
+
+        assertThat(gameWorld.getEntitiesByType(TestType.T1), contains(entities[4]))
+        assertTrue(gameWorld.getEntitiesByType(TestType.T2).isEmpty())
+        assertTrue(gameWorld.getEntitiesByComponent(TestValueComponent::class.java).isEmpty())
+    }
+
+    @Test
+    fun `By type and component queries reflect changes after entity is added`() {
+        val e1 = Entity()
+        e1.type = TestType.T1
+
+        gameWorld.addEntity(e1)
+
+        e1.type = TestType.T2
+        e1.addComponent(TestValueComponent())
+
+        assertTrue(gameWorld.getEntitiesByType(TestType.T1).isEmpty())
+        assertThat(gameWorld.getEntitiesByType(TestType.T2), contains(e1))
+        assertThat(gameWorld.getEntitiesByComponent(TestValueComponent::class.java), contains(e1))
+
+        gameWorld.removeEntity(e1)
+
+        assertTrue(gameWorld.getEntitiesByType(TestType.T2).isEmpty())
+        assertTrue(gameWorld.getEntitiesByComponent(TestValueComponent::class.java).isEmpty())
+
+        // changes made after removal are not tracked
+        e1.type = TestType.T3
+
+        assertTrue(gameWorld.getEntitiesByType(TestType.T3).isEmpty())
+    }
+
+    @Test
+    fun `By type and component into given array`() {
+        val e1 = Entity()
+        e1.type = TestType.T1
+        e1.addComponent(TestValueComponent())
+
+        val e2 = Entity()
+        e2.type = TestType.T2
+
+        gameWorld.addEntities(e1, e2)
+
+        val result = Array<Entity>()
+
+        gameWorld.getEntitiesByType(result, TestType.T1, TestType.T1, TestType.T2)
+        assertThat(result.toList(), contains(e1, e2))
+
+        result.clear()
+
+        gameWorld.getEntitiesByComponent(TestValueComponent::class.java, result)
+        assertThat(result.toList(), contains(e1))
+    }
+
     @Test
     fun `Singleton`() {
         val e1 = Entity()
@@ -788,6 +963,53 @@ class GameWorldTest {
         )
     }
 
+    @Test
+    fun `Spatial index queries`() {
+        gameWorld.enableSpatialIndex(32.0)
+
+        val e1 = Entity()
+        e1.boundingBoxComponent.addHitBox(HitBox("main", BoundingShape.box(20.0, 20.0)))
+
+        val e2 = Entity()
+        e2.x = 100.0
+        e2.boundingBoxComponent.addHitBox(HitBox("main", BoundingShape.box(20.0, 20.0)))
+
+        val e3 = Entity()
+        e3.x = 300.0
+        e3.y = 300.0
+
+        gameWorld.addEntities(e1, e2, e3)
+
+        assertTrue(gameWorld.isSpatialIndexEnabled)
+
+        assertAll(
+                Executable { assertThat(gameWorld.getEntitiesInRange(Rectangle2D(0.0, 0.0, 100.0, 100.0)), containsInAnyOrder(e1, e2)) },
+                Executable { assertThat(gameWorld.getEntitiesInRange(Rectangle2D(90.0, 0.0, 20.0, 20.0)), contains(e2)) },
+                Executable { assertThat(gameWorld.getEntitiesInRadius(Point2D(60.0, 10.0), 40.0), containsInAnyOrder(e1, e2)) },
+                Executable { assertThat(gameWorld.getEntitiesInRadius(Point2D(80.0, 10.0), 30.0), contains(e2)) },
+                Executable { assertThat(gameWorld.getEntitiesAt(Point2D(300.0, 300.0)), contains(e3)) },
+                Executable { assertThat(gameWorld.getEntitiesOnRay(Point2D(-10.0, 10.0), Point2D(500.0, 10.0)), contains(e1, e2)) },
+                Executable { assertThat(gameWorld.getClosestEntity(e1, Predicate { true }).get(), `is`(e2)) },
+                Executable { assertThat(gameWorld.getClosestEntities(Point2D(290.0, 290.0), 2, Predicate { true }), contains(e3, e2)) }
+        )
+
+        // the index follows entity movement
+        e3.setPosition(50.0, 0.0)
+
+        assertThat(gameWorld.getClosestEntity(e1, Predicate { true }).get(), `is`(e3))
+        assertThat(gameWorld.getEntitiesAt(Point2D(50.0, 0.0)), contains(e3))
+        assertTrue(gameWorld.getEntitiesAt(Point2D(300.0, 300.0)).isEmpty())
+
+        gameWorld.removeEntity(e2)
+
+        assertThat(gameWorld.getEntitiesInRange(Rectangle2D(0.0, 0.0, 200.0, 200.0)), containsInAnyOrder(e1, e3))
+
+        gameWorld.disableSpatialIndex()
+
+        assertFalse(gameWorld.isSpatialIndexEnabled)
+        assertThat(gameWorld.getEntitiesInRange(Rectangle2D(0.0, 0.0, 200.0, 200.0)), containsInAnyOrder(e1, e3))
+    }
+
     @Test
     fun `Get colliding entities`() {
         val e1 = Entity()
@@ -839,6 +1061,243 @@ class GameWorldTest {
         assertTrue(control.assertPassed)
     }
 
+    @Test
+    fun `Systems update matching archetypes`() {
+        val e1 = Entity()
+        e1.addComponent(TestValueComponent())
+
+        val e2 = Entity()
+        e2.addComponent(TestValueComponent())
+        e2.addComponent(TimeComponent(0.5))
+
+        val e3 = Entity()
+
+        gameWorld.addEntities(e1, e2, e3)
+
+        val updated = arrayListOf<Entity>()
+
+        val system = object : EntitySystem(TestValueComponent::class.java) {
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                val values = archetype.getColumn(TestValueComponent::class.java)
+
+                for (i in 0 until archetype.size()) {
+                    assertThat(values[i], `is`(archetype.getEntity(i).getComponent(TestValueComponent::class.java)))
+                    updated += archetype.getEntity(i)
+                }
+            }
+        }
+
+        gameWorld.addSystem(system)
+        gameWorld.onUpdate(0.016)
+
+        assertThat(updated, containsInAnyOrder(e1, e2))
+        assertThat(gameWorld.getArchetypes(system.mask).size(), `is`(2))
+
+        // component changes move the entity to another archetype
+        updated.clear()
+        e3.addComponent(TestValueComponent())
+        e2.removeComponent(TestValueComponent::class.java)
+        gameWorld.onUpdate(0.016)
+
+        assertThat(updated, containsInAnyOrder(e1, e3))
+
+        updated.clear()
+        system.pause()
+        gameWorld.onUpdate(0.016)
+
+        assertTrue(updated.isEmpty())
+
+        system.resume()
+        gameWorld.removeSystem(system)
+        gameWorld.onUpdate(0.016)
+
+        assertTrue(updated.isEmpty())
+    }
+
+    @Test
+    fun `Changes made by systems are applied after systems are updated`() {
+        val entities = (0..9).map {
+            val e = Entity()
+            e.addComponent(TestValueComponent())
+            e
+        }
+
+        gameWorld.addEntities(*entities.toTypedArray())
+
+        var count = 0
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                for (i in 0 until archetype.size()) {
+                    count++
+                    gameWorld.removeEntity(archetype.getEntity(i))
+                }
+            }
+        })
+
+        gameWorld.onUpdate(0.016)
+
+        // all entities are visited, even though they were removed during iteration
+        assertThat(count, `is`(10))
+        assertTrue(gameWorld.entities.isEmpty())
+        assertTrue(gameWorld.getArchetypes(ComponentMask.of(TestValueComponent::class.java)).all { it.isEmpty })
+    }
+
+    @Test
+    fun `Components replaced by systems are in archetype columns after systems are updated`() {
+        val e = Entity()
+        e.addComponent(TestValueComponent())
+
+        gameWorld.addEntity(e)
+
+        val replacement = TestValueComponent()
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                if (e.getComponent(TestValueComponent::class.java) !== replacement) {
+                    e.removeComponent(TestValueComponent::class.java)
+                    e.addComponent(replacement)
+                }
+            }
+        })
+
+        gameWorld.onUpdate(0.016)
+
+        val archetype = gameWorld.getArchetypes(ComponentMask.of(TestValueComponent::class.java)).single { !it.isEmpty }
+
+        assertThat(archetype.getColumn(TestValueComponent::class.java)[0], `is`(replacement))
+    }
+
+    @Test
+    fun `Parallel systems update all rows and apply structural changes via command buffer`() {
+        val entities = (0..999).map {
+            val e = Entity()
+            e.addComponent(TestValueComponent())
+            e
+        }
+
+        gameWorld.addEntities(*entities.toTypedArray())
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            init {
+                setParallel(ComponentMask.EMPTY, ComponentMask.of(TestValueComponent::class.java))
+                setBatchSize(100)
+            }
+
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                onUpdate(archetype, 0, archetype.size(), tpf)
+            }
+
+            override fun onUpdate(archetype: Archetype, fromRow: Int, toRow: Int, tpf: Double) {
+                val values = archetype.getColumn(TestValueComponent::class.java)
+
+                for (i in fromRow until toRow) {
+                    values[i].count += 10
+
+                    if (archetype.getEntity(i).x > 0.0) {
+                        gameWorld.commandBuffer.removeEntity(archetype.getEntity(i))
+                    }
+                }
+            }
+        })
+
+        entities[0].x = 5.0
+        entities[1].x = 5.0
+
+        gameWorld.onUpdate(0.016)
+
+        // 1 from component update, 10 from system
+        assertTrue(entities.all { it.getComponent(TestValueComponent::class.java).count == 11 })
+        assertThat(gameWorld.entities.size, `is`(998))
+        assertFalse(entities[0].isActive)
+        assertTrue(gameWorld.commandBuffer.isEmpty)
+    }
+
+    @Test
+    fun `Entities removed via command buffer are not updated by later phases`() {
+        val entities = (0..9).map {
+            val e = Entity()
+            e.addComponent(TestValueComponent())
+            e
+        }
+
+        gameWorld.addEntities(*entities.toTypedArray())
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                gameWorld.commandBuffer.removeEntity(entities[0])
+            }
+        })
+
+        var count = 0
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                for (i in 0 until archetype.size()) {
+                    assertTrue(archetype.getEntity(i).isActive)
+                    count++
+                }
+            }
+        })
+
+        gameWorld.onUpdate(0.016)
+
+        assertThat(count, `is`(9))
+    }
+
+    @Test
+    fun `Parallel systems cannot add or remove components directly`() {
+        val e = Entity()
+        e.addComponent(TestValueComponent())
+
+        gameWorld.addEntity(e)
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            init {
+                setParallel(ComponentMask.EMPTY, ComponentMask.of(TestValueComponent::class.java))
+            }
+
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                archetype.getEntity(0).removeComponent(TestValueComponent::class.java)
+            }
+        })
+
+        assertThrows(IllegalStateException::class.java) {
+            gameWorld.onUpdate(0.016)
+        }
+    }
+
+    @Test
+    fun `System with batch size must override ranged update`() {
+        var count = 0
+
+        gameWorld.addSystem(object : EntitySystem(TestValueComponent::class.java) {
+            init {
+                setParallel(ComponentMask.EMPTY, ComponentMask.of(TestValueComponent::class.java))
+                setBatchSize(100)
+            }
+
+            override fun onUpdate(archetype: Archetype, tpf: Double) {
+                count += archetype.size()
+            }
+        })
+
+        // an archetype that fits into a batch is given whole
+        repeat(100) {
+            gameWorld.addEntity(Entity().also { it.addComponent(TestValueComponent()) })
+        }
+
+        gameWorld.onUpdate(0.016)
+
+        assertThat(count, `is`(100))
+
+        gameWorld.addEntity(Entity().also { it.addComponent(TestValueComponent()) })
+
+        assertThrows(IllegalStateException::class.java) {
+            gameWorld.onUpdate(0.016)
+        }
+    }
+
     private class TimeBasedControl : Component() {
         var assertPassed = false
 
@@ -885,6 +1344,45 @@ class GameWorldTest {
         }
     }
 
+    class PreloadEntityFactory : EntityFactory {
+        var count = 0
+
+        @Preload(5)
+        @Spawns("bullet")
+        fun makeBullet(data: SpawnData): Entity {
+            count++
+            return Entity()
+        }
+
+        @Preload(2)
+        @Spawns("missile")
+        fun makeMissile(data: SpawnData): Entity {
+            val damage = data.get<Int>("damage")
+
+            count++
+
+            val e = Entity()
+            e.addComponent(DamageComponent(damage))
+            return e
+        }
+
+        @Preload(2)
+        @Spawns("a,b")
+        fun makeAliased(data: SpawnData): Entity {
+            count++
+            return Entity()
+        }
+    }
+
+    class DamageComponent(var damage: Int) : Component() {
+        var hits = 0
+
+        override fun onReused(data: SpawnData) {
+            damage = data.get("damage")
+            hits = 0
+        }
+    }
+
     class TiledMapEntityFactory : EntityFactory {
 
         @Spawns("player")
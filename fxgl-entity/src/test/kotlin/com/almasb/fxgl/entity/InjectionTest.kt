@@ -53,6 +53,29 @@ class InjectionTest {
         assertThat(entity.hasComponent(SubTypeInjectableControl::class.java), `is`(true))
     }
 
+    @Test
+    fun `Superclass fields are injected`() {
+        val entity = Entity()
+        entity.addComponent(EntityTest.CustomDataComponent("Inject"))
+        entity.addComponent(SubInjectableComponent())
+
+        assertThat(entity.hasComponent(SubInjectableComponent::class.java), `is`(true))
+    }
+
+    @Test
+    fun `Each entity gets its own components injected`() {
+        val entity1 = Entity()
+        entity1.addComponent(EntityTest.CustomDataComponent("1"))
+        entity1.addComponent(DataReaderComponent())
+
+        val entity2 = Entity()
+        entity2.addComponent(EntityTest.CustomDataComponent("2"))
+        entity2.addComponent(DataReaderComponent())
+
+        assertThat(entity1.getComponent(DataReaderComponent::class.java).data, `is`("1"))
+        assertThat(entity2.getComponent(DataReaderComponent::class.java).data, `is`("2"))
+    }
+
     @Test
     fun `Throw if component not present`() {
         val entity = Entity()
@@ -84,4 +107,14 @@ class InjectionTest {
         // we first check that type is Entity before injecting
         lateinit var name: String
     }
-}
\ No newline at end of file
+
+    class SubInjectableComponent : InjectableComponent()
+
+    class DataReaderComponent : Component() {
+
+        private lateinit var dataComponent: EntityTest.CustomDataComponent
+
+        val data: String
+            get() = dataComponent.data
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+@file:Suppress("JAVA_MODULE_DOES_NOT_DEPEND_ON_MODULE")
+package com.almasb.fxgl.entity.component
+
+import com.almasb.fxgl.entity.ComponentMask
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.*
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class ComponentTypesTest {
+
+    @Test
+    fun `Component types have dense ids`() {
+        val idA = ComponentTypes.getId(ComponentA::class.java)
+        val idB = ComponentTypes.getId(ComponentB::class.java)
+
+        assertThat(idA, `is`(not(idB)))
+        assertThat(ComponentTypes.getId(ComponentA::class.java), `is`(idA))
+
+        assertThat(ComponentTypes.getType(idA), `is`<Class<*>>(ComponentA::class.java))
+        assertThat(ComponentTypes.getType(idB), `is`<Class<*>>(ComponentB::class.java))
+
+        assertThat(ComponentTypes.getNumTypes(), greaterThan(maxOf(idA, idB)))
+    }
+
+    @Test
+    fun `Component instances have the id of their type`() {
+        val c = ComponentA()
+
+        assertThat(ComponentTypes.getId(c), `is`(ComponentTypes.getId(ComponentA::class.java)))
+        assertThat(ComponentTypes.getId(c), `is`(ComponentTypes.getId(ComponentA::class.java)))
+        assertThat(ComponentTypes.getId(ComponentB()), `is`(ComponentTypes.getId(ComponentB::class.java)))
+    }
+
+    @Test
+    fun `Component mask operations`() {
+        val a = ComponentMask.of(ComponentA::class.java)
+        val ab = ComponentMask.of(ComponentA::class.java, ComponentB::class.java)
+
+        assertTrue(ab.containsAll(a))
+        assertFalse(a.containsAll(ab))
+        assertTrue(a.intersects(ab))
+        assertFalse(a.intersects(ComponentMask.of(ComponentB::class.java)))
+
+        assertThat(a.with(ComponentB::class.java), `is`(ab))
+        assertThat(ab.without(ComponentB::class.java), `is`(a))
+        assertThat(ab.without(ComponentB::class.java).hashCode(), `is`(a.hashCode()))
+        assertThat(ab.types, contains<Class<*>>(ComponentA::class.java, ComponentB::class.java))
+
+        assertTrue(ComponentMask.EMPTY.isEmpty)
+        assertTrue(a.without(ComponentA::class.java).isEmpty)
+    }
+
+    private class ComponentA : Component()
+    private class ComponentB : Component()
+}
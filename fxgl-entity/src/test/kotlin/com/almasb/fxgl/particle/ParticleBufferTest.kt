@@ -0,0 +1,122 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+@file:Suppress("JAVA_MODULE_DOES_NOT_DEPEND_ON_MODULE")
+package com.almasb.fxgl.particle
+
+import javafx.geometry.Point2D
+import javafx.scene.paint.Color
+import javafx.scene.paint.CycleMethod
+import javafx.scene.paint.LinearGradient
+import javafx.scene.paint.Paint
+import javafx.scene.paint.Stop
+import javafx.util.Duration
+import org.hamcrest.CoreMatchers.`is`
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.closeTo
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class ParticleBufferTest {
+
+    @Test
+    fun `Emit particles into buffer`() {
+        val emitter = ParticleEmitter()
+        emitter.maxEmissions = 2
+        emitter.numParticles = 22
+
+        // start with a small buffer to test growing
+        val buffer = ParticleBuffer(4)
+
+        assertThat(emitter.emit(10.0, 10.0, buffer), `is`(22))
+        assertThat(emitter.emit(10.0, 10.0, buffer), `is`(22))
+
+        // max emissions reached
+        assertThat(emitter.emit(10.0, 10.0, buffer), `is`(0))
+
+        assertThat(buffer.size, `is`(44))
+
+        // same emitter config, so all particles share a single style
+        assertThat(buffer.styles.size, `is`(1))
+    }
+
+    @Test
+    fun `Paints other than colors are used as is`() {
+        val gradient = LinearGradient(0.0, 0.0, 1.0, 1.0, true, CycleMethod.NO_CYCLE, Stop(0.0, Color.RED), Stop(1.0, Color.BLUE))
+
+        val emitter = ParticleEmitter()
+        emitter.startColor = gradient
+        emitter.endColor = Color.WHITE
+
+        val buffer = ParticleBuffer()
+
+        assertThat(emitter.emit(10.0, 10.0, buffer), `is`(emitter.numParticles))
+
+        val style = buffer.styles[0]
+
+        assertThat(style.colorAt(0.0), `is`<Paint>(gradient))
+        assertThat(style.colorAt(0.5), `is`<Paint>(gradient))
+        assertThat(style.colorAt(1.0), `is`<Paint>(Color.WHITE))
+    }
+
+    @Test
+    fun `Particles move and die like particle objects`() {
+        val emitter = ParticleEmitter()
+        emitter.numParticles = 1
+        emitter.setSize(5.0, 5.0001)
+        emitter.setColor(Color.RED)
+        emitter.setVelocityFunction { Point2D(10.0, 0.0) }
+        emitter.setExpireFunction { Duration.seconds(if (it == 0) 1.0 else 2.0) }
+
+        val buffer = ParticleBuffer()
+
+        emitter.emit(100.0, 50.0, buffer)
+
+        assertThat(buffer.x[0].toDouble(), `is`(100.0))
+
+        buffer.update(0.5)
+
+        // progress was 0 at the start of the update
+        assertThat(buffer.x[0].toDouble(), `is`(100.0))
+        assertThat(buffer.life[0], closeTo(0.5, 0.0001))
+
+        buffer.update(0.25)
+
+        assertThat(buffer.x[0].toDouble(), closeTo(105.0, 0.0001))
+        assertThat(buffer.y[0].toDouble(), `is`(50.0))
+
+        buffer.update(0.25)
+
+        assertTrue(buffer.isEmpty)
+
+        // styles are released once there are no particles
+        assertTrue(buffer.styles.isEmpty())
+    }
+
+    @Test
+    fun `Dead particles are replaced by the last particle`() {
+        val emitter = ParticleEmitter()
+        emitter.numParticles = 3
+        emitter.setExpireFunction { Duration.seconds(if (it == 0) 0.1 else 1.0) }
+
+        val buffer = ParticleBuffer()
+
+        emitter.emit(0.0, 0.0, buffer)
+
+        buffer.update(0.2)
+
+        assertThat(buffer.size, `is`(2))
+        assertThat(buffer.initialLife[0], `is`(1.0))
+        assertThat(buffer.initialLife[1], `is`(1.0))
+
+        buffer.clear()
+
+        assertTrue(buffer.isEmpty)
+    }
+}
@@ -188,6 +188,39 @@ class AStarMoveComponentTest {
         assertThat(count, `is`(1))
     }
 
+    @Test
+    fun `Move using paths found by pathfinding service`() {
+        val service = AStarPathfindingService()
+        service.setExecutor { it.run() }
+
+        aStarMoveComponent.pathfindingService = service
+
+        aStarMoveComponent.moveToCell(3, 5)
+
+        // path is not found until the service is updated
+        aStarMoveComponent.onUpdate(STEP_SIZE)
+
+        assertTrue(aStarMoveComponent.isPathPending)
+        assertFalse(aStarMoveComponent.isAtDestination)
+
+        service.onGameUpdate(STEP_SIZE)
+
+        assertFalse(aStarMoveComponent.isPathPending)
+        assertFalse(aStarMoveComponent.isPathEmpty)
+
+        finishMotion()
+
+        assertComponentIsNotInMotionAt(3, 5)
+
+        // results of requests made before stopping are ignored
+        aStarMoveComponent.moveToCell(0, 0)
+        aStarMoveComponent.stopMovement()
+
+        service.onGameUpdate(STEP_SIZE)
+
+        assertComponentIsNotInMotionAt(3, 5)
+    }
+
     private fun putComponentInMotion(x: Int, y: Int) {
         aStarMoveComponent.moveToCell(x, y)
         aStarMoveComponent.onUpdate(STEP_SIZE)
@@ -210,6 +210,40 @@ class AStarPathfinderTest {
         assertThat(last.y, `is`(5))
     }
 
+    @Test
+    fun `Cell data from previous searches does not affect next search`() {
+        for (i in 0..4) grid[4, i].state = CellState.NOT_WALKABLE
+
+        val path = pathfinder.findPath(3, 0, 5, 0)
+
+        // same cells searched by a different pathfinder with different costs
+        pathfinderHeuristics.findPath(3, 0, 5, 0, NeighborDirection.EIGHT_DIRECTIONS)
+
+        // busy cells only apply to the search they were given to
+        assertTrue(pathfinder.findPath(3, 0, 5, 0, listOf(grid[3, 5], grid[2, 0], grid[2, 1], grid[2, 2], grid[2, 3], grid[2, 4])).isEmpty())
+
+        assertThat(pathfinder.findPath(3, 0, 5, 0), `is`(path))
+        assertThat(pathfinder.findPath(0, 0, 19, 19).size, `is`(38))
+    }
+
+    @Test
+    fun `Find path in a large grid`() {
+        val largeGrid = AStarGrid(512, 512)
+
+        // a wall with a single gap at the bottom
+        for (y in 0..510) largeGrid[256, y].state = CellState.NOT_WALKABLE
+
+        val largePathfinder = AStarPathfinder(largeGrid)
+
+        repeat(3) {
+            val path = largePathfinder.findPath(0, 0, 511, 0)
+
+            // 511 down, 511 across, 511 up
+            assertThat(path.size, `is`(1533))
+            assertTrue(largeGrid[256, 511] in path)
+        }
+    }
+
     private fun assertPathEquals(path: List<AStarCell>, vararg points: Int) {
         val pointsList = points.toList().chunked(2) { it[0] to it[1] }
         val errorMsg = reportNotMatchingPaths(path, pointsList)
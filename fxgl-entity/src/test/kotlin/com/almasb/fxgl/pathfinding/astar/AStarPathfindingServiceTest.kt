@@ -0,0 +1,199 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+@file:Suppress("JAVA_MODULE_DOES_NOT_DEPEND_ON_MODULE")
+package com.almasb.fxgl.pathfinding.astar
+
+import com.almasb.fxgl.core.collection.grid.NeighborDirection
+import com.almasb.fxgl.pathfinding.CellState
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.`is`
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class AStarPathfindingServiceTest {
+
+    private lateinit var grid: AStarGrid
+    private lateinit var pathfinder: AStarPathfinder<AStarCell>
+    private lateinit var service: AStarPathfindingService
+
+    @BeforeEach
+    fun setUp() {
+        grid = AStarGrid(20, 20)
+        pathfinder = AStarPathfinder(grid)
+
+        service = AStarPathfindingService()
+        service.setExecutor { it.run() }
+    }
+
+    @Test
+    fun `Requests with same target are coalesced`() {
+        for (i in 0..4) grid[4, i].state = CellState.NOT_WALKABLE
+
+        val paths = hashMapOf<Int, List<AStarCell>>()
+
+        for (x in 0..3) {
+            service.requestPath(pathfinder, x, 0, 5, 0) { paths[x] = it }
+        }
+
+        // different target
+        service.requestPath(pathfinder, 0, 0, 19, 19) { paths[-1] = it }
+
+        assertThat(service.numPendingSearches, `is`(2))
+
+        service.onGameUpdate(0.016)
+
+        assertThat(service.numPendingSearches, `is`(0))
+        assertThat(paths.size, `is`(5))
+
+        for (x in 0..3) {
+            val path = paths[x]!!
+
+            assertThat(path.size, `is`(pathfinder.findPath(x, 0, 5, 0).size))
+            assertThat(path.last(), `is`(grid[5, 0]))
+        }
+
+        assertThat(paths[-1]!!.size, `is`(38))
+    }
+
+    @Test
+    fun `Coalesced requests without a path get empty paths`() {
+        for (i in 0..19) grid[4, i].state = CellState.NOT_WALKABLE
+
+        val paths = arrayListOf<List<AStarCell>>()
+
+        service.requestPath(pathfinder, 0, 0, 5, 0) { paths += it }
+        service.requestPath(pathfinder, 6, 0, 5, 0) { paths += it }
+        service.requestPath(pathfinder, 5, 0, 5, 0) { paths += it }
+
+        service.onGameUpdate(0.016)
+
+        assertTrue(paths[0].isEmpty())
+        assertThat(paths[1], `is`(listOf(grid[5, 0])))
+        assertTrue(paths[2].isEmpty())
+    }
+
+    @Test
+    fun `Requests with busy cells are not coalesced`() {
+        val paths = arrayListOf<List<AStarCell>>()
+
+        service.requestPath(pathfinder, 0, 0, 5, 0, NeighborDirection.FOUR_DIRECTIONS, listOf(grid[1, 0])) { paths += it }
+        service.requestPath(pathfinder, 0, 0, 5, 0) { paths += it }
+
+        assertThat(service.numPendingSearches, `is`(2))
+
+        service.onGameUpdate(0.016)
+
+        assertThat(paths[0].size, `is`(7))
+        assertThat(paths[1].size, `is`(5))
+    }
+
+    @Test
+    fun `Searches per frame are limited`() {
+        service.maxSearchesPerFrame = 2
+
+        var count = 0
+
+        for (y in 0..4) {
+            service.requestPath(pathfinder, 0, 0, 10, y) { count++ }
+        }
+
+        service.onGameUpdate(0.016)
+        assertThat(count, `is`(2))
+
+        service.onGameUpdate(0.016)
+        assertThat(count, `is`(4))
+
+        service.onGameUpdate(0.016)
+        assertThat(count, `is`(5))
+
+        assertThrows(IllegalArgumentException::class.java) {
+            service.maxSearchesPerFrame = 0
+        }
+    }
+
+    @Test
+    fun `Failed searches get empty paths and do not affect other searches`() {
+        val paths = hashMapOf<Int, List<AStarCell>>()
+
+        // the busy cell is outside the grid, so the search fails
+        service.requestPath(pathfinder, 0, 0, 5, 0, NeighborDirection.FOUR_DIRECTIONS, listOf(AStarCell(100, 100, CellState.WALKABLE))) { paths[0] = it }
+        service.requestPath(pathfinder, 0, 0, 6, 0) { throw IllegalStateException("Test") }
+        service.requestPath(pathfinder, 0, 0, 7, 0) { paths[2] = it }
+
+        service.onGameUpdate(0.016)
+
+        assertThat(service.numPendingSearches, `is`(0))
+        assertTrue(paths[0]!!.isEmpty())
+        assertThat(paths[2]!!.size, `is`(7))
+    }
+
+    @Test
+    fun `Searches started before game reset are not delivered`() {
+        val tasks = arrayListOf<Runnable>()
+        service.setExecutor { tasks += it }
+
+        var count = 0
+
+        service.requestPath(pathfinder, 0, 0, 5, 0) { count++ }
+        service.onGameUpdate(0.016)
+
+        assertThat(service.numPendingSearches, `is`(1))
+
+        service.onGameReset()
+
+        assertThat(service.numPendingSearches, `is`(0))
+
+        // completes after reset
+        tasks.forEach { it.run() }
+
+        service.requestPath(pathfinder, 0, 0, 6, 0) { count += 10 }
+        service.setExecutor { it.run() }
+        service.onGameUpdate(0.016)
+
+        assertThat(count, `is`(10))
+        assertThat(service.numPendingSearches, `is`(0))
+    }
+
+    @Test
+    fun `Paths are found concurrently`() {
+        val largeGrid = AStarGrid(200, 200)
+
+        for (y in 0..198) largeGrid[100, y].state = CellState.NOT_WALKABLE
+
+        val largePathfinder = AStarPathfinder(largeGrid)
+        val executor = Executors.newFixedThreadPool(4)
+
+        service.setExecutor(executor)
+
+        val paths = arrayListOf<List<AStarCell>>()
+
+        for (y in 0..19) {
+            service.requestPath(largePathfinder, 0, y * 10, 199, y * 10) { paths += it }
+        }
+
+        service.onGameUpdate(0.016)
+
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        service.onGameUpdate(0.016)
+
+        assertThat(paths.size, `is`(20))
+        assertThat(service.numPendingSearches, `is`(0))
+
+        paths.forEach {
+            assertTrue(largeGrid[100, 199] in it)
+        }
+    }
+}
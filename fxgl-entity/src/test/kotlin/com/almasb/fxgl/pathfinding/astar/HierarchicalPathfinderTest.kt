@@ -0,0 +1,128 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+@file:Suppress("JAVA_MODULE_DOES_NOT_DEPEND_ON_MODULE")
+package com.almasb.fxgl.pathfinding.astar
+
+import com.almasb.fxgl.core.collection.grid.NeighborDirection
+import com.almasb.fxgl.pathfinding.CellState
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.`is`
+import org.hamcrest.Matchers.lessThanOrEqualTo
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import kotlin.math.abs
+import kotlin.math.max
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class HierarchicalPathfinderTest {
+
+    private lateinit var grid: AStarGrid
+    private lateinit var pathfinder: HierarchicalPathfinder<AStarCell>
+    private lateinit var astar: AStarPathfinder<AStarCell>
+
+    @BeforeEach
+    fun setUp() {
+        grid = AStarGrid(64, 64)
+
+        // a wall with a single gap at the bottom
+        for (y in 0..62) grid[30, y].state = CellState.NOT_WALKABLE
+
+        pathfinder = HierarchicalPathfinder(grid, 8)
+        astar = AStarPathfinder(grid)
+    }
+
+    @Test
+    fun `Cluster size must be at least 2`() {
+        assertThrows(IllegalArgumentException::class.java) {
+            HierarchicalPathfinder(grid, 1)
+        }
+    }
+
+    @Test
+    fun `Find path across clusters`() {
+        val path = pathfinder.findPath(0, 0, 63, 0)
+
+        assertValidPath(path, 0, 0, 63, 0, NeighborDirection.FOUR_DIRECTIONS)
+        assertThat(path.size, `is`(astar.findPath(0, 0, 63, 0).size))
+        assertTrue(grid[30, 63] in path)
+    }
+
+    @Test
+    fun `Find path within a cluster`() {
+        val path = pathfinder.findPath(1, 1, 5, 5)
+
+        assertValidPath(path, 1, 1, 5, 5, NeighborDirection.FOUR_DIRECTIONS)
+        assertThat(path.size, `is`(8))
+    }
+
+    @Test
+    fun `Find path using eight directions`() {
+        val path = pathfinder.findPath(0, 0, 63, 0, NeighborDirection.EIGHT_DIRECTIONS)
+        val optimal = astar.findPath(0, 0, 63, 0, NeighborDirection.EIGHT_DIRECTIONS)
+
+        assertValidPath(path, 0, 0, 63, 0, NeighborDirection.EIGHT_DIRECTIONS)
+        assertThat(path.size, lessThanOrEqualTo(optimal.size * 3 / 2))
+    }
+
+    @Test
+    fun `Return empty path if target is not reachable`() {
+        grid[30, 63].state = CellState.NOT_WALKABLE
+        pathfinder.updateCell(30, 63)
+
+        assertTrue(pathfinder.findPath(0, 0, 63, 0).isEmpty())
+        assertTrue(pathfinder.findPath(0, 0, 30, 0).isEmpty())
+        assertTrue(pathfinder.findPath(0, 0, 0, 0).isEmpty())
+    }
+
+    @Test
+    fun `Updated region is used in next search`() {
+        assertThat(pathfinder.findPath(0, 0, 63, 0).size, `is`(189))
+
+        for (y in 18..22) grid[30, y].state = CellState.WALKABLE
+        pathfinder.updateRegion(30, 18, 30, 22)
+
+        val path = pathfinder.findPath(0, 0, 63, 0)
+
+        assertValidPath(path, 0, 0, 63, 0, NeighborDirection.FOUR_DIRECTIONS)
+        assertThat(path.size, `is`(astar.findPath(0, 0, 63, 0).size))
+    }
+
+    @Test
+    fun `Find path with busy cells`() {
+        val path = pathfinder.findPath(29, 63, 31, 63, listOf(grid[30, 63]))
+
+        assertTrue(path.isEmpty())
+    }
+
+    private fun assertValidPath(path: List<AStarCell>, startX: Int, startY: Int, targetX: Int, targetY: Int, direction: NeighborDirection) {
+        assertTrue(path.isNotEmpty())
+        assertThat(path.last(), `is`(grid[targetX, targetY]))
+
+        var prevX = startX
+        var prevY = startY
+
+        path.forEach {
+            assertThat(it.state, `is`(CellState.WALKABLE))
+
+            val dx = abs(it.x - prevX)
+            val dy = abs(it.y - prevY)
+
+            if (direction == NeighborDirection.FOUR_DIRECTIONS) {
+                assertThat(dx + dy, `is`(1))
+            } else {
+                assertThat(max(dx, dy), `is`(1))
+            }
+
+            prevX = it.x
+            prevY = it.y
+        }
+    }
+}
@@ -93,6 +93,59 @@ class PhysicsWorldTest {
         assertThat(physicsWorld.jBox2DWorld.bodies.size(), `is`(0))
     }
 
+    @Test
+    fun `Fixed time step interpolates entity position between physics steps`() {
+        physicsWorld.setGravity(0.0, 0.0)
+        physicsWorld.fixedTimeStep = 0.1
+        physicsWorld.maxSubSteps = 5
+
+        assertTrue(physicsWorld.isFixedTimeStep)
+
+        val physics = PhysicsComponent()
+        physics.setBodyType(BodyType.DYNAMIC)
+
+        val e = Entity()
+        e.position = Point2D(100.0, 100.0)
+        e.boundingBoxComponent.addHitBox(HitBox(BoundingShape.box(40.0, 40.0)))
+        e.addComponent(physics)
+
+        val gameWorld = GameWorld()
+        gameWorld.addEntity(e)
+        physicsWorld.onEntityAdded(e)
+
+        physics.velocityX = 60.0
+
+        // not enough time has accumulated for a step
+        physicsWorld.onUpdate(0.05)
+        gameWorld.onUpdate(0.05)
+
+        assertThat(physicsWorld.interpolationAlpha, closeTo(0.5, 0.000001))
+        assertThat(e.x, `is`(100.0))
+
+        // one step of 6 pixels is taken, we are half way to the next one
+        physicsWorld.onUpdate(0.1)
+        gameWorld.onUpdate(0.1)
+
+        assertThat(physicsWorld.interpolationAlpha, closeTo(0.5, 0.000001))
+        assertThat(e.x, `is`(103.0))
+
+        // a long frame is capped at max sub steps and the rest is dropped
+        physicsWorld.onUpdate(1.0)
+        gameWorld.onUpdate(1.0)
+
+        assertThat(physicsWorld.interpolationAlpha, closeTo(0.5, 0.000001))
+        assertThat(e.x, `is`(133.0))
+
+        physicsWorld.fixedTimeStep = 0.0
+
+        assertFalse(physicsWorld.isFixedTimeStep)
+        assertThat(physicsWorld.interpolationAlpha, `is`(1.0))
+
+        assertThrows<IllegalArgumentException> {
+            physicsWorld.fixedTimeStep = -1.0
+        }
+    }
+
     // onEntityRemoved should be called from the game world
     @Test
     fun `Clear does not remove jbox2d bodies`() {
@@ -198,6 +251,57 @@ class PhysicsWorldTest {
         assertThat(collisionEndCount, `is`(1))
     }
 
+    @Test
+    fun `Removed or replaced collision handlers are not notified`() {
+        val e1 = Entity()
+        e1.type = EntityType.TYPE1
+        e1.boundingBoxComponent.addHitBox(HitBox(BoundingShape.box(40.0, 40.0)))
+        e1.addComponent(CollidableComponent(true))
+
+        val e2 = Entity()
+        e2.type = EntityType.TYPE2
+        e2.position = Point2D(20.0, 0.0)
+        e2.boundingBoxComponent.addHitBox(HitBox(BoundingShape.box(40.0, 40.0)))
+        e2.addComponent(CollidableComponent(true))
+
+        val gameWorld = GameWorld()
+        gameWorld.addEntities(e1, e2)
+
+        physicsWorld.onEntityAdded(e1)
+        physicsWorld.onEntityAdded(e2)
+
+        var count1 = 0
+        var count2 = 0
+
+        val handler1 = object : CollisionHandler(EntityType.TYPE1, EntityType.TYPE2) {
+            override fun onCollision(a: Entity, b: Entity) {
+                count1++
+            }
+        }
+
+        val handler2 = object : CollisionHandler(EntityType.TYPE2, EntityType.TYPE1) {
+            override fun onCollision(a: Entity, b: Entity) {
+                assertTrue(a === e2)
+                assertTrue(b === e1)
+                count2++
+            }
+        }
+
+        physicsWorld.addCollisionHandler(handler1)
+        physicsWorld.removeCollisionHandler(handler1)
+        physicsWorld.onUpdate(0.016)
+
+        assertThat(count1, `is`(0))
+
+        // same pair of types in reverse order replaces the handler
+        physicsWorld.addCollisionHandler(handler1)
+        physicsWorld.addCollisionHandler(handler2)
+        physicsWorld.onUpdate(0.016)
+
+        assertThat(count1, `is`(0))
+        assertThat(count2, `is`(1))
+    }
+
     @Test
     fun `Collision notification`() {
         val e1 = Entity()
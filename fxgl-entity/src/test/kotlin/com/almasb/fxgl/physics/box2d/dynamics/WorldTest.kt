@@ -7,6 +7,11 @@
 package com.almasb.fxgl.physics.box2d.dynamics
 
 import com.almasb.fxgl.core.math.Vec2
+import com.almasb.fxgl.physics.box2d.callbacks.ContactImpulse
+import com.almasb.fxgl.physics.box2d.callbacks.ContactListener
+import com.almasb.fxgl.physics.box2d.collision.Manifold
+import com.almasb.fxgl.physics.box2d.collision.shapes.PolygonShape
+import com.almasb.fxgl.physics.box2d.dynamics.contacts.Contact
 import com.almasb.fxgl.physics.box2d.dynamics.joints.RevoluteJointDef
 import org.hamcrest.CoreMatchers
 import org.hamcrest.CoreMatchers.*
@@ -14,6 +19,7 @@ import org.hamcrest.MatcherAssert
 import org.hamcrest.MatcherAssert.*
 import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
+import java.util.concurrent.ForkJoinPool
 
 /**
  *
@@ -43,4 +49,91 @@ class WorldTest {
 
         assertThat(world.jointCount, `is`(0))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `Parallel island solving gives same results as sequential`() {
+        val sequential = createStackingWorld()
+        val parallel = createStackingWorld()
+
+        val executor = ForkJoinPool(4)
+
+        try {
+            parallel.first.setIslandSolverPool(executor)
+
+            assertThat(parallel.first.islandSolverPool, `is`(executor))
+
+            repeat(120) {
+                sequential.first.step(1 / 60f, 8, 3)
+                parallel.first.step(1 / 60f, 8, 3)
+            }
+        } finally {
+            executor.shutdown()
+        }
+
+        val bodies1 = sequential.first.bodies
+        val bodies2 = parallel.first.bodies
+
+        for (i in 0 until bodies1.size()) {
+            assertThat(bodies2[i].position, `is`(bodies1[i].position))
+            assertThat(bodies2[i].angle, `is`(bodies1[i].angle))
+
+            // static bodies are not put to sleep with islands when solved in parallel
+            if (bodies1[i].type != BodyType.STATIC) {
+                assertThat(bodies2[i].isAwake, `is`(bodies1[i].isAwake))
+            }
+        }
+
+        // post solve callbacks are delivered in the same order
+        assertTrue(sequential.second.isNotEmpty())
+        assertThat(parallel.second, `is`(sequential.second))
+
+        parallel.first.setIslandSolverPool(null)
+
+        assertNull(parallel.first.islandSolverPool)
+    }
+
+    /**
+     * @return a world with many independent stacks of boxes on a shared static ground, one stack is held by a joint,
+     * and the list of post solve events in the form of "bodyIndexA-bodyIndexB"
+     */
+    private fun createStackingWorld(): Pair<World, MutableList<String>> {
+        val world = World(Vec2(0f, -10f))
+
+        val ground = world.createBody(BodyDef())
+        ground.createFixture(PolygonShape().also { it.setAsBox(100f, 1f) }, 0f)
+
+        for (x in 0 until 10) {
+            for (y in 0 until 3) {
+                val def = BodyDef()
+                def.type = BodyType.DYNAMIC
+                def.position = Vec2(-50f + x * 10f + y * 0.1f, 2f + y * 1.1f)
+
+                val box = world.createBody(def)
+                box.createFixture(PolygonShape().also { it.setAsBox(0.5f, 0.5f) }, 1f)
+            }
+        }
+
+        val jointDef = RevoluteJointDef()
+        jointDef.initialize(ground, world.bodies[1], Vec2(-50f, 3f))
+        world.createJoint(jointDef)
+
+        val events = arrayListOf<String>()
+
+        world.setContactListener(object : ContactListener {
+            override fun beginContact(contact: Contact) { }
+
+            override fun endContact(contact: Contact) { }
+
+            override fun preSolve(contact: Contact, oldManifold: Manifold) { }
+
+            override fun postSolve(contact: Contact, impulse: ContactImpulse) {
+                val a = world.bodies.indexOfByIdentity(contact.fixtureA.body)
+                val b = world.bodies.indexOfByIdentity(contact.fixtureB.body)
+
+                events += "$a-$b"
+            }
+        })
+
+        return world to events
+    }
+}
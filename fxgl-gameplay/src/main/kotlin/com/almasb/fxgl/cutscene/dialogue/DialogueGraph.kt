@@ -199,6 +199,12 @@ class DialogueGraph(
     val startNode: DialogueNode
         get() = getNodeByID(startNodeID)
 
+    /**
+     * Lines of this graph parsed by dialogue runs, shared with copies of this graph.
+     */
+    internal var compiledLines = DialogueScriptRunner.CompiledLines()
+        private set
+
     /**
      * Adds node to this graph.
      */
@@ -318,6 +324,7 @@ class DialogueGraph(
         copy.startNodeID = startNodeID
         copy.nodes.putAll(nodes)
         copy.edges.addAll(edges)
+        copy.compiledLines = compiledLines
         return copy
     }
 }
@@ -197,7 +197,8 @@ class DialogueScene(private val sceneService: SceneService) : SubScene() {
         this.onFinished = onFinished
         localVars = context.properties()
 
-        dialogueScriptRunner = DialogueScriptRunner(gameVars, localVars, functionHandler)
+        // the graph copy shares parsed lines with the given graph, so they are parsed once across runs
+        dialogueScriptRunner = DialogueScriptRunner(gameVars, localVars, functionHandler, graph.compiledLines)
 
         // while graph has subdialogue nodes, expand
         while (graph.nodes.any { it.value.type == SUBDIALOGUE }) {
@@ -26,7 +26,12 @@ internal class DialogueScriptRunner(
          * Variables local to the dialogue context.
          */
         private val localVars: PropertyMap,
-        private val functionHandler: FunctionCallHandler
+        private val functionHandler: FunctionCallHandler,
+
+        /**
+         * Parsed lines, typically of the graph being run, so that they are shared by all runs of that graph.
+         */
+        private val compiledLines: CompiledLines = CompiledLines()
 ) {
 
     private val log = Logger.get<DialogueScriptRunner>()
@@ -88,44 +93,14 @@ internal class DialogueScriptRunner(
      * Given a [line], this function replaces all variables with their values.
      */
     fun replaceVariablesInText(line: String): String {
-        val varNames = line.split(" +".toRegex())
-                .filter { it.startsWith("\$") && it.length > 1 }
-                .map {
-                    if (!it.last().isLetterOrDigit())
-                        it.substring(1, it.length - 1)
-                    else
-                        it.substring(1)
-                }
-                .toSet()
-
-        return replaceVariables(line, varNames)
-    }
-
-    private fun replaceVariables(line: String, varNames: Set<String>): String {
-        var result = line
-
-        varNames.forEach {
-            if (localVars.exists(it)) {
-                val value = localVars.getValue<Any>(it)
-                result = result.replace("\$$it", value.toString())
-
-            } else if (gameVars.exists(it)) {
-                val value = gameVars.getValue<Any>(it)
-                result = result.replace("\$$it", value.toString())
-            }
-        }
-
-        return result
+        return compiledLines.renderText(line, this)
     }
 
     /**
      * Called from a branch node.
      */
     fun callBooleanFunction(line: String): Boolean {
-        val result = if (line.isEqualityCheckFunction())
-            callEqualityCheckFunction(replaceVariablesInText(line))
-        else
-            callFunction(line)
+        val result = compiledLines.runCondition(line, this)
 
         if (result !is Boolean) {
             log.warning("A boolean function call did not return a boolean: ${line}. Assuming result <false>.")
@@ -135,81 +110,332 @@ internal class DialogueScriptRunner(
         return result
     }
 
-    private fun callEqualityCheckFunction(line: String): Any {
-        val operators = linkedMapOf<String, (Any, Any) -> Boolean>()
-        operators["=="] = { lhs, rhs -> lhs == rhs }
-        operators[">="] = { lhs, rhs -> lhs >= rhs }
-        operators["<="] = { lhs, rhs -> lhs <= rhs }
-        operators[">"] = { lhs, rhs -> lhs > rhs }
-        operators["<"] = { lhs, rhs -> lhs < rhs }
+    /**
+     * Called from a function node.
+     */
+    fun callFunction(line: String): Any {
+        return compiledLines.runFunction(line, this)
+    }
+
+    /**
+     * @return value of variable [varName], local first, then global, or null if no such variable
+     */
+    private fun findValue(varName: String): Any? {
+        if (localVars.exists(varName))
+            return localVars.getValue<Any>(varName)
+
+        if (gameVars.exists(varName))
+            return gameVars.getValue<Any>(varName)
+
+        return null
+    }
+
+    companion object {
+
+        private val operators = listOf<Pair<String, (Any, Any) -> Boolean>>(
+                "==" to { lhs: Any, rhs: Any -> lhs == rhs },
+                ">=" to { lhs: Any, rhs: Any -> lhs >= rhs },
+                "<=" to { lhs: Any, rhs: Any -> lhs <= rhs },
+                ">" to { lhs: Any, rhs: Any -> lhs > rhs },
+                "<" to { lhs: Any, rhs: Any -> lhs < rhs }
+        )
+
+        private fun parseCondition(line: String): Script {
+            if (!line.isEqualityCheckFunction())
+                return parseFunction(line)
+
+            val (op, func) = operators.first { line.contains(it.first) }
+
+            // variables are those of the whole line, as if the line was substituted before being split by operator
+            val varNames = line.findVarNames()
 
-        val entry = operators.entries.find { line.contains(it.key) }
+            return EqualityCheck(
+                    Operand(TextTemplate.parse(line.substringBefore(op).trim(), varNames)),
+                    Operand(TextTemplate.parse(line.substringAfter(op).trim(), varNames)),
+                    func
+            )
+        }
+
+        private fun parseFunction(line: String): Script {
+            if (line.isAssignmentFunction()) {
+                return Assignment(
+                        line.substringBefore('=').trim(),
+                        line.substringAfter('=').trim().toTypedValue()
+                )
+            }
+
+            val tokens = line.trim().split(" +".toRegex())
 
-        if (entry != null) {
-            val (op, func) = entry
+            require(tokens.isNotEmpty()) { "Empty function call: $line" }
 
-            val lhs = line.substringBefore(op).trim().toTypedValue()
-            val rhs = line.substringAfter(op).trim().toTypedValue()
+            val args = tokens.drop(1)
+                    .map { it.trim() }
+                    .map { TextTemplate.parse(it, it.findVarNames()) }
 
-            return func.invoke(lhs, rhs)
+            return FunctionCall(tokens[0].trim(), args.toTypedArray())
         }
+    }
+
+    /**
+     * Lines parsed once, when first run, and kept for as long as this object.
+     * Parsed lines only depend on the line text, so they can be shared by runners with different variables.
+     * Each [DialogueGraph] has one, so the number of parsed lines is bounded by the lines of that graph
+     * and its sub-dialogues, and they are released together with the graph.
+     */
+    internal class CompiledLines {
+        private val texts = HashMap<String, TextTemplate>()
+        private val conditions = HashMap<String, Script>()
+        private val functions = HashMap<String, Script>()
 
-        return NullObject
+        fun renderText(line: String, runner: DialogueScriptRunner): String {
+            return texts.computeIfAbsent(line) { TextTemplate.parse(it, it.findVarNames()) }.render(runner)
+        }
+
+        fun runCondition(line: String, runner: DialogueScriptRunner): Any {
+            return conditions.computeIfAbsent(line) { parseCondition(it) }.run(runner)
+        }
+
+        fun runFunction(line: String, runner: DialogueScriptRunner): Any {
+            return functions.computeIfAbsent(line) { parseFunction(it) }.run(runner)
+        }
     }
 
     /**
-     * Called from a function node.
+     * A parsed line of a branch condition or a function node.
      */
-    fun callFunction(line: String): Any {
-        if (line.isAssignmentFunction()) {
-            callAssignmentFunction(line)
+    private sealed class Script {
+        abstract fun run(runner: DialogueScriptRunner): Any
+    }
+
+    private class EqualityCheck(
+            private val lhs: Operand,
+            private val rhs: Operand,
+            private val func: (Any, Any) -> Boolean
+    ) : Script() {
+
+        override fun run(runner: DialogueScriptRunner): Any {
+            return func.invoke(lhs.evaluate(runner), rhs.evaluate(runner))
+        }
+    }
+
+    private class Assignment(
+            private val varName: String,
+            private val varValue: Any
+    ) : Script() {
+
+        override fun run(runner: DialogueScriptRunner): Any {
+            if (runner.localVars.exists(varName)) {
+                runner.localVars.setValue(varName, varValue)
+            } else if (runner.gameVars.exists(varName)) {
+                runner.gameVars.setValue(varName, varValue)
+            } else {
+                // does not exist anywhere, create locally
+                runner.localVars.setValue(varName, varValue)
+            }
+
             return NullObject
         }
+    }
+
+    private class FunctionCall(
+            private val funcName: String,
+            private val args: Array<TextTemplate>
+    ) : Script() {
+
+        /**
+         * Arguments without variables are the same on each call, so the same array is passed.
+         */
+        private val constantArgs: Array<String>? = if (args.all { it.isConstant }) Array(args.size) { args[it].text } else null
+
+        override fun run(runner: DialogueScriptRunner): Any {
+            if (args.isEmpty()) {
+                // check if this is a boolean variable -- the only valid variable to use here
+                val value = runner.findValue(funcName)
+
+                if (value != null)
+                    return value
+            }
+
+            val argValues = constantArgs ?: Array(args.size) { args[it].render(runner) }
+
+            // check built-in handler first
+            if (runner.builtInFunctions.exists(funcName, argValues.size)) {
+                return runner.builtInFunctions.call(funcName, argValues)
+            }
+
+            return runner.functionHandler.call(funcName, argValues)
+        }
+    }
+
+    /**
+     * An operand of an equality check, which is typed (see [toTypedValue]) after its variables are replaced.
+     */
+    private class Operand(private val template: TextTemplate) {
+
+        private val constant: Any? = if (template.isConstant) template.text.toTypedValue() else null
+
+        /**
+         * The last immutable value of a single variable that was typed, and the result,
+         * so that a variable is only converted again once it changes.
+         */
+        private var lastValue: Any? = null
+        private var lastTypedValue: Any = NullObject
+
+        fun evaluate(runner: DialogueScriptRunner): Any {
+            if (constant != null)
+                return constant
+
+            if (template.isSingleVariable) {
+                val value = template.findSingleValue(runner)
+
+                // these types are unchanged by converting to String and back, so no need to convert
+                if (value is Int || value is Double || value is Boolean)
+                    return value
+
+                if (value is String || value is Number || value is Enum<*>) {
+                    if (value != lastValue) {
+                        lastTypedValue = value.toString().trim().toTypedValue()
+                        lastValue = value
+                    }
+
+                    return lastTypedValue
+                }
+            }
+
+            return template.render(runner).trim().toTypedValue()
+        }
+    }
+
+    /**
+     * A line split into literal text and variables.
+     * Literal i is followed by variable i, so there is one more literal than variables.
+     * Where names of several variables match, e.g. "\$ab" for variables "a" and "ab",
+     * the first one (in order of appearance in the line) that exists is replaced.
+     */
+    private class TextTemplate(
+            val text: String,
+            private val literals: Array<String>,
 
-        val tokens = line.trim().split(" +".toRegex())
+            /**
+             * The text of each variable without $, i.e. the longest matching name.
+             */
+            private val variables: Array<String>,
 
-        require(tokens.isNotEmpty()) { "Empty function call: $line" }
+            /**
+             * Names that match each variable.
+             */
+            private val candidates: Array<Array<String>>
+    ) {
 
-        val funcName = tokens[0].trim()
+        val isConstant: Boolean
+            get() = variables.isEmpty()
 
-        if (tokens.size == 1) {
-            // check if this is a boolean variable -- the only valid variable to use here
-            if (localVars.exists(funcName)) {
-                return localVars.getValue(funcName)
+        val isSingleVariable: Boolean
+            get() = variables.size == 1 && candidates[0].size == 1 && literals[0].isEmpty() && literals[1].isEmpty()
+
+        fun findSingleValue(runner: DialogueScriptRunner): Any? {
+            return runner.findValue(variables[0])
+        }
+
+        fun render(runner: DialogueScriptRunner): String {
+            if (isConstant)
+                return text
+
+            if (isSingleVariable) {
+                // a String value is returned as is, the text of an unknown variable is not replaced
+                return findSingleValue(runner)?.toString() ?: text
             }
 
-            if (gameVars.exists(funcName)) {
-                return gameVars.getValue(funcName)
+            val sb = StringBuilder(text.length + 16)
+            sb.append(literals[0])
+
+            for (i in variables.indices) {
+                appendVariable(sb, runner, variables[i], candidates[i])
+
+                sb.append(literals[i + 1])
             }
+
+            return sb.toString()
         }
 
-        val args = tokens.drop(1).map { replaceVariablesInText(it.trim()) }.toTypedArray()
+        private fun appendVariable(sb: StringBuilder, runner: DialogueScriptRunner, variable: String, names: Array<String>) {
+            for (varName in names) {
+                val value = runner.findValue(varName)
+
+                if (value != null) {
+                    sb.append(value)
 
-        // check built-in handler first
-        if (builtInFunctions.exists(funcName, args.size)) {
-            return builtInFunctions.call(funcName, args)
+                    // the rest of a longer variable text stays as is
+                    sb.append(variable, varName.length, variable.length)
+                    return
+                }
+            }
+
+            sb.append('$').append(variable)
         }
 
-        return functionHandler.call(funcName, args)
-    }
+        companion object {
+
+            /**
+             * Splits [line] at occurrences of given variable names, each prefixed with $.
+             */
+            fun parse(line: String, varNames: Set<String>): TextTemplate {
+                if (varNames.isEmpty())
+                    return TextTemplate(line, arrayOf(line), emptyArray(), emptyArray())
+
+                val literals = arrayListOf<String>()
+                val variables = arrayListOf<String>()
+                val candidates = arrayListOf<Array<String>>()
+
+                val literal = StringBuilder()
+                var i = 0
 
-    private fun callAssignmentFunction(line: String) {
-        log.debug("callAssignmentFunction( $line )")
+                while (i < line.length) {
+                    val c = line[i]
 
-        val varName = line.substringBefore('=').trim()
-        val varValue = line.substringAfter('=').trim().toTypedValue()
+                    if (c == '$') {
+                        val names = varNames.filter { line.startsWith(it, i + 1) }
 
-        if (localVars.exists(varName)) {
-            localVars.setValue(varName, varValue)
-        } else if (gameVars.exists(varName)) {
-            gameVars.setValue(varName, varValue)
-        } else {
-            // does not exist anywhere, create locally
-            localVars.setValue(varName, varValue)
+                        if (names.isNotEmpty()) {
+                            val variable = names.maxBy { it.length }
+
+                            literals += literal.toString()
+                            literal.clear()
+
+                            variables += variable
+                            candidates += names.toTypedArray()
+                            i += 1 + variable.length
+                            continue
+                        }
+                    }
+
+                    literal.append(c)
+                    i++
+                }
+
+                literals += literal.toString()
+
+                return TextTemplate(line, literals.toTypedArray(), variables.toTypedArray(), candidates.toTypedArray())
+            }
         }
     }
 }
 
+/**
+ * @return names of variables (without $) used in this line
+ */
+private fun String.findVarNames(): Set<String> {
+    return this.split(" +".toRegex())
+            .filter { it.startsWith("\$") && it.length > 1 }
+            .map {
+                if (!it.last().isLetterOrDigit())
+                    it.substring(1, it.length - 1)
+                else
+                    it.substring(1)
+            }
+            .toSet()
+}
+
 private fun String.isAssignmentFunction(): Boolean {
     return this.contains('=')
 }
@@ -54,6 +54,38 @@ class DialogueScriptRunnerTest {
         assertThat(result, `is`("Test 5."))
     }
 
+    @Test
+    fun `Unknown variables in text are not replaced`() {
+        val result = runner.replaceVariablesInText("Test \$unknown \$someInt")
+
+        assertThat(result, `is`("Test \$unknown 5"))
+    }
+
+    @Test
+    fun `Same lines use current values of variables`() {
+        val globalVars = PropertyMap()
+        globalVars.setValue("gold", 10)
+
+        runner = DialogueScriptRunner(globalVars, PropertyMap(), object : FunctionCallHandler() {})
+
+        assertTrue(runner.callBooleanFunction("\$gold >= 10"))
+        assertThat(runner.replaceVariablesInText("Gold: \$gold"), `is`("Gold: 10"))
+
+        runner.callFunction("sub gold 5")
+
+        assertFalse(runner.callBooleanFunction("\$gold >= 10"))
+        assertThat(runner.replaceVariablesInText("Gold: \$gold"), `is`("Gold: 5"))
+
+        // local variables of another runner shadow global ones
+        val localVars = PropertyMap()
+        localVars.setValue("gold", 20)
+
+        runner = DialogueScriptRunner(globalVars, localVars, object : FunctionCallHandler() {})
+
+        assertTrue(runner.callBooleanFunction("\$gold >= 10"))
+        assertThat(runner.replaceVariablesInText("Gold: \$gold"), `is`("Gold: 20"))
+    }
+
     @Test
     fun `Call a boolean function`() {
         assertTrue(runner.callBooleanFunction("hasItem 400"))
@@ -108,6 +140,24 @@ class DialogueScriptRunnerTest {
         assertTrue(runner.callBooleanFunction("\$someInt == 66"))
     }
 
+    @Test
+    fun `String variables are typed again after they change`() {
+        val globalVars = PropertyMap()
+        globalVars.setValue("level", "5")
+
+        runner = DialogueScriptRunner(globalVars, PropertyMap(), object : FunctionCallHandler() {})
+
+        assertTrue(runner.callBooleanFunction("\$level > 3"))
+
+        globalVars.setValue("level", "2")
+
+        assertFalse(runner.callBooleanFunction("\$level > 3"))
+
+        globalVars.setValue("level", "hard")
+
+        assertTrue(runner.callBooleanFunction("\$level == hard"))
+    }
+
     @Test
     fun `Call built-in functions`() {
         val globalVars = PropertyMap()
@@ -147,4 +197,34 @@ class DialogueScriptRunnerTest {
         assertDoesNotThrow { runner.callFunction("add i notNumber") }
         assertDoesNotThrow { runner.callFunction("add a 2") }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `Runners that share parsed lines use their own variables`() {
+        val lines = DialogueScriptRunner.CompiledLines()
+
+        val vars1 = PropertyMap()
+        vars1.setValue("gold", 10)
+
+        val vars2 = PropertyMap()
+        vars2.setValue("gold", "none")
+
+        val runner1 = DialogueScriptRunner(vars1, PropertyMap(), object : FunctionCallHandler() {}, lines)
+        val runner2 = DialogueScriptRunner(vars2, PropertyMap(), object : FunctionCallHandler() {}, lines)
+
+        assertThat(runner1.replaceVariablesInText("You have \$gold gold"), `is`("You have 10 gold"))
+        assertThat(runner2.replaceVariablesInText("You have \$gold gold"), `is`("You have none gold"))
+
+        assertTrue(runner1.callBooleanFunction("\$gold == 10"))
+        assertFalse(runner2.callBooleanFunction("\$gold == 10"))
+        assertTrue(runner2.callBooleanFunction("\$gold == none"))
+        assertFalse(runner1.callBooleanFunction("\$gold == none"))
+    }
+
+    @Test
+    fun `Copies of a graph share parsed lines`() {
+        val graph = DialogueGraph()
+
+        assertSame(graph.compiledLines, graph.copy().compiledLines)
+        assertNotSame(graph.compiledLines, DialogueGraph().compiledLines)
+    }
+}
@@ -12,10 +12,15 @@ import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Almas Baimagambetov (almaslvl@gmail.com)
@@ -24,6 +29,32 @@ public abstract class Connection<T> {
 
     protected static final Logger log = Logger.get(Connection.class);
 
+    /**
+     * Capacity of {@link #messageQueue}.
+     */
+    public static final int MESSAGE_QUEUE_CAPACITY = 100;
+
+    /**
+     * Max number of messages kept for batching, after which they are flushed by {@link #send(Object)}.
+     * A full batch fits into an empty {@link #messageQueue}.
+     */
+    public static final int MAX_BATCH_SIZE = MESSAGE_QUEUE_CAPACITY;
+
+    /**
+     * Max time (in milliseconds) a message is kept for batching, after which it is flushed automatically,
+     * e.g. if the game is paused and no longer calls {@link #flush()}.
+     */
+    public static final long MAX_BATCH_DELAY = 50;
+
+    /**
+     * Flushes batches that were kept for too long, shared by all connections.
+     */
+    private static final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "ConnectionFlushThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private ReadOnlyBooleanWrapper isConnectedProperty = new ReadOnlyBooleanWrapper(true);
 
     private int connectionNum;
@@ -33,7 +64,40 @@ public abstract class Connection<T> {
     protected final List<MessageHandler<T>> messageHandlers = new CopyOnWriteArrayList<>();
     protected final List<MessageHandler<T>> messageHandlersFX = new CopyOnWriteArrayList<>();
 
-    protected BlockingQueue<T> messageQueue = new ArrayBlockingQueue<>(100);
+    protected BlockingQueue<T> messageQueue = new ArrayBlockingQueue<>(MESSAGE_QUEUE_CAPACITY);
+
+    private volatile boolean isBatchingEnabled = false;
+
+    private final Object batchLock = new Object();
+    private final Object flushLock = new Object();
+
+    /**
+     * Messages sent since the last flush, if batching is enabled, guarded by batchLock.
+     * It is swapped with flushingBatch on flush, so that new messages can be kept while a batch is being queued.
+     */
+    private List<T> batch = new ArrayList<>();
+
+    /**
+     * Guarded by flushLock.
+     */
+    private List<T> flushingBatch = new ArrayList<>();
+
+    /**
+     * Time when the first message of the current batch was kept, guarded by batchLock.
+     */
+    private long batchStartTime = 0;
+
+    /**
+     * Whether an automatic flush is scheduled, guarded by batchLock.
+     */
+    private boolean isFlushScheduled = false;
+
+    // METRICS
+
+    private final AtomicLong numBytesSent = new AtomicLong(0);
+    private volatile int lastBatchSize = 0;
+    private volatile long lastFlushTime = 0;
+    private volatile long lastFlushLatency = 0;
 
     public Connection(int connectionNum) {
         this.connectionNum = connectionNum;
@@ -71,12 +135,117 @@ public abstract class Connection<T> {
         messageHandlersFX.remove(handler);
     }
 
+    /**
+     * If batching is enabled, messages sent via {@link #send(Object)} are kept until {@link #flush()} is called,
+     * typically once per tick, so that all messages of a tick are written to the network together.
+     * Disabling batching flushes kept messages.
+     */
+    public final void setBatchingEnabled(boolean isBatchingEnabled) {
+        this.isBatchingEnabled = isBatchingEnabled;
+
+        if (!isBatchingEnabled) {
+            flush();
+        }
+    }
+
+    public final boolean isBatchingEnabled() {
+        return isBatchingEnabled;
+    }
+
     public final void send(T message) {
         if (!isConnected()) {
             log.warning("Attempted to send but connection is not connected");
             return;
         }
 
+        if (isBatchingEnabled) {
+            boolean isBatchFull;
+
+            synchronized (batchLock) {
+                if (batch.isEmpty()) {
+                    batchStartTime = System.nanoTime();
+
+                    if (!isFlushScheduled) {
+                        isFlushScheduled = true;
+                        flushScheduler.schedule(this::onFlushTimer, MAX_BATCH_DELAY, TimeUnit.MILLISECONDS);
+                    }
+                }
+
+                batch.add(message);
+
+                isBatchFull = batch.size() >= MAX_BATCH_SIZE;
+            }
+
+            if (isBatchFull) {
+                flush();
+            }
+            return;
+        }
+
+        sendImpl(message);
+    }
+
+    /**
+     * Queues messages kept since the last flush (if batching is enabled) to be written together.
+     */
+    public final void flush() {
+        synchronized (flushLock) {
+            List<T> messages;
+
+            synchronized (batchLock) {
+                if (batch.isEmpty())
+                    return;
+
+                messages = batch;
+                batch = flushingBatch;
+                flushingBatch = messages;
+            }
+
+            try {
+                if (isConnected()) {
+                    lastFlushTime = System.nanoTime();
+
+                    sendBatchImpl(messages);
+                }
+            } finally {
+                messages.clear();
+            }
+        }
+    }
+
+    /**
+     * Flushes the current batch if it was kept for at least {@link #MAX_BATCH_DELAY},
+     * otherwise checks again when it will have been.
+     */
+    private void onFlushTimer() {
+        synchronized (batchLock) {
+            if (batch.isEmpty()) {
+                isFlushScheduled = false;
+                return;
+            }
+
+            long delay = batchStartTime + TimeUnit.MILLISECONDS.toNanos(MAX_BATCH_DELAY) - System.nanoTime();
+
+            if (delay > 0) {
+                flushScheduler.schedule(this::onFlushTimer, delay, TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            isFlushScheduled = false;
+        }
+
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warning("Connection " + connectionNum + " failed to flush messages", e);
+        }
+    }
+
+    /**
+     * Queues given message to be sent.
+     * By default, the message is put into {@link #messageQueue}, blocking while the queue is full.
+     */
+    protected void sendImpl(T message) {
         try {
             messageQueue.put(message);
         } catch (InterruptedException e) {
@@ -84,9 +253,70 @@ public abstract class Connection<T> {
         }
     }
 
+    /**
+     * Queues given messages to be sent together.
+     * This is called by {@link #flush()}, possibly on the thread shared by all connections, so it must not block.
+     * By default, messages are offered to {@link #messageQueue} and those that do not fit are dropped.
+     * The send thread writes all messages queued at the time with a single write.
+     */
+    protected void sendBatchImpl(List<T> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (!messageQueue.offer(messages.get(i))) {
+                log.warning("Connection " + connectionNum + " dropped " + (messages.size() - i) + " messages, messageQueue is full");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called by the sending thread after given number of bytes of one or more messages
+     * has been written to the network at once.
+     */
+    protected final void onBatchWritten(int numBytes) {
+        numBytesSent.addAndGet(numBytes);
+        lastBatchSize = numBytes;
+
+        long flushTime = lastFlushTime;
+
+        if (flushTime != 0) {
+            lastFlushLatency = System.nanoTime() - flushTime;
+        }
+    }
+
+    /**
+     * @return number of messages sent but not yet written to the network
+     */
+    public int getNumQueuedMessages() {
+        synchronized (batchLock) {
+            return batch.size() + messageQueue.size();
+        }
+    }
+
+    /**
+     * @return total number of bytes written to the network
+     */
+    public final long getNumBytesSent() {
+        return numBytesSent.get();
+    }
+
+    /**
+     * @return number of bytes of the last write to the network, which contains all messages queued at the time
+     */
+    public final int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /**
+     * @return time (in nanoseconds) from the last {@link #flush()} to the last write to the network,
+     * or 0 if batching was never used
+     */
+    public final long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
     private boolean isJavaFXExceptionLogged = false;
 
-    void notifyMessageReceived(T message) {
+    protected final void notifyMessageReceived(T message) {
         // exceptions here should only occur if they were thrown at user level
         // during handling messages via onReceive()
 
@@ -124,6 +354,14 @@ public abstract class Connection<T> {
         }
 
         isConnectedProperty.set(false);
+
+        onTerminated();
+    }
+
+    /**
+     * Called after this connection has been terminated, i.e. is no longer connected.
+     */
+    protected void onTerminated() {
     }
 
     protected abstract boolean isClosedLocally();
@@ -10,6 +10,7 @@ import com.almasb.fxgl.logging.Logger;
 import com.almasb.fxgl.net.tcp.TCPConnection;
 import com.almasb.fxgl.net.udp.UDPConnection;
 
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.net.Socket;
 import java.net.SocketException;
@@ -72,12 +73,29 @@ public abstract class Endpoint<T> {
         new ConnectionThread(sendThreadName, () -> {
 
             try {
-                var writer = Writers.INSTANCE.getTCPWriter(messageType, socket.getOutputStream());
+                var out = socket.getOutputStream();
+
+                // messages are written into a buffer first, so that all queued messages are sent with a single write
+                var buffer = new ByteArrayOutputStream();
+                var writer = Writers.INSTANCE.getTCPWriter(messageType, buffer);
+
+                var messages = new ArrayList<T>();
 
                 while (connection.isConnected()) {
-                    var message = connection.messageQueue.take();
+                    messages.add(connection.messageQueue.take());
+                    connection.messageQueue.drainTo(messages);
+
+                    for (int i = 0; i < messages.size(); i++) {
+                        writer.write(messages.get(i));
+                    }
 
-                    writer.write(message);
+                    messages.clear();
+
+                    buffer.writeTo(out);
+
+                    connection.onBatchWritten(buffer.size());
+
+                    buffer.reset();
                 }
             } catch (Exception e) {
                 log.warning(sendThreadName + " crashed", e);
@@ -136,7 +154,10 @@ public abstract class Endpoint<T> {
 
                     var bytes = Writers.INSTANCE.getUDPWriter(messageType).write(message);
 
+                    // each message is a separate datagram
                     connection.sendUDP(bytes);
+
+                    connection.onBatchWritten(bytes.length);
                 }
             } catch (Exception e) {
                 log.warning(sendThreadName + " crashed", e);
@@ -161,7 +182,7 @@ public abstract class Endpoint<T> {
         }).start();
     }
 
-    private void onConnectionOpened(Connection<T> connection) {
+    protected final void onConnectionOpened(Connection<T> connection) {
         log.debug(getClass().getSimpleName() + " successfully opened connection (" + connection.getConnectionNum() + ")");
 
         connections.add(connection);
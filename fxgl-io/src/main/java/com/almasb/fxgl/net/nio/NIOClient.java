@@ -0,0 +1,111 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.net.nio;
+
+import com.almasb.fxgl.logging.Logger;
+import com.almasb.fxgl.net.Client;
+import com.almasb.fxgl.net.Connection;
+import com.almasb.fxgl.net.NIOConfig;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A TCP client whose connection is served by an event loop.
+ * By default, the client has its own loop, which is closed when the connection is closed.
+ * Many clients can instead share a loop, which then stays open until closed by its owner.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class NIOClient<T> extends Client<T> {
+
+    private static final Logger log = Logger.get(NIOClient.class);
+
+    private final String ip;
+    private final int port;
+    private final NIOConfig<T> config;
+
+    /**
+     * The loop shared with other clients, or null if this client has its own loop.
+     */
+    private final NIOEventLoop sharedLoop;
+
+    private volatile NIOEventLoop loop;
+
+    public NIOClient(String ip, int port, NIOConfig<T> config) {
+        this(ip, port, config, null);
+    }
+
+    /**
+     * @param loop event loop to serve the connection, which is not closed by this client
+     */
+    public NIOClient(String ip, int port, NIOConfig<T> config, NIOEventLoop loop) {
+        this.ip = ip;
+        this.port = port;
+        this.config = config;
+        this.sharedLoop = loop;
+    }
+
+    @Override
+    public void connect() {
+        log.debug("Connecting to " + ip + ":" + port + " type: " + config.getMessageType());
+
+        SocketChannel channel;
+
+        try {
+            channel = SocketChannel.open(new InetSocketAddress(ip, port));
+
+            log.debug("Created socket channel to " + ip + ":" + port);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to create a socket to address " + ip + " : " + port + " Error: " + e, e);
+        }
+
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            loop = sharedLoop != null ? sharedLoop : new NIOEventLoop("NIOClient-" + ip + ":" + port);
+
+            var connection = new NIOConnection<T>(channel, loop, 1, config, this::onClosed);
+
+            onConnectionOpened(connection);
+
+            connection.start();
+        } catch (Exception e) {
+            // in case we managed to partially open the connection
+            disconnect();
+
+            try {
+                channel.close();
+            } catch (Exception closeException) {
+                log.warning("Exception when closing channel", closeException);
+            }
+
+            closeOwnLoop();
+
+            throw new RuntimeException("Failed to open NIO connection to " + ip + ":" + port + " Error: " + e, e);
+        }
+    }
+
+    private void onClosed(Connection<T> connection) {
+        onConnectionClosed(connection);
+
+        closeOwnLoop();
+    }
+
+    private void closeOwnLoop() {
+        if (sharedLoop == null && loop != null)
+            loop.close();
+    }
+
+    @Override
+    public void disconnect() {
+        getConnections().forEach(Connection::terminate);
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.net.nio;
+
+import com.almasb.fxgl.net.Connection;
+import com.almasb.fxgl.net.NIOConfig;
+import com.almasb.fxgl.net.Readers;
+import com.almasb.fxgl.net.UDPMessageReader;
+import com.almasb.fxgl.net.UDPMessageWriter;
+import com.almasb.fxgl.net.Writers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A TCP connection whose IO is performed by an event loop, rather than by dedicated threads.
+ * Messages are converted to and from bytes via the byte array writers and readers
+ * registered in {@link Writers} and {@link Readers} (the same as those used by UDP),
+ * and sent as frames of 4-byte length followed by message bytes.
+ *
+ * {@link #send(Object)} never blocks: a message is converted on the calling thread and queued.
+ * If the queued bytes would exceed {@link NIOConfig#getMaxPendingBytes()}, e.g. because the remote endpoint
+ * does not read fast enough, the message is dropped and counted, see {@link #getNumDroppedMessages()}.
+ * Message handlers are called on the event loop thread.
+ *
+ * The channel closing responsibility lies within this class.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class NIOConnection<T> extends Connection<T> implements NIOEventLoop.ChannelHandler {
+
+    private static final int HEADER_SIZE = 4;
+
+    private final SocketChannel channel;
+    private final NIOEventLoop loop;
+
+    private final UDPMessageWriter<T> writer;
+    private final UDPMessageReader<T> reader;
+
+    private final int maxPendingBytes;
+    private final int maxMessageSize;
+
+    private final Consumer<Connection<T>> onClosed;
+    private final AtomicBoolean isClosedNotified = new AtomicBoolean(false);
+
+    /**
+     * Only accessed by the loop thread.
+     */
+    private SelectionKey key = null;
+
+    // SEND STATE
+
+    /**
+     * Message bytes queued by senders, drained by the loop thread.
+     */
+    private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numPendingBytes = new AtomicInteger(0);
+    private final AtomicInteger numPendingMessages = new AtomicInteger(0);
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean(false);
+    private final AtomicLong numDroppedMessages = new AtomicLong(0);
+
+    /**
+     * Message bytes being written, only accessed by the loop thread.
+     */
+    private final ArrayDeque<byte[]> writing = new ArrayDeque<>();
+
+    /**
+     * Number of bytes (incl. header) of the first frame in writing that have been written.
+     */
+    private int frameOffset = 0;
+
+    // RECEIVE STATE (only accessed by the loop thread)
+
+    private int header = 0;
+    private int headerSize = 0;
+
+    private byte[] payload = null;
+    private int payloadSize = 0;
+
+    NIOConnection(SocketChannel channel, NIOEventLoop loop, int connectionNum, NIOConfig<T> config, Consumer<Connection<T>> onClosed) {
+        super(connectionNum);
+        this.channel = channel;
+        this.loop = loop;
+        this.onClosed = onClosed;
+
+        writer = Writers.INSTANCE.getUDPWriter(config.getMessageType());
+        reader = Readers.INSTANCE.getUDPReader(config.getMessageType());
+
+        maxPendingBytes = config.getMaxPendingBytes();
+        maxMessageSize = config.getMaxMessageSize();
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return number of bytes queued to be sent, which grows if the remote endpoint does not read fast enough
+     */
+    public int getNumPendingBytes() {
+        return numPendingBytes.get();
+    }
+
+    /**
+     * @return number of messages that were not sent because too many bytes were queued
+     */
+    public long getNumDroppedMessages() {
+        return numDroppedMessages.get();
+    }
+
+    /**
+     * Starts reading and writing on the event loop.
+     * Messages sent before this call are written once the channel is registered.
+     */
+    void start() {
+        loop.execute(this::register);
+    }
+
+    private void register() {
+        if (!channel.isOpen())
+            return;
+
+        try {
+            key = loop.register(channel, SelectionKey.OP_READ, this);
+
+            writePending();
+        } catch (Exception e) {
+            log.warning("Connection " + getConnectionNum() + " failed to register with event loop", e);
+
+            terminate();
+        }
+    }
+
+    @Override
+    public int getNumQueuedMessages() {
+        return super.getNumQueuedMessages() + numPendingMessages.get();
+    }
+
+    @Override
+    protected void sendImpl(T message) {
+        if (enqueue(message)) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Queues all messages before writing, so that they are written together.
+     */
+    @Override
+    protected void sendBatchImpl(List<T> messages) {
+        boolean isQueued = false;
+
+        for (int i = 0; i < messages.size(); i++) {
+            isQueued |= enqueue(messages.get(i));
+        }
+
+        if (isQueued) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * @return true if the message was queued, false if it was dropped
+     */
+    private boolean enqueue(T message) {
+        byte[] bytes;
+
+        try {
+            bytes = writer.write(message);
+        } catch (Exception e) {
+            log.warning("Connection " + getConnectionNum() + " failed to convert message: " + message, e);
+            return false;
+        }
+
+        if (bytes.length > maxMessageSize) {
+            log.warning("Connection " + getConnectionNum() + " cannot send message of size " + bytes.length + ", since max size is " + maxMessageSize);
+            return false;
+        }
+
+        int frameSize = bytes.length + HEADER_SIZE;
+        int total = numPendingBytes.addAndGet(frameSize);
+
+        // always accept a message if nothing else is queued, so that a message larger than max pending bytes can be sent
+        if (total > maxPendingBytes && total != frameSize) {
+            numPendingBytes.addAndGet(-frameSize);
+
+            if (numDroppedMessages.getAndIncrement() == 0) {
+                log.warning("Connection " + getConnectionNum() + " is dropping messages, since more than " + maxPendingBytes + " bytes are queued");
+            }
+
+            return false;
+        }
+
+        numPendingMessages.incrementAndGet();
+        pending.add(bytes);
+
+        return true;
+    }
+
+    private void scheduleFlush() {
+        if (isFlushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::writePending);
+        }
+    }
+
+    @Override
+    public void onSelected(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                read();
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                writePending();
+            }
+        } catch (IOException e) {
+            if (!isClosedLocally()) {
+                log.debug("Connection " + getConnectionNum() + " was unexpectedly disconnected: " + e.getMessage());
+
+                terminate();
+            }
+        } catch (Exception e) {
+            log.warning("Connection " + getConnectionNum() + " had unspecified error during receive()", e);
+
+            if (isConnected()) {
+                terminate();
+            }
+        }
+    }
+
+    @Override
+    public void onLoopClosed() {
+        if (isConnected()) {
+            terminate();
+        }
+    }
+
+    /**
+     * Writes as many queued bytes as the channel accepts, then waits for the channel to become writable if needed.
+     */
+    private void writePending() {
+        isFlushScheduled.set(false);
+
+        if (key == null || !key.isValid())
+            return;
+
+        byte[] bytes;
+        while ((bytes = pending.poll()) != null) {
+            writing.add(bytes);
+        }
+
+        ByteBuffer buffer = loop.getWriteBuffer();
+
+        int totalWritten = 0;
+
+        try {
+            while (!writing.isEmpty()) {
+                fillWriteBuffer(buffer);
+
+                int numWritten = channel.write(buffer);
+
+                onWritten(numWritten);
+                totalWritten += numWritten;
+
+                // the channel's send buffer is full
+                if (buffer.hasRemaining())
+                    break;
+            }
+        } catch (IOException e) {
+            if (!isClosedLocally()) {
+                log.debug("Connection " + getConnectionNum() + " was unexpectedly disconnected: " + e.getMessage());
+
+                terminate();
+            }
+            return;
+        }
+
+        if (totalWritten > 0) {
+            onBatchWritten(totalWritten);
+        }
+
+        key.interestOps(writing.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void fillWriteBuffer(ByteBuffer buffer) {
+        buffer.clear();
+
+        int offset = frameOffset;
+
+        for (byte[] bytes : writing) {
+            if (buffer.remaining() < HEADER_SIZE)
+                break;
+
+            for (int i = offset; i < HEADER_SIZE; i++) {
+                buffer.put((byte) (bytes.length >>> (24 - 8 * i)));
+            }
+
+            int bytesOffset = Math.max(0, offset - HEADER_SIZE);
+            int length = Math.min(bytes.length - bytesOffset, buffer.remaining());
+
+            buffer.put(bytes, bytesOffset, length);
+
+            if (!buffer.hasRemaining())
+                break;
+
+            offset = 0;
+        }
+
+        buffer.flip();
+    }
+
+    private void onWritten(int numWritten) {
+        numPendingBytes.addAndGet(-numWritten);
+
+        while (numWritten > 0) {
+            int frameRemaining = writing.getFirst().length + HEADER_SIZE - frameOffset;
+
+            if (numWritten >= frameRemaining) {
+                writing.removeFirst();
+                numPendingMessages.decrementAndGet();
+                frameOffset = 0;
+                numWritten -= frameRemaining;
+            } else {
+                frameOffset += numWritten;
+                numWritten = 0;
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        ByteBuffer buffer = loop.getReadBuffer();
+        buffer.clear();
+
+        int numRead = channel.read(buffer);
+
+        if (numRead == -1) {
+            log.debug("Connection " + getConnectionNum() + " was correctly closed from remote endpoint.");
+
+            terminate();
+            return;
+        }
+
+        buffer.flip();
+
+        while (buffer.hasRemaining() && isConnected()) {
+            if (payload == null) {
+                while (headerSize < HEADER_SIZE && buffer.hasRemaining()) {
+                    header = (header << 8) | (buffer.get() & 0xFF);
+                    headerSize++;
+                }
+
+                if (headerSize < HEADER_SIZE)
+                    return;
+
+                if (header < 0 || header > maxMessageSize) {
+                    log.warning("Connection " + getConnectionNum() + " received message of size " + header + ", but max size is " + maxMessageSize);
+
+                    terminate();
+                    return;
+                }
+
+                payload = new byte[header];
+                payloadSize = 0;
+
+                header = 0;
+                headerSize = 0;
+            }
+
+            int length = Math.min(payload.length - payloadSize, buffer.remaining());
+
+            buffer.get(payload, payloadSize, length);
+            payloadSize += length;
+
+            if (payloadSize == payload.length) {
+                byte[] bytes = payload;
+                payload = null;
+
+                notifyMessageReceived(reader.read(bytes));
+            }
+        }
+    }
+
+    @Override
+    protected boolean isClosedLocally() {
+        return !channel.isOpen();
+    }
+
+    @Override
+    protected void terminateImpl() throws Exception {
+        // closing the channel also cancels its key
+        channel.close();
+    }
+
+    @Override
+    protected void onTerminated() {
+        if (isClosedNotified.compareAndSet(false, true)) {
+            onClosed.accept(this);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.net.nio;
+
+import com.almasb.fxgl.logging.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single thread that performs IO of any number of channels via a selector.
+ * A server has its own event loop, clients can share one (e.g. to simulate many clients in a load test).
+ * Read and write buffers are direct and shared by all channels of the loop, since only the loop thread uses them.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class NIOEventLoop {
+
+    private static final Logger log = Logger.get(NIOEventLoop.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Selector selector;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final Thread thread;
+
+    private volatile boolean isClosed = false;
+
+    public NIOEventLoop() {
+        this("NIOEventLoop");
+    }
+
+    public NIOEventLoop(String name) {
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open selector: " + e, e);
+        }
+
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Runs given task on the loop thread. Tasks are ignored once the loop is closed.
+     */
+    public void execute(Runnable task) {
+        if (isClosed)
+            return;
+
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the loop. Channels that are still registered are closed and their handlers are notified.
+     */
+    public void close() {
+        isClosed = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Must be called on the loop thread.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws ClosedChannelException {
+        return channel.register(selector, ops, handler);
+    }
+
+    /**
+     * @return direct buffer to read into, only valid on the loop thread until the next read
+     */
+    ByteBuffer getReadBuffer() {
+        return readBuffer;
+    }
+
+    /**
+     * @return direct buffer to write from, only valid on the loop thread until the next write
+     */
+    ByteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    private void run() {
+        try {
+            while (!isClosed) {
+                selector.select(this::onSelected);
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        log.warning("Exception in event loop task", e);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warning(thread.getName() + " crashed", e);
+        }
+
+        isClosed = true;
+
+        for (SelectionKey key : selector.keys()) {
+            try {
+                ((ChannelHandler) key.attachment()).onLoopClosed();
+
+                key.channel().close();
+            } catch (Exception e) {
+                log.warning("Exception when closing channel", e);
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warning("Exception when closing selector", e);
+        }
+    }
+
+    private void onSelected(SelectionKey key) {
+        try {
+            ((ChannelHandler) key.attachment()).onSelected(key);
+        } catch (Exception e) {
+            log.warning("Exception when handling channel", e);
+        }
+    }
+
+    /**
+     * Handles IO events of a channel registered with an event loop.
+     */
+    interface ChannelHandler {
+
+        /**
+         * Called on the loop thread when the channel is ready for one of its interest ops.
+         * Implementations handle their own exceptions.
+         */
+        void onSelected(SelectionKey key);
+
+        /**
+         * Called on the loop thread when the loop is closed, before the channel is closed.
+         */
+        void onLoopClosed();
+    }
+}
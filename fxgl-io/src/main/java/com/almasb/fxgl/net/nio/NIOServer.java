@@ -0,0 +1,154 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.net.nio;
+
+import com.almasb.fxgl.logging.Logger;
+import com.almasb.fxgl.net.Connection;
+import com.almasb.fxgl.net.NIOConfig;
+import com.almasb.fxgl.net.Server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A TCP server that performs IO of all its connections on a single event loop thread,
+ * rather than on two threads per connection.
+ * Unlike {@link com.almasb.fxgl.net.tcp.TCPServer}, stopping this server also terminates its connections,
+ * since they are served by the server's event loop.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+public final class NIOServer<T> extends Server<T> {
+
+    private static final Logger log = Logger.get(NIOServer.class);
+
+    private volatile boolean isStopped = false;
+
+    private final CountDownLatch stopLatch = new CountDownLatch(1);
+
+    private final int port;
+    private final NIOConfig<T> config;
+
+    private volatile ServerSocketChannel serverChannel;
+    private volatile NIOEventLoop loop;
+
+    /**
+     * Only accessed by the loop thread.
+     */
+    private int connectionNum = 1;
+
+    public NIOServer(int port, NIOConfig<T> config) {
+        this.port = port;
+        this.config = config;
+    }
+
+    @Override
+    protected void start() {
+        log.debug("Starting to listen at: " + port + " type: " + config.getMessageType());
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+
+            loop = new NIOEventLoop("NIOServer-" + port);
+            loop.execute(this::register);
+
+            onStartedListening();
+
+            // connections are served by the loop, this thread only waits until the server is stopped
+            stopLatch.await();
+
+        } catch (Exception e) {
+            close();
+
+            // Only throw exception if we didn't stop intentionally
+            if (!isStopped) {
+                log.warning("Exception during NIO server operation: " + e.getMessage(), e);
+                throw new RuntimeException("Failed to start NIO server: " + e.getMessage(), e);
+            }
+            // If we stopped intentionally, log at debug level
+            log.debug("NIO server stopped normally: " + e.getMessage());
+        }
+
+        onStoppedListening();
+    }
+
+    private void register() {
+        try {
+            loop.register(serverChannel, SelectionKey.OP_ACCEPT, new NIOEventLoop.ChannelHandler() {
+                @Override
+                public void onSelected(SelectionKey key) {
+                    accept();
+                }
+
+                @Override
+                public void onLoopClosed() { }
+            });
+        } catch (Exception e) {
+            log.warning("Failed to register server channel with event loop", e);
+
+            stop();
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                log.debug("NIOServer opening new connection (" + connectionNum + ") from " + channel.getRemoteAddress());
+
+                var connection = new NIOConnection<T>(channel, loop, connectionNum++, config, this::onConnectionClosed);
+
+                onConnectionOpened(connection);
+
+                connection.start();
+            }
+        } catch (IOException e) {
+            if (!isStopped) {
+                log.warning("Exception when accepting connection: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (isStopped) {
+            log.warning("Attempted to stop a server that is already stopped");
+            return;
+        }
+
+        isStopped = true;
+
+        getConnections().forEach(Connection::terminate);
+
+        close();
+
+        stopLatch.countDown();
+    }
+
+    private void close() {
+        try {
+            if (serverChannel != null)
+                serverChannel.close();
+        } catch (IOException e) {
+            log.warning("IOException when closing server channel: " + e.getMessage(), e);
+        }
+
+        if (loop != null)
+            loop.close();
+    }
+}
@@ -15,6 +15,7 @@ module com.almasb.fxgl.io {
 
     exports com.almasb.fxgl.io;
     exports com.almasb.fxgl.net;
+    exports com.almasb.fxgl.net.nio;
     exports com.almasb.fxgl.profile;
 
     opens com.almasb.fxgl.io to com.almasb.fxgl.core;
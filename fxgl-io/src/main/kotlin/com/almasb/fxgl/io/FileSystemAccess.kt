@@ -6,6 +6,8 @@
 
 package com.almasb.fxgl.io
 
+import com.almasb.fxgl.core.serialization.Bundle
+import com.almasb.fxgl.core.serialization.BundleCodec
 import com.almasb.fxgl.logging.Logger
 import java.io.*
 
@@ -39,9 +41,17 @@ internal class FileSystemAccess(
         // due to how toFile() constructs file, parentFile is always non-null
         file.parentFile.mkdirs()
 
-        ObjectOutputStream(FileOutputStream(file)).use {
-            log.debug("Writing to: $file")
-            it.writeObject(data)
+        log.debug("Writing to: $file")
+
+        // bundles are written in a compact form, other data via Java serialization
+        if (data is Bundle) {
+            BufferedOutputStream(FileOutputStream(file)).use {
+                BundleCodec.writeWithHeader(data, it)
+            }
+        } else {
+            ObjectOutputStream(FileOutputStream(file)).use {
+                it.writeObject(data)
+            }
         }
     }
 
@@ -55,8 +65,15 @@ internal class FileSystemAccess(
     fun <T> readData(fileName: String): T {
         val file = toFile(fileName)
 
-        ObjectInputStream(FileInputStream(file)).use {
-            log.debug("Reading from: $file")
+        log.debug("Reading from: $file")
+
+        val bytes = file.readBytes()
+
+        if (BundleCodec.hasHeader(bytes)) {
+            return BundleCodec.readWithHeader(bytes) as T
+        }
+
+        ObjectInputStream(ByteArrayInputStream(bytes)).use {
             return it.readObject() as T
         }
     }
@@ -63,6 +63,8 @@ class FileSystemService : EngineService() {
 
     /**
      * Writes binary data to file, creating required directories.
+     * A [com.almasb.fxgl.core.serialization.Bundle] is written using
+     * [com.almasb.fxgl.core.serialization.BundleCodec], any other object using Java serialization.
      *
      * @param data data object to save
      * @param fileName to save as
@@ -22,11 +22,34 @@ data class ClientConfig<T>(
 data class UDPServerConfig<T>
 @JvmOverloads constructor(
         val messageType: Class<T>,
-        val bufferSize: Int = 2048
+        val bufferSize: Int = 2048,
+
+        /**
+         * Number of sockets (each with its own thread) that receive packets on the server port.
+         * If greater than 1, the sockets share the port via SO_REUSEPORT, so the OS spreads clients across them,
+         * while packets of each client always arrive at the same socket.
+         * If SO_REUSEPORT is not supported, a single socket is used.
+         */
+        val numReceivers: Int = 1
 )
 
 data class UDPClientConfig<T>
 @JvmOverloads constructor(
         val messageType: Class<T>,
         val bufferSize: Int = 2048
-)
\ No newline at end of file
+)
+
+data class NIOConfig<T>
+@JvmOverloads constructor(
+        val messageType: Class<T>,
+
+        /**
+         * Max number of bytes queued for sending per connection, after which messages are dropped.
+         */
+        val maxPendingBytes: Int = 4 * 1024 * 1024,
+
+        /**
+         * Max size of a single message in bytes, a connection that receives a larger message is terminated.
+         */
+        val maxMessageSize: Int = 16 * 1024 * 1024
+)
@@ -10,6 +10,8 @@ import com.almasb.fxgl.core.EngineService
 import com.almasb.fxgl.core.concurrent.IOTask
 import com.almasb.fxgl.core.serialization.Bundle
 import com.almasb.fxgl.logging.Logger
+import com.almasb.fxgl.net.nio.NIOClient
+import com.almasb.fxgl.net.nio.NIOServer
 import com.almasb.fxgl.net.tcp.TCPClient
 import com.almasb.fxgl.net.tcp.TCPServer
 import com.almasb.fxgl.net.udp.UDPClient
@@ -49,6 +51,18 @@ class NetService : EngineService() {
     fun newTCPClient(ip: String, port: Int): Client<Bundle> = TCPClient(ip, port, Bundle::class.java)
     fun <T> newTCPClient(ip: String, port: Int,  config: ClientConfig<T>): Client<T> = TCPClient(ip, port, config.messageType)
 
+    /**
+     * @return TCP server that serves all connections on a single event loop thread
+     */
+    fun newNIOServer(port: Int): Server<Bundle> = NIOServer(port, NIOConfig(Bundle::class.java))
+    fun <T> newNIOServer(port: Int, config: NIOConfig<T>): Server<T> = NIOServer(port, config)
+
+    /**
+     * @return TCP client for a server created via [newNIOServer]
+     */
+    fun newNIOClient(ip: String, port: Int): Client<Bundle> = NIOClient(ip, port, NIOConfig(Bundle::class.java))
+    fun <T> newNIOClient(ip: String, port: Int, config: NIOConfig<T>): Client<T> = NIOClient(ip, port, config)
+
     fun newUDPServer(port: Int): Server<Bundle> = UDPServer(port, UDPServerConfig(Bundle::class.java))
     fun <T> newUDPServer(port: Int, config: UDPServerConfig<T>): Server<T> = UDPServer(port, config)
 
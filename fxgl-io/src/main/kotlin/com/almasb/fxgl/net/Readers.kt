@@ -7,6 +7,7 @@
 package com.almasb.fxgl.net
 
 import com.almasb.fxgl.core.serialization.Bundle
+import com.almasb.fxgl.core.serialization.BundleCodec
 import com.almasb.fxgl.logging.Logger
 import java.io.*
 
@@ -39,8 +40,10 @@ object Readers {
     private val udpReaders = hashMapOf<Class<*>, UDPMessageReader<*>>()
 
     init {
+        // Bundle readers based on Java serialization (BundleTCPMessageReader, BundleUDPMessageReader)
+        // can be added instead to communicate with endpoints that use them
         addTCPReader(Bundle::class.java, object : TCPReaderFactory<Bundle> {
-            override fun create(input: InputStream): TCPMessageReader<Bundle> = BundleTCPMessageReader(input)
+            override fun create(input: InputStream): TCPMessageReader<Bundle> = BundleCodecTCPMessageReader(input)
         })
 
         addTCPReader(ByteArray::class.java, object : TCPReaderFactory<ByteArray> {
@@ -51,7 +54,9 @@ object Readers {
             override fun create(input: InputStream): TCPMessageReader<String> = StringTCPMessageReader(input)
         })
 
-        addUDPReader(Bundle::class.java, BundleUDPMessageReader())
+        addUDPReader(Bundle::class.java, BundleCodecUDPMessageReader())
+        addUDPReader(ByteArray::class.java, ByteArrayUDPMessageReader())
+        addUDPReader(String::class.java, StringUDPMessageReader())
     }
 
     fun <T> addTCPReader(type: Class<T>, factory: TCPReaderFactory<T>) {
@@ -96,6 +101,20 @@ class BundleTCPMessageReader(stream: InputStream) : TCPMessageReader<Bundle> {
     }
 }
 
+/**
+ * Reads bundles written by [BundleCodecTCPMessageWriter].
+ */
+class BundleCodecTCPMessageReader(stream: InputStream) : TCPMessageReader<Bundle> {
+    private val inputStream = BufferedInputStream(stream)
+
+    // the writer of this connection keeps interned keys between messages, so the reader does too
+    private val decoder = BundleCodec.Decoder(true)
+
+    override fun read(): Bundle {
+        return decoder.read(inputStream)
+    }
+}
+
 class ByteArrayTCPMessageReader(stream: InputStream) : TCPMessageReader<ByteArray> {
     private val stream = DataInputStream(stream)
 
@@ -133,4 +152,22 @@ class BundleUDPMessageReader : UDPMessageReader<Bundle> {
             return it.readObject() as Bundle
         }
     }
-}
\ No newline at end of file
+}
+
+class BundleCodecUDPMessageReader : UDPMessageReader<Bundle> {
+    override fun read(data: ByteArray): Bundle {
+        return BundleCodec.decode(data)
+    }
+}
+
+class ByteArrayUDPMessageReader : UDPMessageReader<ByteArray> {
+    override fun read(data: ByteArray): ByteArray {
+        return data
+    }
+}
+
+class StringUDPMessageReader : UDPMessageReader<String> {
+    override fun read(data: ByteArray): String {
+        return String(data, Charsets.UTF_16)
+    }
+}
@@ -7,6 +7,7 @@
 package com.almasb.fxgl.net
 
 import com.almasb.fxgl.core.serialization.Bundle
+import com.almasb.fxgl.core.serialization.BundleCodec
 import com.almasb.fxgl.logging.Logger
 import java.io.*
 
@@ -40,8 +41,10 @@ object Writers {
 
     init {
         // these are built-in writers
+        // Bundle writers based on Java serialization (BundleTCPMessageWriter, BundleUDPMessageWriter)
+        // can be added instead to communicate with endpoints that use them
         addTCPWriter(Bundle::class.java, object : TCPWriterFactory<Bundle> {
-            override fun create(out: OutputStream): TCPMessageWriter<Bundle> = BundleTCPMessageWriter(out)
+            override fun create(out: OutputStream): TCPMessageWriter<Bundle> = BundleCodecTCPMessageWriter(out)
         })
 
         addTCPWriter(ByteArray::class.java, object : TCPWriterFactory<ByteArray> {
@@ -52,7 +55,9 @@ object Writers {
             override fun create(out: OutputStream): TCPMessageWriter<String> = StringTCPMessageWriter(out)
         })
 
-        addUDPWriter(Bundle::class.java, BundleUDPMessageWriter())
+        addUDPWriter(Bundle::class.java, BundleCodecUDPMessageWriter())
+        addUDPWriter(ByteArray::class.java, ByteArrayUDPMessageWriter())
+        addUDPWriter(String::class.java, StringUDPMessageWriter())
     }
 
     fun <T> addTCPWriter(type: Class<T>, factory: TCPWriterFactory<T>) {
@@ -99,6 +104,18 @@ class BundleTCPMessageWriter(out: OutputStream) : TCPMessageWriter<Bundle> {
     }
 }
 
+/**
+ * Writes bundles using [BundleCodec], each key is only sent once per connection.
+ */
+class BundleCodecTCPMessageWriter(private val out: OutputStream) : TCPMessageWriter<Bundle> {
+
+    private val encoder = BundleCodec.Encoder(true)
+
+    override fun write(message: Bundle) {
+        encoder.write(message, out)
+    }
+}
+
 class ByteArrayTCPMessageWriter(out: OutputStream) : TCPMessageWriter<ByteArray> {
 
     private val out = DataOutputStream(out)
@@ -128,4 +145,22 @@ class BundleUDPMessageWriter : UDPMessageWriter<Bundle> {
         ObjectOutputStream(baos).use { it.writeObject(data) }
         return baos.toByteArray()
     }
-}
\ No newline at end of file
+}
+
+class BundleCodecUDPMessageWriter : UDPMessageWriter<Bundle> {
+    override fun write(data: Bundle): ByteArray {
+        return BundleCodec.encode(data)
+    }
+}
+
+class ByteArrayUDPMessageWriter : UDPMessageWriter<ByteArray> {
+    override fun write(data: ByteArray): ByteArray {
+        return data
+    }
+}
+
+class StringUDPMessageWriter : UDPMessageWriter<String> {
+    override fun write(data: String): ByteArray {
+        return data.toByteArray(Charsets.UTF_16)
+    }
+}
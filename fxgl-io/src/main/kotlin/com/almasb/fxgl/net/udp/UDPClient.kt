@@ -17,6 +17,13 @@ import java.util.*
 internal val MESSAGE_OPEN = byteArrayOf(-2, -1, 0, 70, 0, 88, 0, 71, 0, 76, 0, 95, 0, 72, 0, 69, 0, 76, 0, 76, 0, 79)
 internal val MESSAGE_CLOSE = byteArrayOf(-2, -1, 0, 70, 0, 88, 0, 71, 0, 76, 0, 95, 0, 66, 0, 89, 0, 69, 0, 33, 0, 33)
 
+/**
+ * @return true if the packet of [length] bytes in [data] is the special [message]
+ */
+internal fun isMessage(data: ByteArray, length: Int, message: ByteArray): Boolean {
+    return length == message.size && Arrays.equals(data, 0, length, message, 0, length)
+}
+
 /**
  * TODO: readers / writers will operate on byte[] <-> T
  *
@@ -50,21 +57,19 @@ class UDPClient<T>(val ip: String, val port: Int, private val config: UDPClientC
             }
 
             val buffer = ByteArray(config.bufferSize)
+            val packet = DatagramPacket(buffer, buffer.size)
 
             while (!isStopped) {
-                Arrays.fill(buffer, 0)
-
-                val packet = DatagramPacket(buffer, buffer.size)
+                // the previous receive set the length to the size of the previous packet
+                packet.length = buffer.size
 
                 it.receive(packet)
 
-                val isClosingPacket = Arrays.equals(Arrays.copyOfRange(packet.data, 0, MESSAGE_CLOSE.size), MESSAGE_CLOSE)
-
-                if (isClosingPacket) {
+                if (isMessage(buffer, packet.length, MESSAGE_CLOSE)) {
                     isStopped = true
                     onConnectionClosed(connection)
                 } else {
-                    connection.receive(packet.data)
+                    connection.receive(buffer, 0, packet.length)
                 }
             }
 
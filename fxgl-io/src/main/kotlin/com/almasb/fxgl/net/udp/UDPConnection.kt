@@ -7,17 +7,10 @@
 package com.almasb.fxgl.net.udp
 
 import com.almasb.fxgl.net.Connection
-import com.almasb.fxgl.net.MessageHandler
-import javafx.application.Platform
-import java.io.*
 import java.net.DatagramPacket
 import java.net.DatagramSocket
-import java.net.InetAddress
-import java.nio.ByteBuffer
-import java.util.*
-import java.util.Arrays.copyOfRange
+import java.net.InetSocketAddress
 import java.util.concurrent.ArrayBlockingQueue
-import java.util.function.Consumer
 
 
 /**
@@ -28,11 +21,9 @@ class UDPConnection<T>(
         private val socket: DatagramSocket,
 
         /**
-         * Remote ip.
+         * Remote address.
          */
-        val remoteIp: String,
-
-        val remotePort: Int,
+        val remoteAddress: InetSocketAddress,
 
         /**
          * This connection will never send packets with size larger than buffer size.
@@ -42,6 +33,18 @@ class UDPConnection<T>(
 
         connectionNum: Int) : Connection<T>(connectionNum) {
 
+    constructor(socket: DatagramSocket, remoteIp: String, remotePort: Int, bufferSize: Int, connectionNum: Int)
+            : this(socket, InetSocketAddress(remoteIp, remotePort), bufferSize, connectionNum)
+
+    /**
+     * Remote ip.
+     */
+    val remoteIp: String
+        get() = remoteAddress.hostString
+
+    val remotePort: Int
+        get() = remoteAddress.port
+
     val fullIP: String
         get() = remoteIp + remotePort
 
@@ -49,6 +52,11 @@ class UDPConnection<T>(
 
     val recvQueue = ArrayBlockingQueue<ByteArray>(30)
 
+    /**
+     * Only accessed by the send thread.
+     */
+    private val sizeData = ByteArray(4)
+
     override fun isClosedLocally(): Boolean {
         return isClosed
     }
@@ -57,47 +65,30 @@ class UDPConnection<T>(
         isClosed = true
 
         // send MESSAGE_CLOSE directly as it is a special message
-        val packet = DatagramPacket(MESSAGE_CLOSE, MESSAGE_CLOSE.size)
+        val packet = DatagramPacket(MESSAGE_CLOSE, MESSAGE_CLOSE.size, remoteAddress)
 
         socket.send(packet)
     }
 
     fun sendUDP(data: ByteArray) {
         // use 1st message as length (int - 4bytes) of actual 2nd message
+        sizeData[0] = (data.size ushr 24).toByte()
+        sizeData[1] = (data.size ushr 16).toByte()
+        sizeData[2] = (data.size ushr 8).toByte()
+        sizeData[3] = data.size.toByte()
 
-        val sizeAsByteArray = ByteBuffer.allocate(4).putInt(data.size).array()
-
-        val packet = DatagramPacket(sizeAsByteArray, 4,
-                InetAddress.getByName(remoteIp), remotePort
-        )
+        socket.send(DatagramPacket(sizeData, 4, remoteAddress))
 
-        socket.send(packet)
+        // deconstruct into chunks of at most buffer size
+        var offset = 0
 
-        if (data.size <= bufferSize) {
-            socket.send(
-                    DatagramPacket(data, data.size, InetAddress.getByName(remoteIp), remotePort)
-            )
-        } else {
-            // deconstruct
+        do {
+            val length = minOf(bufferSize, data.size - offset)
 
-            val numChunks = data.size / bufferSize
+            socket.send(DatagramPacket(data, offset, length, remoteAddress))
 
-            repeat(numChunks) { index ->
-
-                val newData = copyOfRange(data, index * bufferSize, index * bufferSize + bufferSize)
-
-                socket.send(
-                        DatagramPacket(newData, bufferSize, InetAddress.getByName(remoteIp), remotePort)
-                )
-            }
-
-            val remainderSize = data.size - numChunks * bufferSize
-            val remainderData = copyOfRange(data, data.size - remainderSize, data.size)
-
-            socket.send(
-                    DatagramPacket(remainderData, remainderSize, InetAddress.getByName(remoteIp), remotePort)
-            )
-        }
+            offset += length
+        } while (offset < data.size)
     }
 
     private var messageSize = -1
@@ -105,20 +96,30 @@ class UDPConnection<T>(
 
     private var currentSize = 0
 
-    internal fun receive(data: ByteArray) {
+    /**
+     * Receives a packet, whose data is in [data] from [offset] to [offset] + [length].
+     * The data is copied, so the caller can reuse [data].
+     */
+    internal fun receive(data: ByteArray, offset: Int, length: Int) {
         if (messageSize == -1) {
             // receiving message size as a 4-byte array (aka int)
+            if (length < 4)
+                return
+
+            messageSize = ((data[offset].toInt() and 0xFF) shl 24) or
+                    ((data[offset + 1].toInt() and 0xFF) shl 16) or
+                    ((data[offset + 2].toInt() and 0xFF) shl 8) or
+                    (data[offset + 3].toInt() and 0xFF)
 
-            messageSize = ByteBuffer.wrap(data).int
             messageBuffer = ByteArray(messageSize)
             return
         }
 
         // reconstruct
         // we are receiving in a fixed buffer size, but actual data size might be different
-        val actualDataSize = minOf(data.size, messageSize - currentSize)
+        val actualDataSize = minOf(length, messageSize - currentSize)
 
-        System.arraycopy(data, 0, messageBuffer, currentSize, actualDataSize)
+        System.arraycopy(data, offset, messageBuffer, currentSize, actualDataSize)
 
         currentSize += actualDataSize
 
@@ -9,13 +9,18 @@ package com.almasb.fxgl.net.udp
 import com.almasb.fxgl.logging.Logger
 import com.almasb.fxgl.net.Server
 import com.almasb.fxgl.net.UDPServerConfig
-import java.io.IOException
-import java.net.DatagramPacket
 import java.net.DatagramSocket
-import java.util.*
-import java.util.Arrays.*
+import java.net.InetSocketAddress
+import java.net.SocketAddress
+import java.net.StandardSocketOptions
+import java.nio.ByteBuffer
+import java.nio.channels.DatagramChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
 
 /**
+ * Packets are matched to connections by remote address, without allocating per packet.
+ * With [UDPServerConfig.numReceivers] > 1, each receiver socket is served by its own thread.
  *
  * @author Almas Baimagambetov (almaslvl@gmail.com)
  */
@@ -23,69 +28,165 @@ class UDPServer<T>(val port: Int, private val config: UDPServerConfig<T>) : Serv
 
     private val log = Logger.get(javaClass)
 
+    @Volatile
     private var isStopped = false
 
-    private var serverSocket: DatagramSocket? = null
+    private val channels = CopyOnWriteArrayList<DatagramChannel>()
+
+    private val connectionsByAddress = ConcurrentHashMap<SocketAddress, UDPConnection<T>>()
+
+    /**
+     * Guards opening and closing of connections, which may happen on different receiver threads.
+     */
+    private val connectionLock = Any()
+
+    private var connectionNum = 1
 
     override fun start() {
         log.debug("Starting to listen at: $port type: ${config.messageType}")
 
         try {
-            DatagramSocket(port).use {
-                serverSocket = it
+            val numReceivers = numReceivers()
 
-                onStartedListening()
+            repeat(numReceivers) {
+                channels += openChannel(isPortShared = numReceivers > 1)
+            }
 
-                var connectionNum = 1
+            for (i in 1 until numReceivers) {
+                val thread = Thread({ receiveUntilStopped(channels[i]) }, "UDPServer_RecvThread-$port-$i")
+                thread.isDaemon = true
+                thread.start()
+            }
 
-                val buffer = ByteArray(config.bufferSize)
+            onStartedListening()
 
-                while (!isStopped) {
+            receive(channels[0])
 
-                    fill(buffer, 0)
+        } catch (e: Exception) {
+            // Only throw exception if we didn't stop intentionally
+            if (!isStopped) {
+                log.warning("Exception during UDP server operation: ${e.message}", e)
+                closeChannels()
+                throw RuntimeException("Failed to start UDP server: ${e.message}", e)
+            }
+            // If we stopped intentionally, log at debug level
+            log.debug("UDP server stopped normally: ${e.message}")
+        }
 
-                    val packet = DatagramPacket(buffer, buffer.size)
+        closeChannels()
 
-                    it.receive(packet)
+        onStoppedListening()
+    }
 
-                    val remoteIP = packet.address.hostAddress
-                    val remotePort = packet.port
-                    val fullIP = remoteIP + remotePort
+    private fun numReceivers(): Int {
+        if (config.numReceivers <= 1)
+            return 1
 
-                    var connection = connections.map { it as UDPConnection }.find { it.fullIP == fullIP }
+        val isReusePortSupported = DatagramChannel.open().use {
+            StandardSocketOptions.SO_REUSEPORT in it.supportedOptions()
+        }
 
-                    // check if packet contains MESSAGE_OPEN
-                    val isOpeningPacket = equals(copyOfRange(packet.data, 0, MESSAGE_OPEN.size), MESSAGE_OPEN)
+        if (!isReusePortSupported) {
+            log.warning("SO_REUSEPORT is not supported, using a single receiver instead of ${config.numReceivers}")
+            return 1
+        }
 
-                    if (connection == null || isOpeningPacket) {
-                        connection = UDPConnection<T>(it, remoteIP, remotePort, config.bufferSize, connectionNum++)
+        return config.numReceivers
+    }
 
-                        openUDPConnection(connection, config.messageType)
-                    }
+    private fun openChannel(isPortShared: Boolean): DatagramChannel {
+        val channel = DatagramChannel.open()
 
-                    val isClosingPacket = equals(copyOfRange(packet.data, 0, MESSAGE_CLOSE.size), MESSAGE_CLOSE)
+        try {
+            if (isPortShared) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true)
+            }
 
-                    if (isClosingPacket) {
-                        onConnectionClosed(connection)
-                    }
+            channel.bind(InetSocketAddress(port))
+        } catch (e: Exception) {
+            channel.close()
+            throw e
+        }
 
-                    if (!isOpeningPacket && !isClosingPacket) {
-                        connection.receive(packet.data)
-                    }
-                }
-            }
+        return channel
+    }
 
+    private fun receiveUntilStopped(channel: DatagramChannel) {
+        try {
+            receive(channel)
         } catch (e: Exception) {
-            // Only throw exception if we didn't stop intentionally
             if (!isStopped) {
-                log.warning("Exception during UDP server operation: ${e.message}", e)
-                throw RuntimeException("Failed to start UDP server: ${e.message}", e)
+                log.warning("Exception during UDP server receive: ${e.message}", e)
+            }
+        }
+    }
+
+    private fun receive(channel: DatagramChannel) {
+        val socket = channel.socket()
+
+        val buffer = ByteArray(config.bufferSize)
+        val byteBuffer = ByteBuffer.wrap(buffer)
+
+        while (!isStopped) {
+            byteBuffer.clear()
+
+            // the channel reuses the address object while packets come from the same address
+            val address = channel.receive(byteBuffer)
+            val length = byteBuffer.position()
+
+            val existingConnection = connectionsByAddress[address]
+
+            val isOpeningPacket = isMessage(buffer, length, MESSAGE_OPEN)
+            val isClosingPacket = !isOpeningPacket && isMessage(buffer, length, MESSAGE_CLOSE)
+
+            if (isClosingPacket) {
+                if (existingConnection != null) {
+                    closeConnection(address, existingConnection)
+                }
+
+                continue
+            }
+
+            val connection = if (existingConnection == null || isOpeningPacket) {
+                openConnection(socket, address as InetSocketAddress)
+            } else {
+                existingConnection
+            }
+
+            if (!isOpeningPacket) {
+                connection.receive(buffer, 0, length)
             }
-            // If we stopped intentionally, log at debug level
-            log.debug("UDP server stopped normally: ${e.message}")
         }
+    }
 
-        onStoppedListening()
+    private fun openConnection(socket: DatagramSocket, address: InetSocketAddress): UDPConnection<T> {
+        synchronized(connectionLock) {
+            val connection = UDPConnection<T>(socket, address, config.bufferSize, connectionNum++)
+
+            connectionsByAddress[address] = connection
+
+            openUDPConnection(connection, config.messageType)
+
+            return connection
+        }
+    }
+
+    private fun closeConnection(address: SocketAddress, connection: UDPConnection<T>) {
+        synchronized(connectionLock) {
+            connectionsByAddress.remove(address, connection)
+
+            onConnectionClosed(connection)
+        }
+    }
+
+    private fun closeChannels() {
+        channels.forEach {
+            try {
+                it.close()
+            } catch (e: Exception) {
+                log.warning("Exception when closing server socket: " + e.message, e)
+            }
+        }
     }
 
     override fun stop() {
@@ -105,10 +206,8 @@ class UDPServer<T>(val port: Int, private val config: UDPServerConfig<T>) : Serv
             it.terminate()
         }
 
-        try {
-            serverSocket?.close()
-        } catch (e: Exception) {
-            log.warning("Exception when closing server socket: " + e.message, e)
-        }
+        connectionsByAddress.clear()
+
+        closeChannels()
     }
 }
\ No newline at end of file
@@ -66,6 +66,27 @@ data class SaveFile
     override fun toString() = "SaveFile($name)"
 }
 
+/**
+ * Save files are written as bundles, which are more compact than serialized [SaveFile] objects.
+ */
+internal fun SaveFile.toBundle(): Bundle {
+    val dataBundle = Bundle("DataFile")
+    data.getBundles().forEach { dataBundle.put(it.name, it) }
+
+    val bundle = Bundle("SaveFile")
+    bundle.put("name", name)
+    bundle.put("dateTime", dateTime.toString())
+    bundle.put("data", dataBundle)
+    return bundle
+}
+
+internal fun Bundle.toSaveFile(): SaveFile {
+    val dataFile = DataFile()
+    get<Bundle>("data").data.values.forEach { dataFile.putBundle(it as Bundle) }
+
+    return SaveFile(get("name"), LocalDateTime.parse(get<String>("dateTime")), dataFile)
+}
+
 /**
  * Carries the data that needs to be saved (serialized) using [Bundle].
  */
@@ -98,5 +119,7 @@ class DataFile : Serializable {
         return bundles[name] ?: throw IllegalArgumentException("Bundle \"$name\" doesn't exist!")
     }
 
+    internal fun getBundles(): Collection<Bundle> = bundles.values
+
     override fun toString() = "DataFile($bundles)"
 }
\ No newline at end of file
@@ -14,6 +14,7 @@ import com.almasb.fxgl.io.FileExtension
 import com.almasb.fxgl.io.FileSystemService
 import com.almasb.fxgl.logging.Logger
 import com.almasb.fxgl.scene.SceneService
+import java.io.Serializable
 import java.util.*
 
 /**
@@ -102,7 +103,7 @@ class SaveLoadService : EngineService() {
 
         log.debug("writeTask: ${saveFile.name}")
 
-        return fs.writeDataTask(saveFile, saveFile.name)
+        return fs.writeDataTask(saveFile.toBundle(), saveFile.name)
     }
 
     /**
@@ -124,7 +125,10 @@ class SaveLoadService : EngineService() {
      * Reads serializable data from external file on disk file system.
      */
     fun readTask(saveFileName: String): IOTask<SaveFile> {
-        return fs.readDataTask<SaveFile>(saveFileName)
+        return fs.readDataTask<Serializable>(saveFileName).thenWrap { data ->
+            // save files written by older versions are serialized SaveFile objects
+            if (data is SaveFile) data else (data as Bundle).toSaveFile()
+        }
     }
 
     /**
@@ -167,7 +171,7 @@ class SaveLoadService : EngineService() {
 
                         val list = ArrayList<SaveFile>()
                         for (name in fileNames) {
-                            val file = fs.readDataTask<SaveFile>("$dirName/$name").run()
+                            val file = readTask("$dirName/$name").run()
                             if (file != null) {
                                 list.add(file)
                             }
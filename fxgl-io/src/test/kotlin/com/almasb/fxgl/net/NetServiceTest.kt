@@ -11,6 +11,9 @@ import com.almasb.fxgl.logging.ConsoleOutput
 import com.almasb.fxgl.logging.Logger
 import com.almasb.fxgl.logging.LoggerConfig
 import com.almasb.fxgl.logging.LoggerLevel
+import com.almasb.fxgl.net.nio.NIOClient
+import com.almasb.fxgl.net.nio.NIOConnection
+import com.almasb.fxgl.net.nio.NIOEventLoop
 import javafx.beans.property.SimpleIntegerProperty
 import org.hamcrest.MatcherAssert
 import org.hamcrest.MatcherAssert.*
@@ -19,11 +22,14 @@ import org.hamcrest.Matchers.*
 import org.junit.jupiter.api.*
 import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable
 import java.lang.RuntimeException
+import java.net.Socket
 import java.nio.file.Files
 import java.nio.file.Paths
 import java.time.Duration
 import java.util.*
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * @author Almas Baimagambetov (almaslvl@gmail.com)
@@ -349,4 +355,337 @@ class NetServiceTest {
             assertThat(count, `is`(4))
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CI", matches = "true")
+    fun `UDP server delivers packets of many clients to their connections`() {
+        val numClients = 20
+        val numMessages = 5
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10)) {
+            val server = net.newUDPServer(TEST_PORT, UDPServerConfig(ByteArray::class.java, numReceivers = 2))
+
+            server.setOnConnected {
+                it.addMessageHandler { connection, message ->
+                    connection.send(message)
+                }
+            }
+
+            server.startAsync()
+
+            while (!server.isListening) {
+                Thread.sleep(10)
+            }
+
+            val numReceived = AtomicInteger(0)
+            val numCorrect = AtomicInteger(0)
+
+            val clients = (0 until numClients).map { clientIndex ->
+                val client = net.newUDPClient("localhost", TEST_PORT, UDPClientConfig(ByteArray::class.java))
+
+                client.setOnConnected {
+                    it.addMessageHandler { _, message ->
+                        if (message[0].toInt() == clientIndex)
+                            numCorrect.incrementAndGet()
+
+                        numReceived.incrementAndGet()
+                    }
+                }
+
+                client.connectAsync()
+                client
+            }
+
+            // wait until the server has seen the opening packets, so that no message arrives before them
+            while (server.connections.size < numClients) {
+                Thread.sleep(10)
+            }
+
+            clients.forEachIndexed { clientIndex, client ->
+                repeat(numMessages) { messageIndex ->
+                    client.connections[0].send(byteArrayOf(clientIndex.toByte(), messageIndex.toByte()))
+                }
+            }
+
+            while (numReceived.get() < numClients * numMessages) {
+                Thread.sleep(10)
+            }
+
+            assertThat(numCorrect.get(), `is`(numClients * numMessages))
+            assertThat(server.connections.size, `is`(numClients))
+
+            server.stop()
+        }
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CI", matches = "true")
+    fun `NIO Bundle message handler`() {
+        var count = 0
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2)) {
+            val server = net.newNIOServer(TEST_PORT)
+
+            server.setOnConnected {
+                count++
+
+                // sending does not block, so no separate thread is needed
+                val bundle = Bundle("")
+                bundle.put("data", "Hello World Test")
+
+                it.send(bundle)
+
+                val bundle2 = Bundle("")
+                bundle2.put("data2", LARGE_DATA)
+
+                it.send(bundle2)
+            }
+
+            val client = net.newNIOClient("localhost", TEST_PORT)
+
+            client.setOnConnected {
+                count++
+
+                it.addMessageHandler { connection, message ->
+
+                    if (count == 2) {
+                        val data = message.get<String>("data")
+
+                        assertThat(data, `is`("Hello World Test"))
+
+                        count++
+                    } else if (count == 3) {
+                        val data = message.get<ByteArray>("data2")
+
+                        assertThat(data, `is`(LARGE_DATA))
+
+                        count++
+
+                        server.stop()
+                    }
+                }
+            }
+
+            server.listeningProperty().addListener { _, _, isListening ->
+                if (isListening) {
+                    client.connectTask().run()
+                }
+            }
+
+            server.startTask()
+                    .onFailure { e -> fail { "Server Start failed $e" } }
+                    .run()
+
+            assertThat(count, `is`(4))
+        }
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CI", matches = "true")
+    fun `NIO server echoes messages of many clients sharing an event loop`() {
+        val numClients = 200
+        val numMessages = 50
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10)) {
+            val config = NIOConfig(ByteArray::class.java)
+            val server = net.newNIOServer(TEST_PORT, config)
+
+            server.setOnConnected {
+                it.addMessageHandler { connection, message ->
+                    connection.send(message)
+                }
+            }
+
+            server.startAsync()
+
+            while (!server.isListening) {
+                Thread.sleep(10)
+            }
+
+            val loop = NIOEventLoop()
+            val numReceived = AtomicInteger(0)
+            val numCorrect = AtomicInteger(0)
+
+            val clients = (0 until numClients).map { clientIndex ->
+                val client = NIOClient("localhost", TEST_PORT, config, loop)
+                val expectedIndex = AtomicInteger(0)
+
+                client.setOnConnected {
+                    it.addMessageHandler { _, message ->
+                        if (message.contentEquals(messageOf(clientIndex, expectedIndex.getAndIncrement())))
+                            numCorrect.incrementAndGet()
+
+                        numReceived.incrementAndGet()
+                    }
+                }
+
+                client.connect()
+
+                repeat(numMessages) { messageIndex ->
+                    client.connections[0].send(messageOf(clientIndex, messageIndex))
+                }
+
+                client
+            }
+
+            while (numReceived.get() < numClients * numMessages) {
+                Thread.sleep(10)
+            }
+
+            assertThat(numCorrect.get(), `is`(numClients * numMessages))
+            assertThat(server.connections.size, `is`(numClients))
+
+            clients.forEach { it.disconnect() }
+
+            while (server.connections.isNotEmpty()) {
+                Thread.sleep(10)
+            }
+
+            server.stop()
+            loop.close()
+        }
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CI", matches = "true")
+    fun `NIO send does not block if remote endpoint does not read`() {
+        assertTimeoutPreemptively(Duration.ofSeconds(5)) {
+            val server = net.newNIOServer(TEST_PORT, NIOConfig(ByteArray::class.java, maxPendingBytes = 1024 * 1024))
+
+            val connectionRef = AtomicReference<NIOConnection<ByteArray>>()
+
+            server.setOnConnected {
+                connectionRef.set(it as NIOConnection<ByteArray>)
+            }
+
+            server.startAsync()
+
+            while (!server.isListening) {
+                Thread.sleep(10)
+            }
+
+            // a plain socket that never reads
+            Socket("localhost", TEST_PORT).use {
+                while (connectionRef.get() == null) {
+                    Thread.sleep(10)
+                }
+
+                val connection = connectionRef.get()
+
+                repeat(200) {
+                    connection.send(ByteArray(100_000))
+                }
+
+                assertThat(connection.numDroppedMessages, greaterThan(0L))
+                assertThat(connection.numPendingBytes, lessThanOrEqualTo(1024 * 1024))
+
+                server.stop()
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CI", matches = "true")
+    fun `TCP batched messages are held until flush`() {
+        val numMessages = 20
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5)) {
+            withBatchingTCPConnection { connection, received ->
+                val start = System.nanoTime()
+
+                repeat(numMessages) {
+                    connection.send(ByteArray(it))
+                }
+
+                val numQueued = connection.numQueuedMessages
+                val numReceived = received.size
+
+                // the max delay has not passed, so nothing could have been flushed automatically
+                if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(Connection.MAX_BATCH_DELAY)) {
+                    assertThat(numQueued, `is`(numMessages))
+                    assertThat(numReceived, `is`(0))
+                }
+
+                connection.flush()
+
+                while (received.size < numMessages) {
+                    Thread.sleep(10)
+                }
+
+                assertThat(received, `is`((0 until numMessages).toList()))
+                assertThat(connection.numQueuedMessages, `is`(0))
+
+                // 4-byte length of each message, followed by message bytes
+                assertThat(connection.numBytesSent, `is`((numMessages * 4 + (0 until numMessages).sum()).toLong()))
+            }
+        }
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "CI", matches = "true")
+    fun `TCP batched messages are sent after max delay without flush`() {
+        assertTimeoutPreemptively(Duration.ofSeconds(5)) {
+            withBatchingTCPConnection { connection, received ->
+                val start = System.nanoTime()
+
+                connection.send(ByteArray(7))
+
+                while (received.isEmpty()) {
+                    Thread.sleep(10)
+                }
+
+                assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(Connection.MAX_BATCH_DELAY)))
+                assertThat(received, contains(7))
+                assertThat(connection.numQueuedMessages, `is`(0))
+            }
+        }
+    }
+
+    /**
+     * Connects a client to a server whose connection has batching enabled,
+     * then runs [action] with the server side connection and sizes of messages received by the client.
+     */
+    private fun withBatchingTCPConnection(action: (Connection<ByteArray>, MutableList<Int>) -> Unit) {
+        val server = net.newTCPServer(TEST_PORT, ServerConfig(ByteArray::class.java))
+
+        val connectionRef = AtomicReference<Connection<ByteArray>>()
+
+        server.setOnConnected {
+            it.isBatchingEnabled = true
+            connectionRef.set(it)
+        }
+
+        server.startAsync()
+
+        while (!server.isListening) {
+            Thread.sleep(10)
+        }
+
+        val client = net.newTCPClient("localhost", TEST_PORT, ClientConfig(ByteArray::class.java))
+        val received = Collections.synchronizedList(arrayListOf<Int>())
+
+        client.setOnConnected {
+            it.addMessageHandler { _, message ->
+                received += message.size
+            }
+        }
+
+        client.connectTask().run()
+
+        while (connectionRef.get() == null) {
+            Thread.sleep(10)
+        }
+
+        action(connectionRef.get(), received)
+
+        client.disconnect()
+        server.stop()
+    }
+
+    private fun messageOf(clientIndex: Int, messageIndex: Int): ByteArray {
+        // every 10th message is larger than the event loop buffers
+        val size = if (messageIndex % 10 == 0) 100_000 else messageIndex
+
+        return ByteArray(size) { (clientIndex + messageIndex + it).toByte() }
+    }
+}
@@ -131,6 +131,25 @@ class SaveLoadServiceTest {
         assertTrue(result2.isEmpty)
     }
 
+    @Test
+    fun `Read save file written with Java serialization`() {
+        val bundle = Bundle("Hello")
+        bundle.put("id", 5)
+
+        val data = DataFile()
+        data.putBundle(bundle)
+
+        val fs = FileSystemService().also { it.onInit() }
+        fs.writeDataTask(SaveFile("profiles/old.sav", data = data), "profiles/old.sav").run()
+
+        val saveFile = saveLoadService.readTask("profiles/old.sav").run()
+
+        assertThat(saveFile.name, `is`("profiles/old.sav"))
+        assertThat(saveFile.data.getBundle("Hello").get("id"), `is`(5))
+
+        saveLoadService.deleteSaveFileTask("profiles/old.sav").run()
+    }
+
     fun `Write game data`() {
         val bundle1 = Bundle("Hello")
         bundle1.put("id", 9)
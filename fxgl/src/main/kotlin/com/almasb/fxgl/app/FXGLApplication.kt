@@ -458,8 +458,16 @@ class FXGLApplication : Application() {
 
             loadScene = sceneFactory.newLoadingScene()
             gameSceneRef = GameScene(settings.width, settings.height,
-                    GameWorld(),
-                    PhysicsWorld(settings.height, settings.pixelsPerMeter, settings.collisionDetectionStrategy),
+                    GameWorld().also {
+                        it.isEntityPreloadEnabled = settings.isEntityPreloadEnabled
+                    },
+                    PhysicsWorld(settings.height, settings.pixelsPerMeter, settings.collisionDetectionStrategy).also {
+                        it.fixedTimeStep = settings.physicsFixedTimeStep
+                        it.maxSubSteps = settings.physicsMaxSubSteps
+                        it.velocityIterations = settings.physicsVelocityIterations
+                        it.positionIterations = settings.physicsPositionIterations
+                        it.isParallelIslandSolving = settings.isPhysicsParallelIslandSolving
+                    },
                     settings.is3D
             )
 
@@ -207,8 +207,9 @@ class GameSettings(
         var isClickFeedbackEnabled: Boolean = false,
 
         /**
-         * If true, entity builder will preload entities on a background thread to speed up
-         * entity building.
+         * If true, entities of spawn methods annotated with @Preload are created when their factory
+         * is added (on the loading thread if added in initGame()), so that spawning them later reuses
+         * pooled entities.
          * Default: true.
          */
         var isEntityPreloadEnabled: Boolean = true,
@@ -279,6 +280,35 @@ class GameSettings(
 
         var collisionDetectionStrategy: CollisionDetectionStrategy = CollisionDetectionStrategy.BRUTE_FORCE,
 
+        /**
+         * Fixed physics time step in seconds, e.g. 1.0 / 30.
+         * If set, physics runs at this rate independently of the frame rate
+         * and entity positions are interpolated between physics steps.
+         * Default value is 0, which means physics is stepped by the frame time.
+         */
+        var physicsFixedTimeStep: Double = 0.0,
+
+        /**
+         * Max number of fixed physics steps per frame, default = 5.
+         * Only used if [physicsFixedTimeStep] is set.
+         */
+        var physicsMaxSubSteps: Int = 5,
+
+        /**
+         * Number of physics velocity solver iterations per step, default = 8.
+         */
+        var physicsVelocityIterations: Int = 8,
+
+        /**
+         * Number of physics position solver iterations per step, default = 3.
+         */
+        var physicsPositionIterations: Int = 3,
+
+        /**
+         * If enabled, independent groups of touching physics bodies are solved in parallel, default = false.
+         */
+        var isPhysicsParallelIslandSolving: Boolean = false,
+
         /**
          * Set how many real seconds are in 24 game hours, default = 60.
          */
@@ -476,6 +506,11 @@ class GameSettings(
                 fontSizeScaleUI,
                 pixelsPerMeter,
                 collisionDetectionStrategy,
+                physicsFixedTimeStep,
+                physicsMaxSubSteps,
+                physicsVelocityIterations,
+                physicsPositionIterations,
+                isPhysicsParallelIslandSolving,
                 secondsIn24h,
                 randomSeed,
                 ticksPerSecond,
@@ -615,8 +650,9 @@ class ReadOnlyGameSettings internal constructor(
         val isClickFeedbackEnabled: Boolean,
 
         /**
-         * If true, entity builder will preload entities on a background thread to speed up
-         * entity building.
+         * If true, entities of spawn methods annotated with @Preload are created when their factory
+         * is added (on the loading thread if added in initGame()), so that spawning them later reuses
+         * pooled entities.
          * Default: true.
          */
         val isEntityPreloadEnabled: Boolean,
@@ -680,6 +716,16 @@ class ReadOnlyGameSettings internal constructor(
 
         val collisionDetectionStrategy: CollisionDetectionStrategy,
 
+        val physicsFixedTimeStep: Double,
+
+        val physicsMaxSubSteps: Int,
+
+        val physicsVelocityIterations: Int,
+
+        val physicsPositionIterations: Int,
+
+        val isPhysicsParallelIslandSolving: Boolean,
+
         /**
          * Set how many real seconds are in 24 game hours, default = 60.
          */
@@ -0,0 +1,405 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.multiplayer
+
+/**
+ * Quantized state (position and rotation) of replicated entities at a point in time, sorted by network id.
+ * A snapshot is sent as a delta against a snapshot that the other endpoint acknowledged, see [writeDelta].
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+internal class EntitySnapshot(var sequence: Int) {
+
+    companion object {
+        const val X = 0
+        const val Y = 1
+        const val Z = 2
+        const val ROTATION = 3
+
+        const val NUM_FIELDS = 4
+
+        /**
+         * Record flag: the entity is in the base snapshot, but not in this one.
+         */
+        private const val REMOVED = 0x80
+
+        /**
+         * Written instead of an id delta after the last record, since id deltas are always positive.
+         */
+        private const val END = 0
+    }
+
+    var size = 0
+        private set
+
+    private var ids = LongArray(16)
+
+    /**
+     * [NetworkComponent.version] of each entity, only used by the sender.
+     */
+    private var versions = IntArray(16)
+
+    private var values = IntArray(16 * NUM_FIELDS)
+
+    /**
+     * Indices of entities whose state changed in the last [readDelta].
+     */
+    private var changed = IntArray(16)
+
+    var numChanged = 0
+        private set
+
+    fun reset(sequence: Int) {
+        this.sequence = sequence
+        size = 0
+        numChanged = 0
+    }
+
+    fun id(index: Int) = ids[index]
+
+    fun value(index: Int, field: Int) = values[index * NUM_FIELDS + field]
+
+    /**
+     * @return index of the entity with given [id], or -1 if it is not in this snapshot
+     */
+    fun indexOf(id: Long): Int {
+        val index = ids.binarySearch(id, 0, size)
+
+        return if (index < 0) -1 else index
+    }
+
+    /**
+     * @return index of the i-th entity that changed in the last [readDelta]
+     */
+    fun changedIndex(i: Int) = changed[i]
+
+    /**
+     * Entities must be added in increasing order of [id].
+     */
+    fun add(id: Long, version: Int, x: Int, y: Int, z: Int, rotation: Int) {
+        ensureCapacity(size + 1)
+
+        ids[size] = id
+        versions[size] = version
+
+        val offset = size * NUM_FIELDS
+        values[offset + X] = x
+        values[offset + Y] = y
+        values[offset + Z] = z
+        values[offset + ROTATION] = rotation
+
+        size++
+    }
+
+    /**
+     * @return approximate number of bytes [writeDelta] writes for the entity at [index] against [base],
+     * or 0 if it is unchanged
+     */
+    fun recordSize(index: Int, base: EntitySnapshot?): Int {
+        val baseIndex = base?.indexOf(ids[index]) ?: -1
+
+        if (baseIndex != -1 && versions[index] == base!!.versions[baseIndex])
+            return 0
+
+        var size = 0
+
+        for (field in 0 until NUM_FIELDS) {
+            val baseValue = if (baseIndex != -1) base!!.values[baseIndex * NUM_FIELDS + field] else 0
+            val diff = values[index * NUM_FIELDS + field] - baseValue
+
+            if (diff != 0 || baseIndex == -1) {
+                size += varIntSize(diff)
+            }
+        }
+
+        // id delta (usually a single byte) and mask
+        return if (size == 0) 0 else size + 2
+    }
+
+    /**
+     * Reverts entities marked in [deferred] to their state in [base], or removes them if they are not in [base],
+     * so that [writeDelta] does not write them and they are sent in a later snapshot instead.
+     */
+    fun defer(deferred: BooleanArray, base: EntitySnapshot?) {
+        var newSize = 0
+
+        for (i in 0 until size) {
+            if (!deferred[i]) {
+                set(newSize++, this, i)
+                continue
+            }
+
+            val baseIndex = base?.indexOf(ids[i]) ?: -1
+
+            if (baseIndex != -1) {
+                set(newSize++, base!!, baseIndex)
+            }
+        }
+
+        size = newSize
+    }
+
+    /**
+     * Writes the difference from [base] (or the full state if null):
+     * entities that are unchanged are skipped, only changed fields of other entities are written
+     * (as the difference from the base value), and entities missing from this snapshot are marked as removed.
+     *
+     * @return number of records written, 0 if there is no difference
+     */
+    fun writeDelta(base: EntitySnapshot?, out: SnapshotWriter): Int {
+        val baseSize = base?.size ?: 0
+
+        var numRecords = 0
+        var prevID = -1L
+
+        var i = 0
+        var j = 0
+
+        while (i < size || j < baseSize) {
+            val id = if (i < size) ids[i] else Long.MAX_VALUE
+            val baseID = if (j < baseSize) base!!.ids[j] else Long.MAX_VALUE
+
+            if (baseID < id) {
+                out.writeVarLong(baseID - prevID)
+                out.writeByte(REMOVED)
+
+                prevID = baseID
+                numRecords++
+                j++
+                continue
+            }
+
+            val isInBase = baseID == id
+
+            // the entity did not change since the base snapshot, so its fields are not compared
+            if (isInBase && versions[i] == base!!.versions[j]) {
+                i++
+                j++
+                continue
+            }
+
+            var mask = 0
+
+            for (field in 0 until NUM_FIELDS) {
+                val baseValue = if (isInBase) base!!.values[j * NUM_FIELDS + field] else 0
+
+                if (values[i * NUM_FIELDS + field] != baseValue || !isInBase) {
+                    mask = mask or (1 shl field)
+                }
+            }
+
+            // changes smaller than the precision are not sent
+            if (mask != 0) {
+                out.writeVarLong(id - prevID)
+                out.writeByte(mask)
+
+                for (field in 0 until NUM_FIELDS) {
+                    if (mask and (1 shl field) != 0) {
+                        val baseValue = if (isInBase) base!!.values[j * NUM_FIELDS + field] else 0
+
+                        out.writeVarInt(values[i * NUM_FIELDS + field] - baseValue)
+                    }
+                }
+
+                prevID = id
+                numRecords++
+            }
+
+            i++
+
+            if (isInBase)
+                j++
+        }
+
+        if (numRecords > 0) {
+            out.writeVarLong(END.toLong())
+        }
+
+        return numRecords
+    }
+
+    /**
+     * Sets the state of this snapshot to [base] (or empty if null) with [delta] applied,
+     * where [delta] was written by [writeDelta] with the same base.
+     * Entities whose state changed are then available via [changedIndex].
+     */
+    fun readDelta(base: EntitySnapshot?, delta: SnapshotReader) {
+        size = 0
+        numChanged = 0
+
+        val baseSize = base?.size ?: 0
+        var j = 0
+
+        var id = -1L
+
+        while (true) {
+            val idDelta = delta.readVarLong()
+
+            if (idDelta == END.toLong())
+                break
+
+            id += idDelta
+
+            // entities of base before this record are unchanged
+            while (j < baseSize && base!!.ids[j] < id) {
+                copyFrom(base, j)
+                j++
+            }
+
+            val isInBase = j < baseSize && base!!.ids[j] == id
+
+            val mask = delta.readByte()
+
+            if (mask and REMOVED != 0) {
+                if (isInBase)
+                    j++
+
+                continue
+            }
+
+            ensureCapacity(size + 1)
+            ids[size] = id
+
+            for (field in 0 until NUM_FIELDS) {
+                val baseValue = if (isInBase) base!!.values[j * NUM_FIELDS + field] else 0
+
+                values[size * NUM_FIELDS + field] = if (mask and (1 shl field) != 0) baseValue + delta.readVarInt() else baseValue
+            }
+
+            if (changed.size == numChanged) {
+                changed = changed.copyOf(numChanged * 2)
+            }
+
+            changed[numChanged++] = size
+            size++
+
+            if (isInBase)
+                j++
+        }
+
+        while (j < baseSize) {
+            copyFrom(base!!, j)
+            j++
+        }
+    }
+
+    private fun copyFrom(other: EntitySnapshot, index: Int) {
+        ensureCapacity(size + 1)
+
+        set(size, other, index)
+
+        size++
+    }
+
+    private fun set(index: Int, other: EntitySnapshot, otherIndex: Int) {
+        ids[index] = other.ids[otherIndex]
+        versions[index] = other.versions[otherIndex]
+        System.arraycopy(other.values, otherIndex * NUM_FIELDS, values, index * NUM_FIELDS, NUM_FIELDS)
+    }
+
+    private fun varIntSize(value: Int): Int {
+        val zigzag = (value shl 1) xor (value shr 31)
+
+        return maxOf(1, (38 - Integer.numberOfLeadingZeros(zigzag)) / 7)
+    }
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity > ids.size) {
+            val newCapacity = maxOf(capacity, ids.size * 2)
+
+            ids = ids.copyOf(newCapacity)
+            versions = versions.copyOf(newCapacity)
+            values = values.copyOf(newCapacity * NUM_FIELDS)
+        }
+    }
+}
+
+/**
+ * Writes varints into a buffer that is reused for each snapshot.
+ */
+internal class SnapshotWriter {
+
+    private var buffer = ByteArray(256)
+
+    var size = 0
+        private set
+
+    fun reset() {
+        size = 0
+    }
+
+    fun toByteArray(): ByteArray = buffer.copyOf(size)
+
+    fun writeByte(value: Int) {
+        ensureCapacity(1)
+        buffer[size++] = value.toByte()
+    }
+
+    /**
+     * Writes a signed int, so that values close to 0 take fewer bytes.
+     */
+    fun writeVarInt(value: Int) {
+        writeVarLong(((value shl 1) xor (value shr 31)).toLong() and 0xFFFFFFFFL)
+    }
+
+    /**
+     * Writes a non-negative long.
+     */
+    fun writeVarLong(value: Long) {
+        ensureCapacity(10)
+
+        var v = value
+
+        while (v and 0x7FL.inv() != 0L) {
+            buffer[size++] = ((v and 0x7F) or 0x80).toByte()
+            v = v ushr 7
+        }
+
+        buffer[size++] = v.toByte()
+    }
+
+    private fun ensureCapacity(numBytes: Int) {
+        if (size + numBytes > buffer.size) {
+            buffer = buffer.copyOf(maxOf(buffer.size * 2, size + numBytes))
+        }
+    }
+}
+
+internal class SnapshotReader(private val data: ByteArray) {
+
+    private var pos = 0
+
+    fun readByte(): Int {
+        check(pos < data.size) { "Unexpected end of snapshot data" }
+
+        return data[pos++].toInt() and 0xFF
+    }
+
+    fun readVarInt(): Int {
+        val value = readVarLong().toInt()
+
+        return (value ushr 1) xor -(value and 1)
+    }
+
+    fun readVarLong(): Long {
+        var value = 0L
+        var shift = 0
+
+        while (shift < 64) {
+            val b = readByte()
+
+            value = value or ((b and 0x7F).toLong() shl shift)
+
+            if (b and 0x80 == 0)
+                return value
+
+            shift += 7
+        }
+
+        throw IllegalStateException("Malformed snapshot varint")
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.multiplayer
+
+import com.almasb.fxgl.entity.Entity
+import kotlin.math.floor
+
+/**
+ * A uniform grid of replicated entities, used to find entities in the interest area of each connection.
+ * Each entity is stored once, however many connections it is replicated to.
+ * Entities move every frame, so instead of tracking movement the grid is rebuilt before it is queried,
+ * which is done once per snapshot for all connections.
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+internal class InterestGrid(val cellSize: Double) {
+
+    /**
+     * Entity to the number of connections it is replicated to.
+     */
+    private val entities = HashMap<Entity, Int>()
+
+    private val cells = HashMap<Long, ArrayList<Entity>>()
+    private val cellPool = ArrayList<ArrayList<Entity>>()
+
+    init {
+        require(cellSize > 0) { "Cell size must be positive: $cellSize" }
+    }
+
+    val size: Int
+        get() = entities.size
+
+    /**
+     * Number of free cells kept for reuse.
+     */
+    val numPooledCells: Int
+        get() = cellPool.size
+
+    fun add(entity: Entity) {
+        entities.merge(entity, 1, Int::plus)
+    }
+
+    fun remove(entity: Entity) {
+        entities.computeIfPresent(entity) { _, count -> if (count == 1) null else count - 1 }
+    }
+
+    /**
+     * Places entities into cells based on their current position.
+     */
+    fun rebuild() {
+        cells.values.forEach {
+            it.clear()
+            cellPool += it
+        }
+        cells.clear()
+
+        entities.keys.forEach { e ->
+            if (!e.isActive)
+                return@forEach
+
+            cells.getOrPut(key(cellOf(e.x), cellOf(e.y))) {
+                if (cellPool.isEmpty()) ArrayList() else cellPool.removeAt(cellPool.size - 1)
+            }.add(e)
+        }
+
+        // only keep as many free cells as are used now, so cells of entities that spread out once are released
+        while (cellPool.size > cells.size) {
+            cellPool.removeAt(cellPool.size - 1)
+        }
+    }
+
+    /**
+     * Adds entities whose position is within [radius] from given point to [result].
+     * Entities that moved after the last [rebuild] are found based on their old cells.
+     * If the radius covers more cells than are occupied, only occupied cells are visited.
+     */
+    fun query(x: Double, y: Double, radius: Double, result: MutableList<Entity>) {
+        val radiusSquared = radius * radius
+
+        val minX = cellOf(x - radius)
+        val maxX = cellOf(x + radius)
+        val minY = cellOf(y - radius)
+        val maxY = cellOf(y + radius)
+
+        // in doubles, since the number of cells in range of a huge radius does not fit in a long
+        val numCellsInRange = (maxX.toDouble() - minX + 1) * (maxY.toDouble() - minY + 1)
+
+        if (numCellsInRange > cells.size) {
+            cells.forEach { (key, cell) ->
+                val cx = (key shr 32).toInt()
+                val cy = key.toInt()
+
+                if (cx in minX..maxX && cy in minY..maxY) {
+                    addInRadius(cell, x, y, radiusSquared, result)
+                }
+            }
+
+            return
+        }
+
+        for (cy in minY..maxY) {
+            for (cx in minX..maxX) {
+                val cell = cells[key(cx, cy)] ?: continue
+
+                addInRadius(cell, x, y, radiusSquared, result)
+            }
+        }
+    }
+
+    private fun addInRadius(cell: List<Entity>, x: Double, y: Double, radiusSquared: Double, result: MutableList<Entity>) {
+        for (i in cell.indices) {
+            val e = cell[i]
+
+            val dx = e.x - x
+            val dy = e.y - y
+
+            if (dx * dx + dy * dy <= radiusSquared)
+                result += e
+        }
+    }
+
+    fun clear() {
+        entities.clear()
+        cells.clear()
+        cellPool.clear()
+    }
+
+    private fun cellOf(value: Double): Int = floor(value / cellSize).toInt()
+
+    private fun key(cx: Int, cy: Int): Long = (cx.toLong() shl 32) or (cy.toLong() and 0xFFFFFFFFL)
+}
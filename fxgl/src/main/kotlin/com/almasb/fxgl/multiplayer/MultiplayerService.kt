@@ -29,14 +29,49 @@ import javafx.beans.property.ReadOnlyDoubleWrapper
  */
 class MultiplayerService : EngineService() {
 
+    companion object {
+        private const val SNAPSHOT_BUNDLE_NAME = "REPLICATION_SNAPSHOT"
+        private const val SNAPSHOT_ACK_BUNDLE_NAME = "REPLICATION_SNAPSHOT_ACK"
+
+        /**
+         * Max number of snapshots a delta can be behind, otherwise the full state is sent.
+         * Receivers keep this many received snapshots to apply deltas to.
+         */
+        private const val SNAPSHOT_HISTORY_SIZE = 32
+    }
+
     private val log = Logger.get(javaClass)
 
     private val replicatedEntitiesMap = hashMapOf<Connection<Bundle>, ConnectionData>()
 
+    /**
+     * How entity state is replicated, which must be the same on both endpoints.
+     */
+    var replicationConfig = ReplicationConfig()
+
+    private var snapshotTimer = 0.0
+    private var pingTimer = 0.0
+
+    /**
+     * Number of snapshot ticks so far, used to measure how long changes of entities have been deferred.
+     */
+    private var snapshotTick = 0
+
+    private val snapshotWriter = SnapshotWriter()
+
+    /**
+     * All replicated entities, created on first use since its cell size is configured by [replicationConfig].
+     */
+    private val interestGrid by lazy { InterestGrid(replicationConfig.interestCellSize) }
+    private val interestQueryResult = ArrayList<Entity>()
+
     fun registerConnection(connection: Connection<Bundle>) {
         val data = ConnectionData(connection)
         setUpNewConnection(data)
 
+        // messages are flushed at the end of each update, or after a max delay if the game is not updated
+        connection.isBatchingEnabled = true
+
         replicatedEntitiesMap[connection] = data
     }
 
@@ -55,13 +90,19 @@ class MultiplayerService : EngineService() {
 
     private fun cleanUpConnection(data: ConnectionData) {
         val connection = data.connection
+
+        connection.isBatchingEnabled = false
         
         // Clean up all entities associated with this connection
+        data.entities.forEach { interestGrid.remove(it.entity) }
         data.entities.clear()
+        data.entitiesByEntity.clear()
+        data.inScope.clear()
         
         // Clean up all replication handlers
         inputReplicationSenders.remove(connection)
         propertyReplicationSenders.remove(connection)
+        pendingPropertyUpdates.remove(connection)
         inputReplicationReceivers.remove(connection)
         propertyReplicationReceivers.remove(connection)
         eventReplicationSenders.remove(connection)
@@ -97,21 +138,68 @@ class MultiplayerService : EngineService() {
             data.pingBuffer.put(roundTripTime.toDouble())
             data.ping.value = data.pingBuffer.average
         }
+
+        data.connection.addMessageHandlerFX { _, message ->
+            if (message.name == SNAPSHOT_ACK_BUNDLE_NAME) {
+                onSnapshotAcknowledged(data, message.get("seq"))
+            }
+        }
     }
 
     override fun onGameUpdate(tpf: Double) {
+        updateReplication(tpf)
+
+        sendPropertyUpdates()
+
+        // all messages of this tick to a connection are written to the network together
+        replicatedEntitiesMap.keys.forEach { it.flush() }
+    }
+
+    private fun updateReplication(tpf: Double) {
         if (replicatedEntitiesMap.isEmpty())
             return
 
+        val snapshotInterval = 1.0 / replicationConfig.sendRate
+
+        snapshotTimer += tpf
+        pingTimer += tpf
+
+        val isSnapshotDue = snapshotTimer >= snapshotInterval
+        val isPingDue = pingTimer >= replicationConfig.pingInterval
+
+        if (!isSnapshotDue && !isPingDue)
+            return
+
+        if (isSnapshotDue) {
+            // after a long frame, send one snapshot rather than catching up
+            snapshotTimer = minOf(snapshotTimer - snapshotInterval, snapshotInterval)
+            snapshotTick++
+
+            if (replicatedEntitiesMap.values.any { it.interestArea != null }) {
+                interestGrid.rebuild()
+            }
+        }
+
+        if (isPingDue) {
+            pingTimer = 0.0
+        }
+
         val now = System.nanoTime()
 
-        replicatedEntitiesMap.forEach { conn, data ->
+        // dead connections are unregistered during iteration
+        replicatedEntitiesMap.values.toTypedArray().forEach { data ->
+            val conn = data.connection
+
             // Check if connection is still alive before sending data
             if (conn.isConnected) {
-                fire(conn, PingReplicationEvent(now))
+                if (isPingDue) {
+                    fire(conn, PingReplicationEvent(now))
+                }
 
-                if (data.entities.isNotEmpty()) {
-                    updateReplicatedEntities(conn, data.entities)
+                if (isSnapshotDue) {
+                    removeInactiveEntities(data)
+                    updateScope(data)
+                    sendSnapshot(data)
                 }
             } else {
                 // Connection died, schedule for cleanup
@@ -133,31 +221,288 @@ class MultiplayerService : EngineService() {
         return data.ping.readOnlyProperty
     }
 
-    private fun updateReplicatedEntities(connection: Connection<Bundle>, entities: MutableList<Entity>) {
+    /**
+     * Limits entity replication to given [connection] to entities within [radius] from [observer],
+     * typically the player entity of that connection, measured between entity positions.
+     * From the next snapshot, entities are spawned on the other endpoint when they enter this area
+     * and removed when they leave it.
+     */
+    fun setInterestArea(connection: Connection<Bundle>, observer: Entity, radius: Double) {
+        val data = replicatedEntitiesMap[connection]
+        if (data == null) {
+            log.warning("Attempted to set interest area of unknown connection")
+            return
+        }
+
+        if (data.interestArea == null) {
+            // all entities are spawned, those outside the area are removed in the next snapshot
+            data.inScope.clear()
+            data.inScope.addAll(data.entities)
+        }
+
+        data.interestArea = InterestArea(observer, radius)
+    }
+
+    /**
+     * Replicates all entities to given [connection], spawning those that were outside the interest area.
+     */
+    fun removeInterestArea(connection: Connection<Bundle>) {
+        val data = replicatedEntitiesMap[connection]
+        if (data == null) {
+            log.warning("Attempted to remove interest area of unknown connection")
+            return
+        }
+
+        if (data.interestArea == null)
+            return
+
+        data.interestArea = null
+
         val events = arrayListOf<ReplicationEvent>()
 
-        entities.forEach {
-            val networkComponent = it.getComponentOptional(NetworkComponent::class.java)
-            if (!networkComponent.isPresent) {
-                log.warning("Entity missing NetworkComponent during replication update")
-                return@forEach
+        data.entities.forEach {
+            if (!it.isInScope) {
+                it.isInScope = true
+                events += spawnEvent(it)
             }
-            val networkID = networkComponent.get().id
+        }
 
-            if (it.isActive) {
-                events += EntityUpdateEvent(networkID, it.x, it.y, it.z)
-            } else {
-                events += EntityRemoveEvent(networkID)
+        data.inScope.clear()
+
+        if (events.isNotEmpty()) {
+            fire(connection, *events.toTypedArray())
+        }
+    }
+
+    private fun removeInactiveEntities(data: ConnectionData) {
+        if (data.entities.all { it.entity.isActive })
+            return
+
+        val events = arrayListOf<ReplicationEvent>()
+
+        data.entities.forEach {
+            if (!it.entity.isActive) {
+                interestGrid.remove(it.entity)
+                data.entitiesByEntity.remove(it.entity)
+
+                // the component is no longer attached to the entity, but still has the id
+                if (it.isInScope) {
+                    events += EntityRemoveEvent(it.networkComponent.id)
+                }
             }
         }
 
         if (events.isNotEmpty()) {
-            fire(connection, *events.toTypedArray())
+            fire(data.connection, *events.toTypedArray())
+        }
+
+        data.entities.removeIf { !it.entity.isActive }
+        data.inScope.removeIf { !it.entity.isActive }
+    }
+
+    /**
+     * Finds entities in the interest area of given connection (if set),
+     * spawning those that entered it and removing those that left it on the other endpoint.
+     */
+    private fun updateScope(data: ConnectionData) {
+        val area = data.interestArea ?: return
+
+        interestQueryResult.clear()
+        interestGrid.query(area.observer.x, area.observer.y, area.radius, interestQueryResult)
+
+        val events = arrayListOf<ReplicationEvent>()
+
+        interestQueryResult.forEach {
+            // the grid has entities of all connections
+            data.entitiesByEntity[it]?.scopeTick = snapshotTick
+        }
+
+        data.inScope.forEach {
+            if (it.scopeTick != snapshotTick) {
+                it.isInScope = false
+                events += EntityRemoveEvent(it.networkComponent.id)
+            }
+        }
+
+        data.inScope.clear()
+
+        interestQueryResult.forEach {
+            val replicated = data.entitiesByEntity[it] ?: return@forEach
+
+            if (!replicated.isInScope) {
+                replicated.isInScope = true
+                events += spawnEvent(replicated)
+            }
+
+            data.inScope += replicated
+        }
+
+        data.inScope.sortBy { it.networkComponent.id }
+
+        if (events.isNotEmpty()) {
+            fire(data.connection, *events.toTypedArray())
+        }
+    }
+
+    /**
+     * @return event that spawns the entity at its current position, since it may enter scope long after it was spawned
+     */
+    private fun spawnEvent(replicated: ReplicatedEntity): EntitySpawnEvent {
+        val spawnData = NetworkSpawnData(replicated.spawnData)
+        spawnData.x = replicated.entity.x
+        spawnData.y = replicated.entity.y
+        spawnData.z = replicated.entity.z
+
+        return EntitySpawnEvent(replicated.networkComponent.id, replicated.entityName, spawnData)
+    }
+
+    /**
+     * Sends quantized state of entities replicated to given connection as a delta against
+     * the last snapshot acknowledged by the other endpoint.
+     * Nothing is sent if no entity changed.
+     */
+    private fun sendSnapshot(data: ConnectionData) {
+        val config = replicationConfig
+
+        val snapshot = data.obtainSnapshot(data.nextSnapshotSequence)
+
+        val entities = if (data.interestArea == null) data.entities else data.inScope
+
+        entities.forEach { replicated ->
+            val entity = replicated.entity
+            val networkComponent = replicated.networkComponent
+
+            networkComponent.checkDirty()
+
+            snapshot.add(
+                    networkComponent.id,
+                    networkComponent.version,
+                    quantize(entity.x, config.positionPrecision),
+                    quantize(entity.y, config.positionPrecision),
+                    quantize(entity.z, config.positionPrecision),
+                    quantize(entity.rotation, config.rotationPrecision)
+            )
+        }
+
+        // the receiver only keeps recent snapshots, so older ones cannot be used as base
+        val base = data.ackedSnapshot?.takeIf { snapshot.sequence - it.sequence < SNAPSHOT_HISTORY_SIZE }
+
+        applyBudget(data, entities, snapshot, base)
+
+        snapshotWriter.reset()
+
+        val numRecords = snapshot.writeDelta(base, snapshotWriter)
+
+        if (numRecords == 0) {
+            data.recycle(snapshot)
+            return
+        }
+
+        data.nextSnapshotSequence++
+        data.sentSnapshots.addLast(snapshot)
+
+        if (data.sentSnapshots.size > SNAPSHOT_HISTORY_SIZE) {
+            data.recycle(data.sentSnapshots.removeFirst())
+        }
+
+        val bundle = Bundle(SNAPSHOT_BUNDLE_NAME)
+        bundle.put("seq", snapshot.sequence)
+        bundle.put("base", base?.sequence ?: -1)
+        bundle.put("data", snapshotWriter.toByteArray())
+
+        data.connection.send(bundle)
+    }
+
+    /**
+     * Defers changed entities that do not fit into [ReplicationConfig.maxBytesPerSnapshot] to later snapshots.
+     * Entities are chosen by priority, which grows with the number of snapshots since a change of the entity
+     * was first deferred and is lower for entities further away from the observer.
+     *
+     * @param entities replicated entities in the same order as in [snapshot]
+     */
+    private fun applyBudget(data: ConnectionData, entities: List<ReplicatedEntity>, snapshot: EntitySnapshot, base: EntitySnapshot?) {
+        val budget = replicationConfig.maxBytesPerSnapshot
+
+        if (budget == Int.MAX_VALUE) {
+            return
+        }
+
+        val sizes = IntArray(snapshot.size)
+        var totalSize = 0
+
+        for (i in 0 until snapshot.size) {
+            sizes[i] = snapshot.recordSize(i, base)
+            totalSize += sizes[i]
+        }
+
+        if (totalSize <= budget) {
+            entities.forEach { it.firstDeferredTick = -1 }
+            return
+        }
+
+        val area = data.interestArea
+
+        val changed = (0 until snapshot.size)
+                .filter { sizes[it] > 0 }
+                .sortedByDescending { priorityOf(entities[it], area) }
+
+        val deferred = BooleanArray(snapshot.size)
+        var usedSize = 0
+
+        changed.forEach { i ->
+            // smaller records of lower priority entities may still fit
+            if (usedSize + sizes[i] > budget) {
+                deferred[i] = true
+            } else {
+                usedSize += sizes[i]
+            }
+        }
+
+        for (i in 0 until snapshot.size) {
+            val replicated = entities[i]
+
+            if (!deferred[i]) {
+                replicated.firstDeferredTick = -1
+            } else if (replicated.firstDeferredTick == -1) {
+                replicated.firstDeferredTick = snapshotTick
+            }
+        }
+
+        snapshot.defer(deferred, base)
+    }
+
+    private fun priorityOf(replicated: ReplicatedEntity, area: InterestArea?): Double {
+        // a new change has staleness 1, each snapshot it is deferred for adds 1
+        val staleness = if (replicated.firstDeferredTick == -1) 1.0 else (snapshotTick - replicated.firstDeferredTick + 1).toDouble()
+
+        if (area == null)
+            return staleness
+
+        val dx = replicated.entity.x - area.observer.x
+        val dy = replicated.entity.y - area.observer.y
+
+        return staleness / (1 + Math.sqrt(dx * dx + dy * dy) / area.radius)
+    }
+
+    private fun onSnapshotAcknowledged(data: ConnectionData, sequence: Int) {
+        val acked = data.ackedSnapshot
+
+        if (acked != null && sequence <= acked.sequence)
+            return
+
+        while (data.sentSnapshots.isNotEmpty() && data.sentSnapshots.first().sequence < sequence) {
+            data.recycle(data.sentSnapshots.removeFirst())
         }
 
-        entities.removeIf { !it.isActive }
+        if (data.sentSnapshots.isNotEmpty() && data.sentSnapshots.first().sequence == sequence) {
+            acked?.let { data.recycle(it) }
+
+            data.ackedSnapshot = data.sentSnapshots.removeFirst()
+        }
     }
 
+    private fun quantize(value: Double, precision: Double): Int = Math.round(value / precision).toInt()
+
     fun spawn(connection: Connection<Bundle>, entity: Entity, entityName: String) {
         spawn(connection, entity, entityName, SpawnData(entity.x, entity.y, entity.z))
     }
@@ -170,21 +515,52 @@ class MultiplayerService : EngineService() {
 
         val networkComponent = entity.getComponent(NetworkComponent::class.java)
 
-        val event = EntitySpawnEvent(networkComponent.id, entityName, NetworkSpawnData(spawnData))
-
         val data = replicatedEntitiesMap[connection]
         if (data == null) {
             log.warning("Attempted to spawn entity on unknown connection")
             return
         }
-        data.entities += entity
 
-        fire(connection, event)
+        val replicated = ReplicatedEntity(entity, networkComponent, entityName, spawnData)
+
+        // keep entities sorted by id, which is the order of snapshots
+        val index = data.entities.binarySearchBy(networkComponent.id) { it.networkComponent.id }
+        data.entities.add(if (index < 0) -index - 1 else index, replicated)
+        data.entitiesByEntity[entity] = replicated
+
+        interestGrid.add(entity)
+
+        // otherwise, spawned when it enters the interest area
+        if (data.interestArea == null) {
+            replicated.isInScope = true
+
+            fire(connection, EntitySpawnEvent(networkComponent.id, entityName, NetworkSpawnData(spawnData)))
+        }
     }
 
     fun addEntityReplicationReceiver(connection: Connection<Bundle>, gameWorld: GameWorld) {
+        val receivedSnapshots = arrayOfNulls<EntitySnapshot>(SNAPSHOT_HISTORY_SIZE)
+        var lastAppliedSequence = -1
+
         connection.addMessageHandlerFX { _, message ->
 
+            if (message.name == SNAPSHOT_BUNDLE_NAME) {
+                val snapshot = readSnapshot(message, receivedSnapshots) ?: return@addMessageHandlerFX
+
+                val ack = Bundle(SNAPSHOT_ACK_BUNDLE_NAME)
+                ack.put("seq", snapshot.sequence)
+                connection.send(ack)
+
+                // with unreliable transport, an older snapshot may arrive after a newer one
+                if (snapshot.sequence > lastAppliedSequence) {
+                    lastAppliedSequence = snapshot.sequence
+
+                    applySnapshot(snapshot, gameWorld)
+                }
+
+                return@addMessageHandlerFX
+            }
+
             handleIfReplicationBundle(message) { event ->
                 when (event) {
                     is EntitySpawnEvent -> {
@@ -228,6 +604,7 @@ class MultiplayerService : EngineService() {
 
     private val inputReplicationSenders = hashMapOf<Connection<Bundle>, TriggerListener>()
     private val propertyReplicationSenders = hashMapOf<Connection<Bundle>, PropertyMapChangeListener>()
+    private val pendingPropertyUpdates = hashMapOf<Connection<Bundle>, LinkedHashMap<String, ReplicationEvent>>()
     private val inputReplicationReceivers = hashMapOf<Connection<Bundle>, (Connection<Bundle>, Bundle) -> Unit>()
     private val propertyReplicationReceivers = hashMapOf<Connection<Bundle>, (Connection<Bundle>, Bundle) -> Unit>()
     private val eventReplicationSenders = hashMapOf<Connection<Bundle>, (ReplicationEvent) -> Unit>()
@@ -272,20 +649,37 @@ class MultiplayerService : EngineService() {
         }
     }
 
+    /**
+     * Property changes are sent once per update, so if a property changes several times during an update,
+     * only the last change is sent.
+     */
     fun addPropertyReplicationSender(connection: Connection<Bundle>, map: PropertyMap) {
-        map.addListener(object : PropertyMapChangeListener {
-            override fun onUpdated(propertyName: String, propertyValue: Any) {
-                val event = PropertyUpdateReplicationEvent(propertyName, propertyValue)
+        val updates = pendingPropertyUpdates.getOrPut(connection) { LinkedHashMap() }
 
-                fire(connection, event)
+        val listener = object : PropertyMapChangeListener {
+            override fun onUpdated(propertyName: String, propertyValue: Any) {
+                // the latest change of a property is sent after earlier changes of other properties
+                updates.remove(propertyName)
+                updates[propertyName] = PropertyUpdateReplicationEvent(propertyName, propertyValue)
             }
 
             override fun onRemoved(propertyName: String, propertyValue: Any) {
-                val event = PropertyRemoveReplicationEvent(propertyName)
+                updates.remove(propertyName)
+                updates[propertyName] = PropertyRemoveReplicationEvent(propertyName)
+            }
+        }
 
-                fire(connection, event)
+        map.addListener(listener)
+        propertyReplicationSenders[connection] = listener
+    }
+
+    private fun sendPropertyUpdates() {
+        pendingPropertyUpdates.forEach { (connection, updates) ->
+            if (updates.isNotEmpty()) {
+                fire(connection, *updates.values.toTypedArray())
+                updates.clear()
             }
-        })
+        }
     }
 
     fun addPropertyReplicationReceiver(connection: Connection<Bundle>, map: PropertyMap) {
@@ -360,6 +754,62 @@ class MultiplayerService : EngineService() {
         connection.send(bundle)
     }
 
+    private fun readSnapshot(message: Bundle, receivedSnapshots: Array<EntitySnapshot?>): EntitySnapshot? {
+        val sequence = message.get<Int>("seq")
+        val baseSequence = message.get<Int>("base")
+
+        var base: EntitySnapshot? = null
+
+        if (baseSequence != -1) {
+            base = receivedSnapshots[baseSequence % SNAPSHOT_HISTORY_SIZE]
+
+            if (base == null || base.sequence != baseSequence) {
+                log.warning("Dropped snapshot $sequence since its base snapshot $baseSequence is unknown")
+                return null
+            }
+        }
+
+        val index = sequence % SNAPSHOT_HISTORY_SIZE
+        val oldSnapshot = receivedSnapshots[index]
+
+        // a snapshot that arrives very late is not kept, since its slot is used by a newer one
+        if (oldSnapshot != null && oldSnapshot.sequence > sequence)
+            return null
+
+        // reuse the snapshot received HISTORY_SIZE snapshots ago, unless it is the base
+        val snapshot = oldSnapshot?.takeIf { it !== base } ?: EntitySnapshot(sequence)
+        snapshot.reset(sequence)
+        snapshot.readDelta(base, SnapshotReader(message.get("data")))
+
+        receivedSnapshots[index] = snapshot
+
+        return snapshot
+    }
+
+    private fun applySnapshot(snapshot: EntitySnapshot, gameWorld: GameWorld) {
+        if (snapshot.numChanged == 0)
+            return
+
+        val config = replicationConfig
+
+        val entities = gameWorld.getEntitiesByComponentMapped(NetworkComponent::class.java)
+        val entitiesByID = HashMap<Long, Entity>(entities.size)
+        entities.forEach { (e, networkComponent) -> entitiesByID[networkComponent.id] = e }
+
+        for (i in 0 until snapshot.numChanged) {
+            val index = snapshot.changedIndex(i)
+            val entity = entitiesByID[snapshot.id(index)] ?: continue
+
+            entity.setPosition3D(
+                    snapshot.value(index, EntitySnapshot.X) * config.positionPrecision,
+                    snapshot.value(index, EntitySnapshot.Y) * config.positionPrecision,
+                    snapshot.value(index, EntitySnapshot.Z) * config.positionPrecision
+            )
+
+            entity.rotation = snapshot.value(index, EntitySnapshot.ROTATION) * config.rotationPrecision
+        }
+    }
+
     private fun handleIfReplicationBundle(bundle: Bundle, handler: (ReplicationEvent) -> Unit) {
         if (bundle.name == "REPLICATION_EVENT") {
             val events: List<ReplicationEvent> = bundle.get("events")
@@ -368,11 +818,108 @@ class MultiplayerService : EngineService() {
         }
     }
 
+    private class ReplicatedEntity(
+            val entity: Entity,
+            val networkComponent: NetworkComponent,
+            val entityName: String,
+            val spawnData: SpawnData
+    ) {
+        /**
+         * Whether the entity is spawned on the other endpoint.
+         */
+        var isInScope = false
+
+        /**
+         * Snapshot tick when the entity was last found in the interest area.
+         */
+        var scopeTick = -1
+
+        /**
+         * Snapshot tick when a change of the entity was first deferred by the byte budget, -1 if no change is deferred.
+         */
+        var firstDeferredTick = -1
+    }
+
+    private class InterestArea(val observer: Entity, val radius: Double)
+
     private class ConnectionData(val connection: Connection<Bundle>) {
-        val entities = ArrayList<Entity>()
+
+        /**
+         * Sorted by network id.
+         */
+        val entities = ArrayList<ReplicatedEntity>()
+        val entitiesByEntity = HashMap<Entity, ReplicatedEntity>()
+
+        /**
+         * Entities in [interestArea], sorted by network id.
+         */
+        val inScope = ArrayList<ReplicatedEntity>()
+        var interestArea: InterestArea? = null
+
         val eventBus = EventBus().also { it.isLoggingEnabled = false }
 
         val pingBuffer = MovingAverageQueue(1000)
         val ping = ReadOnlyDoubleWrapper()
+
+        var nextSnapshotSequence = 0
+
+        /**
+         * The latest snapshot the other endpoint has acknowledged, used as base for deltas.
+         */
+        var ackedSnapshot: EntitySnapshot? = null
+
+        /**
+         * Snapshots sent after [ackedSnapshot], oldest first.
+         */
+        val sentSnapshots = ArrayDeque<EntitySnapshot>()
+
+        private val freeSnapshots = ArrayList<EntitySnapshot>()
+
+        fun obtainSnapshot(sequence: Int): EntitySnapshot {
+            if (freeSnapshots.isEmpty())
+                return EntitySnapshot(sequence)
+
+            return freeSnapshots.removeAt(freeSnapshots.size - 1).also { it.reset(sequence) }
+        }
+
+        fun recycle(snapshot: EntitySnapshot) {
+            freeSnapshots += snapshot
+        }
     }
-}
\ No newline at end of file
+}
+
+data class ReplicationConfig
+@JvmOverloads constructor(
+
+        /**
+         * Number of entity state snapshots sent to each connection per second, independent of the frame rate.
+         */
+        val sendRate: Double = 20.0,
+
+        /**
+         * Positions are sent rounded to a multiple of this value.
+         */
+        val positionPrecision: Double = 0.01,
+
+        /**
+         * Rotation (in degrees) is sent rounded to a multiple of this value.
+         */
+        val rotationPrecision: Double = 0.1,
+
+        /**
+         * Interval (in seconds) between pings that measure round-trip time.
+         */
+        val pingInterval: Double = 1.0,
+
+        /**
+         * Cell size of the grid used to find entities in interest areas,
+         * best set to about the radius of interest areas.
+         */
+        val interestCellSize: Double = 256.0,
+
+        /**
+         * Approximate max size (in bytes) of entity state in a snapshot to each connection,
+         * changes of entities that do not fit are sent in later snapshots.
+         */
+        val maxBytesPerSnapshot: Int = Int.MAX_VALUE
+)
\ No newline at end of file
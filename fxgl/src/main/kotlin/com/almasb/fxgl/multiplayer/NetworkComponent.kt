@@ -21,5 +21,31 @@ class NetworkComponent : Component() {
     var id: Long = uniqueID++
         internal set
 
+    /**
+     * Incremented when the replicated state (position, rotation) of the entity has changed since the last check,
+     * so that entities that did not change are skipped without comparing their state.
+     */
+    internal var version = 0
+        private set
+
+    private var lastX = Double.NaN
+    private var lastY = Double.NaN
+    private var lastZ = Double.NaN
+    private var lastRotation = Double.NaN
+
+    /**
+     * Updates [version] if the replicated state has changed since the last call.
+     */
+    internal fun checkDirty() {
+        if (entity.x != lastX || entity.y != lastY || entity.z != lastZ || entity.rotation != lastRotation) {
+            lastX = entity.x
+            lastY = entity.y
+            lastZ = entity.z
+            lastRotation = entity.rotation
+
+            version++
+        }
+    }
+
     override fun isComponentInjectionRequired(): Boolean = false
 }
\ No newline at end of file
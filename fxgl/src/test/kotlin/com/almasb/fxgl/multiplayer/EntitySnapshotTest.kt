@@ -0,0 +1,130 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.multiplayer
+
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.*
+import org.junit.jupiter.api.Test
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class EntitySnapshotTest {
+
+    @Test
+    fun `Full snapshot contains all entities`() {
+        val snapshot = EntitySnapshot(0)
+        snapshot.add(1, 1, 100, -200, 0, 900)
+        snapshot.add(5, 1, 3, 4, 5, 6)
+
+        val result = roundTrip(snapshot, null, null)
+
+        assertThat(result.size, `is`(2))
+        assertThat(result.numChanged, `is`(2))
+        assertThat(result.id(0), `is`(1L))
+        assertThat(result.value(0, EntitySnapshot.Y), `is`(-200))
+        assertThat(result.value(0, EntitySnapshot.ROTATION), `is`(900))
+        assertThat(result.id(1), `is`(5L))
+        assertThat(result.value(1, EntitySnapshot.Z), `is`(5))
+    }
+
+    @Test
+    fun `Delta only contains changed entities and fields`() {
+        val base = EntitySnapshot(0)
+        base.add(1, 1, 100, 100, 0, 0)
+        base.add(2, 1, 200, 200, 0, 0)
+        base.add(3, 1, 300, 300, 0, 0)
+
+        val snapshot = EntitySnapshot(1)
+        // unchanged version, so not compared
+        snapshot.add(1, 1, 100, 100, 0, 0)
+        // x changed
+        snapshot.add(2, 2, 201, 200, 0, 0)
+        // 3 was removed, 4 is new
+        snapshot.add(4, 1, 400, 400, 0, 0)
+
+        val writer = SnapshotWriter()
+        val numRecords = snapshot.writeDelta(base, writer)
+
+        assertThat(numRecords, `is`(3))
+
+        // id delta, mask, x delta for entity 2 is 3 bytes
+        assertThat(writer.size, lessThan(16))
+
+        val receiverBase = roundTrip(base, null, null)
+        val result = roundTrip(snapshot, base, receiverBase)
+
+        assertThat(result.size, `is`(3))
+        assertThat(result.numChanged, `is`(2))
+
+        assertThat(result.id(0), `is`(1L))
+        assertThat(result.value(0, EntitySnapshot.X), `is`(100))
+        assertThat(result.id(1), `is`(2L))
+        assertThat(result.value(1, EntitySnapshot.X), `is`(201))
+        assertThat(result.value(1, EntitySnapshot.Y), `is`(200))
+        assertThat(result.id(2), `is`(4L))
+        assertThat(result.value(2, EntitySnapshot.Y), `is`(400))
+    }
+
+    @Test
+    fun `No records if nothing changed`() {
+        val base = EntitySnapshot(0)
+        base.add(1, 1, 100, 100, 0, 0)
+        base.add(2, 1, 200, 200, 0, 0)
+
+        val snapshot = EntitySnapshot(1)
+        snapshot.add(1, 1, 100, 100, 0, 0)
+        // moved less than precision, so quantized values are the same
+        snapshot.add(2, 2, 200, 200, 0, 0)
+
+        assertThat(snapshot.writeDelta(base, SnapshotWriter()), `is`(0))
+    }
+
+    @Test
+    fun `Deferred entities are not written`() {
+        val base = EntitySnapshot(0)
+        base.add(1, 1, 100, 100, 0, 0)
+        base.add(2, 1, 200, 200, 0, 0)
+
+        val snapshot = EntitySnapshot(1)
+        snapshot.add(1, 2, 150, 100, 0, 0)
+        snapshot.add(2, 2, 201, 200, 0, 0)
+        snapshot.add(3, 1, 300, 300, 0, 0)
+
+        assertThat(snapshot.recordSize(0, base), `is`(3))
+        assertThat(snapshot.recordSize(2, base), `is`(8))
+
+        snapshot.defer(booleanArrayOf(true, false, true), base)
+
+        // 1 is reverted to its base state, 3 is not in base so it is removed
+        assertThat(snapshot.size, `is`(2))
+        assertThat(snapshot.value(0, EntitySnapshot.X), `is`(100))
+        assertThat(snapshot.recordSize(0, base), `is`(0))
+        assertThat(snapshot.indexOf(3), `is`(-1))
+
+        val receiverBase = roundTrip(base, null, null)
+        val result = roundTrip(snapshot, base, receiverBase)
+
+        assertThat(result.numChanged, `is`(1))
+        assertThat(result.id(result.changedIndex(0)), `is`(2L))
+        assertThat(result.value(1, EntitySnapshot.X), `is`(201))
+    }
+
+    /**
+     * @param base snapshot on the sender side
+     * @param receiverBase the same snapshot on the receiver side
+     */
+    private fun roundTrip(snapshot: EntitySnapshot, base: EntitySnapshot?, receiverBase: EntitySnapshot?): EntitySnapshot {
+        val writer = SnapshotWriter()
+        snapshot.writeDelta(base, writer)
+
+        val result = EntitySnapshot(snapshot.sequence)
+        result.readDelta(receiverBase, SnapshotReader(writer.toByteArray()))
+        return result
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.multiplayer
+
+import com.almasb.fxgl.entity.Entity
+import com.almasb.fxgl.entity.GameWorld
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.*
+import org.junit.jupiter.api.Test
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class InterestGridTest {
+
+    @Test
+    fun `Query finds entities within radius`() {
+        val world = GameWorld()
+
+        val e1 = Entity().also { it.setPosition(10.0, 10.0) }
+        val e2 = Entity().also { it.setPosition(-90.0, 10.0) }
+        val e3 = Entity().also { it.setPosition(500.0, 500.0) }
+
+        world.addEntities(e1, e2, e3)
+
+        val grid = InterestGrid(64.0)
+        grid.add(e1)
+        grid.add(e2)
+        grid.add(e3)
+        grid.rebuild()
+
+        val result = arrayListOf<Entity>()
+        grid.query(0.0, 0.0, 100.0, result)
+
+        assertThat(result, containsInAnyOrder(e1, e2))
+
+        e3.setPosition(20.0, 20.0)
+        grid.rebuild()
+
+        result.clear()
+        grid.query(0.0, 0.0, 100.0, result)
+
+        assertThat(result, containsInAnyOrder(e1, e2, e3))
+    }
+
+    @Test
+    fun `Query with a radius much larger than the grid only visits occupied cells`() {
+        val world = GameWorld()
+
+        val e1 = Entity().also { it.setPosition(10.0, 10.0) }
+        val e2 = Entity().also { it.setPosition(-5000.0, 3000.0) }
+        val e3 = Entity().also { it.setPosition(1e12, 1e12) }
+
+        world.addEntities(e1, e2, e3)
+
+        val grid = InterestGrid(1.0)
+        grid.add(e1)
+        grid.add(e2)
+        grid.add(e3)
+        grid.rebuild()
+
+        val result = arrayListOf<Entity>()
+        grid.query(0.0, 0.0, 10000.0, result)
+
+        assertThat(result, containsInAnyOrder(e1, e2))
+
+        result.clear()
+        grid.query(0.0, 0.0, Double.MAX_VALUE, result)
+
+        assertThat(result, containsInAnyOrder(e1, e2, e3))
+    }
+
+    @Test
+    fun `Entity stays in grid until removed by all connections`() {
+        val world = GameWorld()
+
+        val e = Entity()
+        world.addEntity(e)
+
+        val grid = InterestGrid(64.0)
+        grid.add(e)
+        grid.add(e)
+
+        assertThat(grid.size, `is`(1))
+
+        grid.remove(e)
+
+        assertThat(grid.size, `is`(1))
+
+        grid.remove(e)
+        grid.rebuild()
+
+        val result = arrayListOf<Entity>()
+        grid.query(0.0, 0.0, 10.0, result)
+
+        assertThat(grid.size, `is`(0))
+        assertThat(result, `is`(empty()))
+    }
+
+    @Test
+    fun `Free cells are released when entities gather`() {
+        val world = GameWorld()
+        val grid = InterestGrid(64.0)
+
+        val entities = (0 until 100).map {
+            val e = Entity()
+            e.setPosition(it * 100.0, 0.0)
+            world.addEntity(e)
+            grid.add(e)
+            e
+        }
+
+        grid.rebuild()
+
+        entities.forEach { it.setPosition(0.0, 0.0) }
+
+        grid.rebuild()
+        grid.rebuild()
+
+        assertThat(grid.numPooledCells, lessThanOrEqualTo(1))
+    }
+}
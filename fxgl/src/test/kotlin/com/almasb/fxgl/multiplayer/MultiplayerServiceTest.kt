@@ -0,0 +1,174 @@
+/*
+ * FXGL - JavaFX Game Library. The MIT License (MIT).
+ * Copyright (c) AlmasB (almaslvl@gmail.com).
+ * See LICENSE for details.
+ */
+
+package com.almasb.fxgl.multiplayer
+
+import com.almasb.fxgl.core.serialization.Bundle
+import com.almasb.fxgl.entity.Entity
+import com.almasb.fxgl.entity.GameWorld
+import com.almasb.fxgl.net.Connection
+import org.hamcrest.MatcherAssert.assertThat
+import org.hamcrest.Matchers.*
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+/**
+ *
+ * @author Almas Baimagambetov (almaslvl@gmail.com)
+ */
+class MultiplayerServiceTest {
+
+    private lateinit var service: MultiplayerService
+    private lateinit var world: GameWorld
+    private lateinit var connection: TestConnection
+
+    @BeforeEach
+    fun setUp() {
+        service = MultiplayerService()
+        world = GameWorld()
+        connection = TestConnection()
+
+        service.registerConnection(connection)
+
+        // messages are sent immediately, so that they can be checked without flushing
+        connection.isBatchingEnabled = false
+    }
+
+    @Test
+    fun `Entities are spawned when they enter interest area and removed when they leave it`() {
+        val observer = spawn(0.0, 0.0)
+        val e = spawn(1000.0, 0.0)
+
+        service.setInterestArea(connection, observer, 100.0)
+
+        update()
+
+        assertThat(removedIDs(), contains(e.networkID))
+        assertThat(spawnEvents(), `is`(empty()))
+
+        e.setPosition(50.0, 0.0)
+        update()
+
+        assertThat(removedIDs(), `is`(empty()))
+        assertThat(spawnEvents().map { it.networkID }, contains(e.networkID))
+        assertThat(spawnEvents()[0].networkSpawnData.x, `is`(50.0))
+
+        // no events while the entity stays in the area
+        update()
+
+        assertThat(removedIDs(), `is`(empty()))
+        assertThat(spawnEvents(), `is`(empty()))
+
+        e.setPosition(1000.0, 0.0)
+        update()
+
+        assertThat(removedIDs(), contains(e.networkID))
+    }
+
+    @Test
+    fun `Entities outside interest area are spawned when it is removed`() {
+        val observer = spawn(0.0, 0.0)
+        val e = spawn(1000.0, 0.0)
+
+        service.setInterestArea(connection, observer, 100.0)
+
+        update()
+
+        connection.sent.clear()
+
+        service.removeInterestArea(connection)
+
+        assertThat(spawnEvents().map { it.networkID }, contains(e.networkID))
+
+        update()
+
+        assertThat(removedIDs(), `is`(empty()))
+        assertThat(spawnEvents(), `is`(empty()))
+    }
+
+    @Test
+    fun `Budget defers entities that were never acknowledged to later snapshots`() {
+        // each record of an entity at 0,0 is 6 bytes: id delta, mask and 4 fields
+        service.replicationConfig = ReplicationConfig(maxBytesPerSnapshot = 6)
+
+        val e1 = spawn(0.0, 0.0)
+        val e2 = spawn(0.0, 0.0)
+
+        update()
+
+        val first = snapshotIDs()
+
+        assertThat(first.size, `is`(1))
+
+        // not acknowledged, so the deferred entity is sent next as it has been waiting longer
+        update()
+
+        val second = snapshotIDs()
+
+        assertThat(second.size, `is`(1))
+        assertThat(first + second, containsInAnyOrder(e1.networkID, e2.networkID))
+    }
+
+    private fun spawn(x: Double, y: Double): Entity {
+        val e = Entity()
+        e.setPosition(x, y)
+        e.addComponent(NetworkComponent())
+
+        world.addEntity(e)
+
+        service.spawn(connection, e, "test")
+
+        return e
+    }
+
+    /**
+     * Runs a frame long enough to send a snapshot, collecting messages sent in that frame.
+     */
+    private fun update() {
+        connection.sent.clear()
+
+        service.onGameUpdate(1.0)
+    }
+
+    private fun events(): List<ReplicationEvent> {
+        return connection.sent
+                .filter { it.name == "REPLICATION_EVENT" }
+                .flatMap { it.get<List<ReplicationEvent>>("events") }
+    }
+
+    private fun spawnEvents() = events().filterIsInstance<EntitySpawnEvent>()
+
+    private fun removedIDs() = events().filterIsInstance<EntityRemoveEvent>().map { it.networkID }
+
+    /**
+     * @return network ids of entities in the snapshot sent in the last frame
+     */
+    private fun snapshotIDs(): List<Long> {
+        val bundle = connection.sent.single { it.name == "REPLICATION_SNAPSHOT" }
+
+        assertThat(bundle.get<Int>("base"), `is`(-1))
+
+        val snapshot = EntitySnapshot(bundle.get("seq"))
+        snapshot.readDelta(null, SnapshotReader(bundle.get("data")))
+
+        return (0 until snapshot.size).map { snapshot.id(it) }
+    }
+
+    private val Entity.networkID: Long
+        get() = getComponent(NetworkComponent::class.java).id
+
+    private class TestConnection : Connection<Bundle>(0) {
+        val sent = arrayListOf<Bundle>()
+
+        override fun sendImpl(message: Bundle) {
+            sent += message
+        }
+
+        override fun isClosedLocally(): Boolean = false
+
+        override fun terminateImpl() { }
+    }
+}